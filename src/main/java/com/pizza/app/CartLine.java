@@ -0,0 +1,90 @@
+package com.pizza.app;
+
+import com.pizza.domain.pizza.Pizza;
+
+/**
+ * One line of the cart: a pizza configuration and how many of it.
+ *
+ * Identical pizzas share a line instead of being added one object at a
+ * time, so 50 of the same pizza are one line, one UI refresh and one
+ * order_items row. Immutable; {@link CartService} replaces a line to
+ * change its quantity.
+ */
+public final class CartLine {
+    private final Pizza pizza;
+    private final int quantity;
+    // Priced once: the pizza is immutable and its decorator chain need not be walked again
+    private final int unitPrice;
+
+    public CartLine(Pizza pizza, int quantity) {
+        if (pizza == null) {
+            throw new IllegalArgumentException("Pizza cannot be null");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        this.pizza = pizza;
+        this.quantity = quantity;
+        this.unitPrice = pizza.getPrice();
+    }
+
+    private CartLine(CartLine line, int quantity) {
+        this.pizza = line.pizza;
+        this.quantity = quantity;
+        this.unitPrice = line.unitPrice;
+    }
+
+    public Pizza getPizza() {
+        return pizza;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Price of one pizza on this line.
+     */
+    public int getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Unit price times quantity.
+     */
+    public int getLineTotal() {
+        return unitPrice * quantity;
+    }
+
+    /**
+     * Same line with another quantity.
+     */
+    public CartLine withQuantity(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        return quantity == this.quantity ? this : new CartLine(this, quantity);
+    }
+
+    /**
+     * Whether a pizza would be sold exactly as the pizza on this line:
+     * same type, size, toppings and price. Pizzas from the
+     * {@link com.pizza.domain.factory.PizzaRegistry} are shared, so the
+     * identity check usually settles it.
+     */
+    public boolean isSameConfiguration(Pizza other) {
+        if (other == pizza) {
+            return true;
+        }
+        return other != null
+                && other.getPrice() == unitPrice
+                && other.getSize() == pizza.getSize()
+                && other.getName().equals(pizza.getName())
+                && other.getToppingList().equals(pizza.getToppingList());
+    }
+
+    @Override
+    public String toString() {
+        return pizza.getDescription() + " x" + quantity;
+    }
+}
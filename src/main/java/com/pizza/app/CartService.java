@@ -5,11 +5,20 @@ import com.pizza.domain.strategy.PaymentStrategy;
 import com.pizza.domain.strategy.CashPayment;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Service for managing shopping cart in POS system.
- * Uses Observer pattern to notify UI of cart changes.
+ * Service for managing one shopping cart in POS system: the cart of one
+ * terminal or order channel, handed out by {@link CartSessionManager}.
+ * Uses Observer pattern to notify UI of cart changes; CART_UPDATED carries
+ * the session id, so a screen can ignore other terminals' carts.
+ * All operations are thread-safe; events are published outside the lock.
+ * Identical pizzas are kept as one {@link CartLine} with a quantity.
+ * Subtotal and pizza counts are kept up to date on every change, so
+ * reading them never walks the cart; with assertions enabled (-ea) each
+ * change is checked against a full recompute.
  * 
  * SOLID PRINCIPLES APPLIED:
  * - Single Responsibility: Only manages cart state and operations
@@ -18,102 +27,205 @@ import java.util.List;
  * - Open/Closed: Can add new payment methods without modifying this class
  */
 public class CartService {
-    private static CartService instance;
-    private final List<Pizza> items;
+    // Stateless, so shared by every session
+    private static final PriceCalculator PRICE_CALCULATOR = new PriceCalculator();
+
+    private final String sessionId;
+    private final List<CartLine> lines;
+    // Running totals over all lines; only changed through addLine/setLine/removeLine
+    private int subtotal;
+    private int pizzaCount;
+    private final Map<String, Integer> pizzasByType = new HashMap<>();
+    // Bumped whenever the lines change; a payment method change leaves it alone
+    private long linesVersion;
     private PaymentStrategy paymentStrategy;
-    private final PriceCalculator priceCalculator;
     private final EventBus eventBus;
+    private volatile long lastUsedAt = System.currentTimeMillis();
 
-    private CartService() {
-        this.items = new ArrayList<>();
+    /**
+     * Created by {@link CartSessionManager}, one per session.
+     */
+    CartService(String sessionId) {
+        this.sessionId = sessionId;
+        this.lines = new ArrayList<>();
         this.paymentStrategy = new CashPayment(); // Default payment method for POS
-        this.priceCalculator = new PriceCalculator();
         this.eventBus = EventBus.getInstance();
     }
 
     /**
-     * Get singleton instance of CartService.
+     * Terminal or channel this cart belongs to, e.g. "pos-1".
      */
-    public static CartService getInstance() {
-        if (instance == null) {
-            instance = new CartService();
-        }
-        return instance;
+    public String getSessionId() {
+        return sessionId;
     }
 
     /**
-     * Add a pizza to the cart.
+     * Add one pizza to the cart.
      * Publishes CART_UPDATED event to observers.
      */
     public void addItem(Pizza pizza) {
-        items.add(pizza);
-        eventBus.publish("CART_UPDATED");
+        addItem(pizza, 1);
+    }
+
+    /**
+     * Add several of the same pizza to the cart. They go on the line already
+     * holding that configuration, if any, and observers get one CART_UPDATED
+     * event however many pizzas were added.
+     */
+    public void addItem(Pizza pizza, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        synchronized (this) {
+            touch();
+            int index = indexOf(pizza, -1);
+            if (index >= 0) {
+                CartLine line = lines.get(index);
+                setLine(index, line.withQuantity(line.getQuantity() + quantity));
+            } else {
+                addLine(new CartLine(pizza, quantity));
+            }
+        }
+        publishUpdate();
     }
 
     /**
-     * Remove a pizza from the cart by index.
+     * Remove a line from the cart by index.
      */
     public void removeItem(int index) {
-        if (index >= 0 && index < items.size()) {
-            items.remove(index);
-            eventBus.publish("CART_UPDATED");
+        synchronized (this) {
+            touch();
+            if (index < 0 || index >= lines.size()) {
+                return;
+            }
+            removeLine(index);
         }
+        publishUpdate();
     }
 
     /**
-     * Replace a pizza in the cart (for editing).
+     * Replace the pizza of a line (for editing), keeping its quantity.
+     * If the edited pizza matches another line, the two lines are merged.
      */
     public void replaceItem(int index, Pizza newPizza) {
-        if (index >= 0 && index < items.size()) {
-            items.set(index, newPizza);
-            eventBus.publish("CART_UPDATED");
+        synchronized (this) {
+            touch();
+            if (index < 0 || index >= lines.size()) {
+                return;
+            }
+            CartLine line = lines.get(index);
+            int other = indexOf(newPizza, index);
+            if (other >= 0) {
+                CartLine merged = lines.get(other);
+                setLine(other, merged.withQuantity(merged.getQuantity() + line.getQuantity()));
+                removeLine(index);
+            } else {
+                setLine(index, new CartLine(newPizza, line.getQuantity()));
+            }
         }
+        publishUpdate();
+    }
+
+    /**
+     * Change how many pizzas a line holds; 0 removes the line.
+     */
+    public void setQuantity(int index, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative: " + quantity);
+        }
+        if (quantity == 0) {
+            removeItem(index);
+            return;
+        }
+        synchronized (this) {
+            touch();
+            if (index < 0 || index >= lines.size()) {
+                return;
+            }
+            setLine(index, lines.get(index).withQuantity(quantity));
+        }
+        publishUpdate();
     }
 
     /**
      * Clear all items from cart.
      */
     public void clear() {
-        items.clear();
-        eventBus.publish("CART_UPDATED");
+        synchronized (this) {
+            touch();
+            lines.clear();
+            linesVersion++;
+            subtotal = 0;
+            pizzaCount = 0;
+            pizzasByType.clear();
+            assert totalsMatchLines();
+        }
+        publishUpdate();
+    }
+
+    /**
+     * Get all lines in cart.
+     */
+    public synchronized List<CartLine> getLines() {
+        touch();
+        return new ArrayList<>(lines);
     }
 
     /**
-     * Get all items in cart.
+     * Counter that changes whenever a line is added, removed or changed,
+     * but not when only the payment method does. A checkout can tell
+     * from it whether the cart it is paying for is still the same one.
      */
-    public List<Pizza> getItems() {
-        return new ArrayList<>(items);
+    public synchronized long getLinesVersion() {
+        return linesVersion;
     }
 
     /**
-     * Get number of items in cart.
+     * Get number of lines in cart.
      */
-    public int getItemCount() {
-        return items.size();
+    public synchronized int getItemCount() {
+        return lines.size();
     }
 
     /**
-     * Set payment strategy.
+     * Get number of pizzas in cart, counting every line's quantity.
+     */
+    public synchronized int getPizzaCount() {
+        return pizzaCount;
+    }
+
+    /**
+     * Get number of pizzas of one type (e.g. "Pizza Margherita") in cart.
+     */
+    public synchronized int getPizzaCount(String pizzaName) {
+        return pizzasByType.getOrDefault(pizzaName, 0);
+    }
+
+    /**
+     * Set payment strategy of this session only.
      * Publishes CART_UPDATED event for UI refresh.
      */
     public void setPaymentStrategy(PaymentStrategy strategy) {
-        this.paymentStrategy = strategy;
-        eventBus.publish("CART_UPDATED");
+        synchronized (this) {
+            touch();
+            this.paymentStrategy = strategy;
+        }
+        publishUpdate();
     }
 
     /**
      * Get current payment strategy.
      */
-    public PaymentStrategy getPaymentStrategy() {
+    public synchronized PaymentStrategy getPaymentStrategy() {
         return paymentStrategy;
     }
 
     /**
-     * Calculate cart total.
+     * Get cart total.
      * For POS system, no shipping fee - just sum of items.
      */
-    public int getTotal() {
-        return priceCalculator.calculateSubtotal(items);
+    public synchronized int getTotal() {
+        return subtotal;
     }
 
     /**
@@ -122,6 +234,93 @@ public class CartService {
      * @return true if payment successful
      */
     public boolean processPayment() {
-        return paymentStrategy.processPayment(getTotal());
+        PaymentStrategy strategy;
+        int total;
+        synchronized (this) {
+            touch();
+            strategy = paymentStrategy;
+            total = subtotal;
+        }
+        // A payment terminal may take a while; other calls on this cart need not wait
+        return strategy.processPayment(total);
+    }
+
+    /**
+     * When this cart was last used, in epoch milliseconds.
+     */
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    private void publishUpdate() {
+        eventBus.publish("CART_UPDATED", sessionId);
+    }
+
+    private void addLine(CartLine line) {
+        lines.add(line);
+        linesVersion++;
+        count(line, 1);
+        assert totalsMatchLines();
+    }
+
+    private void setLine(int index, CartLine line) {
+        count(lines.set(index, line), -1);
+        linesVersion++;
+        count(line, 1);
+        assert totalsMatchLines();
+    }
+
+    private void removeLine(int index) {
+        count(lines.remove(index), -1);
+        linesVersion++;
+        assert totalsMatchLines();
+    }
+
+    /**
+     * Add a line to the running totals (sign 1) or take it out (sign -1).
+     */
+    private void count(CartLine line, int sign) {
+        subtotal += sign * line.getLineTotal();
+        pizzaCount += sign * line.getQuantity();
+        pizzasByType.merge(line.getPizza().getName(), sign * line.getQuantity(),
+                (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * Debug check: the running totals equal a full recompute over the
+     * lines, pricing every pizza again from its base price and toppings.
+     * Only run with assertions enabled.
+     */
+    private boolean totalsMatchLines() {
+        int total = 0;
+        int count = 0;
+        Map<String, Integer> byType = new HashMap<>();
+        for (CartLine line : lines) {
+            total += PRICE_CALCULATOR.recalculatePrice(line.getPizza()) * line.getQuantity();
+            count += line.getQuantity();
+            byType.merge(line.getPizza().getName(), line.getQuantity(), Integer::sum);
+        }
+        if (total != subtotal || count != pizzaCount || !byType.equals(pizzasByType)) {
+            throw new AssertionError("Cart totals drifted: running " + subtotal + "đ/" + pizzaCount
+                    + " pizzas " + pizzasByType + ", recomputed " + total + "đ/" + count + " pizzas " + byType);
+        }
+        return true;
+    }
+
+    /**
+     * Index of the line holding this pizza's configuration, skipping one
+     * index, or -1.
+     */
+    private int indexOf(Pizza pizza, int skip) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (i != skip && lines.get(i).isSameConfiguration(pizza)) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -0,0 +1,148 @@
+package com.pizza.app;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out one {@link CartService} per terminal or order channel, so
+ * several tills, or a till and an online-order intake, can run in the
+ * same JVM without sharing a cart.
+ *
+ * Sessions are created on first use and evicted once idle for longer than
+ * the idle timeout; the local till's cart ({@link #getLocalCart()}) is
+ * never evicted. A cart should be looked up by its terminal id for each
+ * request rather than kept around: a reference held past the idle timeout
+ * may belong to an evicted session.
+ */
+public class CartSessionManager {
+    /** Session id of the cart shown on this machine's screens. */
+    public static final String LOCAL_TERMINAL = "local";
+
+    private static final long DEFAULT_IDLE_MS = 30 * 60_000;
+    private static final long DEFAULT_SWEEP_MS = 60_000;
+
+    private static CartSessionManager instance;
+
+    private final ConcurrentHashMap<String, CartService> sessions = new ConcurrentHashMap<>();
+    private final long idleMs;
+    private ScheduledExecutorService evictor;
+
+    /**
+     * @param idleMs Time without any call on a cart after which its session is evicted
+     */
+    public CartSessionManager(long idleMs) {
+        if (idleMs <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleMs);
+        }
+        this.idleMs = idleMs;
+    }
+
+    /**
+     * Get the application's session manager.
+     */
+    public static synchronized CartSessionManager getInstance() {
+        if (instance == null) {
+            instance = new CartSessionManager(DEFAULT_IDLE_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * The cart of a terminal or channel, created if it has none yet.
+     *
+     * @param sessionId Terminal or channel id, e.g. "pos-2" or "online"
+     */
+    public CartService getCart(String sessionId) {
+        if (sessionId == null || sessionId.isBlank()) {
+            throw new IllegalArgumentException("Session id cannot be empty");
+        }
+        // Touched inside compute, so eviction never removes a cart just handed out
+        return sessions.compute(sessionId, (id, cart) -> {
+            CartService session = cart != null ? cart : new CartService(id);
+            session.touch();
+            return session;
+        });
+    }
+
+    /**
+     * The cart of this machine's till.
+     */
+    public CartService getLocalCart() {
+        return getCart(LOCAL_TERMINAL);
+    }
+
+    /**
+     * End a session, e.g. when a terminal logs off. Its cart is dropped.
+     *
+     * @return false if there was no such session
+     */
+    public boolean closeSession(String sessionId) {
+        return sessions.remove(sessionId) != null;
+    }
+
+    public boolean hasSession(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Drop every session but the local till's that was not used within the
+     * idle timeout.
+     *
+     * @return Number of sessions evicted
+     */
+    public int evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        int evicted = 0;
+        for (String sessionId : sessions.keySet()) {
+            if (LOCAL_TERMINAL.equals(sessionId)) {
+                continue;
+            }
+            boolean[] removed = { false };
+            sessions.computeIfPresent(sessionId, (id, cart) -> {
+                removed[0] = cart.getLastUsedAt() < cutoff;
+                return removed[0] ? null : cart;
+            });
+            if (removed[0]) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Evict idle sessions periodically on a daemon thread.
+     */
+    public synchronized void startEviction() {
+        if (evictor != null) {
+            return;
+        }
+        long sweepMs = Math.min(DEFAULT_SWEEP_MS, idleMs);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cart-session-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(() -> {
+            int evicted = evictIdle();
+            if (evicted > 0) {
+                System.out.println("✅ Evicted " + evicted + " idle cart sessions, " + sessions.size() + " left");
+            }
+        }, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic eviction. Sessions are kept.
+     */
+    public synchronized void stopEviction() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.pizza.app;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 /**
@@ -12,19 +12,20 @@ import java.util.function.Consumer;
  * 
  * Allows objects to subscribe to events and be notified when those events occur.
  * This decouples the event publisher from subscribers, promoting loose coupling.
+ * Thread-safe: carts of several terminals publish from their own threads.
  */
 public class EventBus {
     private static EventBus instance;
     private final Map<String, List<Consumer<String>>> subscribers;
     
     private EventBus() {
-        this.subscribers = new HashMap<>();
+        this.subscribers = new ConcurrentHashMap<>();
     }
     
     /**
      * Get singleton instance of EventBus.
      */
-    public static EventBus getInstance() {
+    public static synchronized EventBus getInstance() {
         if (instance == null) {
             instance = new EventBus();
         }
@@ -38,7 +39,7 @@ public class EventBus {
      * @param listener The callback to invoke when event is published
      */
     public void subscribe(String event, Consumer<String> listener) {
-        subscribers.computeIfAbsent(event, k -> new ArrayList<>()).add(listener);
+        subscribers.computeIfAbsent(event, k -> new CopyOnWriteArrayList<>()).add(listener);
     }
     
     /**
@@ -1,5 +1,7 @@
 package com.pizza.app;
 
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.factory.PizzaRegistry.CanonicalPizza;
 import com.pizza.domain.pizza.Pizza;
 
 import java.util.List;
@@ -26,6 +28,45 @@ public class PriceCalculator {
                 .sum();
     }
 
+    /**
+     * Calculate total from cart lines: each pizza is priced again through
+     * its decorators and multiplied by the line's quantity.
+     *
+     * @param lines Cart lines
+     * @return Total in VND
+     */
+    public int calculateCartTotal(List<CartLine> lines) {
+        return lines.stream()
+                .mapToInt(line -> line.getPizza().getPrice() * line.getQuantity())
+                .sum();
+    }
+
+    /**
+     * Price one pizza again from its base price and its toppings, without
+     * trusting a price cached on the pizza: a registry pizza's toppings are
+     * priced from the catalog it was built with, a decorated pizza is
+     * priced through its decorators.
+     *
+     * @param pizza Pizza to price
+     * @return Price in VND
+     * @throws IllegalStateException if a registry pizza's topping is missing from its catalog
+     */
+    public int recalculatePrice(Pizza pizza) {
+        if (!(pizza instanceof CanonicalPizza canonical)) {
+            return pizza.getPrice();
+        }
+        ToppingCatalog catalog = canonical.getCatalog();
+        int price = pizza.getBasePrice() + pizza.getSize().getPriceModifier();
+        for (String name : pizza.getToppingList()) {
+            ToppingCatalog.Entry topping = catalog.find(name);
+            if (topping == null) {
+                throw new IllegalStateException("Topping not in catalog " + catalog.getVersion() + ": " + name);
+            }
+            price += topping.getPrice();
+        }
+        return price;
+    }
+
     /**
      * Calculate tax amount (if applicable).
      * Can be extended for different tax rates.
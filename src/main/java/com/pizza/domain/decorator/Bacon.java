@@ -4,13 +4,16 @@ import com.pizza.domain.pizza.Pizza;
 
 /**
  * Concrete Decorator - Bacon topping.
- * Adds bacon to any pizza for 15,000 VND.
+ * Adds bacon to any pizza for 15,000 VND,
+ * the price a new database starts with.
  */
-public class Bacon extends ToppingDecorator {
+public class Bacon extends CatalogTopping {
+    /** Row of this topping in the toppings table. */
+    public static final int ID = 2;
     private static final int BACON_PRICE = 15_000;
 
     public Bacon(Pizza pizza) {
-        super(pizza, "Thịt Xông Khói", BACON_PRICE);
+        super(pizza, ID, "Thịt Xông Khói", BACON_PRICE);
     }
 }
 
@@ -0,0 +1,28 @@
+package com.pizza.domain.decorator;
+
+import com.pizza.domain.pizza.Pizza;
+
+/**
+ * Concrete Decorator - any topping of the {@link ToppingCatalog}.
+ * Name and price come from the catalog entry, so toppings added in the
+ * toppings table need no class of their own; the id is the row's id.
+ */
+public class CatalogTopping extends ToppingDecorator {
+    private final int toppingId;
+
+    public CatalogTopping(Pizza pizza, ToppingCatalog.Entry topping) {
+        this(pizza, topping.getId(), topping.getName(), topping.getPrice());
+    }
+
+    protected CatalogTopping(Pizza pizza, int toppingId, String toppingName, int toppingPrice) {
+        super(pizza, toppingName, toppingPrice);
+        this.toppingId = toppingId;
+    }
+
+    /**
+     * Id of the topping in the toppings table.
+     */
+    public int getToppingId() {
+        return toppingId;
+    }
+}
@@ -4,13 +4,16 @@ import com.pizza.domain.pizza.Pizza;
 
 /**
  * Concrete Decorator - Cheese topping.
- * Adds extra cheese to any pizza for 10,000 VND.
+ * Adds extra cheese to any pizza for 10,000 VND,
+ * the price a new database starts with.
  */
-public class Cheese extends ToppingDecorator {
+public class Cheese extends CatalogTopping {
+    /** Row of this topping in the toppings table. */
+    public static final int ID = 1;
     private static final int CHEESE_PRICE = 10_000;
 
     public Cheese(Pizza pizza) {
-        super(pizza, "Phô Mai", CHEESE_PRICE);
+        super(pizza, ID, "Phô Mai", CHEESE_PRICE);
     }
 }
 
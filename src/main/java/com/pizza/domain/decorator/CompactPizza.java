@@ -0,0 +1,311 @@
+package com.pizza.domain.decorator;
+
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pizza whose toppings are counters over a {@link ToppingCatalog} instead
+ * of a chain of decorators.
+ *
+ * Toppings are keyed by their position in the catalog (toppings in id
+ * order, at most {@link ToppingCatalog#MAX_TOPPINGS}), so toppings added in
+ * the toppings table work like the built-in ones. A bit mask of the
+ * toppings present and one counter per catalog topping (double cheese is a
+ * count of 2) are kept with the total price. Price, topping set, counts and
+ * base name are therefore read in constant time, where a decorator chain is
+ * walked on every call. Instances are immutable: adding a topping returns a
+ * new pizza.
+ *
+ * Interchangeable with decorated pizzas through the {@link Pizza} API, with
+ * the same prices; the description lists toppings in catalog order.
+ */
+public final class CompactPizza extends Pizza {
+    private static final int MAX_COUNT = 255;
+    private static final byte[] NO_COUNTS = new byte[0];
+
+    private final ToppingCatalog catalog;
+    /** Portions per catalog position, unsigned; empty when there are no toppings. */
+    private final byte[] counts;
+    private final long toppingMask;
+    private final int price;
+    private String description;
+
+    private CompactPizza(String name, Size size, int basePrice, ToppingCatalog catalog, byte[] counts) {
+        super(name, size, basePrice);
+        this.catalog = catalog;
+        this.counts = counts;
+        long mask = 0;
+        int toppingTotal = 0;
+        for (int i = 0; i < counts.length; i++) {
+            int count = Byte.toUnsignedInt(counts[i]);
+            if (count > 0) {
+                mask |= 1L << i;
+                toppingTotal += count * catalog.getToppings().get(i).getPrice();
+            }
+        }
+        this.toppingMask = mask;
+        this.price = basePrice + size.getPriceModifier() + toppingTotal;
+    }
+
+    /**
+     * Compact copy of any pizza, over the current topping catalog: a plain
+     * one, a decorator chain or a shared canonical pizza.
+     *
+     * @throws IllegalArgumentException if it has a topping the catalog does not sell
+     */
+    public static CompactPizza of(Pizza pizza) {
+        return of(pizza, ToppingCatalog.getCurrent());
+    }
+
+    /**
+     * Compact copy of any pizza over the given catalog.
+     *
+     * @throws IllegalArgumentException if it has a topping the catalog does not sell
+     */
+    public static CompactPizza of(Pizza pizza, ToppingCatalog catalog) {
+        if (pizza instanceof CompactPizza compact && compact.catalog == catalog) {
+            return compact;
+        }
+        byte[] counts = new byte[catalog.size()];
+        // Decorators are unwrapped from the outside in; counts do not depend on order
+        Pizza layer = pizza;
+        while (layer instanceof ToppingDecorator decorator) {
+            increment(counts, position(catalog, decorator), catalog);
+            layer = decorator.getWrappedPizza();
+        }
+        if (layer instanceof CompactPizza compact) {
+            for (ToppingCatalog.Entry topping : compact.getToppingEntries()) {
+                increment(counts, position(catalog, topping.getId(), topping.getName()), catalog);
+            }
+        } else {
+            // A base that carries its toppings itself, e.g. the registry's canonical pizzas
+            for (String name : layer.getToppingList()) {
+                increment(counts, position(catalog, name), catalog);
+            }
+        }
+        return new CompactPizza(pizza.getName(), pizza.getSize(), pizza.getBasePrice(), catalog,
+                isEmpty(counts) ? NO_COUNTS : counts);
+    }
+
+    /**
+     * This pizza with one more portion of a topping.
+     *
+     * @throws IllegalArgumentException if this pizza's catalog does not sell it
+     */
+    public CompactPizza withTopping(ToppingCatalog.Entry topping) {
+        byte[] more = Arrays.copyOf(counts, catalog.size());
+        increment(more, position(catalog, topping.getId(), topping.getName()), catalog);
+        return new CompactPizza(name, size, basePrice, catalog, more);
+    }
+
+    /**
+     * This pizza with one more portion of a built-in topping.
+     */
+    public CompactPizza withTopping(Topping topping) {
+        return withTopping(entry(topping));
+    }
+
+    /**
+     * This pizza with one portion of a topping less; unchanged if it has none.
+     */
+    public CompactPizza withoutTopping(ToppingCatalog.Entry topping) {
+        int position = catalog.indexOf(topping.getId());
+        if (position < 0 || !hasPosition(position)) {
+            return this;
+        }
+        byte[] fewer = counts.clone();
+        fewer[position]--;
+        return new CompactPizza(name, size, basePrice, catalog, isEmpty(fewer) ? NO_COUNTS : fewer);
+    }
+
+    public CompactPizza withoutTopping(Topping topping) {
+        return withoutTopping(entry(topping));
+    }
+
+    /**
+     * Portions of a topping on this pizza.
+     */
+    public int getCount(ToppingCatalog.Entry topping) {
+        int position = catalog.indexOf(topping.getId());
+        return position >= 0 && hasPosition(position) ? Byte.toUnsignedInt(counts[position]) : 0;
+    }
+
+    public int getCount(Topping topping) {
+        return getCount(entry(topping));
+    }
+
+    public boolean hasTopping(ToppingCatalog.Entry topping) {
+        int position = catalog.indexOf(topping.getId());
+        return position >= 0 && hasPosition(position);
+    }
+
+    public boolean hasTopping(Topping topping) {
+        return hasTopping(entry(topping));
+    }
+
+    /**
+     * Toppings present, bit i set for the topping at position i of
+     * {@link #getCatalog()}.
+     */
+    public long getToppingMask() {
+        return toppingMask;
+    }
+
+    /**
+     * Catalog the toppings of this pizza are counted against.
+     */
+    public ToppingCatalog getCatalog() {
+        return catalog;
+    }
+
+    @Override
+    public int getPrice() {
+        return price;
+    }
+
+    @Override
+    public String getDescription() {
+        String result = description;
+        if (result == null) {
+            StringBuilder sb = new StringBuilder(super.getDescription());
+            for (String topping : getToppingList()) {
+                sb.append(" + ").append(topping);
+            }
+            result = sb.toString();
+            description = result;
+        }
+        return result;
+    }
+
+    /**
+     * Topping names in catalog order, a topping repeated once per portion.
+     */
+    @Override
+    public List<String> getToppingList() {
+        if (toppingMask == 0) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (ToppingCatalog.Entry topping : getToppingEntries()) {
+            names.add(topping.getName());
+        }
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompactPizza other)) {
+            return false;
+        }
+        return size == other.size && basePrice == other.basePrice && name.equals(other.name)
+                && sameToppings(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = name.hashCode() * 31 + size.hashCode();
+        // By topping id, not position, to agree with equals across catalogs
+        for (long mask = toppingMask; mask != 0; mask &= mask - 1) {
+            int position = Long.numberOfTrailingZeros(mask);
+            h = h * 31 + catalog.getToppings().get(position).getId() * 256 + Byte.toUnsignedInt(counts[position]);
+        }
+        return h;
+    }
+
+    /**
+     * Toppings in catalog order, an entry repeated once per portion.
+     */
+    private List<ToppingCatalog.Entry> getToppingEntries() {
+        List<ToppingCatalog.Entry> entries = new ArrayList<>();
+        for (long mask = toppingMask; mask != 0; mask &= mask - 1) {
+            int position = Long.numberOfTrailingZeros(mask);
+            ToppingCatalog.Entry topping = catalog.getToppings().get(position);
+            for (int i = Byte.toUnsignedInt(counts[position]); i > 0; i--) {
+                entries.add(topping);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Same portions of the same toppings, compared by topping id so pizzas
+     * counted against different catalogs can still be equal.
+     */
+    private boolean sameToppings(CompactPizza other) {
+        if (catalog == other.catalog) {
+            return toppingMask == other.toppingMask && Arrays.equals(counts, other.counts);
+        }
+        if (Long.bitCount(toppingMask) != Long.bitCount(other.toppingMask)) {
+            return false;
+        }
+        for (long mask = toppingMask; mask != 0; mask &= mask - 1) {
+            ToppingCatalog.Entry topping = catalog.getToppings().get(Long.numberOfTrailingZeros(mask));
+            if (getCount(topping) != other.getCount(topping)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasPosition(int position) {
+        return (toppingMask & (1L << position)) != 0;
+    }
+
+    /**
+     * This pizza's catalog entry for a built-in topping.
+     */
+    private ToppingCatalog.Entry entry(Topping topping) {
+        ToppingCatalog.Entry entry = catalog.get(topping.getId());
+        if (entry == null) {
+            throw new IllegalArgumentException("Topping not in catalog: " + topping.getDisplayName());
+        }
+        return entry;
+    }
+
+    private static int position(ToppingCatalog catalog, ToppingDecorator decorator) {
+        if (decorator instanceof CatalogTopping topping) {
+            return position(catalog, topping.getToppingId(), topping.getToppingName());
+        }
+        return position(catalog, decorator.getToppingName());
+    }
+
+    private static int position(ToppingCatalog catalog, String toppingName) {
+        ToppingCatalog.Entry entry = catalog.find(toppingName);
+        if (entry == null) {
+            throw new IllegalArgumentException("Topping not in catalog: " + toppingName);
+        }
+        return catalog.indexOf(entry.getId());
+    }
+
+    private static int position(ToppingCatalog catalog, int toppingId, String toppingName) {
+        int position = catalog.indexOf(toppingId);
+        if (position < 0) {
+            throw new IllegalArgumentException("Topping not in catalog: " + toppingName);
+        }
+        return position;
+    }
+
+    private static void increment(byte[] counts, int position, ToppingCatalog catalog) {
+        if (Byte.toUnsignedInt(counts[position]) == MAX_COUNT) {
+            throw new IllegalArgumentException("Too many portions of "
+                    + catalog.getToppings().get(position).getName());
+        }
+        counts[position]++;
+    }
+
+    private static boolean isEmpty(byte[] counts) {
+        for (byte count : counts) {
+            if (count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -4,13 +4,16 @@ import com.pizza.domain.pizza.Pizza;
 
 /**
  * Concrete Decorator - Mushroom topping.
- * Adds mushrooms to any pizza for 8,000 VND.
+ * Adds mushrooms to any pizza for 8,000 VND,
+ * the price a new database starts with.
  */
-public class Mushroom extends ToppingDecorator {
+public class Mushroom extends CatalogTopping {
+    /** Row of this topping in the toppings table. */
+    public static final int ID = 3;
     private static final int MUSHROOM_PRICE = 8_000;
 
     public Mushroom(Pizza pizza) {
-        super(pizza, "Nấm", MUSHROOM_PRICE);
+        super(pizza, ID, "Nấm", MUSHROOM_PRICE);
     }
 }
 
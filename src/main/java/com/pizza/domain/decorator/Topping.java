@@ -0,0 +1,71 @@
+package com.pizza.domain.decorator;
+
+import com.pizza.domain.pizza.Margherita;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Toppings built into the code, in the order they are stacked on a pizza.
+ *
+ * Id, name and price are read once from the topping's decorator, which
+ * stays the single place they are defined. The toppings sold at the counter
+ * are those of the {@link ToppingCatalog}; these are its defaults.
+ */
+public enum Topping {
+    CHEESE(Cheese::new),
+    BACON(Bacon::new),
+    MUSHROOM(Mushroom::new);
+
+    private final UnaryOperator<Pizza> decorator;
+    private final int id;
+    private final String displayName;
+    private final int price;
+
+    Topping(UnaryOperator<Pizza> decorator) {
+        this.decorator = decorator;
+        Pizza plain = new Margherita(Size.S);
+        CatalogTopping decorated = (CatalogTopping) decorator.apply(plain);
+        this.id = decorated.getToppingId();
+        this.displayName = decorated.getToppingName();
+        this.price = decorated.getPrice() - plain.getPrice();
+    }
+
+    /**
+     * Wrap a pizza in this topping's decorator.
+     */
+    public Pizza applyTo(Pizza pizza) {
+        return decorator.apply(pizza);
+    }
+
+    /**
+     * Id of the topping in the toppings table.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Name as shown on receipts and stored in order_items, e.g. "Phô Mai".
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    /**
+     * Topping with the given display name, or null if there is none.
+     */
+    public static Topping fromDisplayName(String name) {
+        for (Topping topping : values()) {
+            if (topping.displayName.equals(name)) {
+                return topping;
+            }
+        }
+        return null;
+    }
+}
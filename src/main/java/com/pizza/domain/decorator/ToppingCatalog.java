@@ -0,0 +1,172 @@
+package com.pizza.domain.decorator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable list of the toppings sold at the counter, with their prices.
+ *
+ * The current catalog is replaced as a whole each time the menu is loaded
+ * from the toppings table (see {@link #install(long, List)}), so a reader
+ * holding one never sees a mix of old and new prices. Until then, and
+ * without a database, it holds the built-in {@link Topping}s.
+ *
+ * Toppings are kept in id order, which is also the order they are stacked
+ * on a pizza; {@link #indexOf(int)} gives a topping's position, which fits
+ * in a 64-bit mask.
+ */
+public final class ToppingCatalog {
+    /** Most toppings one catalog holds, one bit each in a long. */
+    public static final int MAX_TOPPINGS = Long.SIZE;
+
+    private static final long BUILT_IN_VERSION = -1;
+    private static final ToppingCatalog BUILT_IN = new ToppingCatalog(BUILT_IN_VERSION, builtInEntries());
+
+    private static volatile ToppingCatalog current = BUILT_IN;
+
+    private final long version;
+    private final List<Entry> toppings;
+    /** Position + 1 of each topping by id; 0 for ids not in the catalog. */
+    private final int[] positionById;
+    private final Map<String, Entry> byName;
+
+    /**
+     * One topping as sold: its row id, name and price.
+     */
+    public static final class Entry {
+        private final int id;
+        private final String name;
+        private final int price;
+
+        public Entry(int id, String name, int price) {
+            if (id <= 0) {
+                throw new IllegalArgumentException("Topping id must be positive: " + id);
+            }
+            this.id = id;
+            this.name = name;
+            this.price = price;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Name as shown on receipts and stored with order items, e.g. "Phô Mai".
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getPrice() {
+            return price;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (+" + price + ")";
+        }
+    }
+
+    private ToppingCatalog(long version, List<Entry> toppings) {
+        if (toppings.size() > MAX_TOPPINGS) {
+            throw new IllegalArgumentException("At most " + MAX_TOPPINGS + " toppings, got " + toppings.size());
+        }
+        List<Entry> sorted = new ArrayList<>(toppings);
+        sorted.sort((a, b) -> Integer.compare(a.id, b.id));
+        int maxId = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).id;
+        this.version = version;
+        this.toppings = List.copyOf(sorted);
+        this.positionById = new int[maxId + 1];
+        Map<String, Entry> names = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            Entry entry = sorted.get(i);
+            if (positionById[entry.id] != 0) {
+                throw new IllegalArgumentException("Duplicate topping id: " + entry.id);
+            }
+            positionById[entry.id] = i + 1;
+            names.put(entry.name, entry);
+        }
+        this.byName = Map.copyOf(names);
+    }
+
+    /**
+     * The catalog toppings are sold from right now.
+     */
+    public static ToppingCatalog getCurrent() {
+        return current;
+    }
+
+    /**
+     * Replace the current catalog with the active toppings of a menu snapshot.
+     *
+     * @param menuVersion Version of the menu the toppings were read at
+     * @param toppings    Active toppings, in any order
+     * @throws IllegalArgumentException if there are more than {@link #MAX_TOPPINGS}
+     */
+    public static void install(long menuVersion, List<Entry> toppings) {
+        current = new ToppingCatalog(menuVersion, toppings);
+    }
+
+    /**
+     * Go back to the built-in toppings.
+     */
+    public static void reset() {
+        current = BUILT_IN;
+    }
+
+    /**
+     * Menu version this catalog was read at; -1 for the built-in toppings.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Toppings in id order.
+     */
+    public List<Entry> getToppings() {
+        return toppings;
+    }
+
+    public int size() {
+        return toppings.size();
+    }
+
+    /**
+     * The topping with this id, or null if it is not sold.
+     */
+    public Entry get(int id) {
+        int position = indexOf(id);
+        return position < 0 ? null : toppings.get(position);
+    }
+
+    /**
+     * Position of the topping with this id in {@link #getToppings()}, or -1.
+     */
+    public int indexOf(int id) {
+        return id > 0 && id < positionById.length ? positionById[id] - 1 : -1;
+    }
+
+    /**
+     * The topping with this name, or null if it is not sold.
+     */
+    public Entry find(String name) {
+        return name == null ? null : byName.get(name);
+    }
+
+    @Override
+    public String toString() {
+        return "ToppingCatalog v" + version + " " + toppings;
+    }
+
+    private static List<Entry> builtInEntries() {
+        List<Entry> entries = new ArrayList<>();
+        for (Topping topping : Topping.values()) {
+            entries.add(new Entry(topping.getId(), topping.getDisplayName(), topping.getPrice()));
+        }
+        return entries;
+    }
+}
@@ -2,6 +2,9 @@ package com.pizza.domain.decorator;
 
 import com.pizza.domain.pizza.Pizza;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Abstract Decorator for adding toppings to pizzas.
  * DESIGN PATTERN: Decorator Pattern
@@ -34,15 +37,24 @@ public abstract class ToppingDecorator extends Pizza {
     }
 
     /**
-     * Get the list of toppings added to this pizza.
-     * Recursively builds the topping list.
+     * Get the toppings added to this pizza, comma-joined.
      */
     public String getToppings() {
-        String baseToppings = "";
-        if (pizza instanceof ToppingDecorator) {
-            baseToppings = ((ToppingDecorator) pizza).getToppings() + ", ";
-        }
-        return baseToppings + toppingName;
+        return String.join(", ", getToppingList());
+    }
+
+    @Override
+    public List<String> getToppingList() {
+        List<String> toppings = new ArrayList<>(pizza.getToppingList());
+        toppings.add(toppingName);
+        return toppings;
+    }
+
+    /**
+     * Get the name of the topping added by this decorator only.
+     */
+    public String getToppingName() {
+        return toppingName;
     }
 
     /**
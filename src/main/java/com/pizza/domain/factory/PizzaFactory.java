@@ -1,12 +1,7 @@
 package com.pizza.domain.factory;
 
-import com.pizza.domain.pizza.Hawaiian;
-import com.pizza.domain.pizza.Margherita;
-import com.pizza.domain.pizza.Pepperoni;
 import com.pizza.domain.pizza.Pizza;
-import com.pizza.domain.pizza.Seafood;
 import com.pizza.domain.pizza.Size;
-import com.pizza.domain.pizza.VeggieSupreme;
 
 /**
  * Factory for creating Pizza objects.
@@ -21,27 +16,14 @@ public class PizzaFactory {
     /**
      * Creates a pizza based on type and size.
      * 
-     * @param type The type of pizza (Margherita, Pepperoni, Hawaiian, Seafood,
-     *             Veggie Supreme)
+     * @param type The type of pizza: a menu name or alias, case and spaces
+     *             ignored (see {@link PizzaTypeRegistry})
      * @param size The size of the pizza (S, M, L)
      * @return A new Pizza instance
      * @throws IllegalArgumentException if pizza type is unknown
      */
     public static Pizza create(String type, Size size) {
-        if (type == null || size == null) {
-            throw new IllegalArgumentException("Pizza type and size cannot be null");
-        }
-
-        String normalized = type.toLowerCase().replace(" ", "").replace("pizza", "");
-        
-        return switch (normalized) {
-            case "margherita" -> new Margherita(size);
-            case "pepperoni" -> new Pepperoni(size);
-            case "hawaiian", "hawaii" -> new Hawaiian(size);
-            case "seafood", "hảisản", "haisan" -> new Seafood(size);
-            case "veggiesupreme", "chayraucucu", "chayraucu" -> new VeggieSupreme(size);
-            default -> throw new IllegalArgumentException("Unknown pizza type: " + type);
-        };
+        return PizzaTypeRegistry.getInstance().create(type, size);
     }
 
     /**
@@ -0,0 +1,279 @@
+package com.pizza.domain.factory;
+
+import com.pizza.domain.decorator.CatalogTopping;
+import com.pizza.domain.decorator.Topping;
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning registry of pizza configurations.
+ * DESIGN PATTERN: Flyweight Pattern
+ *
+ * Every cart line with the same (type, size, toppings) shares one immutable
+ * {@link CanonicalPizza}. The first request for a configuration builds it
+ * once through {@link PizzaFactory} and the topping decorators, then keeps
+ * the resulting price, description and topping list; later requests only
+ * look it up, with no new objects and no walk through the decorator chain.
+ * Toppings are those of the current {@link ToppingCatalog}, selected by id.
+ * Everything is rebuilt after {@link PizzaTypeRegistry} or the topping
+ * catalog loads a new menu: the configurations live in a {@link Generation}
+ * tied to one menu version and catalog, and a new menu swaps in an empty
+ * one, so a pizza still being built from the old menu never lands in it.
+ */
+public class PizzaRegistry {
+    private static final PizzaRegistry INSTANCE = new PizzaRegistry();
+
+    private static final Size[] SIZES = Size.values();
+
+    private volatile Generation generation = new Generation(
+            PizzaTypeRegistry.getInstance().getVersion(), ToppingCatalog.getCurrent());
+
+    private PizzaRegistry() {
+    }
+
+    public static PizzaRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Immutable pizza with everything derived from its decorators computed
+     * up front. Shared: never wrap it in a decorator to change one cart line,
+     * ask the registry for the other configuration instead.
+     */
+    public static final class CanonicalPizza extends Pizza {
+        private final int price;
+        private final String description;
+        private final List<String> toppingList;
+        private final int[] toppingIds;
+        private final ToppingCatalog catalog;
+
+        private CanonicalPizza(Pizza built, int[] toppingIds, ToppingCatalog catalog) {
+            super(built.getName(), built.getSize(), built.getBasePrice());
+            this.price = built.getPrice();
+            this.description = built.getDescription();
+            this.toppingList = List.copyOf(built.getToppingList());
+            this.toppingIds = toppingIds;
+            this.catalog = catalog;
+        }
+
+        @Override
+        public int getPrice() {
+            return price;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public List<String> getToppingList() {
+            return toppingList;
+        }
+
+        /**
+         * Catalog the toppings were taken from, and priced at.
+         */
+        public ToppingCatalog getCatalog() {
+            return catalog;
+        }
+
+        /**
+         * Whether this configuration has the topping with the given id.
+         */
+        public boolean hasTopping(int toppingId) {
+            for (int id : toppingIds) {
+                if (id == toppingId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Whether this configuration has the given topping.
+         */
+        public boolean hasTopping(Topping topping) {
+            return hasTopping(topping.getId());
+        }
+    }
+
+    /**
+     * Configurations built from one menu version and topping catalog.
+     */
+    private static final class Generation {
+        private final long menuVersion;
+        private final ToppingCatalog catalog;
+        /** Type names as passed in (including aliases like "Hawaii") to their configurations. */
+        private final ConcurrentHashMap<String, Configurations> byType = new ConcurrentHashMap<>();
+        /** One set of configurations per base pizza name, shared by all its aliases. */
+        private final ConcurrentHashMap<String, Configurations> byBaseName = new ConcurrentHashMap<>();
+
+        private Generation(long menuVersion, ToppingCatalog catalog) {
+            this.menuVersion = menuVersion;
+            this.catalog = catalog;
+        }
+
+        private boolean isFor(long menuVersion, ToppingCatalog catalog) {
+            return this.menuVersion == menuVersion && this.catalog == catalog;
+        }
+    }
+
+    /**
+     * Every (size, toppings) configuration of one pizza type: one map per
+     * size ordinal, keyed by the bit mask of topping positions in the catalog.
+     */
+    private static final class Configurations {
+        private final String type;
+        private final List<ConcurrentHashMap<Long, CanonicalPizza>> bySize = new ArrayList<>();
+
+        private Configurations(String type) {
+            this.type = type;
+            for (int i = 0; i < SIZES.length; i++) {
+                bySize.add(new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    /**
+     * The canonical pizza for a configuration, toppings given by their id in
+     * the {@link ToppingCatalog}. Toppings are stacked in catalog order
+     * whatever order they are given in; an id given twice counts once.
+     *
+     * @throws IllegalArgumentException if the pizza type is unknown or a
+     *                                  topping is not in the catalog
+     */
+    public CanonicalPizza get(String type, Size size, int... toppingIds) {
+        ToppingCatalog catalog = ToppingCatalog.getCurrent();
+        long mask = 0;
+        for (int id : toppingIds) {
+            mask |= bit(catalog, id);
+        }
+        return get(type, size, catalog, mask);
+    }
+
+    /**
+     * The canonical pizza for a configuration of built-in toppings.
+     */
+    public CanonicalPizza get(String type, Size size, Set<Topping> toppings) {
+        ToppingCatalog catalog = ToppingCatalog.getCurrent();
+        long mask = 0;
+        for (Topping topping : toppings) {
+            mask |= bit(catalog, topping.getId());
+        }
+        return get(type, size, catalog, mask);
+    }
+
+    /**
+     * The canonical pizza for a configuration given as flags for the
+     * built-in toppings.
+     */
+    public CanonicalPizza get(String type, Size size, boolean cheese, boolean bacon, boolean mushroom) {
+        ToppingCatalog catalog = ToppingCatalog.getCurrent();
+        long mask = (cheese ? bit(catalog, Topping.CHEESE.getId()) : 0)
+                | (bacon ? bit(catalog, Topping.BACON.getId()) : 0)
+                | (mushroom ? bit(catalog, Topping.MUSHROOM.getId()) : 0);
+        return get(type, size, catalog, mask);
+    }
+
+    /**
+     * Number of configurations built so far.
+     */
+    public int size() {
+        int count = 0;
+        for (Configurations configurations : generation.byBaseName.values()) {
+            for (ConcurrentHashMap<Long, CanonicalPizza> pizzas : configurations.bySize) {
+                count += pizzas.size();
+            }
+        }
+        return count;
+    }
+
+    private CanonicalPizza get(String type, Size size, ToppingCatalog catalog, long mask) {
+        if (type == null || size == null) {
+            throw new IllegalArgumentException("Pizza type and size cannot be null");
+        }
+        PizzaTypeRegistry types = PizzaTypeRegistry.getInstance();
+        long menuVersion = types.getVersion();
+        Generation current = generation;
+        if (!current.isFor(menuVersion, catalog)) {
+            current = nextGeneration(menuVersion, catalog);
+            if (current == null) {
+                // The menu changed again while this call started; serve it without caching
+                return build(type, size, catalog, mask);
+            }
+        }
+        Configurations configurations = current.byType.get(type);
+        if (configurations == null) {
+            configurations = resolve(current, type);
+        }
+        ConcurrentHashMap<Long, CanonicalPizza> pizzas = configurations.bySize.get(size.ordinal());
+        CanonicalPizza pizza = pizzas.get(mask);
+        if (pizza == null) {
+            CanonicalPizza built = build(configurations.type, size, catalog, mask);
+            if (types.getVersion() != menuVersion) {
+                // Possibly built from the newer menu; not kept for this generation
+                return built;
+            }
+            // Two threads may build the same configuration; only the first one is kept
+            CanonicalPizza existing = pizzas.putIfAbsent(mask, built);
+            pizza = existing != null ? existing : built;
+        }
+        return pizza;
+    }
+
+    /**
+     * Swap in an empty generation after the menu changed, since base prices,
+     * menu-only pizzas and toppings may have changed with it.
+     *
+     * @return The generation for this menu, or null if the menu has already
+     *         moved past it
+     */
+    private synchronized Generation nextGeneration(long menuVersion, ToppingCatalog catalog) {
+        if (generation.isFor(menuVersion, catalog)) {
+            return generation;
+        }
+        if (PizzaTypeRegistry.getInstance().getVersion() != menuVersion || ToppingCatalog.getCurrent() != catalog) {
+            return null;
+        }
+        generation = new Generation(menuVersion, catalog);
+        return generation;
+    }
+
+    private static long bit(ToppingCatalog catalog, int toppingId) {
+        int position = catalog.indexOf(toppingId);
+        if (position < 0) {
+            throw new IllegalArgumentException("Topping not in catalog: " + toppingId);
+        }
+        return 1L << position;
+    }
+
+    private static Configurations resolve(Generation generation, String type) {
+        // The factory knows the aliases; its base name tells which entry they share
+        String baseName = PizzaFactory.create(type, Size.S).getName();
+        Configurations configurations = generation.byBaseName.computeIfAbsent(baseName,
+                name -> new Configurations(type));
+        generation.byType.putIfAbsent(type, configurations);
+        return configurations;
+    }
+
+    private static CanonicalPizza build(String type, Size size, ToppingCatalog catalog, long mask) {
+        Pizza pizza = PizzaFactory.create(type, size);
+        int[] toppingIds = new int[Long.bitCount(mask)];
+        int n = 0;
+        for (int position = 0; position < catalog.size(); position++) {
+            if ((mask & (1L << position)) != 0) {
+                ToppingCatalog.Entry topping = catalog.getToppings().get(position);
+                pizza = new CatalogTopping(pizza, topping);
+                toppingIds[n++] = topping.getId();
+            }
+        }
+        return new CanonicalPizza(pizza, toppingIds, catalog);
+    }
+}
@@ -0,0 +1,404 @@
+package com.pizza.domain.factory;
+
+import com.pizza.domain.pizza.Hawaiian;
+import com.pizza.domain.pizza.Margherita;
+import com.pizza.domain.pizza.MenuPizza;
+import com.pizza.domain.pizza.Pepperoni;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Seafood;
+import com.pizza.domain.pizza.Size;
+import com.pizza.domain.pizza.VeggieSupreme;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Pizza types the factory can create, looked up by name.
+ *
+ * Names are matched the way {@link PizzaFactory} always matched them: case
+ * and spaces ignored, the word "pizza" dropped, so "Pizza Hải Sản",
+ * "hải sản" and "HaiSan" (an alias) find the same type. A name spelled
+ * exactly as registered is found with one hash lookup; any other spelling
+ * is normalized once into a per-thread buffer, without allocating.
+ *
+ * Every type, from a pizza class or from the pizzas table, is registered
+ * the same way: by name and base price (see {@link PizzaType#of(String, int)}).
+ * A name that matches one of the five pizza classes is made with that class
+ * at the given price; any other name becomes a {@link MenuPizza}. Classes
+ * with no row in the pizzas table are registered at their own price.
+ * {@link #install(long, Map)} rebuilds the index each time the menu is
+ * loaded and swaps it in one step, so a lookup sees either the old menu or
+ * the new one.
+ *
+ * DESIGN PATTERN: Singleton
+ */
+public class PizzaTypeRegistry {
+    private static final String DROPPED_WORD = "pizza";
+    private static final long BUILT_IN_VERSION = -1;
+
+    private static final List<PizzaClass> PIZZA_CLASSES = List.of(
+            new PizzaClass(Margherita::new, Margherita::new),
+            new PizzaClass(Pepperoni::new, Pepperoni::new),
+            new PizzaClass(Hawaiian::new, Hawaiian::new, "Hawaiian"),
+            new PizzaClass(Seafood::new, Seafood::new, "Seafood", "Hai San"),
+            new PizzaClass(VeggieSupreme::new, VeggieSupreme::new,
+                    "Veggie Supreme", "Chay Rau Cu", "Chay Rau Cucu"));
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[32]);
+
+    private static final Index BUILT_IN_INDEX = build(BUILT_IN_VERSION, Map.of());
+    private static final PizzaTypeRegistry INSTANCE = new PizzaTypeRegistry();
+
+    private volatile Index index = BUILT_IN_INDEX;
+
+    private PizzaTypeRegistry() {
+    }
+
+    public static PizzaTypeRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A kind of pizza: its menu name, other names it is known by, and how
+     * to make one in a given size.
+     */
+    public static class PizzaType {
+        private final String name;
+        private final List<String> aliases;
+        private final int basePrice;
+        private final Function<Size, Pizza> constructor;
+
+        PizzaType(String name, List<String> aliases, int basePrice, Function<Size, Pizza> constructor) {
+            this.name = name;
+            this.aliases = List.copyOf(aliases);
+            this.basePrice = basePrice;
+            this.constructor = constructor;
+        }
+
+        /**
+         * Type for a menu pizza: made with its pizza class if the name
+         * matches one, otherwise as a {@link MenuPizza}; priced at basePrice
+         * either way.
+         */
+        static PizzaType of(String name, int basePrice) {
+            PizzaClass pizzaClass = PizzaClass.find(name);
+            if (pizzaClass == null) {
+                return new PizzaType(name, List.of(), basePrice, size -> new MenuPizza(name, size, basePrice));
+            }
+            return new PizzaType(pizzaClass.name, pizzaClass.aliases, basePrice,
+                    size -> pizzaClass.constructor.apply(size, basePrice));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getBasePrice() {
+            return basePrice;
+        }
+
+        public Pizza create(Size size) {
+            return constructor.apply(size);
+        }
+    }
+
+    /**
+     * One of the pizza classes, with its own name, default price and the
+     * spellings the old factory switch accepted for it.
+     */
+    private static final class PizzaClass {
+        private final String name;
+        private final int basePrice;
+        private final List<String> aliases;
+        private final BiFunction<Size, Integer, Pizza> constructor;
+        private final Set<String> keys = new HashSet<>();
+
+        PizzaClass(Function<Size, Pizza> atClassPrice, BiFunction<Size, Integer, Pizza> constructor,
+                String... aliases) {
+            Pizza sample = atClassPrice.apply(Size.S);
+            this.name = sample.getName();
+            this.basePrice = sample.getBasePrice();
+            this.aliases = List.of(aliases);
+            this.constructor = constructor;
+            keys.add(normalize(name));
+            for (String alias : aliases) {
+                keys.add(normalize(alias));
+            }
+        }
+
+        /**
+         * The class a pizza name belongs to, or null; first match wins.
+         */
+        static PizzaClass find(String name) {
+            String key = normalize(name);
+            for (PizzaClass pizzaClass : PIZZA_CLASSES) {
+                if (pizzaClass.keys.contains(key)) {
+                    return pizzaClass;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Create a pizza of a registered type.
+     *
+     * @throws IllegalArgumentException if the type is null or unknown
+     */
+    public Pizza create(String type, Size size) {
+        if (type == null || size == null) {
+            throw new IllegalArgumentException("Pizza type and size cannot be null");
+        }
+        PizzaType pizzaType = index.find(type);
+        if (pizzaType == null) {
+            throw new IllegalArgumentException("Unknown pizza type: " + type);
+        }
+        return pizzaType.create(size);
+    }
+
+    /**
+     * The registered type for a name, or null.
+     */
+    public PizzaType find(String type) {
+        return type == null ? null : index.find(type);
+    }
+
+    /**
+     * Replace the registered types with the pizzas of a menu snapshot.
+     * A pizza named like one of the pizza classes is made with that class
+     * at the menu's base price.
+     *
+     * @param menuVersion Version of the menu the pizzas were read at
+     * @param basePrices  Base price of every active pizza, by name
+     */
+    public void install(long menuVersion, Map<String, Integer> basePrices) {
+        index = build(menuVersion, basePrices);
+    }
+
+    /**
+     * Forget the menu; only the pizza classes remain, at their own prices.
+     */
+    public void reset() {
+        index = BUILT_IN_INDEX;
+    }
+
+    /**
+     * Menu version the current index was built from; -1 for built-ins only.
+     */
+    public long getVersion() {
+        return index.version;
+    }
+
+    /**
+     * Every registered type, pizza classes first.
+     */
+    public List<PizzaType> getTypes() {
+        return index.types;
+    }
+
+    private static Index build(long version, Map<String, Integer> basePrices) {
+        // Classes the pizzas table has no row for keep their own price
+        Map<String, Integer> menu = new LinkedHashMap<>();
+        for (PizzaClass pizzaClass : PIZZA_CLASSES) {
+            menu.put(pizzaClass.name, pizzaClass.basePrice);
+        }
+        for (Map.Entry<String, Integer> pizza : basePrices.entrySet()) {
+            PizzaClass pizzaClass = PizzaClass.find(pizza.getKey());
+            menu.put(pizzaClass != null ? pizzaClass.name : pizza.getKey(), pizza.getValue());
+        }
+        List<PizzaType> types = new ArrayList<>(menu.size());
+        for (Map.Entry<String, Integer> pizza : menu.entrySet()) {
+            types.add(PizzaType.of(pizza.getKey(), pizza.getValue()));
+        }
+        return new Index(version, types);
+    }
+
+    /**
+     * Immutable open-addressing hash table from normalized name to type,
+     * fronted by a map of the exact spellings that were registered.
+     */
+    private static final class Index {
+        private final long version;
+        private final List<PizzaType> types;
+        private final String[] keys;
+        private final PizzaType[] values;
+        private final int mask;
+        private final Map<String, PizzaType> exact = new HashMap<>();
+
+        Index(long version, List<PizzaType> types) {
+            this.version = version;
+            this.types = List.copyOf(types);
+            int names = 0;
+            for (PizzaType type : types) {
+                names += 1 + type.aliases.size();
+            }
+            // At most half full, so probe runs stay short
+            int capacity = Integer.highestOneBit(Math.max(2, names) * 2 - 1) << 1;
+            this.keys = new String[capacity];
+            this.values = new PizzaType[capacity];
+            this.mask = capacity - 1;
+            for (PizzaType type : types) {
+                put(type.getName(), type);
+                for (String alias : type.aliases) {
+                    put(alias, type);
+                }
+            }
+            for (PizzaType type : types) {
+                putExact(type.getName());
+                for (String alias : type.aliases) {
+                    putExact(alias);
+                }
+            }
+        }
+
+        private void put(String name, PizzaType type) {
+            String key = normalize(name);
+            int slot = key.hashCode() & mask;
+            while (keys[slot] != null) {
+                if (keys[slot].equals(key)) {
+                    // First registration wins, as the old switch matched its first case
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = type;
+        }
+
+        /**
+         * Let a registered spelling and its normalized form skip
+         * normalization, resolving to whatever the normalized lookup gives.
+         */
+        private void putExact(String name) {
+            String key = normalize(name);
+            PizzaType type = findNormalized(key);
+            exact.putIfAbsent(name, type);
+            exact.putIfAbsent(key, type);
+        }
+
+        PizzaType find(String name) {
+            PizzaType type = exact.get(name);
+            return type != null ? type : findNormalized(name);
+        }
+
+        private PizzaType findNormalized(String name) {
+            char[] buffer = buffer(name.length());
+            int length = normalizeInto(name, buffer);
+            int slot = hash(buffer, length) & mask;
+            while (keys[slot] != null) {
+                if (equals(keys[slot], buffer, length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static boolean equals(String key, char[] buffer, int length) {
+            if (key.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key.charAt(i) != buffer[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The normalized form of a name, as used for index keys.
+     */
+    static String normalize(String name) {
+        char[] buffer = new char[name.length()];
+        return new String(buffer, 0, normalizeInto(name, buffer));
+    }
+
+    /**
+     * Hash of the normalized form of a name; equal to normalize(name).hashCode().
+     */
+    static int hash(String name) {
+        char[] buffer = buffer(name.length());
+        return hash(buffer, normalizeInto(name, buffer));
+    }
+
+    private static int hash(char[] chars, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    /**
+     * This thread's scratch buffer, grown to hold at least length chars.
+     */
+    private static char[] buffer(int length) {
+        char[] buffer = BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Write the normalized form of a name into out, in one pass.
+     *
+     * @return Number of chars written
+     */
+    private static int normalizeInto(String name, char[] out) {
+        int length = 0;
+        for (int i = next(name, 0); i < name.length(); i = next(name, i + 1)) {
+            out[length++] = Character.toLowerCase(name.charAt(i));
+        }
+        return length;
+    }
+
+    /**
+     * Index of the next character of the normalized form at or after
+     * {@code i}: spaces are skipped, and so is each "pizza" (any case,
+     * spaces inside ignored).
+     */
+    private static int next(String name, int i) {
+        while (true) {
+            i = skipSpaces(name, i);
+            // Only a 'p' can start the dropped word; anything else is kept as is
+            if (i >= name.length() || Character.toLowerCase(name.charAt(i)) != DROPPED_WORD.charAt(0)) {
+                return i;
+            }
+            int afterWord = matchDroppedWord(name, i);
+            if (afterWord < 0) {
+                return i;
+            }
+            i = afterWord;
+        }
+    }
+
+    private static int matchDroppedWord(String name, int i) {
+        int j = i;
+        for (int k = 0; k < DROPPED_WORD.length(); k++) {
+            j = skipSpaces(name, j);
+            if (j >= name.length() || Character.toLowerCase(name.charAt(j)) != DROPPED_WORD.charAt(k)) {
+                return -1;
+            }
+            j++;
+        }
+        return j;
+    }
+
+    private static int skipSpaces(String name, int i) {
+        while (i < name.length() && name.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -8,7 +8,14 @@ public class Hawaiian extends Pizza {
     private static final int BASE_PRICE = 80_000;
 
     public Hawaiian(Size size) {
-        super("Pizza Hawaii", size, BASE_PRICE);
+        this(size, BASE_PRICE);
+    }
+
+    /**
+     * @param basePrice Base price from the menu, in place of the class default
+     */
+    public Hawaiian(Size size, int basePrice) {
+        super("Pizza Hawaii", size, basePrice);
     }
 }
 
@@ -8,7 +8,14 @@ public class Margherita extends Pizza {
     private static final int BASE_PRICE = 60_000;
 
     public Margherita(Size size) {
-        super("Pizza Margherita", size, BASE_PRICE);
+        this(size, BASE_PRICE);
+    }
+
+    /**
+     * @param basePrice Base price from the menu, in place of the class default
+     */
+    public Margherita(Size size, int basePrice) {
+        super("Pizza Margherita", size, basePrice);
     }
 }
 
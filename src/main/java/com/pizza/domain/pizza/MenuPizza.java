@@ -0,0 +1,12 @@
+package com.pizza.domain.pizza;
+
+/**
+ * Pizza defined only by a row of the pizzas table, with no class of its own.
+ * Priced like every other pizza: base price plus size modifier.
+ */
+public class MenuPizza extends Pizza {
+
+    public MenuPizza(String name, Size size, int basePrice) {
+        super(name, size, basePrice);
+    }
+}
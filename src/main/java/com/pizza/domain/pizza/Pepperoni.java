@@ -8,7 +8,14 @@ public class Pepperoni extends Pizza {
     private static final int BASE_PRICE = 90_000;
 
     public Pepperoni(Size size) {
-        super("Pizza Pepperoni", size, BASE_PRICE);
+        this(size, BASE_PRICE);
+    }
+
+    /**
+     * @param basePrice Base price from the menu, in place of the class default
+     */
+    public Pepperoni(Size size, int basePrice) {
+        super("Pizza Pepperoni", size, basePrice);
     }
 }
 
@@ -1,5 +1,7 @@
 package com.pizza.domain.pizza;
 
+import java.util.List;
+
 /**
  * Abstract base class for all pizzas.
  * Demonstrates abstraction and encapsulation in OOP.
@@ -32,6 +34,14 @@ public abstract class Pizza {
         return name + " (" + size.getDisplayName() + ")";
     }
 
+    /**
+     * Names of the toppings on this pizza, innermost (added first) first.
+     * A plain pizza has none; decorators add theirs.
+     */
+    public List<String> getToppingList() {
+        return List.of();
+    }
+
     public String getName() {
         return name;
     }
@@ -8,7 +8,14 @@ public class Seafood extends Pizza {
     private static final int BASE_PRICE = 120_000;
 
     public Seafood(Size size) {
-        super("Pizza Hải Sản", size, BASE_PRICE);
+        this(size, BASE_PRICE);
+    }
+
+    /**
+     * @param basePrice Base price from the menu, in place of the class default
+     */
+    public Seafood(Size size, int basePrice) {
+        super("Pizza Hải Sản", size, basePrice);
     }
 }
 
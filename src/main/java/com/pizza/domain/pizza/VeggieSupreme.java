@@ -8,7 +8,14 @@ public class VeggieSupreme extends Pizza {
     private static final int BASE_PRICE = 70_000;
 
     public VeggieSupreme(Size size) {
-        super("Pizza Chay Rau Củ", size, BASE_PRICE);
+        this(size, BASE_PRICE);
+    }
+
+    /**
+     * @param basePrice Base price from the menu, in place of the class default
+     */
+    public VeggieSupreme(Size size, int basePrice) {
+        super("Pizza Chay Rau Củ", size, basePrice);
     }
 }
 
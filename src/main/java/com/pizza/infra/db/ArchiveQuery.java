@@ -0,0 +1,179 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.OrderRepository.OrderSummary;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query layer over the hot database plus the monthly archive files written
+ * by {@link OrderArchiver}, for historical reports.
+ *
+ * A {@link HistoryView} is a private read-only connection (never a pooled
+ * one) with the archive files of the requested months ATTACHed, and two
+ * temp views: all_orders and all_order_items, the UNION ALL of the hot
+ * tables and every attached archive.
+ *
+ * An order found both hot and archived was copied by
+ * {@link OrderArchiver} but not yet deleted from the hot database (a
+ * crash between the two steps); the hot row wins, so it is counted once.
+ */
+public class ArchiveQuery {
+    /** SQLite's default limit on attached databases. */
+    static final int MAX_ATTACHED_MONTHS = 10;
+
+    private static final String ORDER_COLUMNS = "id, customer_name, payment_method, total, created_at";
+    private static final String ITEM_COLUMNS = "id, order_id, pizza_name, size, toppings, price";
+    /** Pizzas on a line; archive files written before order lines had a quantity hold one pizza per line. */
+    private static final String QUANTITY_COLUMN = "COALESCE(quantity, 1) AS quantity";
+    private static final String NO_QUANTITY_COLUMN = "1 AS quantity";
+    private static final DateTimeFormatter DB_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Path archiveDir;
+
+    public ArchiveQuery(Path archiveDir) {
+        this.archiveDir = archiveDir;
+    }
+
+    /**
+     * A read-only connection with the archives of a month range attached.
+     */
+    public static class HistoryView implements AutoCloseable {
+        private final Connection connection;
+
+        HistoryView(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Connection on which all_orders and all_order_items can be queried.
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+
+    /**
+     * Open a view over the hot database and the archives of [from, to].
+     * Months without an archive file are skipped.
+     */
+    public HistoryView open(YearMonth from, YearMonth to) throws SQLException {
+        List<Path> files = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            Path file = OrderArchiver.getArchiveFile(archiveDir, month);
+            if (Files.exists(file)) {
+                files.add(file);
+            }
+        }
+        if (files.size() > MAX_ATTACHED_MONTHS) {
+            throw new IllegalArgumentException("At most " + MAX_ATTACHED_MONTHS
+                    + " archived months can be attached at once, got " + files.size());
+        }
+
+        Connection conn = DriverManager.getConnection(SQLiteConnection.getUrl());
+        try (Statement stmt = conn.createStatement()) {
+            StringBuilder orders = new StringBuilder("SELECT " + ORDER_COLUMNS + " FROM main.orders");
+            StringBuilder items = new StringBuilder("SELECT " + ITEM_COLUMNS + ", " + QUANTITY_COLUMN
+                    + " FROM main.order_items");
+            for (int i = 0; i < files.size(); i++) {
+                String schema = "m" + i;
+                try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS " + schema)) {
+                    attach.setString(1, files.get(i).toString());
+                    attach.execute();
+                }
+                orders.append(" UNION ALL SELECT ").append(ORDER_COLUMNS).append(" FROM ").append(schema)
+                        .append(".orders a WHERE ").append(notHot("a.id"));
+                items.append(" UNION ALL SELECT ").append(ITEM_COLUMNS).append(", ")
+                        .append(hasQuantity(stmt, schema) ? QUANTITY_COLUMN : NO_QUANTITY_COLUMN)
+                        .append(" FROM ").append(schema).append(".order_items a WHERE ").append(notHot("a.order_id"));
+            }
+            stmt.execute("CREATE TEMP VIEW all_orders AS " + orders);
+            stmt.execute("CREATE TEMP VIEW all_order_items AS " + items);
+            // Reports must never write to the hot database or an archive
+            stmt.execute("PRAGMA query_only = ON");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return new HistoryView(conn);
+    }
+
+    /**
+     * Orders created in [from, to), hot and archived, oldest first.
+     * Long ranges are read in chunks of {@link #MAX_ATTACHED_MONTHS} months.
+     */
+    public List<OrderSummary> findOrders(LocalDateTime from, LocalDateTime to) throws SQLException {
+        List<OrderSummary> orders = new ArrayList<>();
+        YearMonth last = YearMonth.from(to.minusSeconds(1));
+        YearMonth chunkStart = YearMonth.from(from);
+        while (!chunkStart.isAfter(last)) {
+            YearMonth chunkEnd = chunkStart.plusMonths(MAX_ATTACHED_MONTHS - 1);
+            if (chunkEnd.isAfter(last)) {
+                chunkEnd = last;
+            }
+            LocalDateTime chunkFrom = max(from, chunkStart.atDay(1).atStartOfDay());
+            LocalDateTime chunkTo = min(to, chunkEnd.plusMonths(1).atDay(1).atStartOfDay());
+
+            try (HistoryView view = open(chunkStart, chunkEnd);
+                    PreparedStatement stmt = view.getConnection().prepareStatement(
+                            "SELECT " + ORDER_COLUMNS + " FROM all_orders "
+                                    + "WHERE created_at >= ? AND created_at < ? ORDER BY created_at, id")) {
+                stmt.setString(1, chunkFrom.format(DB_TIMESTAMP));
+                stmt.setString(2, chunkTo.format(DB_TIMESTAMP));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        orders.add(new OrderSummary(rs.getInt("id"), rs.getString("customer_name"),
+                                rs.getString("payment_method"), rs.getInt("total"), rs.getString("created_at")));
+                    }
+                }
+            }
+            chunkStart = chunkEnd.plusMonths(1);
+        }
+        return orders;
+    }
+
+    /**
+     * Condition keeping an archived row only if its order is no longer hot.
+     */
+    private static String notHot(String orderId) {
+        return "NOT EXISTS (SELECT 1 FROM main.orders h WHERE h.id = " + orderId + ")";
+    }
+
+    /**
+     * Whether an attached archive's order_items has the quantity column.
+     */
+    private static boolean hasQuantity(Statement stmt, String schema) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + schema + ".table_info(order_items)")) {
+            while (rs.next()) {
+                if ("quantity".equals(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
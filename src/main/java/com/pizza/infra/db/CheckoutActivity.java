@@ -0,0 +1,40 @@
+package com.pizza.infra.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * When an order was last saved. {@link OrderRepository} records every
+ * checkout here; background work such as {@link MaintenanceScheduler}
+ * reads it to tell whether the shop is idle, without the repository
+ * knowing who is listening.
+ *
+ * DESIGN PATTERN: Singleton - one clock for the whole application.
+ */
+public class CheckoutActivity {
+    private static final CheckoutActivity INSTANCE = new CheckoutActivity();
+
+    // Starts at construction, so the shop is not idle right after startup
+    private final AtomicLong lastCheckoutAt = new AtomicLong(System.currentTimeMillis());
+
+    CheckoutActivity() {
+    }
+
+    public static CheckoutActivity getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Note that a checkout is being saved now.
+     */
+    void recordCheckout() {
+        lastCheckoutAt.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Time of the last checkout in epoch milliseconds, or of startup if
+     * there was none yet.
+     */
+    public long getLastCheckoutAt() {
+        return lastCheckoutAt.get();
+    }
+}
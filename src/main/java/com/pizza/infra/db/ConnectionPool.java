@@ -0,0 +1,406 @@
+package com.pizza.infra.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of long-lived SQLite connections.
+ *
+ * SQLite allows only one writer at a time, so the pool keeps a single
+ * dedicated writer connection plus a fixed number of reader connections.
+ * Each physical connection is opened and configured (PRAGMAs) once, then
+ * reused for the lifetime of the application.
+ *
+ * Callers receive a lightweight handle whose close() returns the physical
+ * connection to the pool, so repositories keep using try-with-resources.
+ */
+public class ConnectionPool {
+    private static final long DEFAULT_BORROW_TIMEOUT_MS = 30_000;
+    private static final long VALIDATION_IDLE_MS = 30_000;
+    private static final long DEFAULT_LEAK_THRESHOLD_MS = 60_000;
+    static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    /** Set to true to log where a leaked connection was borrowed; costs a stack capture per borrow. */
+    static final String TRACE_LEAKS_PROPERTY = "pizza.db.traceLeaks";
+
+    private final String dbUrl;
+    private final DurabilityProfile profile;
+    private final long borrowTimeoutMs;
+    private final long leakThresholdMs;
+    private final int statementCacheSize;
+    private final boolean traceLeaks = Boolean.getBoolean(TRACE_LEAKS_PROPERTY);
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private volatile PhysicalConnection writer;
+    private volatile Thread writerOwner;
+    private final BlockingQueue<PhysicalConnection> idleReaders;
+    private final List<PhysicalConnection> allReaders = new CopyOnWriteArrayList<>();
+    private final Set<PooledConnection> activeLeases = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String dbUrl, int readerCount) throws SQLException {
+        this(dbUrl, readerCount, DurabilityProfile.BALANCED);
+    }
+
+    public ConnectionPool(String dbUrl, int readerCount, DurabilityProfile profile) throws SQLException {
+        this(dbUrl, readerCount, profile, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(String dbUrl, int readerCount, DurabilityProfile profile, int statementCacheSize)
+            throws SQLException {
+        this(dbUrl, readerCount, profile, DEFAULT_BORROW_TIMEOUT_MS, DEFAULT_LEAK_THRESHOLD_MS, statementCacheSize);
+    }
+
+    public ConnectionPool(String dbUrl, int readerCount, DurabilityProfile profile,
+            long borrowTimeoutMs, long leakThresholdMs) throws SQLException {
+        this(dbUrl, readerCount, profile, borrowTimeoutMs, leakThresholdMs, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param statementCacheSize Prepared statements kept per connection; 0 disables the cache
+     */
+    public ConnectionPool(String dbUrl, int readerCount, DurabilityProfile profile,
+            long borrowTimeoutMs, long leakThresholdMs, int statementCacheSize) throws SQLException {
+        if (readerCount < 1) {
+            throw new IllegalArgumentException("Reader count must be at least 1");
+        }
+        this.dbUrl = dbUrl;
+        this.profile = profile;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.statementCacheSize = statementCacheSize;
+        this.idleReaders = new ArrayBlockingQueue<>(readerCount);
+
+        // Writer first: it switches the journal mode before any reader attaches
+        this.writer = openPhysical(false);
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                PhysicalConnection reader = openPhysical(true);
+                allReaders.add(reader);
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            closeQuietly(writer.connection);
+            allReaders.forEach(r -> closeQuietly(r.connection));
+            throw e;
+        }
+
+        this.leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sqlite-pool-leak-detector");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, leakThresholdMs / 4);
+        leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow the single writer connection.
+     * Blocks until the current writer lease is closed.
+     *
+     * @throws SQLException if this thread already holds the writer, which
+     *         would otherwise wait on itself until the borrow timeout
+     */
+    public Connection borrowWriter() throws SQLException {
+        ensureOpen();
+        if (writerOwner == Thread.currentThread()) {
+            throw new SQLException("Writer connection is already borrowed by this thread ("
+                    + Thread.currentThread().getName() + "); reuse that connection or close it first");
+        }
+        try {
+            if (!writerPermit.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", e);
+        }
+
+        try {
+            writer = validate(writer);
+            writerOwner = Thread.currentThread();
+            return lease(writer);
+        } catch (SQLException | RuntimeException e) {
+            writerPermit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrow one of the reader connections.
+     * Readers are opened with query_only, so any write through them fails.
+     */
+    public Connection borrowReader() throws SQLException {
+        ensureOpen();
+        PhysicalConnection reader;
+        try {
+            reader = idleReaders.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("Timed out waiting for a reader connection");
+        }
+
+        try {
+            PhysicalConnection valid = validate(reader);
+            if (valid != reader) {
+                allReaders.set(allReaders.indexOf(reader), valid);
+            }
+            return lease(valid);
+        } catch (SQLException | RuntimeException e) {
+            idleReaders.offer(reader);
+            throw e;
+        }
+    }
+
+    /**
+     * Durability profile applied to every connection in this pool.
+     */
+    public DurabilityProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Number of connections currently handed out.
+     */
+    public int getActiveCount() {
+        return activeLeases.size();
+    }
+
+    /**
+     * Prepared statement cache counters, summed over every connection.
+     */
+    public StatementCache.Stats getStatementCacheStats() {
+        return statementStats;
+    }
+
+    /**
+     * Close every physical connection and stop leak detection.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        leakDetector.shutdownNow();
+        closeQuietly(writer);
+        allReaders.forEach(ConnectionPool::closeQuietly);
+    }
+
+    private PhysicalConnection openPhysical(boolean readOnly) throws SQLException {
+        Connection conn = DriverManager.getConnection(dbUrl);
+        try {
+            // Per-connection setup is done once here instead of on every checkout
+            profile.apply(conn, !readOnly);
+            if (readOnly) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON");
+                }
+            }
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+        StatementCache statements = statementCacheSize > 0
+                ? new StatementCache(conn, statementCacheSize, statementStats)
+                : null;
+        return new PhysicalConnection(conn, readOnly, statements);
+    }
+
+    /**
+     * Health check: reopen a connection that was closed underneath us or
+     * fails validation after sitting idle for a while.
+     */
+    private PhysicalConnection validate(PhysicalConnection physical) throws SQLException {
+        boolean stale = System.currentTimeMillis() - physical.lastReturnedAt > VALIDATION_IDLE_MS;
+        if (physical.connection.isClosed() || (stale && !physical.connection.isValid(2))) {
+            closeQuietly(physical);
+            return openPhysical(physical.readOnly);
+        }
+        return physical;
+    }
+
+    private Connection lease(PhysicalConnection physical) {
+        PooledConnection handle = new PooledConnection(physical);
+        activeLeases.add(handle);
+        return handle.proxy;
+    }
+
+    private void release(PooledConnection handle) {
+        activeLeases.remove(handle);
+        PhysicalConnection physical = handle.physical;
+        physical.lastReturnedAt = System.currentTimeMillis();
+
+        // Never hand the next borrower a half-finished transaction or statement
+        if (physical.statements != null) {
+            physical.statements.releaseAll();
+        }
+        try {
+            if (!physical.connection.isClosed() && !physical.connection.getAutoCommit()) {
+                physical.connection.rollback();
+                physical.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            closeQuietly(physical.connection);
+        }
+
+        if (physical.readOnly) {
+            idleReaders.offer(physical);
+        } else {
+            writerOwner = null;
+            writerPermit.release();
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection handle : activeLeases) {
+            if (!handle.leakReported && now - handle.borrowedAt > leakThresholdMs) {
+                handle.leakReported = true;
+                System.err.println("⚠️ Possible connection leak: "
+                        + (handle.physical.readOnly ? "reader" : "writer")
+                        + " held for " + (now - handle.borrowedAt) + " ms by " + handle.borrowerName
+                        + (handle.borrowSite != null
+                                ? ", borrowed at " + borrowSite(handle.borrowSite.getStackTrace())
+                                : " (run with -D" + TRACE_LEAKS_PROPERTY + "=true to log where)"));
+            }
+        }
+    }
+
+    /**
+     * Call stack of a borrow on one line, without the pool's own frames.
+     */
+    private static String borrowSite(StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith(ConnectionPool.class.getName())) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(" <- ");
+            }
+            sb.append(frame);
+        }
+        return sb.toString();
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    private static void closeQuietly(PhysicalConnection physical) {
+        if (physical.statements != null) {
+            physical.statements.close();
+        }
+        closeQuietly(physical.connection);
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // Closing during shutdown or after a failure, nothing else to do
+        }
+    }
+
+    /**
+     * A physical JDBC connection owned by the pool.
+     */
+    private static class PhysicalConnection {
+        private final Connection connection;
+        private final boolean readOnly;
+        private final StatementCache statements;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+
+        private PhysicalConnection(Connection connection, boolean readOnly, StatementCache statements) {
+            this.connection = connection;
+            this.readOnly = readOnly;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * One borrow of a physical connection.
+     * close() returns the connection to the pool; any later use of this
+     * handle fails instead of touching a connection someone else now owns.
+     */
+    private class PooledConnection implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final Connection proxy;
+        private final long borrowedAt = System.currentTimeMillis();
+        // Stack frames are only turned into text if a leak is reported
+        private final Throwable borrowSite = traceLeaks ? new Throwable() : null;
+        private final String borrowerName = Thread.currentThread().getName();
+        private volatile boolean leakReported = false;
+        private boolean handleClosed = false;
+
+        private PooledConnection(PhysicalConnection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (!handleClosed) {
+                            handleClosed = true;
+                            release(this);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (physical.readOnly ? "reader" : "writer") + "]";
+                default:
+                    break;
+            }
+
+            if (handleClosed) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (physical.statements != null && method.getName().equals("prepareStatement")) {
+                // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are cached
+                if (args.length == 1) {
+                    return physical.statements.prepare((String) args[0], -1);
+                }
+                if (args.length == 2 && args[1] instanceof Integer keys) {
+                    return physical.statements.prepare((String) args[0], keys);
+                }
+            }
+            try {
+                return method.invoke(physical.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
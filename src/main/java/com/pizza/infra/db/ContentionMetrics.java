@@ -0,0 +1,187 @@
+package com.pizza.infra.db;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock contention counters and histograms recorded by {@link RetryPolicy}.
+ *
+ * Used to size the number of terminals sharing one database: a growing
+ * share of operations that retry, or lock waits moving into the upper
+ * buckets, means writers are queueing on SQLite's single write lock.
+ *
+ * DESIGN PATTERN: Singleton - one set of counters for the whole application.
+ */
+public class ContentionMetrics {
+    /** Upper bounds (ms) of the lock wait buckets; the last bucket is unbounded. */
+    private static final long[] WAIT_BUCKETS_MS = { 1, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000 };
+    /** Upper bounds of the retries-per-operation buckets. */
+    private static final long[] RETRY_BUCKETS = { 0, 1, 2, 3, 4, 5, 10 };
+
+    private static final ContentionMetrics INSTANCE = new ContentionMetrics();
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder permanentFailures = new LongAdder();
+    private final Histogram lockWaitMs = new Histogram(WAIT_BUCKETS_MS);
+    private final Histogram retriesPerOperation = new Histogram(RETRY_BUCKETS);
+
+    ContentionMetrics() {
+    }
+
+    public static ContentionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fixed-bucket histogram; bucket i counts values up to bounds[i].
+     */
+    public static class Histogram {
+        private final long[] bounds;
+        private final AtomicLongArray counts;
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds.clone();
+            this.counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        void record(long value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            counts.incrementAndGet(bucket);
+            total.increment();
+            sum.add(value);
+        }
+
+        public long getCount() {
+            return total.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * Count of values in bucket i; the last bucket holds everything above the last bound.
+         */
+        public long getBucketCount(int bucket) {
+            return counts.get(bucket);
+        }
+
+        public long[] getBounds() {
+            return bounds.clone();
+        }
+
+        /**
+         * Upper bound of the bucket holding the p-th percentile (0-100),
+         * or Long.MAX_VALUE when it falls in the unbounded bucket.
+         */
+        public long percentile(double p) {
+            long n = total.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p / 100.0 * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return i < bounds.length ? bounds[i] : Long.MAX_VALUE;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+            total.reset();
+            sum.reset();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < counts.length(); i++) {
+                long count = counts.get(i);
+                if (count > 0) {
+                    sb.append(sb.length() == 0 ? "" : ", ")
+                            .append(i < bounds.length ? "≤" + bounds[i] : ">" + bounds[bounds.length - 1])
+                            .append(": ").append(count);
+                }
+            }
+            return "[" + sb + "]";
+        }
+    }
+
+    void recordSuccess(int retryCount, long waitedMs) {
+        operations.increment();
+        retriesPerOperation.record(retryCount);
+        lockWaitMs.record(waitedMs);
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordPermanentFailure(int retryCount, long waitedMs) {
+        operations.increment();
+        permanentFailures.increment();
+        retriesPerOperation.record(retryCount);
+        lockWaitMs.record(waitedMs);
+    }
+
+    /**
+     * Operations run through a retry policy, successful or not.
+     */
+    public long getOperationCount() {
+        return operations.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Operations that were still busy after the last attempt.
+     */
+    public long getPermanentFailureCount() {
+        return permanentFailures.sum();
+    }
+
+    /**
+     * Time per operation from its first attempt to its last, including
+     * busy_timeout waits inside an attempt that then succeeded and the
+     * backoff between attempts.
+     */
+    public Histogram getLockWaitMs() {
+        return lockWaitMs;
+    }
+
+    public Histogram getRetriesPerOperation() {
+        return retriesPerOperation;
+    }
+
+    /**
+     * Clear every counter, e.g. between load tests.
+     */
+    public void reset() {
+        operations.reset();
+        retries.reset();
+        permanentFailures.reset();
+        lockWaitMs.reset();
+        retriesPerOperation.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d operations, %d retries, %d permanent failures, lock wait p50 ≤%d ms, "
+                + "p99 ≤%d ms %s", getOperationCount(), getRetryCount(), getPermanentFailureCount(),
+                lockWaitMs.percentile(50), lockWaitMs.percentile(99), lockWaitMs);
+    }
+}
@@ -0,0 +1,197 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.OrderRepository.OrderData;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group-commit writer shared by several POS terminals in one process.
+ *
+ * Instead of one commit per checkout, orders arriving within a short
+ * window are collected and written in a single transaction. Each caller
+ * gets a future completed with its own generated order ID.
+ *
+ * The window is only waited out while another order is on its way: when
+ * the queue is empty and no other caller has an order pending, the group
+ * is committed at once, so a lone terminal pays no added latency.
+ *
+ * If a grouped transaction fails, the orders of that group are retried one
+ * by one, so a single bad order only fails its own caller.
+ *
+ * The POS app itself checks out through {@link OrderJournalFlusher}, which
+ * already writes in batches; this writer is for processes that commit
+ * orders from several terminals straight to SQLite.
+ */
+public class GroupCommitWriter implements AutoCloseable {
+    public static final long DEFAULT_WINDOW_MS = 5;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    private static final long IDLE_POLL_MS = 100;
+
+    private final OrderRepository repository;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>();
+    // Orders submitted and not yet completed, queued or in the group being built
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread commitThread;
+    private volatile boolean running = true;
+
+    /**
+     * An order waiting to be committed, with the caller's future.
+     */
+    private static class PendingOrder {
+        private final OrderData order;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private PendingOrder(OrderData order) {
+            this.order = order;
+        }
+    }
+
+    public GroupCommitWriter(OrderRepository repository) {
+        this(repository, DEFAULT_WINDOW_MS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param repository   Repository used for inserts
+     * @param windowMs     How long to wait for more orders after the first one
+     *                     arrives, while other callers have orders pending
+     * @param maxBatchSize Maximum number of orders per transaction
+     */
+    public GroupCommitWriter(OrderRepository repository, long windowMs, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least 1");
+        }
+        this.repository = repository;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatchSize = maxBatchSize;
+
+        this.commitThread = new Thread(this::runCommitLoop, "order-group-commit");
+        commitThread.setDaemon(true);
+        commitThread.start();
+    }
+
+    /**
+     * Queue an order for the next group commit.
+     *
+     * @return Future completed with the generated order ID once committed
+     */
+    public CompletableFuture<Integer> submit(OrderData order) {
+        PendingOrder pending = new PendingOrder(order);
+        synchronized (queue) {
+            if (!running) {
+                pending.result.completeExceptionally(new SQLException("Group commit writer is closed"));
+                return pending.result;
+            }
+            pendingCount.incrementAndGet();
+            queue.add(pending);
+        }
+        return pending.result;
+    }
+
+    /**
+     * Number of orders waiting for a commit.
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Commit what is queued, then stop the commit thread.
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            running = false;
+        }
+        try {
+            commitThread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runCommitLoop() {
+        List<PendingOrder> group = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingOrder first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                // Collect whatever else arrives during the window
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxBatchSize) {
+                    PendingOrder next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        // Wait only if some other caller is submitting right now
+                        if (remaining <= 0 || pendingCount.get() <= group.size()) {
+                            break;
+                        }
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!group.isEmpty()) {
+                commitGroup(group);
+                group.clear();
+            }
+        }
+
+        // Drain anything submitted before close()
+        queue.drainTo(group);
+        for (int i = 0; i < group.size(); i += maxBatchSize) {
+            commitGroup(group.subList(i, Math.min(group.size(), i + maxBatchSize)));
+        }
+    }
+
+    private void commitGroup(List<PendingOrder> group) {
+        List<OrderData> orders = new ArrayList<>(group.size());
+        for (PendingOrder pending : group) {
+            orders.add(pending.order);
+        }
+
+        try {
+            List<Integer> ids = repository.saveOrders(orders);
+            for (int i = 0; i < group.size(); i++) {
+                pendingCount.decrementAndGet();
+                group.get(i).result.complete(ids.get(i));
+            }
+        } catch (SQLException | RuntimeException groupFailure) {
+            if (group.size() == 1) {
+                pendingCount.decrementAndGet();
+                group.get(0).result.completeExceptionally(groupFailure);
+                return;
+            }
+            // Isolate the failing order: retry each one in its own transaction
+            for (PendingOrder pending : group) {
+                try {
+                    int id = repository.saveOrders(List.of(pending.order)).get(0);
+                    pendingCount.decrementAndGet();
+                    pending.result.complete(id);
+                } catch (SQLException | RuntimeException e) {
+                    pendingCount.decrementAndGet();
+                    pending.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
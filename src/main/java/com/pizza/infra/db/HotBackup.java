@@ -0,0 +1,344 @@
+package com.pizza.infra.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Online backup of the order database with SQLite's backup API, taken while
+ * checkouts keep writing.
+ *
+ * The copy is made on a private connection, never a pooled one. In WAL mode
+ * that connection first opens a read transaction, so every step copies the
+ * same snapshot; writers append to the WAL meanwhile and are never blocked,
+ * and the copy is done a few pages at a time with a pause between steps. In
+ * the other journal modes a reader lock blocks writers, so the copy is taken
+ * in a single step and that step is reported as writer stall.
+ *
+ * A finished copy is verified (integrity_check, schema version, order count)
+ * before it gets its final name; then backups beyond the newest few are
+ * deleted.
+ */
+public class HotBackup {
+    private static final Path DEFAULT_BACKUP_DIR = Path.of("backup");
+    private static final int DEFAULT_PAGES_PER_STEP = 100;
+    private static final long DEFAULT_PAUSE_MS = 5;
+    private static final int DEFAULT_KEEP = 7;
+    private static final long DEFAULT_INTERVAL_MINUTES = 60;
+
+    /** Retries of one step while the source is busy (e.g. a checkpoint), 100 ms apart. */
+    private static final int BUSY_RETRIES = 50;
+    private static final int BUSY_SLEEP_MS = 100;
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final Pattern BACKUP_FILE = Pattern.compile("orders-\\d{8}-\\d{6}-\\d{3}\\.db");
+
+    private static ScheduledExecutorService scheduler;
+
+    private final Path backupDir;
+    private final int pagesPerStep;
+    private final long pauseMs;
+    private final int keep;
+
+    public HotBackup() {
+        this(DEFAULT_BACKUP_DIR, DEFAULT_PAGES_PER_STEP, DEFAULT_PAUSE_MS, DEFAULT_KEEP);
+    }
+
+    /**
+     * @param backupDir    Directory holding the backup files
+     * @param pagesPerStep Pages copied per step in WAL mode
+     * @param pauseMs      Pause between steps
+     * @param keep         Number of newest backups kept by rotation
+     */
+    public HotBackup(Path backupDir, int pagesPerStep, long pauseMs, int keep) {
+        if (pagesPerStep < 1) {
+            throw new IllegalArgumentException("Pages per step must be at least 1");
+        }
+        if (keep < 1) {
+            throw new IllegalArgumentException("At least one backup must be kept");
+        }
+        this.backupDir = backupDir;
+        this.pagesPerStep = pagesPerStep;
+        this.pauseMs = pauseMs;
+        this.keep = keep;
+    }
+
+    /**
+     * Outcome of one backup.
+     */
+    public static class BackupResult {
+        private final Path file;
+        private final long durationMs;
+        private final long writerStallMs;
+        private final int steps;
+        private final int pages;
+        private final long orderCount;
+        private final List<Path> deleted;
+
+        BackupResult(Path file, long durationMs, long writerStallMs, int steps, int pages, long orderCount,
+                List<Path> deleted) {
+            this.file = file;
+            this.durationMs = durationMs;
+            this.writerStallMs = writerStallMs;
+            this.steps = steps;
+            this.pages = pages;
+            this.orderCount = orderCount;
+            this.deleted = deleted;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Wall time from start to a verified, rotated backup.
+         */
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * Time the backup held a lock that blocks writers; 0 in WAL mode.
+         */
+        public long getWriterStallMs() {
+            return writerStallMs;
+        }
+
+        public int getStepCount() {
+            return steps;
+        }
+
+        public int getPageCount() {
+            return pages;
+        }
+
+        /**
+         * Orders in the copied snapshot.
+         */
+        public long getOrderCount() {
+            return orderCount;
+        }
+
+        /**
+         * Old backups removed by rotation.
+         */
+        public List<Path> getDeleted() {
+            return deleted;
+        }
+
+        @Override
+        public String toString() {
+            return file.getFileName() + ": " + orderCount + " orders, " + pages + " pages in " + steps
+                    + " steps, " + durationMs + " ms, writers stalled " + writerStallMs + " ms";
+        }
+    }
+
+    /**
+     * Take a backup every {@code intervalMinutes} on a daemon thread.
+     */
+    public static synchronized void startScheduled(long intervalMinutes) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-backup");
+            t.setDaemon(true);
+            return t;
+        });
+        HotBackup backup = new HotBackup();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                System.out.println("✅ Backup " + backup.backup());
+            } catch (SQLException | IOException e) {
+                // The previous backups are untouched; try again next time
+                System.err.println("❌ Backup failed: " + e.getMessage());
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Take a backup every hour on a daemon thread.
+     */
+    public static void startScheduled() {
+        startScheduled(DEFAULT_INTERVAL_MINUTES);
+    }
+
+    /**
+     * Stop scheduled backups, letting a running one finish first.
+     */
+    public static synchronized void stopScheduled() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /**
+     * Copy the live database to a new backup file, verify it and rotate.
+     */
+    public BackupResult backup() throws SQLException, IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(backupDir);
+        Path target = backupDir.resolve("orders-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".db");
+        Path partial = backupDir.resolve(target.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+
+        Progress progress = new Progress();
+        long orderCount;
+        int schemaVersion;
+        long writerStallMs;
+        boolean wal;
+        try (Connection conn = DriverManager.getConnection(SQLiteConnection.getUrl())) {
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                wal = "wal".equalsIgnoreCase(rs.getString(1));
+            }
+
+            if (wal) {
+                // Pin one snapshot for every step; checkouts go on writing to the WAL
+                conn.setAutoCommit(false);
+            }
+            try {
+                orderCount = countOrders(conn);
+                schemaVersion = SchemaMigrator.getVersion(conn);
+                long stepStart = System.nanoTime();
+                conn.unwrap(org.sqlite.SQLiteConnection.class).getDatabase().backup("main", partial.toString(),
+                        progress, BUSY_SLEEP_MS, BUSY_RETRIES, wal ? pagesPerStep : -1);
+                writerStallMs = wal ? 0 : (System.nanoTime() - stepStart) / 1_000_000;
+            } finally {
+                if (wal) {
+                    conn.commit();
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+
+        try {
+            verify(partial, schemaVersion, wal ? orderCount : -1);
+        } catch (SQLException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        List<Path> deleted = rotate();
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        return new BackupResult(target, durationMs, writerStallMs, progress.steps, progress.pageCount, orderCount,
+                deleted);
+    }
+
+    /**
+     * Check a copy before it replaces anything: structurally sound, same
+     * schema version, and (when copied from a pinned snapshot) the same
+     * number of orders.
+     */
+    static void verify(Path file, int schemaVersion, long expectedOrders) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA query_only = ON");
+            try (ResultSet rs = stmt.executeQuery("PRAGMA integrity_check")) {
+                String result = rs.getString(1);
+                if (!"ok".equals(result)) {
+                    throw new SQLException("Backup failed integrity check: " + result);
+                }
+            }
+            int version = SchemaMigrator.getVersion(conn);
+            if (version != schemaVersion) {
+                throw new SQLException("Backup has schema version " + version + ", expected " + schemaVersion);
+            }
+            long orders = countOrders(conn);
+            if (expectedOrders >= 0 && orders != expectedOrders) {
+                throw new SQLException("Backup has " + orders + " orders, expected " + expectedOrders);
+            }
+        }
+    }
+
+    /**
+     * Delete backups beyond the newest {@code keep}.
+     */
+    List<Path> rotate() throws IOException {
+        List<Path> backups;
+        try (Stream<Path> files = Files.list(backupDir)) {
+            // Timestamped names sort oldest first
+            backups = files.filter(p -> BACKUP_FILE.matcher(p.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+        List<Path> deleted = new ArrayList<>();
+        for (int i = 0; i < backups.size() - keep; i++) {
+            Files.delete(backups.get(i));
+            deleted.add(backups.get(i));
+        }
+        return deleted;
+    }
+
+    private static long countOrders(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Called by the backup API after each step; the pause here is what
+     * yields between steps.
+     */
+    private class Progress implements org.sqlite.core.DB.ProgressObserver {
+        private int steps;
+        private int pageCount;
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            steps++;
+            this.pageCount = pageCount;
+            if (remaining > 0 && pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Command line backup: {@code [backup-dir] [keep]}.
+     */
+    public static void main(String[] args) throws Exception {
+        Path dir = args.length > 0 ? Path.of(args[0]) : DEFAULT_BACKUP_DIR;
+        int keep = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_KEEP;
+        try {
+            BackupResult result = new HotBackup(dir, DEFAULT_PAGES_PER_STEP, DEFAULT_PAUSE_MS, keep).backup();
+            System.out.println("✅ Backup " + result);
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.pizza.infra.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-peak database maintenance: incremental vacuum, ANALYZE and
+ * PRAGMA optimize, run in small time-boxed slices while the shop is idle.
+ *
+ * Archived orders leave free pages behind. With auto_vacuum=INCREMENTAL
+ * those pages can be returned to the filesystem a few at a time with
+ * incremental_vacuum instead of a full VACUUM that locks the database for
+ * seconds. Every step is a short writer lease, and a slice stops as soon as
+ * a checkout is recorded, so checkouts wait for one step at most.
+ *
+ * The shop counts as idle when no checkout was saved for a while, as
+ * recorded in {@link CheckoutActivity}.
+ *
+ * A database created before incremental mode is not vacuumed by the slices;
+ * switching it takes one full VACUUM, run by hand with the
+ * {@code convert-incremental} command (see {@link #main(String[])}).
+ */
+public class MaintenanceScheduler {
+    private static final long DEFAULT_TICK_MS = 30_000;
+    private static final long DEFAULT_IDLE_MS = 2 * 60_000;
+    private static final long DEFAULT_SLICE_MS = 200;
+    private static final int VACUUM_PAGES_PER_STEP = 128;
+    private static final long ANALYZE_INTERVAL_MS = 24 * 60 * 60_000;
+    private static final long FRAGMENTATION_INTERVAL_MS = 60 * 60_000;
+    /** Rows sampled per index by ANALYZE and optimize, which bounds their run time. */
+    private static final int ANALYSIS_LIMIT = 1_000;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String FRAGMENTATION_SQL = """
+            SELECT COUNT(*),
+                   SUM(CASE WHEN prev IS NOT NULL AND pageno <> prev + 1 THEN 1 ELSE 0 END)
+            FROM (SELECT pageno, LAG(pageno) OVER (PARTITION BY name ORDER BY path) AS prev
+                  FROM dbstat WHERE pagetype = 'leaf')
+            """;
+
+    private static MaintenanceScheduler instance;
+
+    private final CheckoutActivity activity = CheckoutActivity.getInstance();
+    private final long idleMs;
+    private final long sliceMs;
+    private ScheduledExecutorService executor;
+    private long lastAnalyzeAt = 0;
+    // Fragmentation needs a full dbstat scan, so slices measure it at most hourly
+    private long lastFragmentationAt = 0;
+    private double lastFragmentation = 0.0;
+    private boolean warnedNotIncremental = false;
+    private final AtomicLong sliceCount = new AtomicLong();
+    private final AtomicLong pagesReclaimed = new AtomicLong();
+    private volatile Metrics lastMetrics;
+
+    /**
+     * @param idleMs  Time without checkouts after which maintenance may run
+     * @param sliceMs Time budget of one maintenance slice
+     */
+    public MaintenanceScheduler(long idleMs, long sliceMs) {
+        this.idleMs = idleMs;
+        this.sliceMs = sliceMs;
+    }
+
+    /**
+     * Database size and free space, as published after each slice.
+     */
+    public static class Metrics {
+        private final long pageCount;
+        private final long freePages;
+        private final int pageSize;
+        private final int autoVacuum;
+        private final double fragmentation;
+
+        Metrics(long pageCount, long freePages, int pageSize, int autoVacuum, double fragmentation) {
+            this.pageCount = pageCount;
+            this.freePages = freePages;
+            this.pageSize = pageSize;
+            this.autoVacuum = autoVacuum;
+            this.fragmentation = fragmentation;
+        }
+
+        public long getPageCount() {
+            return pageCount;
+        }
+
+        /**
+         * Pages on the freelist, reclaimable by incremental_vacuum.
+         */
+        public long getFreePages() {
+            return freePages;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public long getFileBytes() {
+            return pageCount * pageSize;
+        }
+
+        /**
+         * Share of the file that is free pages, 0.0 to 1.0.
+         */
+        public double getFreeRatio() {
+            return pageCount == 0 ? 0.0 : (double) freePages / pageCount;
+        }
+
+        /**
+         * Share of table and index leaf pages not stored right after the
+         * previous leaf of the same b-tree, 0.0 to 1.0.
+         */
+        public double getFragmentation() {
+            return fragmentation;
+        }
+
+        /**
+         * Whether the database is in auto_vacuum=INCREMENTAL mode.
+         */
+        public boolean isIncremental() {
+            return autoVacuum == AUTO_VACUUM_INCREMENTAL;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d pages of %d bytes, %d free (%.1f%%), fragmentation %.1f%%%s",
+                    pageCount, pageSize, freePages, getFreeRatio() * 100, fragmentation * 100,
+                    isIncremental() ? "" : ", auto_vacuum not incremental");
+        }
+    }
+
+    /**
+     * Start checking for idle periods on a daemon thread.
+     */
+    public static synchronized void start() {
+        if (instance == null) {
+            instance = new MaintenanceScheduler(DEFAULT_IDLE_MS, DEFAULT_SLICE_MS);
+            instance.schedule(DEFAULT_TICK_MS);
+        }
+    }
+
+    /**
+     * Stop the scheduler, letting a running slice finish first.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * Whether no checkout was saved within the idle threshold.
+     */
+    public boolean isIdle() {
+        return System.currentTimeMillis() - activity.getLastCheckoutAt() >= idleMs;
+    }
+
+    /**
+     * Run one slice if the shop is idle.
+     *
+     * @return true if a slice ran
+     */
+    public boolean runIfIdle() throws SQLException {
+        if (!isIdle()) {
+            return false;
+        }
+        runSlice();
+        return true;
+    }
+
+    /**
+     * Run one time-boxed maintenance slice: reclaim free pages, then
+     * optimize, then refresh statistics once a day. Stops early when a
+     * checkout comes in. Fragmentation in the published metrics is
+     * measured at most once an hour.
+     *
+     * @return Metrics measured after the slice
+     */
+    public synchronized Metrics runSlice() throws SQLException {
+        long started = System.currentTimeMillis();
+        long deadline = started + sliceMs;
+        sliceCount.incrementAndGet();
+
+        long freed = 0;
+        if (readMetrics(false).isIncremental()) {
+            freed = vacuumUntil(deadline, started);
+        } else if (!warnedNotIncremental) {
+            warnedNotIncremental = true;
+            System.err.println("⚠️ auto_vacuum is not incremental, free pages are not reclaimed; "
+                    + "run MaintenanceScheduler convert-incremental while the shop is closed");
+        }
+
+        if (!interrupted(deadline, started)) {
+            execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT, "PRAGMA optimize");
+        }
+        if (!interrupted(deadline, started) && started - lastAnalyzeAt >= ANALYZE_INTERVAL_MS) {
+            execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT, "ANALYZE");
+            lastAnalyzeAt = started;
+        }
+
+        boolean measureFragmentation = started - lastFragmentationAt >= FRAGMENTATION_INTERVAL_MS;
+        Metrics metrics = readMetrics(measureFragmentation);
+        if (measureFragmentation) {
+            lastFragmentationAt = started;
+            lastFragmentation = metrics.getFragmentation();
+        } else {
+            metrics = new Metrics(metrics.pageCount, metrics.freePages, metrics.pageSize, metrics.autoVacuum,
+                    lastFragmentation);
+        }
+        lastMetrics = metrics;
+        if (freed > 0) {
+            System.out.println("📊 Database maintenance: " + freed + " pages reclaimed, " + metrics + ", "
+                    + pagesReclaimed.get() + " pages in " + sliceCount.get() + " slices");
+        }
+        return metrics;
+    }
+
+    /**
+     * Switch an existing database to auto_vacuum=INCREMENTAL. This needs one
+     * full VACUUM, which holds the writer for as long as it takes to rewrite
+     * the file, so it is an admin command for when the shop is closed, never
+     * part of a slice; new databases are created in incremental mode by
+     * {@link SQLiteConnection}.
+     */
+    public static void convertToIncremental() throws SQLException {
+        long start = System.currentTimeMillis();
+        execute("PRAGMA auto_vacuum = INCREMENTAL", "VACUUM");
+        System.out.println("✅ Database switched to incremental auto-vacuum in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Current size and free space; fragmentation (a full dbstat scan) only
+     * when asked for, otherwise reported as 0.
+     */
+    public Metrics readMetrics(boolean withFragmentation) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement()) {
+            long pageCount = pragma(stmt, "page_count");
+            long freePages = pragma(stmt, "freelist_count");
+            int pageSize = (int) pragma(stmt, "page_size");
+            int autoVacuum = (int) pragma(stmt, "auto_vacuum");
+            double fragmentation = 0.0;
+            if (withFragmentation) {
+                try (ResultSet rs = stmt.executeQuery(FRAGMENTATION_SQL)) {
+                    long leaves = rs.getLong(1);
+                    fragmentation = leaves == 0 ? 0.0 : (double) rs.getLong(2) / leaves;
+                }
+            }
+            return new Metrics(pageCount, freePages, pageSize, autoVacuum, fragmentation);
+        }
+    }
+
+    /**
+     * Metrics published by the last slice, or null before the first one.
+     */
+    public Metrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    public long getSliceCount() {
+        return sliceCount.get();
+    }
+
+    /**
+     * Pages returned to the filesystem by incremental_vacuum so far.
+     */
+    public long getPagesReclaimed() {
+        return pagesReclaimed.get();
+    }
+
+    /**
+     * @return Pages reclaimed
+     */
+    private long vacuumUntil(long deadline, long started) throws SQLException {
+        long reclaimed = 0;
+        while (!interrupted(deadline, started)) {
+            long freed;
+            try (Connection conn = SQLiteConnection.getConnection();
+                    Statement stmt = conn.createStatement()) {
+                long before = pragma(stmt, "freelist_count");
+                if (before == 0) {
+                    break;
+                }
+                stmt.execute("PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")");
+                freed = before - pragma(stmt, "freelist_count");
+            }
+            pagesReclaimed.addAndGet(freed);
+            reclaimed += freed;
+        }
+        if (reclaimed > 0) {
+            // In WAL mode the file only shrinks once the vacuumed pages are checkpointed
+            execute("PRAGMA wal_checkpoint(PASSIVE)");
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Whether the slice must stop: out of time, or a checkout came in.
+     */
+    private boolean interrupted(long deadline, long started) {
+        return System.currentTimeMillis() >= deadline || activity.getLastCheckoutAt() > started;
+    }
+
+    private static void execute(String... statements) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    private static long pragma(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.getLong(1);
+        }
+    }
+
+    private void schedule(long tickMs) {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                runIfIdle();
+            } catch (SQLException e) {
+                // Nothing is half-done: every step is its own transaction
+                System.err.println("⚠️ Database maintenance failed: " + e.getMessage());
+            }
+        }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Admin entry point: {@code status} prints the database metrics,
+     * fragmentation included; {@code convert-incremental} switches an
+     * existing database to incremental auto-vacuum (one full VACUUM).
+     */
+    public static void main(String[] args) throws SQLException {
+        String command = args.length > 0 ? args[0] : "status";
+        try {
+            switch (command) {
+                case "status" -> System.out.println("📊 " + new MaintenanceScheduler(DEFAULT_IDLE_MS, DEFAULT_SLICE_MS)
+                        .readMetrics(true));
+                case "convert-incremental" -> convertToIncremental();
+                default -> {
+                    System.err.println("Usage: MaintenanceScheduler status|convert-incremental");
+                    System.exit(2);
+                }
+            }
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+    }
+
+    private void stop() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.pizza.infra.db;
+
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.factory.PizzaTypeRegistry;
+import com.pizza.infra.db.PizzaRepository.PizzaData;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of the active pizza menu and topping catalog.
+ *
+ * Holds an immutable {@link Snapshot} indexed by id and by name. The menu is
+ * loaded from the database once; after that a background thread compares
+ * the menu_version counter (bumped by triggers on the pizzas and toppings
+ * tables) with the snapshot's version and swaps in a new snapshot when it
+ * changed. Menu reads never wait on the database once the first snapshot is
+ * loaded. Every snapshot also replaces the pizza types known to
+ * {@link PizzaTypeRegistry} and the current {@link ToppingCatalog}.
+ *
+ * DESIGN PATTERN: Singleton
+ */
+public class MenuCache {
+    private static final long DEFAULT_CHECK_INTERVAL_MS = 5_000;
+
+    private static final String READ_VERSION_SQL = "SELECT version FROM menu_version WHERE id = 1";
+
+    private static MenuCache instance;
+
+    private final long checkIntervalMs;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private ScheduledExecutorService versionChecker;
+
+    /**
+     * Immutable view of the menu at one menu version.
+     */
+    public static class Snapshot {
+        private final long version;
+        private final List<PizzaData> pizzas;
+        private final Map<Integer, PizzaData> byId;
+        private final Map<String, PizzaData> byName;
+        private final ToppingCatalog toppings;
+
+        Snapshot(long version, List<PizzaData> pizzas, ToppingCatalog toppings) {
+            this.version = version;
+            this.pizzas = List.copyOf(pizzas);
+            this.toppings = toppings;
+            Map<Integer, PizzaData> ids = new HashMap<>();
+            Map<String, PizzaData> names = new HashMap<>();
+            for (PizzaData pizza : pizzas) {
+                ids.put(pizza.getId(), pizza);
+                names.put(pizza.getName(), pizza);
+            }
+            this.byId = Map.copyOf(ids);
+            this.byName = Map.copyOf(names);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Active pizzas, ordered by name.
+         */
+        public List<PizzaData> getPizzas() {
+            return pizzas;
+        }
+
+        public PizzaData getById(int id) {
+            return byId.get(id);
+        }
+
+        public PizzaData getByName(String name) {
+            return name == null ? null : byName.get(name);
+        }
+
+        /**
+         * Toppings on sale at this menu version.
+         */
+        public ToppingCatalog getToppings() {
+            return toppings;
+        }
+    }
+
+    MenuCache(long checkIntervalMs) {
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    /**
+     * Get singleton instance of MenuCache.
+     */
+    public static synchronized MenuCache getInstance() {
+        if (instance == null) {
+            instance = new MenuCache(DEFAULT_CHECK_INTERVAL_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Drop the cached menu and stop the version checker.
+     * Called when the connection pool shuts down, since the next pool may
+     * point at a different database.
+     */
+    static synchronized void reset() {
+        if (instance != null) {
+            instance.stop();
+            instance = null;
+        }
+        PizzaTypeRegistry.getInstance().reset();
+        ToppingCatalog.reset();
+    }
+
+    /**
+     * Current menu snapshot. Only the first call loads from the database.
+     */
+    public Snapshot getSnapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                misses.incrementAndGet();
+                snapshot = load();
+                startVersionChecker();
+            } else {
+                hits.incrementAndGet();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Reload the snapshot if the menu version in the database moved on.
+     *
+     * @return true if a new snapshot was loaded
+     */
+    public boolean refreshIfChanged() throws SQLException {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return false;
+        }
+        long version;
+        try (Connection conn = SQLiteConnection.getReadConnection()) {
+            version = readVersion(conn);
+        }
+        if (version == current.getVersion()) {
+            return false;
+        }
+        synchronized (this) {
+            snapshot = load();
+        }
+        System.out.println("✅ Menu reloaded at version " + snapshot.getVersion());
+        return true;
+    }
+
+    /**
+     * Drop the snapshot; the next read loads the menu again.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of snapshots replaced after a menu version change.
+     */
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    /**
+     * Share of menu reads served from memory, 0.0 to 1.0.
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    private Snapshot load() throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection()) {
+            // Version and rows come from the same read transaction
+            conn.setAutoCommit(false);
+            try {
+                long version = readVersion(conn);
+                List<PizzaData> pizzas = PizzaRepository.loadActivePizzas(conn);
+                List<ToppingCatalog.Entry> toppings = ToppingRepository.loadActiveToppings(conn);
+                conn.commit();
+                installToppings(version, toppings);
+                installPizzaTypes(version, pizzas);
+                if (snapshot != null) {
+                    reloads.incrementAndGet();
+                }
+                return new Snapshot(version, pizzas, ToppingCatalog.getCurrent());
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Let the factory create every pizza of this menu, including ones that
+     * exist only in the pizzas table.
+     */
+    private static void installPizzaTypes(long version, List<PizzaData> pizzas) {
+        Map<String, Integer> basePrices = new LinkedHashMap<>();
+        for (PizzaData pizza : pizzas) {
+            basePrices.put(pizza.getName(), pizza.getBasePrice());
+        }
+        PizzaTypeRegistry.getInstance().install(version, basePrices);
+    }
+
+    /**
+     * Sell the toppings of this menu. Toppings past the catalog's limit are
+     * left out rather than failing the whole menu.
+     */
+    private static void installToppings(long version, List<ToppingCatalog.Entry> toppings) {
+        if (toppings.size() > ToppingCatalog.MAX_TOPPINGS) {
+            System.err.println("⚠️ " + toppings.size() + " active toppings, only the first "
+                    + ToppingCatalog.MAX_TOPPINGS + " are sold");
+            toppings = toppings.subList(0, ToppingCatalog.MAX_TOPPINGS);
+        }
+        ToppingCatalog.install(version, toppings);
+    }
+
+    private static long readVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(READ_VERSION_SQL)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void startVersionChecker() {
+        if (versionChecker != null || checkIntervalMs <= 0) {
+            return;
+        }
+        versionChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "menu-version-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        versionChecker.scheduleWithFixedDelay(() -> {
+            try {
+                refreshIfChanged();
+            } catch (SQLException | RuntimeException e) {
+                // Keep serving the current snapshot; try again next round
+                System.err.println("⚠️ Menu version check failed: " + e.getMessage());
+            }
+        }, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (versionChecker != null) {
+            versionChecker.shutdownNow();
+            versionChecker = null;
+        }
+        snapshot = null;
+    }
+}
@@ -0,0 +1,352 @@
+package com.pizza.infra.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves closed months of orders out of the hot database into one SQLite
+ * file per month (orders-YYYY-MM.db), keeping pizza_orders.db small.
+ *
+ * A month is moved in small batches of orders. Each batch borrows the
+ * writer only briefly, so checkouts interleave with the archiver:
+ * 1. copy the batch (orders, items, item toppings) into the attached archive
+ *    file and commit there;
+ * 2. delete from the hot database only the orders the archive now holds.
+ * Copies use INSERT OR IGNORE, so a batch interrupted between the two steps
+ * is simply copied again on the next run. Archive files are read back
+ * through {@link ArchiveQuery}.
+ *
+ * Sales rollups keep the totals of archived months; see {@link SalesRollups}.
+ */
+public class OrderArchiver {
+    private static final Path DEFAULT_ARCHIVE_DIR = Path.of("order-archive");
+    private static final int DEFAULT_BATCH_SIZE = 200;
+    private static final long DEFAULT_PAUSE_MS = 20;
+    private static final String ARCHIVE_SCHEMA = "archive";
+
+    static final String STATUS_ARCHIVING = "archiving";
+    static final String STATUS_ARCHIVED = "archived";
+
+    /** Tables copied to the archive, parents first, with a primary key definition for a new archive table. */
+    private static final Map<String, String> ARCHIVED_TABLES = new LinkedHashMap<>();
+
+    static {
+        ARCHIVED_TABLES.put("toppings", "id INTEGER PRIMARY KEY");
+        ARCHIVED_TABLES.put("orders", "id INTEGER PRIMARY KEY");
+        ARCHIVED_TABLES.put("order_items", "id INTEGER PRIMARY KEY");
+        ARCHIVED_TABLES.put("order_item_toppings",
+                "order_item_id INTEGER NOT NULL, topping_id INTEGER NOT NULL, PRIMARY KEY (order_item_id, topping_id)");
+    }
+
+    private static final String SELECT_BATCH_SQL = """
+            INSERT INTO temp.archive_batch (id)
+            SELECT id FROM main.orders WHERE created_at >= ? AND created_at < ?
+            ORDER BY created_at, id LIMIT ?
+            """;
+
+    private final Path archiveDir;
+    private final int batchSize;
+    private final long pauseMs;
+
+    public OrderArchiver() {
+        this(DEFAULT_ARCHIVE_DIR, DEFAULT_BATCH_SIZE, DEFAULT_PAUSE_MS);
+    }
+
+    /**
+     * @param archiveDir Directory holding the per-month archive files
+     * @param batchSize  Orders moved per batch
+     * @param pauseMs    Pause between batches, leaving the writer to checkouts
+     */
+    public OrderArchiver(Path archiveDir, int batchSize, long pauseMs) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.archiveDir = archiveDir;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Archive file of one month.
+     */
+    public static Path getArchiveFile(Path archiveDir, YearMonth month) {
+        return archiveDir.resolve("orders-" + month + ".db");
+    }
+
+    /**
+     * Archive every month before the last {@code hotMonths} months (the
+     * current month counts as one), oldest first.
+     *
+     * @return Number of orders moved
+     */
+    public long archiveClosedMonths(int hotMonths) throws SQLException, IOException, InterruptedException {
+        if (hotMonths < 1) {
+            throw new IllegalArgumentException("The current month always stays hot");
+        }
+        YearMonth firstHot = YearMonth.now(ZoneOffset.UTC).minusMonths(hotMonths - 1);
+        long moved = 0;
+        for (YearMonth month : findMonthsBefore(firstHot)) {
+            moved += archiveMonth(month);
+        }
+        return moved;
+    }
+
+    /**
+     * Months that still have orders in the hot database, before {@code firstHot}.
+     */
+    public List<YearMonth> findMonthsBefore(YearMonth firstHot) throws SQLException {
+        List<YearMonth> months = new ArrayList<>();
+        // Hop from month to month through idx_orders_created_at instead of reading every order
+        String sql = "SELECT MIN(created_at) FROM orders WHERE created_at >= ? AND created_at < ?";
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            String from = "";
+            while (true) {
+                stmt.setString(1, from);
+                stmt.setString(2, monthStart(firstHot));
+                String first;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    first = rs.next() ? rs.getString(1) : null;
+                }
+                if (first == null) {
+                    return months;
+                }
+                YearMonth month = YearMonth.parse(first.substring(0, 7));
+                months.add(month);
+                from = monthStart(month.plusMonths(1));
+            }
+        }
+    }
+
+    /**
+     * Move one month to its archive file.
+     *
+     * @return Number of orders moved by this call
+     */
+    public long archiveMonth(YearMonth month) throws SQLException, IOException, InterruptedException {
+        Files.createDirectories(archiveDir);
+        Path file = getArchiveFile(archiveDir, month);
+        markMonth(month, file, STATUS_ARCHIVING, 0);
+
+        long moved = 0;
+        int batch;
+        do {
+            batch = moveBatch(month, file);
+            moved += batch;
+            if (batch > 0 && pauseMs > 0) {
+                Thread.sleep(pauseMs);
+            }
+        } while (batch > 0);
+
+        markMonth(month, file, STATUS_ARCHIVED, countArchived(file));
+        System.out.println("✅ Archived " + moved + " orders of " + month + " to " + file);
+        return moved;
+    }
+
+    /**
+     * Copy then delete one batch of orders of the month.
+     *
+     * @return Number of orders in the batch; 0 when the month is done
+     */
+    private int moveBatch(YearMonth month, Path file) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            // ATTACH is not allowed inside a transaction
+            try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS " + ARCHIVE_SCHEMA)) {
+                attach.setString(1, file.toString());
+                attach.execute();
+            }
+            try {
+                ensureArchiveSchema(stmt);
+                stmt.execute("CREATE TEMP TABLE IF NOT EXISTS archive_batch (id INTEGER PRIMARY KEY)");
+                stmt.execute("DELETE FROM temp.archive_batch");
+
+                // 1. Copy into the archive file
+                conn.setAutoCommit(false);
+                int size;
+                try {
+                    try (PreparedStatement select = conn.prepareStatement(SELECT_BATCH_SQL)) {
+                        select.setString(1, monthStart(month));
+                        select.setString(2, monthStart(month.plusMonths(1)));
+                        select.setInt(3, batchSize);
+                        size = select.executeUpdate();
+                    }
+                    if (size > 0) {
+                        copyBatch(stmt);
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+
+                // 2. Delete what the archive now holds
+                if (size > 0) {
+                    try {
+                        deleteArchivedBatch(stmt);
+                        conn.commit();
+                    } catch (SQLException | RuntimeException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+                return size;
+            } finally {
+                conn.setAutoCommit(true);
+                stmt.execute("DELETE FROM temp.archive_batch");
+                stmt.execute("DETACH DATABASE " + ARCHIVE_SCHEMA);
+            }
+        }
+    }
+
+    private static void copyBatch(Statement stmt) throws SQLException {
+        String a = ARCHIVE_SCHEMA;
+        // Topping names are copied so the archive is readable on its own
+        stmt.executeUpdate("INSERT OR REPLACE INTO " + a + ".toppings (" + columns(stmt, "toppings") + ") "
+                + "SELECT " + columns(stmt, "toppings") + " FROM main.toppings");
+        stmt.executeUpdate("INSERT OR IGNORE INTO " + a + ".orders (" + columns(stmt, "orders") + ") "
+                + "SELECT " + columns(stmt, "orders") + " FROM main.orders "
+                + "WHERE id IN (SELECT id FROM temp.archive_batch)");
+        stmt.executeUpdate("INSERT OR IGNORE INTO " + a + ".order_items (" + columns(stmt, "order_items") + ") "
+                + "SELECT " + columns(stmt, "order_items") + " FROM main.order_items "
+                + "WHERE order_id IN (SELECT id FROM temp.archive_batch)");
+        stmt.executeUpdate("INSERT OR IGNORE INTO " + a + ".order_item_toppings ("
+                + columns(stmt, "order_item_toppings") + ") "
+                + "SELECT " + columns(stmt, "order_item_toppings") + " FROM main.order_item_toppings "
+                + "WHERE order_item_id IN (SELECT id FROM main.order_items "
+                + "WHERE order_id IN (SELECT id FROM temp.archive_batch))");
+    }
+
+    private static void deleteArchivedBatch(Statement stmt) throws SQLException {
+        String archived = "SELECT id FROM " + ARCHIVE_SCHEMA + ".orders "
+                + "WHERE id IN (SELECT id FROM temp.archive_batch)";
+        stmt.executeUpdate("DELETE FROM main.order_item_toppings WHERE order_item_id IN "
+                + "(SELECT id FROM main.order_items WHERE order_id IN (" + archived + "))");
+        stmt.executeUpdate("DELETE FROM main.order_items WHERE order_id IN (" + archived + ")");
+        stmt.executeUpdate("DELETE FROM main.orders WHERE id IN (" + archived + ")");
+    }
+
+    /**
+     * Create the archive tables, and add any column the hot table gained
+     * since the archive file was created.
+     */
+    private static void ensureArchiveSchema(Statement stmt) throws SQLException {
+        String a = ARCHIVE_SCHEMA;
+        for (Map.Entry<String, String> table : ARCHIVED_TABLES.entrySet()) {
+            String name = table.getKey();
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + a + "." + name + " (" + table.getValue() + ")");
+
+            List<String> archived = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA " + a + ".table_info(" + name + ")")) {
+                while (rs.next()) {
+                    archived.add(rs.getString("name"));
+                }
+            }
+            List<String> missing = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA main.table_info(" + name + ")")) {
+                while (rs.next()) {
+                    if (!archived.contains(rs.getString("name"))) {
+                        missing.add(columnDefinition(rs));
+                    }
+                }
+            }
+            for (String column : missing) {
+                stmt.execute("ALTER TABLE " + a + "." + name + " ADD COLUMN " + column);
+            }
+        }
+        stmt.execute("CREATE INDEX IF NOT EXISTS " + a + ".idx_orders_created_at ON orders (created_at, id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS " + a + ".idx_order_items_order_id ON order_items (order_id)");
+    }
+
+    /**
+     * Definition of a hot column, from a table_info row, for ADD COLUMN.
+     * Keeps its DEFAULT, so rows already in the archive get the value the
+     * hot rows got in the migration (e.g. quantity 1); NOT NULL is only
+     * kept with a default, as SQLite cannot add it otherwise.
+     */
+    private static String columnDefinition(ResultSet tableInfo) throws SQLException {
+        StringBuilder column = new StringBuilder(tableInfo.getString("name"))
+                .append(' ').append(tableInfo.getString("type"));
+        String defaultValue = tableInfo.getString("dflt_value");
+        if (defaultValue != null) {
+            if (tableInfo.getInt("notnull") == 1) {
+                column.append(" NOT NULL");
+            }
+            column.append(" DEFAULT ").append(defaultValue);
+        }
+        return column.toString();
+    }
+
+    /**
+     * Column list of a hot table, as used for copying.
+     */
+    private static String columns(Statement stmt, String table) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA main.table_info(" + table + ")")) {
+            while (rs.next()) {
+                names.add(rs.getString("name"));
+            }
+        }
+        return String.join(", ", names);
+    }
+
+    private static void markMonth(YearMonth month, Path file, String status, long orderCount) throws SQLException {
+        String sql = """
+                INSERT INTO archived_months (month, archive_file, status, order_count, archived_at)
+                VALUES (?, ?, ?, ?, CASE WHEN ? = 'archived' THEN CURRENT_TIMESTAMP END)
+                ON CONFLICT(month) DO UPDATE SET archive_file = excluded.archive_file, status = excluded.status,
+                    order_count = excluded.order_count, archived_at = excluded.archived_at
+                """;
+        try (Connection conn = SQLiteConnection.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, month.toString());
+            stmt.setString(2, file.toString());
+            stmt.setString(3, status);
+            stmt.setLong(4, orderCount);
+            stmt.setString(5, status);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static long countArchived(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * First created_at value of a month, as stored ("YYYY-MM-01 00:00:00").
+     */
+    static String monthStart(YearMonth month) {
+        return month.atDay(1) + " 00:00:00";
+    }
+
+    /**
+     * Maintenance entry point: archive all months older than the given number
+     * of hot months (default 2: this month and last month stay hot).
+     */
+    public static void main(String[] args) throws Exception {
+        int hotMonths = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        try {
+            long moved = new OrderArchiver().archiveClosedMonths(hotMonths);
+            System.out.println("✅ Archiving finished: " + moved + " orders moved");
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package com.pizza.infra.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export of orders joined with their items, as CSV or JSON Lines.
+ *
+ * Rows are read through one forward-only cursor. Text is collected in
+ * chunks of whole orders and each chunk is written to the file in one go
+ * (as its own gzip member when gzipped), so memory use does not depend on
+ * the number of rows exported and the file only ever ends mid-order when a
+ * write itself failed. Orders are exported in (created_at, id) order; the
+ * {@link Cursor} of the last order written, returned on success and carried
+ * by {@link ExportFailedException} on failure, lets the export be resumed
+ * by appending to the same file.
+ */
+public class OrderExporter {
+    private static final int FETCH_SIZE = 1_000;
+    private static final int CHUNK_CHARS = 64 * 1024;
+    private static final DateTimeFormatter DB_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    static final String EXPORT_SQL = """
+            SELECT o.id, o.created_at, o.customer_name, o.payment_method, o.total,
+                   i.id AS item_id, i.pizza_name, i.size, i.toppings, i.price, i.quantity
+            FROM orders o LEFT JOIN order_items i ON i.order_id = o.id
+            WHERE o.created_at >= ? AND o.created_at < ? AND (o.created_at, o.id) > (?, ?)
+            ORDER BY o.created_at, o.id, i.id
+            """;
+
+    private static final String CSV_HEADER =
+            "order_id,created_at,customer_name,payment_method,order_total,item_id,pizza_name,size,toppings,price,quantity";
+
+    /**
+     * Output format.
+     */
+    public enum Format {
+        /** One line per order item; orders without items get one line with empty item fields. */
+        CSV,
+        /** One JSON object per order, with its items in an array. */
+        JSONL
+    }
+
+    /**
+     * Position after the last order written to the file: the order's sort
+     * key, and the file size at that point.
+     */
+    public static class Cursor {
+        /** Before the first order. */
+        public static final Cursor START = new Cursor("", 0, 0);
+
+        private final String createdAt;
+        private final long orderId;
+        private final long fileOffset;
+
+        /**
+         * @param fileOffset File size after the order, or -1 if unknown (the
+         *                   file is then appended to as it is)
+         */
+        public Cursor(String createdAt, long orderId, long fileOffset) {
+            this.createdAt = createdAt;
+            this.orderId = orderId;
+            this.fileOffset = fileOffset;
+        }
+
+        public Cursor(String createdAt, long orderId) {
+            this(createdAt, orderId, -1);
+        }
+
+        /**
+         * Parse a cursor written by {@link #toString()}; a cursor without a
+         * file offset, from before offsets were kept, is accepted too.
+         */
+        public static Cursor parse(String token) {
+            try {
+                int split = token.lastIndexOf('|');
+                int first = token.lastIndexOf('|', split - 1);
+                if (first < 0) {
+                    return new Cursor(token.substring(0, split), Long.parseLong(token.substring(split + 1)));
+                }
+                return new Cursor(token.substring(0, first), Long.parseLong(token.substring(first + 1, split)),
+                        Long.parseLong(token.substring(split + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid export cursor: " + token, e);
+            }
+        }
+
+        public String getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        /**
+         * File size after the last order written, or -1 if unknown.
+         */
+        public long getFileOffset() {
+            return fileOffset;
+        }
+
+        /**
+         * Whether nothing has been exported yet.
+         */
+        public boolean isStart() {
+            return orderId == 0 && createdAt.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return createdAt + "|" + orderId + "|" + fileOffset;
+        }
+    }
+
+    /**
+     * Outcome of one export run.
+     */
+    public static class ExportResult {
+        private final long orders;
+        private final long items;
+        private final Cursor last;
+
+        ExportResult(long orders, long items, Cursor last) {
+            this.orders = orders;
+            this.items = items;
+            this.last = last;
+        }
+
+        public long getOrderCount() {
+            return orders;
+        }
+
+        public long getItemCount() {
+            return items;
+        }
+
+        /**
+         * Cursor to pass to the next run to continue after this one.
+         */
+        public Cursor getLastCursor() {
+            return last;
+        }
+    }
+
+    /**
+     * An export that stopped part way. The file holds every order up to
+     * {@link #getLastCursor()}; passing that cursor to the next run resumes
+     * the export, dropping anything written after it.
+     */
+    public static class ExportFailedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final Cursor last;
+
+        ExportFailedException(Cursor last, Exception cause) {
+            super("Export stopped after " + last + ": " + cause.getMessage(), cause);
+            this.last = last;
+        }
+
+        public Cursor getLastCursor() {
+            return last;
+        }
+    }
+
+    private final Format format;
+    private final boolean gzip;
+    private final int chunkChars;
+
+    public OrderExporter(Format format, boolean gzip) {
+        this(format, gzip, CHUNK_CHARS);
+    }
+
+    /**
+     * @param chunkChars Text collected before it is written to the file
+     */
+    public OrderExporter(Format format, boolean gzip, int chunkChars) {
+        this.format = format;
+        this.gzip = gzip;
+        this.chunkChars = chunkChars;
+    }
+
+    /**
+     * Export every order created in [from, to) to a new file.
+     */
+    public ExportResult export(Path file, LocalDateTime from, LocalDateTime to) throws IOException, SQLException {
+        return export(file, from, to, Cursor.START);
+    }
+
+    /**
+     * Export orders created in [from, to) that come after {@code after}.
+     * When resuming (anything but a start cursor) the file is cut back to
+     * the cursor's offset, dropping a partly written tail, and the rows are
+     * appended; gzip readers treat the file's gzip members as one stream.
+     *
+     * @throws ExportFailedException if the export stops part way; its cursor resumes it
+     */
+    public ExportResult export(Path file, LocalDateTime from, LocalDateTime to, Cursor after)
+            throws IOException, SQLException {
+        boolean resuming = !after.isStart();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = 0;
+            if (resuming) {
+                offset = after.getFileOffset() >= 0 ? after.getFileOffset() : channel.size();
+                if (offset > channel.size()) {
+                    throw new IOException("Export file " + file + " is shorter than its cursor " + after);
+                }
+            }
+            channel.truncate(offset);
+            channel.position(offset);
+
+            ChunkedOutput output = new ChunkedOutput(channel, gzip, chunkChars,
+                    resuming ? new Cursor(after.getCreatedAt(), after.getOrderId(), offset) : Cursor.START);
+            try {
+                if (!resuming && format == Format.CSV) {
+                    output.text().write(CSV_HEADER);
+                    output.text().write('\n');
+                }
+                return write(output, from, to, after);
+            } catch (IOException | SQLException | RuntimeException e) {
+                throw new ExportFailedException(output.getWritten(), e);
+            }
+        }
+    }
+
+    private ExportResult write(ChunkedOutput output, LocalDateTime from, LocalDateTime to, Cursor after)
+            throws IOException, SQLException {
+        long orders = 0;
+        long items = 0;
+        Writer writer = output.text();
+        JsonOrder pending = null;
+
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            stmt.setString(1, from.format(DB_TIMESTAMP));
+            stmt.setString(2, to.format(DB_TIMESTAMP));
+            stmt.setString(3, after.getCreatedAt());
+            stmt.setLong(4, after.getOrderId());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                Cursor reading = null;
+                while (rs.next()) {
+                    long orderId = rs.getLong("id");
+                    if (reading == null || orderId != reading.getOrderId()) {
+                        // Previous order is complete
+                        if (reading != null) {
+                            endOrder(output, reading, pending);
+                            orders++;
+                        }
+                        reading = new Cursor(rs.getString("created_at"), orderId);
+                        if (format == Format.JSONL) {
+                            pending = new JsonOrder(rs);
+                        }
+                    }
+
+                    boolean hasItem = rs.getObject("item_id") != null;
+                    if (hasItem) {
+                        items++;
+                    }
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, rs, hasItem);
+                    } else if (hasItem) {
+                        pending.addItem(rs);
+                    }
+                }
+                if (reading != null) {
+                    endOrder(output, reading, pending);
+                    orders++;
+                }
+            }
+        }
+        output.flush();
+        return new ExportResult(orders, items, output.getWritten());
+    }
+
+    private void endOrder(ChunkedOutput output, Cursor order, JsonOrder pending) throws IOException {
+        if (pending != null) {
+            pending.writeTo(output.text());
+        }
+        output.endOrder(order);
+        onOrderWritten(order);
+    }
+
+    /**
+     * Called after each order is handed to the output, e.g. to report
+     * progress. Does nothing by default; an IOException thrown here stops
+     * the export like a failed write would.
+     */
+    protected void onOrderWritten(Cursor order) throws IOException {
+    }
+
+    /**
+     * Text of whole orders, written to the file a chunk at a time. Only
+     * complete chunks reach the file, so the offset after the last one is
+     * always an order boundary.
+     */
+    private static class ChunkedOutput {
+        private final FileChannel channel;
+        private final boolean gzip;
+        private final int chunkChars;
+        private final StringWriter chunk = new StringWriter();
+        private Cursor lastOrder;
+        private Cursor written;
+
+        ChunkedOutput(FileChannel channel, boolean gzip, int chunkChars, Cursor after) {
+            this.channel = channel;
+            this.gzip = gzip;
+            this.chunkChars = chunkChars;
+            this.lastOrder = after;
+            this.written = after;
+        }
+
+        Writer text() {
+            return chunk;
+        }
+
+        void endOrder(Cursor order) throws IOException {
+            lastOrder = order;
+            if (chunk.getBuffer().length() >= chunkChars) {
+                flush();
+            }
+        }
+
+        /**
+         * Write the collected orders to the file.
+         */
+        void flush() throws IOException {
+            if (chunk.getBuffer().length() == 0) {
+                return;
+            }
+            byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+            if (gzip) {
+                // A gzip member per chunk, so the file can be cut back at any chunk
+                ByteArrayOutputStream member = new ByteArrayOutputStream(bytes.length / 4);
+                try (GZIPOutputStream out = new GZIPOutputStream(member)) {
+                    out.write(bytes);
+                }
+                bytes = member.toByteArray();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            chunk.getBuffer().setLength(0);
+            written = new Cursor(lastOrder.getCreatedAt(), lastOrder.getOrderId(), channel.position());
+        }
+
+        /**
+         * Cursor after the last order that reached the file.
+         */
+        Cursor getWritten() {
+            return written;
+        }
+    }
+
+    private static void writeCsvRow(Writer writer, ResultSet rs, boolean hasItem) throws IOException, SQLException {
+        writer.write(Long.toString(rs.getLong("id")));
+        writer.write(',');
+        writeCsvField(writer, rs.getString("created_at"));
+        writer.write(',');
+        writeCsvField(writer, rs.getString("customer_name"));
+        writer.write(',');
+        writeCsvField(writer, rs.getString("payment_method"));
+        writer.write(',');
+        writer.write(Integer.toString(rs.getInt("total")));
+        writer.write(',');
+        if (hasItem) {
+            writer.write(Long.toString(rs.getLong("item_id")));
+            writer.write(',');
+            writeCsvField(writer, rs.getString("pizza_name"));
+            writer.write(',');
+            writeCsvField(writer, rs.getString("size"));
+            writer.write(',');
+            writeCsvField(writer, rs.getString("toppings"));
+            writer.write(',');
+            writer.write(Integer.toString(rs.getInt("price")));
+            writer.write(',');
+            writer.write(Integer.toString(rs.getInt("quantity")));
+        } else {
+            writer.write(",,,,,");
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Write a CSV field, quoted only when it contains a separator, quote or line break.
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Write a JSON string literal, or null.
+     */
+    static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * The JSON line of the order being read. Only one order is held at a time.
+     */
+    private static class JsonOrder {
+        private final StringWriter items = new StringWriter();
+        private final long id;
+        private final String createdAt;
+        private final String customerName;
+        private final String paymentMethod;
+        private final int total;
+        private int itemCount;
+
+        JsonOrder(ResultSet rs) throws SQLException {
+            this.id = rs.getLong("id");
+            this.createdAt = rs.getString("created_at");
+            this.customerName = rs.getString("customer_name");
+            this.paymentMethod = rs.getString("payment_method");
+            this.total = rs.getInt("total");
+        }
+
+        void addItem(ResultSet rs) throws SQLException, IOException {
+            items.write(itemCount++ == 0 ? "{" : ",{");
+            items.write("\"id\":" + rs.getLong("item_id") + ",\"pizza_name\":");
+            writeJsonString(items, rs.getString("pizza_name"));
+            items.write(",\"size\":");
+            writeJsonString(items, rs.getString("size"));
+            items.write(",\"toppings\":");
+            writeJsonString(items, rs.getString("toppings"));
+            items.write(",\"price\":" + rs.getInt("price"));
+            items.write(",\"quantity\":" + rs.getInt("quantity") + "}");
+        }
+
+        void writeTo(Writer writer) throws IOException {
+            writer.write("{\"id\":" + id + ",\"created_at\":");
+            writeJsonString(writer, createdAt);
+            writer.write(",\"customer_name\":");
+            writeJsonString(writer, customerName);
+            writer.write(",\"payment_method\":");
+            writeJsonString(writer, paymentMethod);
+            writer.write(",\"total\":" + total + ",\"items\":[");
+            writer.write(items.toString());
+            writer.write("]}\n");
+        }
+    }
+
+    /**
+     * Command line export: {@code csv|jsonl <file> [from-date] [to-date]}.
+     * A file name ending in .gz is gzipped. Dates are inclusive, yyyy-MM-dd.
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 2) {
+            System.err.println("Usage: OrderExporter csv|jsonl <file> [from-date] [to-date]");
+            System.exit(2);
+        }
+        Format format = Format.valueOf(args[0].toUpperCase());
+        Path file = Path.of(args[1]);
+        LocalDateTime from = args.length > 2 ? LocalDate.parse(args[2]).atStartOfDay()
+                : LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime to = args.length > 3 ? LocalDate.parse(args[3]).plusDays(1).atStartOfDay()
+                : LocalDateTime.of(9999, 1, 1, 0, 0);
+
+        try {
+            ExportResult result = new OrderExporter(format, file.toString().endsWith(".gz"))
+                    .export(file, from, to);
+            System.out.println("✅ Exported " + result.getOrderCount() + " orders, " + result.getItemCount()
+                    + " items to " + file + " (resume cursor: " + result.getLastCursor() + ")");
+        } catch (ExportFailedException e) {
+            System.err.println("❌ " + e.getMessage() + " (resume cursor: " + e.getLastCursor() + ")");
+            throw e;
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of checked-out orders.
+ *
+ * Checkout appends one compact binary record and returns; the database is
+ * updated later by {@link OrderJournalFlusher}. The journal is split into
+ * numbered segment files (orders-N.journal) so fully flushed segments can
+ * simply be deleted.
+ *
+ * Record layout: [int payload length][int CRC32 of payload][payload].
+ * A torn record at the end of the last segment (crash mid-append) is cut
+ * off when the journal is opened. A record that can never be stored is
+ * copied to the dead-letter directory with {@link #deadLetter(Position)}
+ * and skipped.
+ */
+public class OrderJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_VERSION = 5;
+    /** Records written before orders carried an idempotency key. */
+    private static final int RECORD_VERSION_NO_KEY = 1;
+    /** Records written before orders carried a receipt number. */
+    private static final int RECORD_VERSION_NO_NUMBER = 2;
+    /** Records written before order lines carried a quantity. */
+    private static final int RECORD_VERSION_NO_QUANTITY = 3;
+    /** Records written before orders carried their checkout time. */
+    private static final int RECORD_VERSION_NO_TIME = 4;
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+    private final Path directory;
+    private final boolean syncOnAppend;
+    private final long maxSegmentBytes;
+
+    // Only used under the lock, by append and roll
+    private FileChannel activeChannel;
+    private long activeSegment;
+    private long activeEnd;
+    // Active segment and end of its last complete record, published together for readers
+    private volatile Position end;
+
+    /**
+     * Position of a record inside the journal.
+     */
+    public static class Position {
+        private final long segment;
+        private final long offset;
+
+        public Position(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public long getSegment() {
+            return segment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return segment + ":" + offset;
+        }
+    }
+
+    /**
+     * A decoded journal record and the position right after it.
+     */
+    public static class Entry {
+        private final OrderData order;
+        private final Position next;
+        private final int sizeBytes;
+
+        Entry(OrderData order, Position next, int sizeBytes) {
+            this.order = order;
+            this.next = next;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public OrderData getOrder() {
+            return order;
+        }
+
+        public Position getNext() {
+            return next;
+        }
+
+        public int getSizeBytes() {
+            return sizeBytes;
+        }
+    }
+
+    /**
+     * Records not yet read past some position, see {@link #count(Position)}.
+     */
+    public static class Backlog {
+        private final long entries;
+        private final long bytes;
+
+        Backlog(long entries, long bytes) {
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * A record whose length, checksum or contents are invalid. Reading it
+     * again will fail the same way.
+     */
+    public static class CorruptRecordException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Position position;
+
+        CorruptRecordException(String message, Position position, Throwable cause) {
+            super(message + " at " + position, cause);
+            this.position = position;
+        }
+
+        public Position getPosition() {
+            return position;
+        }
+    }
+
+    public OrderJournal(Path directory) throws IOException {
+        this(directory, true, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param directory       Directory holding the segment files
+     * @param syncOnAppend    fsync every record before append() returns
+     * @param maxSegmentBytes Segment size after which a new segment is started
+     */
+    public OrderJournal(Path directory, boolean syncOnAppend, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.syncOnAppend = syncOnAppend;
+        this.maxSegmentBytes = maxSegmentBytes;
+
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments();
+        long last = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        openActive(last);
+
+        // Cut off a torn record left by a crash in the middle of an append
+        long validEnd = scanValidEnd(segmentPath(last), activeChannel.size());
+        if (validEnd < activeChannel.size()) {
+            activeChannel.truncate(validEnd);
+            activeChannel.force(true);
+        }
+        activeEnd = validEnd;
+        end = new Position(activeSegment, activeEnd);
+    }
+
+    /**
+     * Append an order to the journal.
+     *
+     * @return Size of the new record in bytes
+     */
+    public synchronized int append(OrderData order) throws IOException {
+        byte[] payload = encode(order);
+        if (activeEnd > 0 && activeEnd + HEADER_BYTES + payload.length > maxSegmentBytes) {
+            roll();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+
+        while (record.hasRemaining()) {
+            activeChannel.write(record, activeEnd + record.position());
+        }
+        if (syncOnAppend) {
+            activeChannel.force(false);
+        }
+
+        activeEnd += HEADER_BYTES + payload.length;
+        end = new Position(activeSegment, activeEnd);
+        return record.limit();
+    }
+
+    /**
+     * Read up to maxEntries records starting at a position.
+     * Reading stops at the end of the segment; call {@link #hasSegmentAfter}
+     * to find out whether the reader should move on to the next one.
+     * Reading also stops before a corrupt record, and fails with a
+     * {@link CorruptRecordException} when it starts at one.
+     */
+    public List<Entry> read(Position from, int maxEntries) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Path path = segmentPath(from.getSegment());
+        if (!Files.exists(path)) {
+            return entries;
+        }
+
+        long segment = from.getSegment();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Only read records whose append has completed; segment and end from one snapshot
+            Position written = this.end;
+            long end = segment == written.getSegment() ? written.getOffset() : channel.size();
+            long offset = from.getOffset();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+            while (entries.size() < maxEntries && offset + HEADER_BYTES <= end) {
+                Position at = new Position(segment, offset);
+                OrderData order;
+                int length;
+                try {
+                    header.clear();
+                    readFully(channel, header, offset);
+                    header.flip();
+                    length = header.getInt();
+                    int expectedCrc = header.getInt();
+                    if (length < 0 || offset + HEADER_BYTES + length > end) {
+                        throw new CorruptRecordException("Corrupt journal record", at, null);
+                    }
+
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(channel, payload, offset + HEADER_BYTES);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload.array());
+                    if ((int) crc.getValue() != expectedCrc) {
+                        throw new CorruptRecordException("Journal checksum mismatch", at, null);
+                    }
+                    order = decodeRecord(payload.array(), at);
+                } catch (CorruptRecordException e) {
+                    // Hand out the good records first; the next read starts at the bad one
+                    if (!entries.isEmpty()) {
+                        break;
+                    }
+                    throw e;
+                }
+
+                offset += HEADER_BYTES + length;
+                entries.add(new Entry(order, new Position(segment, offset), HEADER_BYTES + length));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Copy the record at a position into the dead-letter directory, for a
+     * record that cannot be stored. The copy keeps the record layout, so it
+     * can be inspected or replayed by hand. If the record's length cannot be
+     * trusted, the rest of its segment is copied instead.
+     *
+     * @return Position right after what was copied
+     */
+    public Position deadLetter(Position at) throws IOException {
+        Path path = segmentPath(at.getSegment());
+        Path deadLetters = Files.createDirectories(getDeadLetterDirectory());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Position written = this.end;
+            long end = at.getSegment() == written.getSegment() ? written.getOffset() : channel.size();
+            long length = end - at.getOffset();
+            if (length >= HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                readFully(channel, header, at.getOffset());
+                header.flip();
+                int payloadLength = header.getInt();
+                if (payloadLength >= 0 && HEADER_BYTES + (long) payloadLength <= length) {
+                    length = HEADER_BYTES + payloadLength;
+                }
+            }
+
+            ByteBuffer record = ByteBuffer.allocate((int) Math.max(length, 0));
+            readFully(channel, record, at.getOffset());
+            Files.write(deadLetters.resolve(SEGMENT_PREFIX + at.getSegment() + "-" + at.getOffset() + SEGMENT_SUFFIX),
+                    record.array());
+            return new Position(at.getSegment(), at.getOffset() + record.capacity());
+        }
+    }
+
+    /**
+     * Directory holding the records moved aside by {@link #deadLetter(Position)}.
+     */
+    public Path getDeadLetterDirectory() {
+        return directory.resolve(DEAD_LETTER_DIR);
+    }
+
+    /**
+     * Number of records from a position to the end of the journal, and their
+     * size. Only the record headers are read: payloads are skipped, not
+     * checked or decoded, so this stays cheap for a large backlog. A header
+     * with an impossible length ends the count of its segment.
+     */
+    public Backlog count(Position from) throws IOException {
+        Position written = this.end;
+        long records = 0;
+        long bytes = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        for (long segment = from.getSegment(); segment <= written.getSegment(); segment++) {
+            Path path = segmentPath(segment);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long end = segment == written.getSegment() ? written.getOffset() : channel.size();
+                long offset = segment == from.getSegment() ? from.getOffset() : 0;
+                while (offset + HEADER_BYTES <= end) {
+                    header.clear();
+                    readFully(channel, header, offset);
+                    header.flip();
+                    int length = header.getInt();
+                    if (length < 0 || offset + HEADER_BYTES + length > end) {
+                        break;
+                    }
+                    offset += HEADER_BYTES + length;
+                    records++;
+                    bytes += HEADER_BYTES + length;
+                }
+            }
+        }
+        return new Backlog(records, bytes);
+    }
+
+    /**
+     * Position right after the last complete record.
+     */
+    public Position getEnd() {
+        return end;
+    }
+
+    /**
+     * Oldest segment still on disk.
+     */
+    public long getFirstSegment() throws IOException {
+        List<Long> segments = listSegments();
+        return segments.isEmpty() ? end.getSegment() : segments.get(0);
+    }
+
+    /**
+     * Whether a newer segment than the given one exists.
+     */
+    public boolean hasSegmentAfter(long segment) {
+        return end.getSegment() > segment;
+    }
+
+    /**
+     * Delete segments older than the given one; they have been fully flushed.
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long existing : listSegments()) {
+            if (existing < segment) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        activeChannel.close();
+    }
+
+    private void roll() throws IOException {
+        activeChannel.force(true);
+        activeChannel.close();
+        openActive(activeSegment + 1);
+        activeEnd = 0;
+        // Readers see the new segment only together with its empty end
+        end = new Position(activeSegment, 0);
+    }
+
+    private void openActive(long segment) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSegment = segment;
+    }
+
+    private long scanValidEnd(Path path, long size) throws IOException {
+        long offset = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (offset + HEADER_BYTES <= size) {
+                header.clear();
+                readFully(channel, header, offset);
+                header.flip();
+                int length = header.getInt();
+                int expectedCrc = header.getInt();
+                if (length < 0 || offset + HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, offset + HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                boolean last = offset + HEADER_BYTES + length == size;
+                if ((int) crc.getValue() != expectedCrc && last) {
+                    break;
+                }
+                // A damaged record with complete records after it was not torn by
+                // an append; it is kept for the flusher to move aside
+                offset += HEADER_BYTES + length;
+            }
+        }
+        return offset;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal segment");
+            }
+        }
+    }
+
+    static byte[] encode(OrderData order) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RECORD_VERSION);
+            writeNullable(out, order.getIdempotencyKey());
+            out.writeBoolean(order.getOrderNumber() != null);
+            if (order.getOrderNumber() != null) {
+                out.writeInt(order.getOrderNumber());
+            }
+            writeNullable(out, order.getCustomerName());
+            out.writeUTF(order.getPaymentMethod());
+            out.writeInt(order.getTotal());
+            out.writeInt(order.getItems().size());
+            for (OrderItemData item : order.getItems()) {
+                out.writeUTF(item.getPizzaName());
+                out.writeUTF(item.getSize());
+                writeNullable(out, item.getToppings());
+                out.writeInt(item.getPrice());
+                out.writeInt(item.getQuantity());
+            }
+            out.writeBoolean(order.getCreatedAt() != null);
+            if (order.getCreatedAt() != null) {
+                out.writeLong(order.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static OrderData decodeRecord(byte[] payload, Position at) throws CorruptRecordException {
+        try {
+            return decode(payload);
+        } catch (IOException | RuntimeException e) {
+            throw new CorruptRecordException("Unreadable journal record (" + e.getMessage() + ")", at, e);
+        }
+    }
+
+    static OrderData decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int version = in.readUnsignedByte();
+            if (version < RECORD_VERSION_NO_KEY || version > RECORD_VERSION) {
+                throw new IOException("Unsupported journal record version: " + version);
+            }
+            String idempotencyKey = version == RECORD_VERSION_NO_KEY ? null : readNullable(in);
+            Integer orderNumber = version > RECORD_VERSION_NO_NUMBER && in.readBoolean() ? in.readInt() : null;
+            String customerName = readNullable(in);
+            String paymentMethod = in.readUTF();
+            int total = in.readInt();
+            int itemCount = in.readInt();
+            List<OrderItemData> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                String pizzaName = in.readUTF();
+                String size = in.readUTF();
+                String toppings = readNullable(in);
+                int price = in.readInt();
+                int quantity = version > RECORD_VERSION_NO_QUANTITY ? in.readInt() : 1;
+                items.add(new OrderItemData(pizzaName, size, toppings, price, quantity));
+            }
+            // Older records fall back to the time they are written to the database
+            LocalDateTime createdAt = version > RECORD_VERSION_NO_TIME && in.readBoolean()
+                    ? LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC)
+                    : null;
+            return new OrderData(customerName, paymentMethod, total, items, idempotencyKey, orderNumber, createdAt);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,417 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.OrderJournal.Entry;
+import com.pizza.infra.db.OrderJournal.Position;
+import com.pizza.infra.db.OrderRepository.OrderData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind writer for checked-out orders.
+ *
+ * Checkout calls {@link #submit(OrderData)}, which only appends to the local
+ * {@link OrderJournal}. A background thread drains the journal into SQLite
+ * in batches; the journal position reached is stored in journal_checkpoint
+ * in the same transaction as the orders, so a crash can never flush an
+ * entry twice or skip one. On start, entries not yet flushed are replayed.
+ *
+ * A busy database or an I/O error is retried for as long as it lasts. Any
+ * other failure is retried a few times; then the batch is retried one order
+ * at a time, and the order that still fails is copied to the journal's
+ * dead-letter directory and skipped, so one bad record cannot hold back
+ * every order journaled after it.
+ */
+public class OrderJournalFlusher implements Closeable {
+    private static final Path DEFAULT_JOURNAL_DIR = Path.of("order-journal");
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final long DEFAULT_POLL_INTERVAL_MS = 200;
+    /** Failed batches are retried after this many poll intervals. */
+    private static final int RETRY_DELAY_POLLS = 5;
+    private static final int MAX_FAILED_ATTEMPTS = 3;
+
+    private static final String READ_CHECKPOINT_SQL =
+            "SELECT segment, file_offset FROM journal_checkpoint WHERE id = 1";
+    private static final String WRITE_CHECKPOINT_SQL = """
+            INSERT INTO journal_checkpoint (id, segment, file_offset) VALUES (1, ?, ?)
+            ON CONFLICT(id) DO UPDATE SET segment = excluded.segment, file_offset = excluded.file_offset
+            """;
+
+    private static OrderJournalFlusher instance;
+
+    private final OrderJournal journal;
+    private final OrderRepository repository;
+    private final int maxBatchSize;
+    private final long pollIntervalMs;
+
+    private final Object signal = new Object();
+    private final AtomicLong pendingEntries = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile Position flushedPosition;
+    private volatile boolean running = false;
+    private Thread flushThread;
+
+    // Failure tracking, only used by the thread that flushes
+    private Position failedAt;
+    private int failedAttempts;
+    private int lastBatchEntries;
+    /** Orders still to be flushed one at a time to find the one that fails. */
+    private int isolatedEntries;
+
+    public OrderJournalFlusher(OrderJournal journal, OrderRepository repository,
+            int maxBatchSize, long pollIntervalMs) {
+        this.journal = journal;
+        this.repository = repository;
+        this.maxBatchSize = maxBatchSize;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /**
+     * Get the application-wide flusher, started on first use.
+     */
+    public static synchronized OrderJournalFlusher getInstance() throws IOException, SQLException {
+        if (instance == null) {
+            OrderJournalFlusher flusher = new OrderJournalFlusher(
+                    new OrderJournal(DEFAULT_JOURNAL_DIR), new OrderRepository(),
+                    DEFAULT_BATCH_SIZE, DEFAULT_POLL_INTERVAL_MS);
+            flusher.start();
+            instance = flusher;
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the application-wide flusher, if it was started.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            try {
+                instance.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            instance = null;
+        }
+    }
+
+    /**
+     * Replay every entry not yet flushed, then start the background flusher.
+     */
+    public synchronized void start() throws IOException, SQLException {
+        if (running) {
+            return;
+        }
+        flushedPosition = readCheckpoint();
+        Position end = journal.getEnd();
+        if (isAfter(flushedPosition, end)) {
+            // Journal files were removed or recreated; everything on disk now is new
+            System.err.println("⚠️ Journal checkpoint " + flushedPosition + " is past the journal end " + end
+                    + ", replaying from the oldest segment");
+            flushedPosition = new Position(journal.getFirstSegment(), 0);
+        }
+        countPending();
+
+        // Replay synchronously so the database is complete before service starts
+        while (true) {
+            try {
+                if (flushOnce() == 0) {
+                    break;
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                handleFailure(e);
+            }
+        }
+
+        running = true;
+        flushThread = new Thread(this::runFlushLoop, "order-journal-flusher");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Record a checked-out order. Returns once the journal append is durable;
+     * the database write happens later on the flusher thread.
+     */
+    public void submit(OrderData order) throws IOException {
+        // Count first so the flusher can never drive the lag below zero
+        pendingEntries.incrementAndGet();
+        try {
+            pendingBytes.addAndGet(journal.append(order));
+        } catch (IOException e) {
+            pendingEntries.decrementAndGet();
+            throw e;
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * Number of journal entries not yet written to SQLite.
+     */
+    public long getPendingEntries() {
+        return pendingEntries.get();
+    }
+
+    /**
+     * Number of journal bytes not yet written to SQLite.
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Wait until everything submitted so far has been flushed.
+     *
+     * @return true if the journal lag reached zero before the timeout
+     */
+    public boolean awaitFlushed(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        while (pendingEntries.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Stop the flusher thread after a final drain and close the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            running = false;
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        if (flushThread != null) {
+            try {
+                flushThread.join(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    private void runFlushLoop() {
+        while (running) {
+            try {
+                if (flushOnce() == 0) {
+                    synchronized (signal) {
+                        if (running && pendingEntries.get() == 0) {
+                            signal.wait(pollIntervalMs);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException | IOException | RuntimeException e) {
+                // The thread must outlive any error, or orders would be accepted and never stored
+                handleFailure(e);
+            }
+        }
+
+        // Final drain on shutdown
+        try {
+            while (flushOnce() > 0) {
+                // keep draining
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            System.err.println("❌ Order journal final flush failed, entries will be replayed: " + e);
+        }
+    }
+
+    /**
+     * Flush one batch from the journal.
+     *
+     * @return Number of entries written to the database
+     */
+    private int flushOnce() throws IOException, SQLException {
+        Position from = flushedPosition;
+        lastBatchEntries = 0;
+        // Check for a newer segment before reading: if one existed, this read
+        // saw the complete segment and an empty result means it is finished
+        boolean rolledOver = journal.hasSegmentAfter(from.getSegment());
+        List<Entry> entries = journal.read(from, isolatedEntries > 0 ? 1 : maxBatchSize);
+        lastBatchEntries = entries.size();
+
+        if (entries.isEmpty()) {
+            if (rolledOver) {
+                Position next = new Position(from.getSegment() + 1, 0);
+                try (Connection conn = SQLiteConnection.getConnection()) {
+                    writeCheckpoint(conn, next);
+                }
+                flushedPosition = next;
+                journal.deleteSegmentsBefore(next.getSegment());
+            }
+            return 0;
+        }
+
+        List<OrderData> orders = new ArrayList<>(entries.size());
+        long bytes = 0;
+        for (Entry entry : entries) {
+            orders.add(entry.getOrder());
+            bytes += entry.getSizeBytes();
+        }
+        Position next = entries.get(entries.size() - 1).getNext();
+
+        // Orders and checkpoint commit together, so a busy attempt can simply run again
+        RetryPolicy.getDefault().execute("journal flush", () -> {
+            try (Connection conn = SQLiteConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    OrderRepository.ToppingIds toppings = repository.newToppingIds();
+                    List<Integer> ids = repository.insertOrders(conn, orders, toppings);
+                    writeCheckpoint(conn, next);
+                    conn.commit();
+                    toppings.publish();
+                    repository.rememberKeys(orders, ids);
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+
+        flushedPosition = next;
+        pendingEntries.addAndGet(-entries.size());
+        pendingBytes.addAndGet(-bytes);
+        failedAt = null;
+        if (isolatedEntries > 0) {
+            isolatedEntries--;
+        }
+        return entries.size();
+    }
+
+    /**
+     * Wait before retrying a failed batch, narrowing a failure that keeps
+     * coming back down to one order and moving that order aside.
+     */
+    private void handleFailure(Exception e) {
+        long retryDelayMs = RETRY_DELAY_POLLS * pollIntervalMs;
+        if (isTransient(e)) {
+            // Entries stay in the journal and are retried, nothing is lost
+            System.err.println("❌ Order journal flush failed: " + e);
+            sleepQuietly(retryDelayMs);
+            return;
+        }
+
+        Position at = flushedPosition;
+        if (failedAt == null || failedAt.getSegment() != at.getSegment() || failedAt.getOffset() != at.getOffset()) {
+            failedAt = at;
+            failedAttempts = 0;
+        }
+        failedAttempts++;
+        System.err.println("❌ Order journal flush failed at " + at
+                + " (attempt " + failedAttempts + "/" + MAX_FAILED_ATTEMPTS + "): " + e);
+        if (failedAttempts < MAX_FAILED_ATTEMPTS) {
+            sleepQuietly(retryDelayMs);
+            return;
+        }
+
+        failedAttempts = 0;
+        if (isolatedEntries == 0 && lastBatchEntries > 1) {
+            isolatedEntries = lastBatchEntries;
+            System.err.println("⚠️ Retrying " + lastBatchEntries + " journal entries one at a time from " + at);
+            return;
+        }
+        try {
+            skipRecord(at, e);
+        } catch (SQLException | IOException | RuntimeException skipError) {
+            System.err.println("❌ Could not move journal record at " + at + " aside: " + skipError);
+            sleepQuietly(retryDelayMs);
+        }
+    }
+
+    /**
+     * Copy the record at a position to the dead-letter directory and move
+     * the checkpoint past it.
+     */
+    private void skipRecord(Position at, Exception cause) throws IOException, SQLException {
+        Position next = journal.deadLetter(at);
+        try (Connection conn = SQLiteConnection.getConnection()) {
+            writeCheckpoint(conn, next);
+        }
+        flushedPosition = next;
+        failedAt = null;
+        if (isolatedEntries > 0) {
+            isolatedEntries--;
+        }
+        long skippedBytes = next.getOffset() - at.getOffset();
+        pendingEntries.updateAndGet(n -> Math.max(0, n - 1));
+        pendingBytes.updateAndGet(n -> Math.max(0, n - skippedBytes));
+        System.err.println("❌ Journal record at " + at + " failed " + MAX_FAILED_ATTEMPTS
+                + " times and was moved to " + journal.getDeadLetterDirectory() + ": " + cause);
+    }
+
+    /**
+     * Whether a failure may go away by itself: a busy database or an I/O
+     * error other than a corrupt record.
+     */
+    private static boolean isTransient(Exception e) {
+        if (e instanceof SQLException sql) {
+            return RetryPolicy.isBusy(sql);
+        }
+        return e instanceof IOException && !(e instanceof OrderJournal.CorruptRecordException);
+    }
+
+    private void countPending() throws IOException {
+        OrderJournal.Backlog backlog = journal.count(flushedPosition);
+        pendingEntries.set(backlog.getEntries());
+        pendingBytes.set(backlog.getBytes());
+    }
+
+    private static boolean isAfter(Position a, Position b) {
+        return a.getSegment() > b.getSegment()
+                || (a.getSegment() == b.getSegment() && a.getOffset() > b.getOffset());
+    }
+
+    private Position readCheckpoint() throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(READ_CHECKPOINT_SQL);
+                ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return new Position(rs.getLong("segment"), rs.getLong("file_offset"));
+            }
+        }
+        return new Position(0, 0);
+    }
+
+    private static void writeCheckpoint(Connection conn, Position position) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(WRITE_CHECKPOINT_SQL)) {
+            stmt.setLong(1, position.getSegment());
+            stmt.setLong(2, position.getOffset());
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.pizza.infra.db;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receipt numbers ("Đơn #0042") that are unique across terminals and
+ * restarts.
+ *
+ * Numbers come from one counter in order_number_sequence, but a terminal
+ * takes a whole block of them at a time and hands them out from memory, so
+ * a checkout never waits on the database for its number. Every block is
+ * recorded in order_number_blocks with the terminal that owns it, and the
+ * highest number actually saved with an order is stored as last_used in the
+ * same transaction as that order.
+ *
+ * After a crash the terminal's open block is resumed right after last_used:
+ * numbers handed out but never saved are reclaimed, numbers saved are never
+ * reused. The orders journal must be replayed first (see
+ * {@link OrderJournalFlusher#start()}), otherwise last_used lags behind.
+ * A terminal taken out of service is retired; the rest of its block is
+ * recorded as a gap ({@link #findGaps()}).
+ *
+ * The terminal id must be unique among running terminals.
+ *
+ * DESIGN PATTERN: Singleton - one sequence per terminal process.
+ */
+public class OrderNumberSequence {
+    static final String STATUS_OPEN = "open";
+    static final String STATUS_USED = "used";
+    static final String STATUS_RETIRED = "retired";
+
+    private static final int DEFAULT_BLOCK_SIZE = 50;
+    private static final String TERMINAL_PROPERTY = "pizza.terminal.id";
+    private static final String DEFAULT_TERMINAL_ID = "pos-1";
+
+    private static final String RESERVE_SQL = """
+            UPDATE order_number_sequence SET next_value = next_value + ? WHERE id = 1
+            RETURNING next_value
+            """;
+    private static final String INSERT_BLOCK_SQL = """
+            INSERT INTO order_number_blocks (block_start, block_end, terminal_id, status)
+            VALUES (?, ?, ?, 'open')
+            """;
+    private static final String CLOSE_BLOCK_SQL = """
+            UPDATE order_number_blocks SET status = ?, closed_at = CURRENT_TIMESTAMP
+            WHERE block_start = ? AND status = 'open'
+            """;
+    private static final String OPEN_BLOCKS_SQL = """
+            SELECT block_start, block_end, last_used FROM order_number_blocks
+            WHERE terminal_id = ? AND status = 'open' ORDER BY block_start
+            """;
+    private static final String GAPS_SQL = """
+            SELECT terminal_id, COALESCE(last_used + 1, block_start), block_end FROM order_number_blocks
+            WHERE status = 'retired' AND COALESCE(last_used, block_start - 1) < block_end
+            ORDER BY block_start
+            """;
+
+    /** Raise last_used of the block holding a number; run with each saved order. */
+    static final String RECORD_USED_SQL = """
+            UPDATE order_number_blocks SET last_used = MAX(COALESCE(last_used, 0), ?)
+            WHERE block_start = (SELECT MAX(block_start) FROM order_number_blocks WHERE block_start <= ?)
+              AND block_end >= ?
+            """;
+
+    private static OrderNumberSequence instance;
+
+    private final String terminalId;
+    private final int blockSize;
+    private boolean recovered = false;
+    private int blockStart = 0;
+    private int blockEnd = -1;
+    private int nextValue = 0;
+
+    /**
+     * @param terminalId Id of this terminal, unique among running terminals
+     * @param blockSize  Numbers reserved per database round trip
+     */
+    public OrderNumberSequence(String terminalId, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        this.terminalId = terminalId;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * The sequence of this terminal; its id is the pizza.terminal.id system
+     * property, or the host name.
+     */
+    public static synchronized OrderNumberSequence getInstance() {
+        if (instance == null) {
+            instance = new OrderNumberSequence(defaultTerminalId(), DEFAULT_BLOCK_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Unused numbers of a retired terminal's last block.
+     */
+    public static class Gap {
+        private final String terminalId;
+        private final int first;
+        private final int last;
+
+        Gap(String terminalId, int first, int last) {
+            this.terminalId = terminalId;
+            this.first = first;
+            this.last = last;
+        }
+
+        public String getTerminalId() {
+            return terminalId;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getLast() {
+            return last;
+        }
+
+        @Override
+        public String toString() {
+            return terminalId + ": " + first + "-" + last;
+        }
+    }
+
+    /**
+     * Take the next number. Only goes to the database when the block is used up.
+     */
+    public synchronized int next() throws SQLException {
+        ensureAvailable();
+        return nextValue++;
+    }
+
+    /**
+     * The number {@link #next()} will return, e.g. for display before checkout.
+     */
+    public synchronized int peek() throws SQLException {
+        ensureAvailable();
+        return nextValue;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    /**
+     * Numbers left in the current block before the next reservation.
+     */
+    public synchronized int getRemaining() {
+        return recovered ? blockEnd - nextValue + 1 : 0;
+    }
+
+    /**
+     * Take this terminal out of service: its open block is closed and the
+     * numbers it never used are recorded as a gap. The next call to
+     * {@link #next()} reserves a fresh block.
+     */
+    public synchronized void retire() throws SQLException {
+        RetryPolicy.getDefault().execute("retire order numbers", () -> {
+            try (Connection conn = SQLiteConnection.getConnection();
+                    PreparedStatement find = conn.prepareStatement(OPEN_BLOCKS_SQL);
+                    PreparedStatement close = conn.prepareStatement(CLOSE_BLOCK_SQL)) {
+                find.setString(1, terminalId);
+                try (ResultSet rs = find.executeQuery()) {
+                    while (rs.next()) {
+                        closeBlock(close, rs.getInt("block_start"), STATUS_RETIRED);
+                    }
+                }
+                return null;
+            }
+        });
+        recovered = false;
+        blockEnd = -1;
+    }
+
+    /**
+     * Numbers that were reserved but never used by retired terminals.
+     */
+    public static List<Gap> findGaps() throws SQLException {
+        List<Gap> gaps = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(GAPS_SQL);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                gaps.add(new Gap(rs.getString(1), rs.getInt(2), rs.getInt(3)));
+            }
+        }
+        return gaps;
+    }
+
+    /**
+     * Raise last_used of the block holding {@code number}; called by
+     * {@link OrderRepository} inside the transaction that saves the order.
+     */
+    static void recordUsed(PreparedStatement stmt, int number) throws SQLException {
+        stmt.setInt(1, number);
+        stmt.setInt(2, number);
+        stmt.setInt(3, number);
+        stmt.executeUpdate();
+    }
+
+    private void ensureAvailable() throws SQLException {
+        if (!recovered) {
+            recover();
+        }
+        if (nextValue > blockEnd) {
+            reserveBlock();
+        }
+    }
+
+    /**
+     * Resume the block this terminal left open, after the last number saved.
+     */
+    private void recover() throws SQLException {
+        RetryPolicy.getDefault().execute("recover order numbers", () -> {
+            try (Connection conn = SQLiteConnection.getConnection();
+                    PreparedStatement find = conn.prepareStatement(OPEN_BLOCKS_SQL);
+                    PreparedStatement close = conn.prepareStatement(CLOSE_BLOCK_SQL)) {
+                conn.setAutoCommit(false);
+                try {
+                    blockEnd = -1;
+                    find.setString(1, terminalId);
+                    List<int[]> open = new ArrayList<>();
+                    try (ResultSet rs = find.executeQuery()) {
+                        while (rs.next()) {
+                            int start = rs.getInt("block_start");
+                            int lastUsed = rs.getObject("last_used") == null ? start - 1 : rs.getInt("last_used");
+                            open.add(new int[] { start, rs.getInt("block_end"), Math.max(start, lastUsed + 1) });
+                        }
+                    }
+                    for (int[] block : open) {
+                        if (blockEnd < 0 && block[2] <= block[1]) {
+                            blockStart = block[0];
+                            blockEnd = block[1];
+                            nextValue = block[2];
+                        } else {
+                            closeBlock(close, block[0], STATUS_USED);
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                return null;
+            }
+        });
+        recovered = true;
+        if (blockEnd >= 0) {
+            System.out.println("✅ Order numbers of " + terminalId + ": resuming block " + blockStart + "-"
+                    + blockEnd + " at " + nextValue);
+        }
+    }
+
+    /**
+     * Reserve the next block and close the used-up one, in one transaction.
+     */
+    private void reserveBlock() throws SQLException {
+        int previous = blockEnd >= 0 ? blockStart : -1;
+        int start = RetryPolicy.getDefault().execute("reserve order numbers", () -> {
+            try (Connection conn = SQLiteConnection.getConnection();
+                    PreparedStatement reserve = conn.prepareStatement(RESERVE_SQL);
+                    PreparedStatement insert = conn.prepareStatement(INSERT_BLOCK_SQL);
+                    PreparedStatement close = conn.prepareStatement(CLOSE_BLOCK_SQL)) {
+                conn.setAutoCommit(false);
+                try {
+                    int first;
+                    reserve.setInt(1, blockSize);
+                    try (ResultSet rs = reserve.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("order_number_sequence is missing its row");
+                        }
+                        first = rs.getInt(1) - blockSize;
+                    }
+                    insert.setInt(1, first);
+                    insert.setInt(2, first + blockSize - 1);
+                    insert.setString(3, terminalId);
+                    insert.executeUpdate();
+                    if (previous >= 0) {
+                        closeBlock(close, previous, STATUS_USED);
+                    }
+                    conn.commit();
+                    return first;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+        blockStart = start;
+        blockEnd = start + blockSize - 1;
+        nextValue = start;
+    }
+
+    private static void closeBlock(PreparedStatement close, int blockStart, String status) throws SQLException {
+        close.setString(1, status);
+        close.setInt(2, blockStart);
+        close.executeUpdate();
+    }
+
+    private static String defaultTerminalId() {
+        String configured = System.getProperty(TERMINAL_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return DEFAULT_TERMINAL_ID;
+        }
+    }
+
+    /**
+     * Command line: {@code gaps}, or {@code retire <terminal-id>} for a
+     * terminal that will not come back.
+     */
+    public static void main(String[] args) throws Exception {
+        try {
+            if (args.length == 2 && "retire".equals(args[0])) {
+                new OrderNumberSequence(args[1], DEFAULT_BLOCK_SIZE).retire();
+                System.out.println("✅ Terminal " + args[1] + " retired");
+            }
+            List<Gap> gaps = findGaps();
+            System.out.println("📊 " + gaps.size() + " order number gaps" + (gaps.isEmpty() ? "" : ": " + gaps));
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+    }
+}
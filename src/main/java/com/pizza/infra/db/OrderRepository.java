@@ -1,6 +1,5 @@
 package com.pizza.infra.db;
 
-import com.pizza.domain.decorator.ToppingDecorator;
 import com.pizza.domain.pizza.Pizza;
 
 import java.sql.Connection;
@@ -8,21 +7,497 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Repository for persisting orders to SQLite database.
  * Follows Repository pattern for data access abstraction.
  */
 public class OrderRepository {
+    private static final String WALK_IN_CUSTOMER = "Khách vãng lai";
+    private static final String TOPPING_SEPARATOR = ", ";
+
+    // A repeated idempotency key inserts nothing and returns no row
+    private static final String INSERT_ORDER_SQL = """
+            INSERT INTO orders (customer_name, payment_method, total, idempotency_key, order_number, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (idempotency_key) DO NOTHING
+            RETURNING id, created_at
+            """;
+
+    static final String FIND_ORDER_BY_KEY_SQL = "SELECT id FROM orders WHERE idempotency_key = ?";
+
+    /** Idempotency keys remembered per repository, most recent checkouts only. */
+    private static final int RECENT_KEYS_CAPACITY = 1_024;
+
+    private static final String INSERT_ITEM_SQL = """
+            INSERT INTO order_items (order_id, pizza_name, size, toppings, price, quantity)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_ITEM_TOPPING_SQL = """
+            INSERT INTO order_item_toppings (order_item_id, topping_id, quantity)
+            VALUES (?, ?, ?)
+            ON CONFLICT(order_item_id, topping_id) DO UPDATE SET quantity = excluded.quantity
+            """;
+
+    private static final String FIND_TOPPING_ID_SQL = "SELECT id FROM toppings WHERE name = ?";
+    private static final String INSERT_TOPPING_SQL = "INSERT INTO toppings (name) VALUES (?)";
+
+    // Lookup queries; each one must be served by an index (see SchemaMigrator v2)
+    static final String FIND_ITEMS_BY_ORDER_SQL = """
+            SELECT pizza_name, size, toppings, price, quantity FROM order_items
+            WHERE order_id = ?
+            ORDER BY id
+            """;
+
+    static final String FIND_ORDERS_BETWEEN_SQL = """
+            SELECT id, customer_name, payment_method, total, created_at FROM orders
+            WHERE created_at >= ? AND created_at < ?
+            ORDER BY created_at, id
+            """;
+
+    static final String FIND_ORDERS_BY_PAYMENT_SQL = """
+            SELECT id, customer_name, payment_method, total, created_at FROM orders
+            WHERE payment_method = ? AND created_at >= ? AND created_at < ?
+            ORDER BY created_at, id
+            """;
+
+    static final String COUNT_TOPPINGS_SOLD_SQL = """
+            SELECT t.name, SUM(oit.quantity * i.quantity) AS sold FROM orders o
+            JOIN order_items i ON i.order_id = o.id
+            JOIN order_item_toppings oit ON oit.order_item_id = i.id
+            JOIN toppings t ON t.id = oit.topping_id
+            WHERE o.created_at >= ? AND o.created_at < ?
+            GROUP BY t.name
+            ORDER BY sold DESC
+            """;
+
+    /** Same text format as SQLite's CURRENT_TIMESTAMP, so range comparisons work on the stored strings. */
+    private static final DateTimeFormatter DB_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Topping name -> toppings.id of committed rows; names never change id once inserted. */
+    private final Map<String, Integer> toppingIds = new ConcurrentHashMap<>();
+
+    /**
+     * Idempotency key -> order id of recently committed orders, so a repeated
+     * checkout is answered without touching the database. A new key costs no
+     * extra query: the unique index settles it inside the INSERT.
+     */
+    private final Map<String, Integer> recentKeys = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > RECENT_KEYS_CAPACITY;
+                }
+            });
+
+    private final RetryPolicy retryPolicy;
+    private final CheckoutActivity activity = CheckoutActivity.getInstance();
+
+    public OrderRepository() {
+        this(RetryPolicy.getDefault());
+    }
+
+    /**
+     * @param retryPolicy Policy for writes that find the database locked by another writer
+     */
+    public OrderRepository(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Order header plus its lines, flattened from the decorated pizzas.
+     * This is the unit written by saveOrders() and by bulk/replay ingestion.
+     */
+    public static class OrderData {
+        private final String customerName;
+        private final String paymentMethod;
+        private final int total;
+        private final List<OrderItemData> items;
+        private final String idempotencyKey;
+        private final Integer orderNumber;
+        private final LocalDateTime createdAt;
+
+        public OrderData(String customerName, String paymentMethod, int total, List<OrderItemData> items) {
+            this(customerName, paymentMethod, total, items, null, null);
+        }
+
+        /**
+         * @param idempotencyKey Client-generated key of the checkout, or null;
+         *                       saving the same key again returns the first order
+         */
+        public OrderData(String customerName, String paymentMethod, int total, List<OrderItemData> items,
+                String idempotencyKey) {
+            this(customerName, paymentMethod, total, items, idempotencyKey, null);
+        }
+
+        /**
+         * @param orderNumber Number printed on the receipt, from {@link OrderNumberSequence}, or null
+         */
+        public OrderData(String customerName, String paymentMethod, int total, List<OrderItemData> items,
+                String idempotencyKey, Integer orderNumber) {
+            this(customerName, paymentMethod, total, items, idempotencyKey, orderNumber, null);
+        }
+
+        /**
+         * @param createdAt Checkout time in UTC, or null to use the time the order is saved
+         */
+        public OrderData(String customerName, String paymentMethod, int total, List<OrderItemData> items,
+                String idempotencyKey, Integer orderNumber, LocalDateTime createdAt) {
+            this.customerName = customerName;
+            this.paymentMethod = paymentMethod;
+            this.total = total;
+            this.items = List.copyOf(items);
+            this.idempotencyKey = idempotencyKey;
+            this.orderNumber = orderNumber;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * Same order carrying a checkout's idempotency key.
+         */
+        public OrderData withIdempotencyKey(String key) {
+            return new OrderData(customerName, paymentMethod, total, items, key, orderNumber, createdAt);
+        }
+
+        /**
+         * Same order carrying its receipt number.
+         */
+        public OrderData withOrderNumber(int number) {
+            return new OrderData(customerName, paymentMethod, total, items, idempotencyKey, number, createdAt);
+        }
+
+        /**
+         * Same order stamped with its checkout time (UTC), so an order written
+         * late (after a crash or a journal backlog) keeps the day it was sold.
+         */
+        public OrderData withCreatedAt(LocalDateTime time) {
+            return new OrderData(customerName, paymentMethod, total, items, idempotencyKey, orderNumber, time);
+        }
+
+        /**
+         * Build order data from the pizzas in a cart.
+         */
+        public static OrderData fromPizzas(String customerName, String paymentMethod,
+                List<Pizza> pizzas, int total) {
+            List<OrderItemData> items = new ArrayList<>(pizzas.size());
+            for (Pizza pizza : pizzas) {
+                items.add(OrderItemData.fromPizza(pizza, 1));
+            }
+            return new OrderData(customerName, paymentMethod, total, items);
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public String getPaymentMethod() {
+            return paymentMethod;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<OrderItemData> getItems() {
+            return items;
+        }
+
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+
+        public Integer getOrderNumber() {
+            return orderNumber;
+        }
+
+        /**
+         * Checkout time in UTC, or null if the order was not stamped.
+         */
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    /**
+     * One order line as stored in order_items.
+     */
+    public static class OrderItemData {
+        private final String pizzaName;
+        private final String size;
+        private final String toppings;
+        private final List<String> toppingNames;
+        private final int price;
+        private final int quantity;
+
+        /**
+         * @param toppings Comma-joined topping names as stored in order_items, or null
+         */
+        public OrderItemData(String pizzaName, String size, String toppings, int price) {
+            this(pizzaName, size, toppings, price, 1);
+        }
+
+        /**
+         * @param toppings Comma-joined topping names as stored in order_items, or null
+         * @param price    Price of one pizza
+         * @param quantity Number of identical pizzas on the line
+         */
+        public OrderItemData(String pizzaName, String size, String toppings, int price, int quantity) {
+            this(pizzaName, size, toppings, splitToppings(toppings), price, quantity);
+        }
+
+        private OrderItemData(String pizzaName, String size, String toppings, List<String> toppingNames,
+                int price, int quantity) {
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+            }
+            this.pizzaName = pizzaName;
+            this.size = size;
+            this.toppings = toppings;
+            this.toppingNames = List.copyOf(toppingNames);
+            this.price = price;
+            this.quantity = quantity;
+        }
+
+        /**
+         * Build an item from topping names in the order they were added.
+         */
+        public static OrderItemData withToppings(String pizzaName, String size, List<String> toppingNames, int price) {
+            return withToppings(pizzaName, size, toppingNames, price, 1);
+        }
+
+        /**
+         * Build a line of identical pizzas from topping names in the order they were added.
+         */
+        public static OrderItemData withToppings(String pizzaName, String size, List<String> toppingNames,
+                int price, int quantity) {
+            return new OrderItemData(pizzaName, size,
+                    toppingNames.isEmpty() ? null : String.join(TOPPING_SEPARATOR, toppingNames),
+                    toppingNames, price, quantity);
+        }
+
+        /**
+         * Build a line of identical pizzas from a cart pizza.
+         */
+        public static OrderItemData fromPizza(Pizza pizza, int quantity) {
+            // Decorators and shared pizzas both report the base name and every topping
+            return withToppings(pizza.getName(), pizza.getSize().name(), pizza.getToppingList(),
+                    pizza.getPrice(), quantity);
+        }
+
+        public String getPizzaName() {
+            return pizzaName;
+        }
+
+        public String getSize() {
+            return size;
+        }
+
+        public String getToppings() {
+            return toppings;
+        }
+
+        /**
+         * Topping names in the order they were added; a topping added twice appears twice.
+         */
+        public List<String> getToppingNames() {
+            return toppingNames;
+        }
+
+        /**
+         * Price of one pizza on the line.
+         */
+        public int getPrice() {
+            return price;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * Price times quantity.
+         */
+        public int getLineTotal() {
+            return price * quantity;
+        }
+    }
+
+    /**
+     * A stored order header, as read back from the orders table.
+     */
+    public static class OrderSummary {
+        private final int id;
+        private final String customerName;
+        private final String paymentMethod;
+        private final int total;
+        private final String createdAt;
+
+        public OrderSummary(int id, String customerName, String paymentMethod, int total, String createdAt) {
+            this.id = id;
+            this.customerName = customerName;
+            this.paymentMethod = paymentMethod;
+            this.total = total;
+            this.createdAt = createdAt;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public String getPaymentMethod() {
+            return paymentMethod;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public String getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    /**
+     * Filter for the order history. Null fields are not filtered on.
+     */
+    public static class OrderHistoryFilter {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final String customerName;
+        private final String paymentMethod;
+
+        /**
+         * @param from          Earliest created_at, inclusive
+         * @param to            Latest created_at, exclusive
+         * @param customerName  Exact customer name
+         * @param paymentMethod Exact payment method
+         */
+        public OrderHistoryFilter(LocalDateTime from, LocalDateTime to, String customerName, String paymentMethod) {
+            this.from = from;
+            this.to = to;
+            this.customerName = customerName;
+            this.paymentMethod = paymentMethod;
+        }
+
+        /**
+         * No filter: every order.
+         */
+        public static OrderHistoryFilter all() {
+            return new OrderHistoryFilter(null, null, null, null);
+        }
+    }
+
+    /**
+     * Keyset position in the order history: the (created_at, id) of the last
+     * order on the previous page.
+     */
+    public static class PageToken {
+        private final String createdAt;
+        private final int orderId;
+
+        public PageToken(String createdAt, int orderId) {
+            this.createdAt = createdAt;
+            this.orderId = orderId;
+        }
+
+        /**
+         * Parse a token written by {@link #toString()}.
+         */
+        public static PageToken parse(String token) {
+            int split = token.lastIndexOf('|');
+            if (split < 0) {
+                throw new IllegalArgumentException("Invalid page token: " + token);
+            }
+            return new PageToken(token.substring(0, split), Integer.parseInt(token.substring(split + 1)));
+        }
+
+        public String getCreatedAt() {
+            return createdAt;
+        }
+
+        public int getOrderId() {
+            return orderId;
+        }
+
+        @Override
+        public String toString() {
+            return createdAt + "|" + orderId;
+        }
+    }
+
+    /**
+     * An order header with its lines.
+     */
+    public static class OrderDetail {
+        private final OrderSummary summary;
+        private final List<OrderItemData> items;
+
+        public OrderDetail(OrderSummary summary, List<OrderItemData> items) {
+            this.summary = summary;
+            this.items = List.copyOf(items);
+        }
+
+        public OrderSummary getSummary() {
+            return summary;
+        }
+
+        public List<OrderItemData> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * One page of order history, newest first.
+     */
+    public static class OrderPage {
+        private final List<OrderDetail> orders;
+        private final PageToken next;
+
+        public OrderPage(List<OrderDetail> orders, PageToken next) {
+            this.orders = List.copyOf(orders);
+            this.next = next;
+        }
+
+        public List<OrderDetail> getOrders() {
+            return orders;
+        }
+
+        /**
+         * Token for the following page, or null if this is the last page.
+         */
+        public PageToken getNext() {
+            return next;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+    }
 
     /**
      * Save a POS order to the database.
-     * 
+     * The header and all items are written in one transaction, so a failure
+     * never leaves a header without its items.
+     *
      * SOLID PRINCIPLES APPLIED:
      * - Single Responsibility: Only handles order persistence
      * - Dependency Inversion: Uses abstraction for database connection
-     * 
+     *
      * @param customerName  Customer's name (optional for walk-in)
      * @param paymentMethod Payment method used (Cash/Card/E-Wallet)
      * @param items         List of pizza items
@@ -31,86 +506,475 @@ public class OrderRepository {
      */
     public int saveOrder(String customerName, String paymentMethod,
             List<Pizza> items, int total) throws SQLException {
+        return saveOrders(List.of(OrderData.fromPizzas(customerName, paymentMethod, items, total))).get(0);
+    }
+
+    /**
+     * Save a checkout identified by a client-generated key. Saving again
+     * with the same key (e.g. "pay" pressed twice after a timeout) writes
+     * nothing and returns the id of the first order.
+     *
+     * @return Order ID
+     */
+    public int saveOrder(String customerName, String paymentMethod,
+            List<Pizza> items, int total, String idempotencyKey) throws SQLException {
+        return saveOrders(List.of(OrderData.fromPizzas(customerName, paymentMethod, items, total)
+                .withIdempotencyKey(idempotencyKey))).get(0);
+    }
 
-        // ✅ CLEAN: Dùng schema mới chỉ với 4 cột cần thiết
-        try (Connection conn = SQLiteConnection.getConnection()) {
+    /**
+     * Save several orders in a single transaction.
+     * Used for bulk and replay ingestion; either every order is stored or none.
+     *
+     * @param orders Orders to save
+     * @return Generated order IDs, in the same order as the input
+     */
+    public List<Integer> saveOrders(List<OrderData> orders) throws SQLException {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
 
-            // Insert order header - CLEAN SCHEMA
-            String orderSql = """
-                    INSERT INTO orders (customer_name, payment_method, total)
-                    VALUES (?, ?, ?)
-                    """;
+        // The whole transaction is retried; a busy attempt rolled back, so nothing is stored twice
+        return retryPolicy.execute("saveOrders", () -> {
+            try (Connection conn = SQLiteConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    ToppingIds toppings = newToppingIds();
+                    List<Integer> orderIds = insertOrders(conn, orders, toppings);
+                    conn.commit();
+                    toppings.publish();
+                    rememberKeys(orders, orderIds);
+                    return orderIds;
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } // ✅ Connection returned to pool here
+        });
+    }
 
-            int orderId;
-            try (PreparedStatement pstmt = conn.prepareStatement(orderSql, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setString(1, customerName != null && !customerName.trim().isEmpty()
-                        ? customerName
-                        : "Khách vãng lai");
-                pstmt.setString(2, paymentMethod);
-                pstmt.setInt(3, total);
+    /**
+     * Insert orders on a connection whose transaction is managed by the caller.
+     * Items are sent through JDBC batching: one executeBatch per order.
+     * The sales rollups are updated once for the whole batch.
+     * An order whose idempotency key is already stored is not inserted
+     * again; its original id is returned in its place.
+     *
+     * @param toppings Topping ids of this transaction, published by the caller after the commit
+     */
+    List<Integer> insertOrders(Connection conn, List<OrderData> orders, ToppingIds toppings) throws SQLException {
+        activity.recordCheckout();
+        List<Integer> orderIds = new ArrayList<>(orders.size());
+
+        SalesRollups.Delta rollups = new SalesRollups.Delta();
 
-                pstmt.executeUpdate();
+        try (PreparedStatement orderStmt = conn.prepareStatement(INSERT_ORDER_SQL);
+                PreparedStatement itemStmt = conn.prepareStatement(INSERT_ITEM_SQL, Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement numberStmt = conn.prepareStatement(OrderNumberSequence.RECORD_USED_SQL)) {
+            for (OrderData order : orders) {
+                String key = order.getIdempotencyKey();
+                Integer known = key != null ? recentKeys.get(key) : null;
+                if (known != null) {
+                    orderIds.add(known);
+                    continue;
+                }
+
+                String customerName = order.getCustomerName();
+                orderStmt.setString(1, customerName != null && !customerName.trim().isEmpty()
+                        ? customerName
+                        : WALK_IN_CUSTOMER);
+                orderStmt.setString(2, order.getPaymentMethod());
+                orderStmt.setInt(3, order.getTotal());
+                orderStmt.setString(4, key);
+                orderStmt.setObject(5, order.getOrderNumber());
+                // Explicit, never the column default: a replayed order keeps its checkout time
+                LocalDateTime createdAt = order.getCreatedAt() != null
+                        ? order.getCreatedAt()
+                        : LocalDateTime.now(ZoneOffset.UTC);
+                orderStmt.setString(6, createdAt.format(DB_TIMESTAMP));
 
-                // Get generated order ID
-                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                int orderId;
+                try (ResultSet rs = orderStmt.executeQuery()) {
                     if (rs.next()) {
-                        orderId = rs.getInt(1);
+                        orderId = rs.getInt("id");
+                        rollups.addOrder(order, rs.getString("created_at"));
+                    } else if (key != null) {
+                        orderIds.add(findOrderIdByKey(conn, key));
+                        continue;
                     } else {
                         throw new SQLException("Failed to get order ID");
                     }
                 }
+
+                for (OrderItemData item : order.getItems()) {
+                    itemStmt.setInt(1, orderId);
+                    itemStmt.setString(2, item.getPizzaName());
+                    itemStmt.setString(3, item.getSize());
+                    itemStmt.setString(4, item.getToppings());
+                    itemStmt.setInt(5, item.getPrice());
+                    itemStmt.setInt(6, item.getQuantity());
+                    itemStmt.addBatch();
+                }
+                itemStmt.executeBatch();
+                insertItemToppings(conn, itemStmt, order.getItems(), toppings);
+                if (order.getOrderNumber() != null) {
+                    OrderNumberSequence.recordUsed(numberStmt, order.getOrderNumber());
+                }
+
+                orderIds.add(orderId);
+            }
+        }
+
+        // Same transaction as the orders: rollups never drift from raw data
+        rollups.writeTo(conn);
+        return orderIds;
+    }
+
+    /**
+     * Id of the stored order with an idempotency key; only reached when a
+     * key collides, never on a first checkout.
+     */
+    private static int findOrderIdByKey(Connection conn, String key) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(FIND_ORDER_BY_KEY_SQL)) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        throw new SQLException("No order stored for idempotency key " + key);
+    }
+
+    /**
+     * Remember the keys of committed orders. Must only be called after the
+     * commit: ids from a rolled-back transaction are reused.
+     */
+    void rememberKeys(List<OrderData> orders, List<Integer> orderIds) {
+        for (int i = 0; i < orders.size(); i++) {
+            String key = orders.get(i).getIdempotencyKey();
+            if (key != null) {
+                recentKeys.put(key, orderIds.get(i));
             }
+        }
+    }
 
-            // Insert order items
-            String itemSql = """
-                    INSERT INTO order_items (order_id, pizza_name, size, toppings, price)
-                    VALUES (?, ?, ?, ?, ?)
-                    """;
+    /**
+     * Write the normalized topping rows for the items of one order, just
+     * inserted as one batch through {@code itemStmt}. The batch only reports
+     * the id of its last row; order_items.id is AUTOINCREMENT and this
+     * transaction holds the write lock, so the items before it took the ids
+     * right below it, in insertion order.
+     */
+    private void insertItemToppings(Connection conn, PreparedStatement itemStmt, List<OrderItemData> items,
+            ToppingIds toppings) throws SQLException {
+        boolean anyToppings = false;
+        for (OrderItemData item : items) {
+            anyToppings |= !item.getToppingNames().isEmpty();
+        }
+        if (!anyToppings) {
+            return;
+        }
 
-            try (PreparedStatement pstmt = conn.prepareStatement(itemSql)) {
-                for (Pizza pizza : items) {
-                    pstmt.setInt(1, orderId);
+        int firstItemId;
+        try (ResultSet rs = itemStmt.getGeneratedKeys()) {
+            if (!rs.next()) {
+                throw new SQLException("Failed to get order item IDs");
+            }
+            firstItemId = rs.getInt(1) - items.size() + 1;
+        }
 
-                    // ✅ FIX: Get base pizza name (unwrap decorators)
-                    String pizzaName = getBasePizzaName(pizza);
-                    pstmt.setString(2, pizzaName);
-                    pstmt.setString(3, pizza.getSize().name());
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_ITEM_TOPPING_SQL)) {
+            for (int i = 0; i < items.size(); i++) {
+                addToppingRows(conn, stmt, firstItemId + i, items.get(i).getToppingNames(), toppings);
+            }
+            stmt.executeBatch();
+        }
+    }
 
-                    // ✅ FIX: Extract ALL toppings properly
-                    String toppings = extractAllToppings(pizza);
-                    pstmt.setString(4, toppings.isEmpty() ? null : toppings);
-                    pstmt.setInt(5, pizza.getPrice());
+    /**
+     * Add one order_item_toppings row per distinct topping to the batch.
+     */
+    void addToppingRows(Connection conn, PreparedStatement stmt, int itemId, List<String> toppingNames,
+            ToppingIds toppings) throws SQLException {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (String name : toppingNames) {
+            quantities.merge(name, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            stmt.setInt(1, itemId);
+            stmt.setInt(2, toppings.get(conn, entry.getKey()));
+            stmt.setInt(3, entry.getValue());
+            stmt.addBatch();
+        }
+    }
 
-                    pstmt.executeUpdate();
+    /**
+     * Topping id lookups for a new transaction.
+     */
+    ToppingIds newToppingIds() {
+        return new ToppingIds();
+    }
+
+    /**
+     * Topping ids looked up or added by one transaction.
+     *
+     * A topping inserted here disappears again if the transaction rolls
+     * back, so ids only reach the shared cache through {@link #publish()},
+     * called once the transaction has committed.
+     */
+    final class ToppingIds {
+        private final Map<String, Integer> resolved = new HashMap<>();
+
+        private ToppingIds() {
+        }
+
+        /**
+         * Get the id of a topping, adding it to the toppings table if it is new.
+         */
+        int get(Connection conn, String name) throws SQLException {
+            Integer cached = toppingIds.get(name);
+            if (cached == null) {
+                cached = resolved.get(name);
+            }
+            if (cached != null) {
+                return cached;
+            }
+            int id = findOrInsert(conn, name);
+            resolved.put(name, id);
+            return id;
+        }
+
+        /**
+         * Share the ids with later transactions. Must only be called after the commit.
+         */
+        void publish() {
+            toppingIds.putAll(resolved);
+        }
+    }
+
+    private static int findOrInsert(Connection conn, String name) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(FIND_TOPPING_ID_SQL)) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_TOPPING_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+            try (ResultSet rs = insert.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
                 }
             }
+        }
+        throw new SQLException("Failed to add topping: " + name);
+    }
 
-            return orderId;
+    /**
+     * Get the lines of one order.
+     */
+    public List<OrderItemData> findOrderItems(int orderId) throws SQLException {
+        List<OrderItemData> items = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(FIND_ITEMS_BY_ORDER_SQL)) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(new OrderItemData(
+                            rs.getString("pizza_name"),
+                            rs.getString("size"),
+                            rs.getString("toppings"),
+                            rs.getInt("price"),
+                            rs.getInt("quantity")));
+                }
+            }
+        }
+        return items;
+    }
 
-        } // ✅ Connection auto-closed here
+    /**
+     * Get orders created in [from, to), oldest first.
+     */
+    public List<OrderSummary> findOrdersBetween(LocalDateTime from, LocalDateTime to) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(FIND_ORDERS_BETWEEN_SQL)) {
+            stmt.setString(1, from.format(DB_TIMESTAMP));
+            stmt.setString(2, to.format(DB_TIMESTAMP));
+            return readSummaries(stmt);
+        }
     }
 
     /**
-     * Extract base pizza name by unwrapping all decorators.
+     * Get orders paid with one payment method and created in [from, to), oldest first.
      */
-    private String getBasePizzaName(Pizza pizza) {
-        Pizza current = pizza;
-        while (current instanceof ToppingDecorator) {
-            current = ((ToppingDecorator) current).getWrappedPizza();
+    public List<OrderSummary> findOrdersByPaymentMethod(String paymentMethod,
+            LocalDateTime from, LocalDateTime to) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(FIND_ORDERS_BY_PAYMENT_SQL)) {
+            stmt.setString(1, paymentMethod);
+            stmt.setString(2, from.format(DB_TIMESTAMP));
+            stmt.setString(3, to.format(DB_TIMESTAMP));
+            return readSummaries(stmt);
         }
-        return current.getName();
     }
 
     /**
-     * Extract ALL toppings from decorated pizza.
-     * Handles multiple layers of decorators correctly.
+     * Get one page of order history, newest first, with the lines of every
+     * order on the page fetched in the same query.
+     *
+     * Pagination is keyset-based on (created_at, id): the page seeks straight
+     * to the token in idx_orders_created_at (or the customer / payment index
+     * when filtering on those), so every page costs the same however deep it is.
+     *
+     * @param after    Token from the previous page, or null for the first page
+     * @param pageSize Maximum number of orders on the page
      */
-    private String extractAllToppings(Pizza pizza) {
-        if (!(pizza instanceof ToppingDecorator)) {
-            return "";
+    public OrderPage findOrderHistory(OrderHistoryFilter filter, PageToken after, int pageSize)
+            throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
         }
+        List<Object> params = new ArrayList<>();
+        String sql = buildHistorySql(filter, after, pageSize, params);
 
-        // Use getToppings() method from ToppingDecorator
-        return ((ToppingDecorator) pizza).getToppings();
+        List<OrderDetail> orders = new ArrayList<>(pageSize + 1);
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                int currentId = -1;
+                OrderSummary summary = null;
+                List<OrderItemData> items = new ArrayList<>();
+                while (rs.next()) {
+                    int orderId = rs.getInt("id");
+                    if (orderId != currentId) {
+                        if (summary != null) {
+                            orders.add(new OrderDetail(summary, items));
+                            items = new ArrayList<>();
+                        }
+                        currentId = orderId;
+                        summary = new OrderSummary(orderId, rs.getString("customer_name"),
+                                rs.getString("payment_method"), rs.getInt("total"), rs.getString("created_at"));
+                    }
+                    if (rs.getObject("item_id") != null) {
+                        items.add(new OrderItemData(rs.getString("pizza_name"), rs.getString("size"),
+                                rs.getString("toppings"), rs.getInt("price"), rs.getInt("quantity")));
+                    }
+                }
+                if (summary != null) {
+                    orders.add(new OrderDetail(summary, items));
+                }
+            }
+        }
+
+        // One extra order was fetched to tell whether another page exists
+        if (orders.size() <= pageSize) {
+            return new OrderPage(orders, null);
+        }
+        orders.remove(pageSize);
+        OrderSummary last = orders.get(pageSize - 1).getSummary();
+        return new OrderPage(orders, new PageToken(last.getCreatedAt(), last.getId()));
+    }
+
+    /**
+     * Build the history query with only the filters that are set, so the
+     * planner can pick the matching index.
+     */
+    static String buildHistorySql(OrderHistoryFilter filter, PageToken after, int pageSize, List<Object> params) {
+        StringBuilder where = new StringBuilder("1 = 1");
+        if (filter.customerName != null) {
+            where.append(" AND customer_name = ?");
+            params.add(filter.customerName);
+        }
+        if (filter.paymentMethod != null) {
+            where.append(" AND payment_method = ?");
+            params.add(filter.paymentMethod);
+        }
+        if (filter.from != null) {
+            where.append(" AND created_at >= ?");
+            params.add(filter.from.format(DB_TIMESTAMP));
+        }
+        if (filter.to != null) {
+            where.append(" AND created_at < ?");
+            params.add(filter.to.format(DB_TIMESTAMP));
+        }
+        if (after != null) {
+            where.append(" AND (created_at, id) < (?, ?)");
+            params.add(after.getCreatedAt());
+            params.add(after.getOrderId());
+        }
+        params.add(pageSize + 1);
+
+        return """
+                WITH page AS (
+                    SELECT id, customer_name, payment_method, total, created_at FROM orders
+                    WHERE %s
+                    ORDER BY created_at DESC, id DESC
+                    LIMIT ?
+                )
+                SELECT p.id, p.customer_name, p.payment_method, p.total, p.created_at,
+                       i.id AS item_id, i.pizza_name, i.size, i.toppings, i.price, i.quantity
+                FROM page p LEFT JOIN order_items i ON i.order_id = p.id
+                ORDER BY p.created_at DESC, p.id DESC, i.id
+                """.formatted(where);
+    }
+
+    /**
+     * Count toppings sold on orders created in [from, to), most sold first.
+     *
+     * @return Topping name -> number of times it was added
+     */
+    public Map<String, Integer> countToppingsSold(LocalDateTime from, LocalDateTime to) throws SQLException {
+        Map<String, Integer> sold = new LinkedHashMap<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(COUNT_TOPPINGS_SOLD_SQL)) {
+            stmt.setString(1, from.format(DB_TIMESTAMP));
+            stmt.setString(2, to.format(DB_TIMESTAMP));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sold.put(rs.getString("name"), rs.getInt("sold"));
+                }
+            }
+        }
+        return sold;
+    }
+
+    private static List<OrderSummary> readSummaries(PreparedStatement stmt) throws SQLException {
+        List<OrderSummary> orders = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                orders.add(new OrderSummary(
+                        rs.getInt("id"),
+                        rs.getString("customer_name"),
+                        rs.getString("payment_method"),
+                        rs.getInt("total"),
+                        rs.getString("created_at")));
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Split a stored comma-joined topping string into names.
+     */
+    static List<String> splitToppings(String toppings) {
+        if (toppings == null || toppings.isBlank()) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : toppings.split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
     }
 }
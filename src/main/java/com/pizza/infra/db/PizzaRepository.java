@@ -51,15 +51,40 @@ public class PizzaRepository {
     }
 
     /**
-     * Get all active pizzas from database.
+     * Get all active pizzas, ordered by name.
+     * Served from the {@link MenuCache} snapshot; only the first call hits the database.
      */
     public List<PizzaData> getAllPizzas() throws SQLException {
+        return MenuCache.getInstance().getSnapshot().getPizzas();
+    }
+
+    /**
+     * Get pizza by name.
+     *
+     * @return The pizza, or null if there is no active pizza with that name
+     */
+    public PizzaData getPizzaByName(String name) throws SQLException {
+        return MenuCache.getInstance().getSnapshot().getByName(name);
+    }
+
+    /**
+     * Get pizza by id.
+     *
+     * @return The pizza, or null if there is no active pizza with that id
+     */
+    public PizzaData getPizzaById(int id) throws SQLException {
+        return MenuCache.getInstance().getSnapshot().getById(id);
+    }
+
+    /**
+     * Load all active pizzas from database.
+     * Used by {@link MenuCache} to build a snapshot.
+     */
+    static List<PizzaData> loadActivePizzas(Connection conn) throws SQLException {
         List<PizzaData> pizzas = new ArrayList<>();
         String query = "SELECT id, name, description, base_price, image_url FROM pizzas WHERE is_active = 1 ORDER BY name";
 
-        // ✅ FIX: Auto-close connection với try-with-resources
-        try (Connection conn = SQLiteConnection.getConnection();
-                var stmt = conn.createStatement();
+        try (var stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(query)) {
 
             while (rs.next()) {
@@ -70,34 +95,8 @@ public class PizzaRepository {
                         rs.getInt("base_price"),
                         rs.getString("image_url")));
             }
-        } // ✅ Connection auto-closed
+        }
 
         return pizzas;
     }
-
-    /**
-     * Get pizza by name.
-     */
-    public PizzaData getPizzaByName(String name) throws SQLException {
-        String query = "SELECT id, name, description, base_price, image_url FROM pizzas WHERE name = ? AND is_active = 1";
-
-        // ✅ FIX: Auto-close connection với try-with-resources
-        try (Connection conn = SQLiteConnection.getConnection();
-                var pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, name);
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new PizzaData(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getString("description"),
-                            rs.getInt("base_price"),
-                            rs.getString("image_url"));
-                }
-            }
-        } // ✅ Connection auto-closed
-
-        return null;
-    }
 }
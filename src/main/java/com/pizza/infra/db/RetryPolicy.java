@@ -0,0 +1,134 @@
+package com.pizza.infra.db;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Re-runs a database operation that failed because another writer held the
+ * lock (SQLITE_BUSY / SQLITE_LOCKED), with bounded exponential backoff and
+ * full jitter.
+ *
+ * busy_timeout (see {@link DurabilityProfile}) already makes SQLite wait
+ * inside one statement; this layer covers what it cannot: a busy error that
+ * outlasts the timeout, or one SQLite raises without waiting (a WAL read
+ * transaction that must be restarted before it can write). An operation is
+ * always a whole transaction that rolls back on failure, so running it
+ * again cannot store anything twice.
+ */
+public class RetryPolicy {
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_BASE_DELAY_MS = 25;
+    private static final long DEFAULT_MAX_DELAY_MS = 1_000;
+
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private static final RetryPolicy DEFAULT = new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS,
+            DEFAULT_MAX_DELAY_MS, ContentionMetrics.getInstance());
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final ContentionMetrics metrics;
+
+    /**
+     * @param maxAttempts Attempts including the first one
+     * @param baseDelayMs Backoff cap after the first failure; doubles per failure
+     * @param maxDelayMs  Upper bound of the backoff cap
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, ContentionMetrics metrics) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Policy used by the repositories: 5 attempts, backoff capped at 1 s.
+     */
+    public static RetryPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * A unit of database work, safe to run again after it failed.
+     */
+    @FunctionalInterface
+    public interface SqlOperation<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Run {@code operation}, retrying while it fails with a busy or locked error.
+     * Other errors are thrown at once.
+     *
+     * @param name Operation name for the failure log
+     */
+    public <T> T execute(String name, SqlOperation<T> operation) throws SQLException {
+        // Timed across all attempts: a successful attempt may itself have
+        // waited up to busy_timeout for the lock
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = operation.run();
+                metrics.recordSuccess(attempt - 1, elapsedMs(start));
+                return result;
+            } catch (SQLException e) {
+                if (!isBusy(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    long waitedMs = elapsedMs(start);
+                    metrics.recordPermanentFailure(attempt - 1, waitedMs);
+                    System.err.println("❌ " + name + " still busy after " + attempt + " attempts ("
+                            + waitedMs + " ms): " + e.getMessage());
+                    throw e;
+                }
+                metrics.recordRetry();
+                try {
+                    Thread.sleep(backoffMs(attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    metrics.recordPermanentFailure(attempt - 1, elapsedMs(start));
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Backoff before the next attempt after {@code failures} busy failures:
+     * uniformly random up to min(max, base * 2^(failures-1)), so terminals
+     * that collided do not retry in lockstep.
+     */
+    long backoffMs(int failures) {
+        long cap = baseDelayMs << Math.min(failures - 1, 30);
+        if (cap <= 0 || cap > maxDelayMs) {
+            cap = maxDelayMs;
+        }
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Whether an error (or one it wraps) is SQLITE_BUSY or SQLITE_LOCKED,
+     * including their extended codes.
+     */
+    static boolean isBusy(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                int primary = sql.getErrorCode() & 0xFF;
+                if (primary == SQLITE_BUSY || primary == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
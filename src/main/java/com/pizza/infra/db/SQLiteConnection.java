@@ -1,87 +1,155 @@
 package com.pizza.infra.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 /**
  * SQLite database connection manager.
  * Handles database initialization and connection management.
+ *
+ * Connections come from a {@link ConnectionPool}: one dedicated writer and a
+ * few readers that stay open for the lifetime of the application. Closing a
+ * connection returns it to the pool.
  */
 public class SQLiteConnection {
-    private static final String DB_URL = "jdbc:sqlite:pizza_orders.db";
-    private static boolean isInitialized = false;
+    private static final String DEFAULT_DB_URL = "jdbc:sqlite:pizza_orders.db";
+    private static final int DEFAULT_READER_COUNT = 4;
+    private static final String PROFILE_PROPERTY = "pizza.db.profile";
+
+    private static String dbUrl = DEFAULT_DB_URL;
+    private static int readerCount = DEFAULT_READER_COUNT;
+    private static DurabilityProfile profile = startupProfile();
+    private static int statementCacheSize = ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE;
+    private static volatile ConnectionPool pool;
+
+    /**
+     * Point the application at a different database file.
+     * Must be called before the first connection is requested (or after
+     * {@link #shutdown()}), e.g. by tests using a temporary file.
+     */
+    public static synchronized void configure(String url, int readers) {
+        configure(url, readers, profile);
+    }
+
+    /**
+     * Point the application at a database file with an explicit durability profile.
+     */
+    public static synchronized void configure(String url, int readers, DurabilityProfile durabilityProfile) {
+        if (pool != null) {
+            throw new IllegalStateException("Connection pool already started");
+        }
+        dbUrl = url;
+        readerCount = readers;
+        profile = durabilityProfile;
+    }
+
+    /**
+     * Set the number of prepared statements cached per pooled connection
+     * (0 disables the cache), e.g. for benchmarks. Same rules as configure().
+     */
+    static synchronized void configureStatementCache(int size) {
+        if (pool != null) {
+            throw new IllegalStateException("Connection pool already started");
+        }
+        statementCacheSize = size;
+    }
+
+    /**
+     * Durability profile used when the pool starts.
+     */
+    public static DurabilityProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * JDBC URL of the database, for tools that need their own connection.
+     */
+    static synchronized String getUrl() {
+        return dbUrl;
+    }
 
     /**
-     * Get NEW database connection each time.
-     * ✅ FIX: Returns new connection to avoid lock issues.
-     * Caller MUST close connection using try-with-resources.
+     * Get the pooled writer connection.
+     * Caller MUST close connection using try-with-resources, which returns
+     * it to the pool. Only one writer lease exists at a time.
      */
     public static Connection getConnection() throws SQLException {
-        Connection conn = DriverManager.getConnection(DB_URL);
+        return getPool().borrowWriter();
+    }
 
-        // Initialize database schema only once
-        if (!isInitialized) {
+    /**
+     * Get a pooled read-only connection.
+     * Readers do not wait for the writer, so menu and report queries never
+     * queue behind checkout writes.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getPool().borrowReader();
+    }
+
+    /**
+     * Prepared statement cache counters of the running pool.
+     */
+    public static StatementCache.Stats getStatementCacheStats() throws SQLException {
+        return getPool().getStatementCacheStats();
+    }
+
+    /**
+     * Close all pooled connections.
+     * The next getConnection() call starts a fresh pool.
+     */
+    public static synchronized void shutdown() {
+        MenuCache.reset();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool getPool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
             synchronized (SQLiteConnection.class) {
-                if (!isInitialized) {
-                    initializeDatabase(conn);
-                    isInitialized = true;
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(dbUrl, readerCount, profile, statementCacheSize);
+                    // Initialize database schema only once, when the pool starts
+                    try (Connection conn = current.borrowWriter()) {
+                        initializeDatabase(conn);
+                    } catch (SQLException e) {
+                        current.close();
+                        throw e;
+                    }
+                    pool = current;
                 }
             }
         }
+        return current;
+    }
 
-        return conn;
+    /**
+     * Choose the startup profile from -Dpizza.db.profile=safe|balanced|bulk-load.
+     * Falls back to balanced (WAL + synchronous=NORMAL) for unknown values.
+     */
+    private static DurabilityProfile startupProfile() {
+        String name = System.getProperty(PROFILE_PROPERTY, DurabilityProfile.BALANCED.getProfileName());
+        try {
+            return DurabilityProfile.fromName(name);
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ " + e.getMessage() + ", using " + DurabilityProfile.BALANCED);
+            return DurabilityProfile.BALANCED;
+        }
     }
 
     /**
      * Initialize database schema.
-     * Creates pizzas, orders and order_items tables if they don't exist.
+     * Applies pending schema migrations, then seeds the pizza menu.
      */
     private static void initializeDatabase(Connection connection) throws SQLException {
-        // Bảng danh sách pizza
-        String createPizzasTable = """
-                CREATE TABLE IF NOT EXISTS pizzas (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    name TEXT NOT NULL UNIQUE,
-                    description TEXT,
-                    base_price INTEGER NOT NULL,
-                    image_url TEXT,
-                    is_active INTEGER DEFAULT 1
-                )
-                """;
+        SchemaMigrator.migrate(connection);
 
-        // ✅ CLEAN SCHEMA for POS: Removed phone, address, shipping_type, shipping_fee
-        String createOrdersTable = """
-                CREATE TABLE IF NOT EXISTS orders (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    customer_name TEXT NOT NULL,
-                    payment_method TEXT NOT NULL,
-                    total INTEGER NOT NULL,
-                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                )
-                """;
-
-        String createOrderItemsTable = """
-                CREATE TABLE IF NOT EXISTS order_items (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    order_id INTEGER NOT NULL,
-                    pizza_name TEXT NOT NULL,
-                    size TEXT NOT NULL,
-                    toppings TEXT,
-                    price INTEGER NOT NULL,
-                    FOREIGN KEY (order_id) REFERENCES orders(id)
-                )
-                """;
-
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(createPizzasTable);
-            stmt.execute(createOrdersTable);
-            stmt.execute(createOrderItemsTable);
-
-            // Insert dữ liệu mẫu 5 loại pizza
-            insertSamplePizzas(connection);
-        }
+        // Insert dữ liệu mẫu 5 loại pizza
+        insertSamplePizzas(connection);
     }
 
     /**
@@ -140,11 +208,12 @@ public class SQLiteConnection {
 
     /**
      * Close database connection.
-     * ✅ FIX: No longer needed since we use try-with-resources.
      * Kept for backward compatibility.
+     *
+     * @deprecated Use {@link #shutdown()} to close the connection pool
      */
     @Deprecated
     public static void closeConnection() {
-        // No-op: Connections are now managed by try-with-resources
+        shutdown();
     }
 }
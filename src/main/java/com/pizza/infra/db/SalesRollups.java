@@ -0,0 +1,382 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-aggregated sales tables for dashboards and end-of-day reports.
+ *
+ * The rollups are kept up to date by {@link OrderRepository#insertOrders},
+ * in the same transaction as the orders themselves, so reports read a few
+ * rollup rows instead of scanning all orders. {@link #rebuild()} recomputes
+ * every rollup from the raw tables and {@link #checkConsistency()} reports
+ * rollup rows that disagree with them.
+ */
+public class SalesRollups {
+
+    /**
+     * One rollup table. Every table has a bucket key, a count and a revenue column.
+     * Pizzas are counted with the {@value #QUANTITY} token, the number of
+     * pizzas on an order line.
+     */
+    public enum Dimension {
+        HOUR("sales_hourly", "hour", "order_count", "hour", """
+                SELECT strftime('%Y-%m-%d %H:00', o.created_at), COUNT(*),
+                       SUM((SELECT COALESCE(SUM($quantity), 0) FROM order_items i WHERE i.order_id = o.id)), SUM(o.total)
+                FROM orders o GROUP BY 1
+                """, "hour, order_count, item_count, revenue"),
+        DAY("sales_daily", "day", "order_count", "day", """
+                SELECT date(o.created_at), COUNT(*),
+                       SUM((SELECT COALESCE(SUM($quantity), 0) FROM order_items i WHERE i.order_id = o.id)), SUM(o.total)
+                FROM orders o GROUP BY 1
+                """, "day, order_count, item_count, revenue"),
+        PIZZA("sales_by_pizza", "pizza_name", "quantity", "day", """
+                SELECT date(o.created_at), i.pizza_name, SUM($quantity), SUM(i.price * $quantity)
+                FROM orders o JOIN order_items i ON i.order_id = o.id GROUP BY 1, 2
+                """, "day, pizza_name, quantity, revenue"),
+        SIZE("sales_by_size", "size", "quantity", "day", """
+                SELECT date(o.created_at), i.size, SUM($quantity), SUM(i.price * $quantity)
+                FROM orders o JOIN order_items i ON i.order_id = o.id GROUP BY 1, 2
+                """, "day, size, quantity, revenue"),
+        PAYMENT("sales_by_payment", "payment_method", "order_count", "day", """
+                SELECT date(o.created_at), o.payment_method, COUNT(*), SUM(o.total)
+                FROM orders o GROUP BY 1, 2
+                """, "day, payment_method, order_count, revenue");
+
+        private final String table;
+        private final String keyColumn;
+        private final String countColumn;
+        private final String rangeColumn;
+        private final String aggregateSql;
+        private final String columns;
+
+        Dimension(String table, String keyColumn, String countColumn, String rangeColumn,
+                String aggregateSql, String columns) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.countColumn = countColumn;
+            this.rangeColumn = rangeColumn;
+            this.aggregateSql = aggregateSql;
+            this.columns = columns;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * Aggregate of the raw tables, with the quantity token replaced.
+         */
+        String aggregateSql(String quantity) {
+            return aggregateSql.replace(QUANTITY, quantity);
+        }
+    }
+
+    static final String QUANTITY = "$quantity";
+
+    /** Pizzas on an order line, as stored since order_items got its quantity column. */
+    private static final String ITEM_QUANTITY = "i.quantity";
+
+    /**
+     * One row of a rollup, summed over the requested days.
+     */
+    public static class SalesRow {
+        private final String key;
+        private final long count;
+        private final long revenue;
+
+        public SalesRow(String key, long count, long revenue) {
+            this.key = key;
+            this.count = count;
+            this.revenue = revenue;
+        }
+
+        /**
+         * Hour, day, pizza name, size or payment method, depending on the dimension.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Orders (hour, day, payment) or pizzas sold (pizza, size).
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getRevenue() {
+            return revenue;
+        }
+    }
+
+    /**
+     * Read a rollup for the days [from, to], largest revenue first for
+     * pizza/size/payment and in time order for hour/day.
+     */
+    public List<SalesRow> read(Dimension dimension, LocalDate from, LocalDate to) throws SQLException {
+        boolean timeSeries = dimension == Dimension.HOUR || dimension == Dimension.DAY;
+        String sql = "SELECT " + dimension.keyColumn + " AS k, SUM(" + dimension.countColumn + ") AS c, "
+                + "SUM(revenue) AS r FROM " + dimension.table
+                + " WHERE " + dimension.rangeColumn + " >= ? AND " + dimension.rangeColumn + " < ?"
+                + " GROUP BY k ORDER BY " + (timeSeries ? "k" : "r DESC, k");
+
+        List<SalesRow> rows = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+            // 'YYYY-MM-DD' sorts before every 'YYYY-MM-DD HH:00' of the same day
+            stmt.setString(1, from.toString());
+            stmt.setString(2, to.plusDays(1).toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new SalesRow(rs.getString("k"), rs.getLong("c"), rs.getLong("r")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Recompute the rollups from orders and order_items in one transaction.
+     * Archived months keep their rollup rows.
+     */
+    public void rebuild() throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                populateHotMonths(conn);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        System.out.println("✅ Sales rollups rebuilt from raw orders");
+    }
+
+    /**
+     * Replace the contents of every rollup table with an aggregate of the
+     * raw tables. Runs in the caller's transaction; used by the schema
+     * migration that creates the rollups, before any month was archived.
+     */
+    static void populate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Dimension dimension : Dimension.values()) {
+                stmt.executeUpdate("DELETE FROM " + dimension.table);
+                // order_items has no quantity column yet at this version: one pizza per row
+                stmt.executeUpdate("INSERT INTO " + dimension.table + " (" + dimension.columns + ") "
+                        + dimension.aggregateSql("1"));
+            }
+        }
+    }
+
+    /**
+     * Recompute the rollup rows of months still in the hot database.
+     * Rows of months moved out by {@link OrderArchiver} (or being moved) are
+     * kept as they are: their raw orders are no longer here to rebuild from.
+     */
+    private static void populateHotMonths(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Dimension dimension : Dimension.values()) {
+                stmt.executeUpdate("DELETE FROM " + dimension.table + " WHERE " + hotScope(dimension.rangeColumn));
+                stmt.executeUpdate("WITH a(c1, c2, c3, c4) AS (" + dimension.aggregateSql(ITEM_QUANTITY) + ") "
+                        + "INSERT INTO " + dimension.table + " (" + dimension.columns + ") "
+                        + "SELECT * FROM a WHERE " + hotScope("c1"));
+            }
+        }
+    }
+
+    /**
+     * Condition on an hour or day column: the month is not archived.
+     */
+    private static String hotScope(String column) {
+        return "substr(" + column + ", 1, 7) NOT IN (SELECT month FROM archived_months)";
+    }
+
+    /**
+     * Compare every rollup with an aggregate of the raw tables.
+     * Archived months are skipped, since their raw orders live in archive files.
+     *
+     * @return One message per rollup that disagrees; empty if all are consistent
+     */
+    public List<String> checkConsistency() throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection()) {
+            // One read transaction, so rollups and raw rows come from the same snapshot
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (Dimension dimension : Dimension.values()) {
+                    String ctes = "WITH a(c1, c2, c3, c4) AS (" + dimension.aggregateSql(ITEM_QUANTITY) + "), "
+                            + "s(c1, c2, c3, c4) AS (SELECT " + dimension.columns + " FROM " + dimension.table + ") ";
+                    String raw = "SELECT * FROM a WHERE " + hotScope("c1");
+                    String stored = "SELECT * FROM s WHERE " + hotScope("c1");
+                    long missing = count(stmt, ctes, raw + " EXCEPT " + stored);
+                    long extra = count(stmt, ctes, stored + " EXCEPT " + raw);
+                    if (missing > 0 || extra > 0) {
+                        problems.add(dimension.table + ": " + missing + " rows missing or wrong, "
+                                + extra + " rows not backed by orders");
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return problems;
+    }
+
+    private static long count(Statement stmt, String ctes, String compoundSelect) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(ctes + "SELECT COUNT(*) FROM (" + compoundSelect + ")")) {
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Rollup changes from a batch of new orders, written with one UPSERT per bucket.
+     */
+    static class Delta {
+        private static final String UPSERT_HOURLY_SQL = """
+                INSERT INTO sales_hourly (hour, order_count, item_count, revenue) VALUES (?, ?, ?, ?)
+                ON CONFLICT(hour) DO UPDATE SET order_count = order_count + excluded.order_count,
+                    item_count = item_count + excluded.item_count, revenue = revenue + excluded.revenue
+                """;
+        private static final String UPSERT_DAILY_SQL = """
+                INSERT INTO sales_daily (day, order_count, item_count, revenue) VALUES (?, ?, ?, ?)
+                ON CONFLICT(day) DO UPDATE SET order_count = order_count + excluded.order_count,
+                    item_count = item_count + excluded.item_count, revenue = revenue + excluded.revenue
+                """;
+        private static final String UPSERT_PIZZA_SQL = """
+                INSERT INTO sales_by_pizza (day, pizza_name, quantity, revenue) VALUES (?, ?, ?, ?)
+                ON CONFLICT(day, pizza_name) DO UPDATE SET quantity = quantity + excluded.quantity,
+                    revenue = revenue + excluded.revenue
+                """;
+        private static final String UPSERT_SIZE_SQL = """
+                INSERT INTO sales_by_size (day, size, quantity, revenue) VALUES (?, ?, ?, ?)
+                ON CONFLICT(day, size) DO UPDATE SET quantity = quantity + excluded.quantity,
+                    revenue = revenue + excluded.revenue
+                """;
+        private static final String UPSERT_PAYMENT_SQL = """
+                INSERT INTO sales_by_payment (day, payment_method, order_count, revenue) VALUES (?, ?, ?, ?)
+                ON CONFLICT(day, payment_method) DO UPDATE SET order_count = order_count + excluded.order_count,
+                    revenue = revenue + excluded.revenue
+                """;
+
+        // Bucket key -> {count, items, revenue}; two-part keys are joined with '\0'
+        private final Map<String, long[]> hourly = new HashMap<>();
+        private final Map<String, long[]> daily = new HashMap<>();
+        private final Map<String, long[]> byPizza = new HashMap<>();
+        private final Map<String, long[]> bySize = new HashMap<>();
+        private final Map<String, long[]> byPayment = new HashMap<>();
+
+        /**
+         * @param createdAt The order's created_at as stored ("YYYY-MM-DD HH:MM:SS")
+         */
+        void addOrder(OrderData order, String createdAt) {
+            String day = createdAt.substring(0, 10);
+            String hour = createdAt.substring(0, 13) + ":00";
+            int items = 0;
+            for (OrderItemData item : order.getItems()) {
+                items += item.getQuantity();
+            }
+
+            add(hourly, hour, 1, items, order.getTotal());
+            add(daily, day, 1, items, order.getTotal());
+            add(byPayment, day + '\0' + order.getPaymentMethod(), 1, 0, order.getTotal());
+            for (OrderItemData item : order.getItems()) {
+                add(byPizza, day + '\0' + item.getPizzaName(), item.getQuantity(), 0, item.getLineTotal());
+                add(bySize, day + '\0' + item.getSize(), item.getQuantity(), 0, item.getLineTotal());
+            }
+        }
+
+        void writeTo(Connection conn) throws SQLException {
+            writeTotals(conn, UPSERT_HOURLY_SQL, hourly);
+            writeTotals(conn, UPSERT_DAILY_SQL, daily);
+            writeBreakdown(conn, UPSERT_PIZZA_SQL, byPizza);
+            writeBreakdown(conn, UPSERT_SIZE_SQL, bySize);
+            writeBreakdown(conn, UPSERT_PAYMENT_SQL, byPayment);
+        }
+
+        private static void add(Map<String, long[]> bucket, String key, long count, long items, long revenue) {
+            long[] totals = bucket.computeIfAbsent(key, k -> new long[3]);
+            totals[0] += count;
+            totals[1] += items;
+            totals[2] += revenue;
+        }
+
+        private static void writeTotals(Connection conn, String sql, Map<String, long[]> bucket)
+                throws SQLException {
+            if (bucket.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Map.Entry<String, long[]> entry : bucket.entrySet()) {
+                    stmt.setString(1, entry.getKey());
+                    stmt.setLong(2, entry.getValue()[0]);
+                    stmt.setLong(3, entry.getValue()[1]);
+                    stmt.setLong(4, entry.getValue()[2]);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+
+        private static void writeBreakdown(Connection conn, String sql, Map<String, long[]> bucket)
+                throws SQLException {
+            if (bucket.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Map.Entry<String, long[]> entry : bucket.entrySet()) {
+                    String[] key = entry.getKey().split("\0", 2);
+                    stmt.setString(1, key[0]);
+                    stmt.setString(2, key[1]);
+                    stmt.setLong(3, entry.getValue()[0]);
+                    stmt.setLong(4, entry.getValue()[2]);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Maintenance entry point: {@code rebuild} or {@code check}.
+     */
+    public static void main(String[] args) throws SQLException {
+        String command = args.length > 0 ? args[0] : "check";
+        SalesRollups rollups = new SalesRollups();
+        int exitCode = 0;
+        try {
+            if ("rebuild".equals(command)) {
+                rollups.rebuild();
+            } else if ("check".equals(command)) {
+                List<String> problems = rollups.checkConsistency();
+                if (problems.isEmpty()) {
+                    System.out.println("✅ Sales rollups match raw orders");
+                } else {
+                    problems.forEach(p -> System.err.println("❌ " + p));
+                    exitCode = 1;
+                }
+            } else {
+                System.err.println("Usage: SalesRollups [rebuild|check]");
+                exitCode = 2;
+            }
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+        System.exit(exitCode);
+    }
+}
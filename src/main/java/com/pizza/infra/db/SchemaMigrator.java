@@ -0,0 +1,293 @@
+package com.pizza.infra.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema migrations for the order database.
+ *
+ * The applied version is kept in SQLite's PRAGMA user_version. On startup
+ * every migration newer than that version runs in its own transaction,
+ * together with the version bump, so a failed migration leaves the
+ * schema at the previous version.
+ */
+public class SchemaMigrator {
+
+    /**
+     * One schema change.
+     */
+    interface Migration {
+        void apply(Connection conn) throws SQLException;
+
+        default Migration andThen(Migration next) {
+            return conn -> {
+                apply(conn);
+                next.apply(conn);
+            };
+        }
+    }
+
+    /**
+     * Migrations in order; index + 1 is the version a migration produces.
+     * Never edit or reorder a migration that has shipped, add a new one.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            // 1: Baseline schema (CREATE IF NOT EXISTS so databases created before versioning adopt it)
+            sql("""
+                    CREATE TABLE IF NOT EXISTS pizzas (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        name TEXT NOT NULL UNIQUE,
+                        description TEXT,
+                        base_price INTEGER NOT NULL,
+                        image_url TEXT,
+                        is_active INTEGER DEFAULT 1
+                    )
+                    """,
+                    // ✅ CLEAN SCHEMA for POS: Removed phone, address, shipping_type, shipping_fee
+                    """
+                    CREATE TABLE IF NOT EXISTS orders (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        customer_name TEXT NOT NULL,
+                        payment_method TEXT NOT NULL,
+                        total INTEGER NOT NULL,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS order_items (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        order_id INTEGER NOT NULL,
+                        pizza_name TEXT NOT NULL,
+                        size TEXT NOT NULL,
+                        toppings TEXT,
+                        price INTEGER NOT NULL,
+                        FOREIGN KEY (order_id) REFERENCES orders(id)
+                    )
+                    """,
+                    // Position of the order journal already flushed into orders/order_items.
+                    // Updated in the same transaction as the flushed orders.
+                    """
+                    CREATE TABLE IF NOT EXISTS journal_checkpoint (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        segment INTEGER NOT NULL,
+                        file_offset INTEGER NOT NULL
+                    )
+                    """),
+
+            // 2: Indexes for items by order, and orders by date / payment method
+            sql("CREATE INDEX IF NOT EXISTS idx_order_items_order_id ON order_items (order_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_orders_created_at ON orders (created_at, id)",
+                    "CREATE INDEX IF NOT EXISTS idx_orders_payment_method ON orders (payment_method, created_at)",
+                    "ANALYZE"),
+
+            // 3: Menu version counter, bumped on every change to pizzas so caches can notice
+            sql("""
+                    CREATE TABLE IF NOT EXISTS menu_version (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        version INTEGER NOT NULL
+                    )
+                    """,
+                    "INSERT OR IGNORE INTO menu_version (id, version) VALUES (1, 0)",
+                    menuVersionTrigger("insert", "AFTER INSERT"),
+                    menuVersionTrigger("update", "AFTER UPDATE"),
+                    menuVersionTrigger("delete", "AFTER DELETE")),
+
+            // 4: Normalized toppings per order item; old comma-joined rows are
+            // migrated later by ToppingBackfill, up to the last item existing now
+            sql("""
+                    CREATE TABLE IF NOT EXISTS toppings (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        name TEXT NOT NULL UNIQUE
+                    )
+                    """,
+                    "INSERT OR IGNORE INTO toppings (id, name) VALUES (1, 'Phô Mai'), (2, 'Thịt Xông Khói'), (3, 'Nấm')",
+                    """
+                    CREATE TABLE IF NOT EXISTS order_item_toppings (
+                        order_item_id INTEGER NOT NULL,
+                        topping_id INTEGER NOT NULL,
+                        quantity INTEGER NOT NULL DEFAULT 1,
+                        PRIMARY KEY (order_item_id, topping_id),
+                        FOREIGN KEY (order_item_id) REFERENCES order_items(id),
+                        FOREIGN KEY (topping_id) REFERENCES toppings(id)
+                    ) WITHOUT ROWID
+                    """,
+                    "CREATE INDEX IF NOT EXISTS idx_order_item_toppings_topping_id ON order_item_toppings (topping_id)",
+                    """
+                    CREATE TABLE IF NOT EXISTS topping_backfill (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        last_item_id INTEGER NOT NULL,
+                        max_item_id INTEGER NOT NULL
+                    )
+                    """,
+                    "INSERT OR IGNORE INTO topping_backfill (id, last_item_id, max_item_id) "
+                            + "SELECT 1, 0, COALESCE(MAX(id), 0) FROM order_items"),
+
+            // 5: Sales rollups, kept current by OrderRepository.insertOrders; filled from existing orders
+            sql("""
+                    CREATE TABLE IF NOT EXISTS sales_hourly (
+                        hour TEXT PRIMARY KEY,
+                        order_count INTEGER NOT NULL,
+                        item_count INTEGER NOT NULL,
+                        revenue INTEGER NOT NULL
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_daily (
+                        day TEXT PRIMARY KEY,
+                        order_count INTEGER NOT NULL,
+                        item_count INTEGER NOT NULL,
+                        revenue INTEGER NOT NULL
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_by_pizza (
+                        day TEXT NOT NULL,
+                        pizza_name TEXT NOT NULL,
+                        quantity INTEGER NOT NULL,
+                        revenue INTEGER NOT NULL,
+                        PRIMARY KEY (day, pizza_name)
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_by_size (
+                        day TEXT NOT NULL,
+                        size TEXT NOT NULL,
+                        quantity INTEGER NOT NULL,
+                        revenue INTEGER NOT NULL,
+                        PRIMARY KEY (day, size)
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS sales_by_payment (
+                        day TEXT NOT NULL,
+                        payment_method TEXT NOT NULL,
+                        order_count INTEGER NOT NULL,
+                        revenue INTEGER NOT NULL,
+                        PRIMARY KEY (day, payment_method)
+                    )
+                    """).andThen(SalesRollups::populate),
+
+            // 6: Order history filtered by customer, paged on (created_at, id)
+            sql("CREATE INDEX IF NOT EXISTS idx_orders_customer_name ON orders (customer_name, created_at)"),
+
+            // 7: Months moved out to archive files by OrderArchiver
+            sql("""
+                    CREATE TABLE IF NOT EXISTS archived_months (
+                        month TEXT PRIMARY KEY,
+                        archive_file TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        order_count INTEGER NOT NULL DEFAULT 0,
+                        archived_at DATETIME
+                    )
+                    """),
+
+            // 8: Client-generated checkout keys; NULLs (orders saved without a key) never collide
+            sql("ALTER TABLE orders ADD COLUMN idempotency_key TEXT",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_orders_idempotency_key ON orders (idempotency_key)"),
+
+            // 9: Receipt numbers handed out in blocks by OrderNumberSequence
+            sql("ALTER TABLE orders ADD COLUMN order_number INTEGER",
+                    "CREATE INDEX IF NOT EXISTS idx_orders_order_number ON orders (order_number)",
+                    """
+                    CREATE TABLE IF NOT EXISTS order_number_sequence (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        next_value INTEGER NOT NULL
+                    )
+                    """,
+                    "INSERT OR IGNORE INTO order_number_sequence (id, next_value) VALUES (1, 1)",
+                    """
+                    CREATE TABLE IF NOT EXISTS order_number_blocks (
+                        block_start INTEGER PRIMARY KEY,
+                        block_end INTEGER NOT NULL,
+                        terminal_id TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        last_used INTEGER,
+                        reserved_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                        closed_at DATETIME
+                    )
+                    """,
+                    "CREATE INDEX IF NOT EXISTS idx_order_number_blocks_terminal ON order_number_blocks (terminal_id, status)"),
+
+            // 10: Topping catalog: price and availability of each topping, read by MenuCache.
+            // Names first seen on saved orders are inserted inactive and never bump the menu.
+            sql("ALTER TABLE toppings ADD COLUMN price INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE toppings ADD COLUMN is_active INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE toppings SET price = 10000, is_active = 1 WHERE name = 'Phô Mai'",
+                    "UPDATE toppings SET price = 15000, is_active = 1 WHERE name = 'Thịt Xông Khói'",
+                    "UPDATE toppings SET price = 8000, is_active = 1 WHERE name = 'Nấm'",
+                    menuVersionTrigger("toppings", "insert", "AFTER INSERT", "NEW.is_active = 1"),
+                    menuVersionTrigger("toppings", "update", "AFTER UPDATE", null),
+                    menuVersionTrigger("toppings", "delete", "AFTER DELETE", null),
+                    "UPDATE menu_version SET version = version + 1 WHERE id = 1"),
+
+            // 11: Identical pizzas on one order line; price stays the unit price
+            sql("ALTER TABLE order_items ADD COLUMN quantity INTEGER NOT NULL DEFAULT 1"));
+
+    /**
+     * Bring the schema up to the latest version.
+     *
+     * @return The schema version after migrating
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        int current = getVersion(conn);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (int version = current + 1; version <= MIGRATIONS.size(); version++) {
+                try {
+                    MIGRATIONS.get(version - 1).apply(conn);
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("PRAGMA user_version = " + version);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Schema migration to version " + version + " failed", e);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return getVersion(conn);
+    }
+
+    /**
+     * Latest schema version known to this build.
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    /**
+     * Schema version currently stored in the database.
+     */
+    public static int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.getInt(1);
+        }
+    }
+
+    private static String menuVersionTrigger(String name, String event) {
+        return menuVersionTrigger("pizzas", name, event, null);
+    }
+
+    private static String menuVersionTrigger(String table, String name, String event, String condition) {
+        return "CREATE TRIGGER IF NOT EXISTS trg_" + table + "_" + name + "_menu_version " + event + " ON " + table
+                + " " + (condition == null ? "" : "WHEN " + condition + " ")
+                + "BEGIN UPDATE menu_version SET version = version + 1 WHERE id = 1; END";
+    }
+
+    private static Migration sql(String... statements) {
+        return conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String statement : statements) {
+                    stmt.execute(statement);
+                }
+            }
+        };
+    }
+}
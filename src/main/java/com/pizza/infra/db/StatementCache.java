@@ -0,0 +1,263 @@
+package com.pizza.infra.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for one physical connection.
+ *
+ * Repositories prepare the same SQL text on every call; without a cache
+ * SQLite parses and plans it again each time. The pool hands out cached
+ * statements behind a handle whose close() clears the parameters and puts
+ * the statement back instead of finalizing it, so callers keep using
+ * try-with-resources unchanged.
+ *
+ * A physical connection is used by one lease at a time, so the cache is
+ * never contended; methods are synchronized only against pool shutdown.
+ */
+public class StatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final Stats stats;
+    private final LinkedHashMap<String, Entry> entries;
+    private final List<Entry> retired = new ArrayList<>();
+
+    StatementCache(Connection connection, int capacity, Stats stats) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.stats = stats;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Hit and miss counters shared by every connection of a pool.
+     */
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+        public long getMissCount() {
+            return misses.sum();
+        }
+
+        public long getEvictionCount() {
+            return evictions.sum();
+        }
+
+        /**
+         * Share of prepareStatement calls served from a cache, 0 when there were none.
+         */
+        public double getHitRate() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0 : (double) h / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, evictions=%d, hit rate=%.1f%%",
+                    getHitCount(), getMissCount(), getEvictionCount(), getHitRate() * 100);
+        }
+    }
+
+    /**
+     * Prepare {@code sql}, reusing the cached statement when it is idle.
+     * A statement already handed out (the same SQL prepared twice before the
+     * first is closed) gets a plain uncached statement instead.
+     *
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS, or -1 for the one-argument variant
+     */
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys < 0 ? sql : autoGeneratedKeys + "|" + sql;
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            stats.hits.increment();
+            return entry.checkOut();
+        }
+        stats.misses.increment();
+        PreparedStatement statement = autoGeneratedKeys < 0
+                ? connection.prepareStatement(sql)
+                : connection.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null) {
+            return statement;
+        }
+
+        entry = new Entry(statement);
+        entries.put(key, entry);
+        evictOverCapacity();
+        return entry.checkOut();
+    }
+
+    /**
+     * Return every statement still handed out, e.g. when the lease that
+     * prepared it ends without closing it.
+     */
+    synchronized void releaseAll() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        all.addAll(retired);
+        for (Entry entry : all) {
+            if (entry.inUse) {
+                entry.checkIn();
+            }
+        }
+        closeRetired();
+    }
+
+    /**
+     * Finalize every cached statement.
+     */
+    synchronized void close() {
+        entries.values().forEach(entry -> closeQuietly(entry.statement));
+        entries.clear();
+        retired.forEach(entry -> closeQuietly(entry.statement));
+        retired.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > capacity && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            stats.evictions.increment();
+            if (entry.inUse) {
+                // Still in the caller's hands, finalized when it comes back
+                retired.add(entry);
+            } else {
+                closeQuietly(entry.statement);
+            }
+        }
+    }
+
+    private void closeRetired() {
+        retired.removeIf(entry -> {
+            if (!entry.inUse) {
+                closeQuietly(entry.statement);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // Statement belongs to a connection being closed or reopened
+        }
+    }
+
+    /**
+     * One cached statement and the handle currently lent out for it.
+     */
+    private class Entry {
+        private final PreparedStatement statement;
+        private final List<ResultSet> results = new ArrayList<>();
+        private boolean inUse;
+        private Handle handle;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement checkOut() {
+            inUse = true;
+            handle = new Handle(this);
+            return handle.proxy;
+        }
+
+        private void checkIn() {
+            handle.closed = true;
+            handle = null;
+            try {
+                // Reset any open cursor and drop bindings so the next user starts clean.
+                // An unreset statement would keep the caller's read snapshot or write open.
+                for (ResultSet rs : results) {
+                    rs.close();
+                }
+                results.clear();
+                statement.clearBatch();
+                statement.clearParameters();
+            } catch (SQLException e) {
+                results.clear();
+                entries.values().remove(this);
+                retired.remove(this);
+                closeQuietly(statement);
+            }
+            inUse = false;
+        }
+    }
+
+    /**
+     * What the caller sees: close() returns the statement to the cache and
+     * any later use of this handle fails like a closed statement would.
+     */
+    private class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final PreparedStatement proxy;
+        private volatile boolean closed = false;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (StatementCache.this) {
+                        if (!closed) {
+                            entry.checkIn();
+                            closeRetired();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                Object result = method.invoke(entry.statement, args);
+                if (result instanceof ResultSet rs) {
+                    entry.results.add(rs);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
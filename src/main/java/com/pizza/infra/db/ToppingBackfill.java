@@ -0,0 +1,164 @@
+package com.pizza.infra.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * One-time backfill of order_item_toppings from the comma-joined
+ * order_items.toppings column of orders saved before schema version 4.
+ *
+ * Works in small batches keyed by order item id. Each batch is its own short
+ * transaction on the writer connection, and progress is stored in
+ * topping_backfill with the batch, so live checkouts get the writer between
+ * batches and an interrupted backfill resumes where it stopped.
+ */
+public class ToppingBackfill {
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_PAUSE_MS = 50;
+
+    private static final String READ_PROGRESS_SQL =
+            "SELECT last_item_id, max_item_id FROM topping_backfill WHERE id = 1";
+    private static final String SELECT_BATCH_SQL = """
+            SELECT id, toppings FROM order_items
+            WHERE id > ? AND id <= ? AND toppings IS NOT NULL
+            ORDER BY id
+            LIMIT ?
+            """;
+    private static final String INSERT_TOPPING_ROW_SQL = """
+            INSERT INTO order_item_toppings (order_item_id, topping_id, quantity)
+            VALUES (?, ?, ?)
+            ON CONFLICT(order_item_id, topping_id) DO UPDATE SET quantity = excluded.quantity
+            """;
+    private static final String WRITE_PROGRESS_SQL = "UPDATE topping_backfill SET last_item_id = ? WHERE id = 1";
+
+    private final OrderRepository repository;
+    private final int batchSize;
+    private final long pauseMs;
+
+    public ToppingBackfill(OrderRepository repository, int batchSize, long pauseMs) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Run the backfill to completion on a daemon thread.
+     */
+    public static void startInBackground() {
+        Thread thread = new Thread(() -> {
+            try {
+                ToppingBackfill backfill = new ToppingBackfill(new OrderRepository(), DEFAULT_BATCH_SIZE,
+                        DEFAULT_PAUSE_MS);
+                if (!backfill.isComplete()) {
+                    int items = backfill.runToCompletion();
+                    System.out.println("✅ Topping backfill finished: " + items + " order items migrated");
+                }
+            } catch (SQLException e) {
+                // Progress is saved per batch; the next start continues from there
+                System.err.println("❌ Topping backfill failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "topping-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Whether every pre-migration order item has been backfilled.
+     */
+    public boolean isComplete() throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(READ_PROGRESS_SQL);
+                ResultSet rs = stmt.executeQuery()) {
+            return !rs.next() || rs.getLong("last_item_id") >= rs.getLong("max_item_id");
+        }
+    }
+
+    /**
+     * Run batches until done, pausing between them to leave room for checkouts.
+     *
+     * @return Number of order items migrated
+     */
+    public int runToCompletion() throws SQLException, InterruptedException {
+        int total = 0;
+        while (true) {
+            int migrated = runBatch();
+            if (migrated < 0) {
+                return total;
+            }
+            total += migrated;
+            Thread.sleep(pauseMs);
+        }
+    }
+
+    /**
+     * Migrate the next batch of order items.
+     *
+     * @return Number of items migrated, or -1 if the backfill is already complete
+     */
+    public int runBatch() throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                long lastItemId;
+                long maxItemId;
+                try (PreparedStatement stmt = conn.prepareStatement(READ_PROGRESS_SQL);
+                        ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.commit();
+                        return -1;
+                    }
+                    lastItemId = rs.getLong("last_item_id");
+                    maxItemId = rs.getLong("max_item_id");
+                }
+                if (lastItemId >= maxItemId) {
+                    conn.commit();
+                    return -1;
+                }
+
+                int migrated = 0;
+                long reached = maxItemId;
+                OrderRepository.ToppingIds toppings = repository.newToppingIds();
+                try (PreparedStatement select = conn.prepareStatement(SELECT_BATCH_SQL);
+                        PreparedStatement insert = conn.prepareStatement(INSERT_TOPPING_ROW_SQL)) {
+                    select.setLong(1, lastItemId);
+                    select.setLong(2, maxItemId);
+                    select.setInt(3, batchSize);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            int itemId = rs.getInt("id");
+                            repository.addToppingRows(conn, insert, itemId,
+                                    OrderRepository.splitToppings(rs.getString("toppings")), toppings);
+                            migrated++;
+                            reached = itemId;
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                // A short batch means nothing is left below max_item_id
+                if (migrated < batchSize) {
+                    reached = maxItemId;
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(WRITE_PROGRESS_SQL)) {
+                    stmt.setLong(1, reached);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                toppings.publish();
+                return migrated;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.pizza.infra.db;
+
+import com.pizza.domain.decorator.ToppingCatalog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for the toppings sold at the counter.
+ *
+ * The active rows of the toppings table are the {@link ToppingCatalog};
+ * they are read with the pizzas into each {@link MenuCache} snapshot, and
+ * every change here bumps the menu version, so running terminals pick up a
+ * new topping or price within one version check.
+ */
+public class ToppingRepository {
+    private static final String LOAD_ACTIVE_SQL =
+            "SELECT id, name, price FROM toppings WHERE is_active = 1 ORDER BY id";
+    private static final String SAVE_SQL = """
+            INSERT INTO toppings (name, price, is_active) VALUES (?, ?, 1)
+            ON CONFLICT(name) DO UPDATE SET price = excluded.price, is_active = 1
+            """;
+    private static final String SET_ACTIVE_SQL = "UPDATE toppings SET is_active = ? WHERE name = ?";
+
+    /**
+     * The toppings currently sold, from the {@link MenuCache} snapshot.
+     */
+    public ToppingCatalog getCatalog() throws SQLException {
+        return MenuCache.getInstance().getSnapshot().getToppings();
+    }
+
+    /**
+     * Sell a topping at the given price: adds it, or updates and
+     * re-activates the existing topping with that name.
+     */
+    public void saveTopping(String name, int price) throws SQLException {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Topping name cannot be empty");
+        }
+        if (price < 0) {
+            throw new IllegalArgumentException("Topping price cannot be negative");
+        }
+        RetryPolicy.getDefault().execute("save topping", () -> {
+            try (Connection conn = SQLiteConnection.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement(SAVE_SQL)) {
+                stmt.setString(1, name.trim());
+                stmt.setInt(2, price);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Stop or resume selling a topping. Orders already saved keep it.
+     *
+     * @return false if there is no topping with that name
+     */
+    public boolean setActive(String name, boolean active) throws SQLException {
+        int updated = RetryPolicy.getDefault().execute("update topping", () -> {
+            try (Connection conn = SQLiteConnection.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement(SET_ACTIVE_SQL)) {
+                stmt.setInt(1, active ? 1 : 0);
+                stmt.setString(2, name);
+                return stmt.executeUpdate();
+            }
+        });
+        return updated > 0;
+    }
+
+    /**
+     * Load all active toppings from database, in id order.
+     * Used by {@link MenuCache} to build a snapshot.
+     */
+    static List<ToppingCatalog.Entry> loadActiveToppings(Connection conn) throws SQLException {
+        List<ToppingCatalog.Entry> toppings = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(LOAD_ACTIVE_SQL);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                toppings.add(new ToppingCatalog.Entry(rs.getInt("id"), rs.getString("name"), rs.getInt("price")));
+            }
+        }
+        return toppings;
+    }
+
+    /**
+     * Command line: {@code add <name> <price>}, {@code disable <name>},
+     * {@code enable <name>}; always lists the toppings on sale.
+     */
+    public static void main(String[] args) throws Exception {
+        ToppingRepository repository = new ToppingRepository();
+        try {
+            if (args.length == 3 && "add".equals(args[0])) {
+                repository.saveTopping(args[1], Integer.parseInt(args[2]));
+                System.out.println("✅ Topping " + args[1] + " on sale at " + args[2] + "đ");
+            } else if (args.length == 2 && ("disable".equals(args[0]) || "enable".equals(args[0]))) {
+                if (!repository.setActive(args[1], "enable".equals(args[0]))) {
+                    System.err.println("⚠️ No topping named " + args[1]);
+                }
+            }
+            try (Connection conn = SQLiteConnection.getReadConnection()) {
+                List<ToppingCatalog.Entry> toppings = loadActiveToppings(conn);
+                System.out.println("📊 " + toppings.size() + " toppings on sale: " + toppings);
+            }
+        } finally {
+            SQLiteConnection.shutdown();
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package com.pizza.ui;
 
+import com.pizza.app.CartSessionManager;
+import com.pizza.infra.db.ContentionMetrics;
+import com.pizza.infra.db.HotBackup;
+import com.pizza.infra.db.MaintenanceScheduler;
+import com.pizza.infra.db.OrderJournalFlusher;
+import com.pizza.infra.db.SQLiteConnection;
+import com.pizza.infra.db.ToppingBackfill;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
 
 /**
  * Main JavaFX Application class.
@@ -17,7 +32,7 @@ public class MainApp extends Application {
     private static Stage primaryStage;
 
     @Override
-    public void start(Stage stage) throws IOException {
+    public void start(Stage stage) {
         primaryStage = stage;
         primaryStage.setTitle("🍕 POS Pizza - Point of Sale");
         primaryStage.setWidth(1280);
@@ -25,11 +40,84 @@ public class MainApp extends Application {
         primaryStage.setMinWidth(1200);
         primaryStage.setMinHeight(750);
 
-        // Start with POS screen (single-screen interface)
-        showPos();
-
+        showStartup();
         primaryStage.setResizable(true);
         primaryStage.show();
+
+        // After a crash the journal may hold many orders; replaying them must not freeze the window
+        Thread replay = new Thread(() -> {
+            try {
+                OrderJournalFlusher.getInstance();
+                Platform.runLater(MainApp::openPos);
+            } catch (IOException | SQLException e) {
+                Platform.runLater(() -> failStartup(e));
+            }
+        }, "order-journal-replay");
+        replay.setDaemon(true);
+        replay.start();
+    }
+
+    /**
+     * Show the POS screen once the order journal is replayed, then start
+     * the background services.
+     */
+    private static void openPos() {
+        try {
+            // Start with POS screen (single-screen interface)
+            showPos();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Migrate toppings of orders saved before normalization, a batch at a time
+        ToppingBackfill.startInBackground();
+
+        // Hourly online backup; checkout keeps writing while it runs
+        HotBackup.startScheduled();
+
+        // Incremental vacuum and statistics refresh while no checkout is coming in
+        MaintenanceScheduler.start();
+
+        // Carts of other terminals and channels are dropped once idle
+        CartSessionManager.getInstance().startEviction();
+    }
+
+    /**
+     * Placeholder shown while orders left by the previous run are replayed.
+     */
+    private static void showStartup() {
+        ProgressIndicator progress = new ProgressIndicator();
+        Label message = new Label("Đang khôi phục đơn hàng chưa lưu...");
+        VBox root = new VBox(16, progress, message);
+        root.setAlignment(Pos.CENTER);
+
+        Scene scene = new Scene(root);
+        scene.getStylesheets().add(MainApp.class.getResource("/application.css").toExternalForm());
+        primaryStage.setScene(scene);
+    }
+
+    /**
+     * Checkout cannot work without the order journal: report it and quit.
+     */
+    private static void failStartup(Exception e) {
+        System.err.println("❌ Could not open the order journal: " + e.getMessage());
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Lỗi");
+        alert.setHeaderText(null);
+        alert.setContentText("Không thể mở nhật ký đơn hàng: " + e.getMessage());
+        alert.showAndWait();
+        Platform.exit();
+    }
+
+    @Override
+    public void stop() {
+        CartSessionManager.getInstance().stopEviction();
+        MaintenanceScheduler.shutdown();
+        HotBackup.stopScheduled();
+        // Drain the order journal before releasing pooled database connections
+        OrderJournalFlusher.shutdown();
+        SQLiteConnection.shutdown();
+        System.out.println("📊 Lock contention: " + ContentionMetrics.getInstance());
     }
 
     /**
@@ -1,12 +1,15 @@
 package com.pizza.ui.controllers;
 
+import com.pizza.app.CartLine;
 import com.pizza.app.CartService;
+import com.pizza.app.CartSessionManager;
 import com.pizza.app.EventBus;
-import com.pizza.domain.decorator.ToppingDecorator;
+import com.pizza.domain.factory.PizzaRegistry;
 import com.pizza.domain.pizza.Pizza;
 import com.pizza.domain.strategy.CashPayment;
 import com.pizza.domain.strategy.CardPayment;
 import com.pizza.domain.strategy.EWalletPayment;
+import com.pizza.infra.db.OrderJournalFlusher;
 import com.pizza.infra.db.OrderRepository;
 import com.pizza.ui.MainApp;
 import javafx.beans.property.SimpleStringProperty;
@@ -14,10 +17,16 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.VBox;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Controller for the Cart/Checkout view in POS system.
@@ -30,13 +39,15 @@ import java.sql.SQLException;
 public class CartController {
 
     @FXML
-    private TableView<Pizza> cartTable;
+    private TableView<CartLine> cartTable;
     @FXML
-    private TableColumn<Pizza, String> itemColumn;
+    private TableColumn<CartLine, String> itemColumn;
     @FXML
-    private TableColumn<Pizza, String> toppingsColumn;
+    private TableColumn<CartLine, String> toppingsColumn;
     @FXML
-    private TableColumn<Pizza, String> priceColumn;
+    private TableColumn<CartLine, String> quantityColumn;
+    @FXML
+    private TableColumn<CartLine, String> priceColumn;
 
     @FXML
     private RadioButton cashPaymentRadio;
@@ -54,25 +65,31 @@ public class CartController {
     @FXML
     private Button placeOrderButton;
 
-    private final CartService cartService = CartService.getInstance();
+    private final CartService cartService = CartSessionManager.getInstance().getLocalCart();
     private final EventBus eventBus = EventBus.getInstance();
-    private final OrderRepository orderRepository = new OrderRepository();
+    // Idempotency key of the cart being paid; pressing "pay" again for the same cart reuses it
+    private String checkoutKey = UUID.randomUUID().toString();
+    // Cart lines version checkoutKey was made for
+    private long checkoutLinesVersion = cartService.getLinesVersion();
 
     @FXML
     private void initialize() {
         // Setup table columns
-        itemColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getDescription()));
+        itemColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getPizza().getDescription()));
 
         toppingsColumn.setCellValueFactory(data -> {
-            Pizza pizza = data.getValue();
-            String toppings = pizza instanceof ToppingDecorator
-                    ? ((ToppingDecorator) pizza).getToppings()
-                    : "-";
+            Pizza pizza = data.getValue().getPizza();
+            String toppings = pizza.getToppingList().isEmpty()
+                    ? "-"
+                    : String.join(", ", pizza.getToppingList());
             return new SimpleStringProperty(toppings);
         });
 
+        quantityColumn.setCellValueFactory(
+                data -> new SimpleStringProperty(Integer.toString(data.getValue().getQuantity())));
+
         priceColumn.setCellValueFactory(
-                data -> new SimpleStringProperty(String.format("%,dđ", data.getValue().getPrice())));
+                data -> new SimpleStringProperty(String.format("%,dđ", data.getValue().getLineTotal())));
 
         // Setup payment radio buttons
         ToggleGroup paymentGroup = new ToggleGroup();
@@ -104,6 +121,14 @@ public class CartController {
 
         // Subscribe to cart updates (Observer pattern)
         eventBus.subscribe("CART_UPDATED", data -> {
+            if (!cartService.getSessionId().equals(data)) {
+                return; // Another terminal's cart
+            }
+            // Changed lines make a different checkout; a new payment method does not
+            if (cartService.getLinesVersion() != checkoutLinesVersion) {
+                checkoutKey = UUID.randomUUID().toString();
+                checkoutLinesVersion = cartService.getLinesVersion();
+            }
             loadCartItems();
             updateTotal();
         });
@@ -121,14 +146,14 @@ public class CartController {
 
     @FXML
     private void handleEditItem() {
-        Pizza selected = cartTable.getSelectionModel().getSelectedItem();
+        CartLine selected = cartTable.getSelectionModel().getSelectedItem();
         if (selected == null) {
             showAlert(Alert.AlertType.WARNING, "Chưa chọn món", "Vui lòng chọn món cần sửa.");
             return;
         }
 
         int index = cartTable.getSelectionModel().getSelectedIndex();
-        showEditDialog(selected, index);
+        showEditDialog(selected.getPizza(), index);
     }
 
     /**
@@ -145,7 +170,7 @@ public class CartController {
         content.setPadding(new javafx.geometry.Insets(15));
         content.setStyle("-fx-background-color: white;");
 
-        Label infoLabel = new Label("🍕 " + getBasePizzaName(originalPizza));
+        Label infoLabel = new Label("🍕 " + originalPizza.getName());
         infoLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #1A237E;");
 
         Label priceLabel = new Label(String.format("Giá hiện tại: %,dđ", originalPizza.getPrice()));
@@ -156,29 +181,21 @@ public class CartController {
         Label toppingLabel = new Label("🧀 Chọn topping:");
         toppingLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: #1A237E;");
 
-        // Topping checkboxes
-        CheckBox cheeseCheck = new CheckBox("Phô mai thêm (+10,000đ)");
-        CheckBox baconCheck = new CheckBox("Thịt xông khói (+15,000đ)");
-        CheckBox mushroomCheck = new CheckBox("Nấm (+8,000đ)");
-
-        cheeseCheck.setStyle("-fx-font-size: 13px;");
-        baconCheck.setStyle("-fx-font-size: 13px;");
-        mushroomCheck.setStyle("-fx-font-size: 13px;");
+        // Topping checkboxes, one per topping in the catalog
+        FlowPane toppingPane = new FlowPane(12, 8);
+        toppingPane.setPrefWrapLength(320);
+        toppingPane.setStyle("-fx-font-size: 13px;");
+        ToppingSelector toppings = new ToppingSelector(toppingPane, null);
 
-        // Parse current toppings
-        String desc = originalPizza.getDescription().toLowerCase();
-        cheeseCheck.setSelected(desc.contains("extra cheese") || desc.contains("phô mai"));
-        baconCheck.setSelected(desc.contains("bacon") || desc.contains("thịt"));
-        mushroomCheck.setSelected(desc.contains("mushroom") || desc.contains("nấm"));
+        // Current toppings
+        toppings.select(originalPizza);
 
         content.getChildren().addAll(
                 infoLabel,
                 priceLabel,
                 sep,
                 toppingLabel,
-                cheeseCheck,
-                baconCheck,
-                mushroomCheck);
+                toppingPane);
 
         dialog.getDialogPane().setContent(content);
 
@@ -194,10 +211,7 @@ public class CartController {
         // Result converter
         dialog.setResultConverter(buttonType -> {
             if (buttonType == saveButtonType) {
-                Pizza newPizza = buildPizzaFromOriginal(originalPizza,
-                        cheeseCheck.isSelected(),
-                        baconCheck.isSelected(),
-                        mushroomCheck.isSelected());
+                Pizza newPizza = buildPizzaFromOriginal(originalPizza, toppings.getSelectedIds());
                 return newPizza;
             }
             return null;
@@ -212,50 +226,12 @@ public class CartController {
         });
     }
 
-    /**
-     * Get base pizza name without topping decorators.
-     */
-    private String getBasePizzaName(Pizza pizza) {
-        Pizza base = getBasePizza(pizza);
-        String desc = base.getDescription();
-        // Extract just the pizza name (before size)
-        if (desc.contains("(")) {
-            return desc.substring(0, desc.indexOf("(")).trim();
-        }
-        return desc;
-    }
-
     /**
      * Build a new pizza based on original but with new toppings.
      */
-    private Pizza buildPizzaFromOriginal(Pizza original, boolean addCheese, boolean addBacon, boolean addMushroom) {
-        // Get the base pizza (without toppings)
-        Pizza base = getBasePizza(original);
-
-        // Re-apply selected toppings (Decorator pattern)
-        Pizza pizza = base;
-        if (addCheese) {
-            pizza = new com.pizza.domain.decorator.Cheese(pizza);
-        }
-        if (addBacon) {
-            pizza = new com.pizza.domain.decorator.Bacon(pizza);
-        }
-        if (addMushroom) {
-            pizza = new com.pizza.domain.decorator.Mushroom(pizza);
-        }
-
-        return pizza;
-    }
-
-    /**
-     * Extract base pizza from decorated pizza.
-     */
-    private Pizza getBasePizza(Pizza pizza) {
-        Pizza current = pizza;
-        while (current instanceof ToppingDecorator) {
-            current = ((ToppingDecorator) current).getWrappedPizza();
-        }
-        return current;
+    private Pizza buildPizzaFromOriginal(Pizza original, int[] toppingIds) {
+        // Same base and size, selected toppings: the shared instance for that configuration
+        return PizzaRegistry.getInstance().get(original.getName(), original.getSize(), toppingIds);
     }
 
     @FXML
@@ -276,20 +252,25 @@ public class CartController {
                 return;
             }
 
-            // Save order to database
+            // Record order in the journal; it is written to the database in the background
             String customerName = customerNameField.getText().trim();
             String paymentMethod = cartService.getPaymentStrategy().getName();
 
-            int orderId = orderRepository.saveOrder(
+            // One row per line: identical pizzas are stored once with their quantity
+            List<OrderRepository.OrderItemData> orderItems = new ArrayList<>();
+            for (CartLine line : cartService.getLines()) {
+                orderItems.add(OrderRepository.OrderItemData.fromPizza(line.getPizza(), line.getQuantity()));
+            }
+            OrderJournalFlusher.getInstance().submit(new OrderRepository.OrderData(
                     customerName,
                     paymentMethod,
-                    cartService.getItems(),
-                    cartService.getTotal());
+                    cartService.getTotal(),
+                    orderItems).withIdempotencyKey(checkoutKey).withCreatedAt(LocalDateTime.now(ZoneOffset.UTC)));
 
             // Show success message
             Alert alert = new Alert(Alert.AlertType.INFORMATION);
             alert.setTitle("Thanh toán thành công");
-            alert.setHeaderText("🎉 Đơn hàng #" + orderId + " đã hoàn tất!");
+            alert.setHeaderText("🎉 Đơn hàng đã hoàn tất!");
             alert.setContentText(String.format(
                     "Tổng tiền: %,dđ\n" +
                             "Thanh toán: %s\n\n" +
@@ -302,12 +283,10 @@ public class CartController {
             cartService.clear();
             MainApp.showHome();
 
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Lỗi cơ sở dữ liệu",
+        } catch (SQLException | IOException e) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi lưu đơn hàng",
                     "Không thể lưu đơn hàng: " + e.getMessage());
             e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
@@ -331,7 +310,7 @@ public class CartController {
 
     private void loadCartItems() {
         javafx.application.Platform.runLater(() -> {
-            ObservableList<Pizza> items = FXCollections.observableArrayList(cartService.getItems());
+            ObservableList<CartLine> items = FXCollections.observableArrayList(cartService.getLines());
             cartTable.setItems(items);
         });
     }
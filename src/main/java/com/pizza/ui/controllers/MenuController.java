@@ -1,11 +1,9 @@
 package com.pizza.ui.controllers;
 
 import com.pizza.app.CartService;
+import com.pizza.app.CartSessionManager;
 import com.pizza.app.EventBus;
-import com.pizza.domain.decorator.Bacon;
-import com.pizza.domain.decorator.Cheese;
-import com.pizza.domain.decorator.Mushroom;
-import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
 import com.pizza.domain.pizza.Pizza;
 import com.pizza.domain.pizza.Size;
 import com.pizza.infra.db.PizzaRepository;
@@ -14,6 +12,7 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.layout.FlowPane;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,11 +30,7 @@ public class MenuController {
     @FXML
     private ComboBox<Size> sizeCombo;
     @FXML
-    private CheckBox cheeseCheck;
-    @FXML
-    private CheckBox baconCheck;
-    @FXML
-    private CheckBox mushroomCheck;
+    private FlowPane toppingPane;
     @FXML
     private Spinner<Integer> quantitySpinner;
     @FXML
@@ -49,15 +44,17 @@ public class MenuController {
     @FXML
     private Label pizzaDescriptionLabel;
 
-    private final CartService cartService = CartService.getInstance();
+    private final CartService cartService = CartSessionManager.getInstance().getLocalCart();
     private final EventBus eventBus = EventBus.getInstance();
     private final PizzaRepository pizzaRepository = new PizzaRepository();
     private List<PizzaRepository.PizzaData> availablePizzas;
+    private ToppingSelector toppingSelector;
 
     @FXML
     private void initialize() {
         // Load pizza types from database
         loadPizzasFromDatabase();
+        toppingSelector = new ToppingSelector(toppingPane, null);
 
         if (availablePizzas != null && !availablePizzas.isEmpty()) {
             pizzaTypeCombo.setValue(availablePizzas.get(0).getName());
@@ -78,7 +75,11 @@ public class MenuController {
         updateCartCount();
 
         // Subscribe to cart updates
-        eventBus.subscribe("CART_UPDATED", data -> updateCartCount());
+        eventBus.subscribe("CART_UPDATED", data -> {
+            if (cartService.getSessionId().equals(data)) {
+                updateCartCount();
+            }
+        });
 
         // Add listeners for preview
         pizzaTypeCombo.setOnAction(e -> {
@@ -86,9 +87,7 @@ public class MenuController {
             updatePreview();
         });
         sizeCombo.setOnAction(e -> updatePreview());
-        cheeseCheck.setOnAction(e -> updatePreview());
-        baconCheck.setOnAction(e -> updatePreview());
-        mushroomCheck.setOnAction(e -> updatePreview());
+        toppingSelector.setOnChange(this::updatePreview);
 
         // Initial preview
         updatePreview();
@@ -206,10 +205,8 @@ public class MenuController {
     private void handleAddToCart() {
         int quantity = quantitySpinner.getValue();
 
-        for (int i = 0; i < quantity; i++) {
-            Pizza pizza = createPizza();
-            cartService.addItem(pizza);
-        }
+        // One cart line (and one CART_UPDATED) however many pizzas
+        cartService.addItem(createPizza(), quantity);
 
         // Show confirmation
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -244,20 +241,8 @@ public class MenuController {
         String type = pizzaTypeCombo.getValue();
         Size size = sizeCombo.getValue();
 
-        Pizza pizza = PizzaFactory.create(type, size);
-
-        // Apply decorators for selected toppings
-        if (cheeseCheck.isSelected()) {
-            pizza = new Cheese(pizza);
-        }
-        if (baconCheck.isSelected()) {
-            pizza = new Bacon(pizza);
-        }
-        if (mushroomCheck.isSelected()) {
-            pizza = new Mushroom(pizza);
-        }
-
-        return pizza;
+        // Shared instance per configuration; built with the topping decorators on first use
+        return PizzaRegistry.getInstance().get(type, size, toppingSelector.getSelectedIds());
     }
 
     private void updatePreview() {
@@ -272,13 +257,12 @@ public class MenuController {
 
     private void updateCartCount() {
         javafx.application.Platform
-                .runLater(() -> cartCountLabel.setText("Giỏ hàng: " + cartService.getItemCount() + " món"));
+                .runLater(() -> cartCountLabel.setText("Giỏ hàng: " + cartService.getPizzaCount() + " món"));
     }
 
     private void resetForm() {
-        cheeseCheck.setSelected(false);
-        baconCheck.setSelected(false);
-        mushroomCheck.setSelected(false);
+        toppingSelector.clear();
+        toppingSelector.refresh();
         quantitySpinner.getValueFactory().setValue(1);
         updatePreview();
     }
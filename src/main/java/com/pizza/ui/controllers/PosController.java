@@ -1,17 +1,17 @@
 package com.pizza.ui.controllers;
 
+import com.pizza.app.CartLine;
 import com.pizza.app.CartService;
+import com.pizza.app.CartSessionManager;
 import com.pizza.app.EventBus;
-import com.pizza.domain.decorator.Bacon;
-import com.pizza.domain.decorator.Cheese;
-import com.pizza.domain.decorator.Mushroom;
-import com.pizza.domain.decorator.ToppingDecorator;
-import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
 import com.pizza.domain.pizza.Pizza;
 import com.pizza.domain.pizza.Size;
 import com.pizza.domain.strategy.CashPayment;
 import com.pizza.domain.strategy.CardPayment;
 import com.pizza.domain.strategy.EWalletPayment;
+import com.pizza.infra.db.OrderJournalFlusher;
+import com.pizza.infra.db.OrderNumberSequence;
 import com.pizza.infra.db.OrderRepository;
 import com.pizza.infra.db.PizzaRepository;
 import javafx.application.Platform;
@@ -25,11 +25,14 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.control.ButtonBar;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Controller for Single-Screen POS Interface.
@@ -54,13 +57,9 @@ public class PosController {
     @FXML
     private ToggleButton sizeLarge;
 
-    // Topping selection
+    // Topping selection, one check box per topping in the catalog
     @FXML
-    private CheckBox cheeseCheck;
-    @FXML
-    private CheckBox baconCheck;
-    @FXML
-    private CheckBox mushroomCheck;
+    private FlowPane toppingPane;
 
     // Payment method
     @FXML
@@ -86,26 +85,54 @@ public class PosController {
     @FXML
     private Button addToOrderButton;
 
-    private final CartService cartService = CartService.getInstance();
+    private final CartService cartService = CartSessionManager.getInstance().getLocalCart();
     private final EventBus eventBus = EventBus.getInstance();
-    private final OrderRepository orderRepository = new OrderRepository();
     private final PizzaRepository pizzaRepository = new PizzaRepository();
+    private final PizzaRegistry pizzaRegistry = PizzaRegistry.getInstance();
+    private OrderJournalFlusher orderWriter;
+    private final OrderNumberSequence orderNumbers = OrderNumberSequence.getInstance();
 
     private ToggleGroup sizeGroup;
     private ToggleGroup paymentGroup;
+    private ToppingSelector toppingSelector;
     private String selectedPizzaType = null;
     private int selectedItemIndex = -1;
-    private int orderCounter = 1;
+    // Number the next checkout will get, as shown in orderNumberLabel
+    private int displayedOrderNumber;
+    // Idempotency key of the cart being paid; pressing "pay" again for the same cart reuses it
+    private String checkoutKey = UUID.randomUUID().toString();
+    // Order number taken for checkoutKey, reused when the same checkout is retried; null until taken
+    private Integer checkoutOrderNumber;
+    // Cart lines version checkoutKey was made for
+    private long checkoutLinesVersion = cartService.getLinesVersion();
 
     @FXML
     private void initialize() {
+        try {
+            // Already started by MainApp, which replays the journal before this view loads
+            orderWriter = OrderJournalFlusher.getInstance();
+        } catch (IOException | SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi", "Không thể mở nhật ký đơn hàng: " + e.getMessage());
+        }
+
         setupToggleGroups();
         loadPizzaMenu();
+        // After the menu, so the catalog read with it is the one shown
+        toppingSelector = new ToppingSelector(toppingPane, "topping-check");
         setupDateTime();
         updateOrderDisplay();
+        // After the journal replay, so numbers already saved are never handed out again
+        showNextOrderNumber();
 
         // Subscribe to cart updates (Observer pattern)
         eventBus.subscribe("CART_UPDATED", data -> {
+            if (!cartService.getSessionId().equals(data)) {
+                return; // Another terminal's cart
+            }
+            // Changed lines make a different checkout; a new payment method does not
+            if (cartService.getLinesVersion() != checkoutLinesVersion) {
+                startNewCheckout();
+            }
             updateOrderDisplay();
         });
 
@@ -259,19 +286,8 @@ public class PosController {
             // Get selected size
             Size size = getSelectedSize();
 
-            // Create pizza using Factory Pattern
-            Pizza pizza = PizzaFactory.create(selectedPizzaType, size);
-
-            // Add toppings using Decorator Pattern
-            if (cheeseCheck.isSelected()) {
-                pizza = new Cheese(pizza);
-            }
-            if (baconCheck.isSelected()) {
-                pizza = new Bacon(pizza);
-            }
-            if (mushroomCheck.isSelected()) {
-                pizza = new Mushroom(pizza);
-            }
+            // Shared instance per configuration (Flyweight), built by Factory + Decorators on first use
+            Pizza pizza = pizzaRegistry.get(selectedPizzaType, size, toppingSelector.getSelectedIds());
 
             // Add to cart
             cartService.addItem(pizza);
@@ -304,10 +320,9 @@ public class PosController {
         });
         selectedPizzaType = null;
 
-        // Reset toppings
-        cheeseCheck.setSelected(false);
-        baconCheck.setSelected(false);
-        mushroomCheck.setSelected(false);
+        // Reset toppings; picks up a topping catalog reloaded since the last pizza
+        toppingSelector.clear();
+        toppingSelector.refresh();
 
         // Reset size to Medium
         sizeMedium.setSelected(true);
@@ -332,12 +347,12 @@ public class PosController {
             return;
         }
 
-        Pizza currentPizza = cartService.getItems().get(selectedItemIndex);
+        Pizza currentPizza = cartService.getLines().get(selectedItemIndex).getPizza();
 
         // Create edit dialog
         Dialog<Pizza> dialog = new Dialog<>();
         dialog.setTitle("✏️ Sửa Món");
-        dialog.setHeaderText("Chỉnh sửa: " + getBasePizza(currentPizza).getName());
+        dialog.setHeaderText("Chỉnh sửa: " + currentPizza.getName());
 
         // Set button types
         ButtonType saveButtonType = new ButtonType("💾 Lưu", ButtonBar.ButtonData.OK_DONE);
@@ -381,20 +396,17 @@ public class PosController {
         Label toppingLabel = new Label("🧀 Topping:");
         toppingLabel.setFont(Font.font("System Bold", 14));
 
-        CheckBox editCheese = new CheckBox("Phô mai thêm (+10,000đ)");
-        CheckBox editBacon = new CheckBox("Thịt xông khói (+15,000đ)");
-        CheckBox editMushroom = new CheckBox("Nấm (+8,000đ)");
+        FlowPane editToppingPane = new FlowPane(12, 8);
+        editToppingPane.setPrefWrapLength(340);
+        ToppingSelector editToppings = new ToppingSelector(editToppingPane, null);
 
         // Detect current toppings
-        String desc = currentPizza.getDescription();
-        editCheese.setSelected(desc.contains("Phô Mai"));
-        editBacon.setSelected(desc.contains("Thịt Xông Khói"));
-        editMushroom.setSelected(desc.contains("Nấm"));
+        editToppings.select(currentPizza);
 
         content.getChildren().addAll(
                 sizeLabel, sizeBox,
                 new Separator(),
-                toppingLabel, editCheese, editBacon, editMushroom);
+                toppingLabel, editToppingPane);
 
         dialog.getDialogPane().setContent(content);
 
@@ -410,24 +422,9 @@ public class PosController {
                         newSize = Size.L;
 
                     // Get base pizza type
-                    Pizza basePizza = getBasePizza(currentPizza);
-                    String pizzaType = basePizza.getName().replace(" ", "");
-
-                    // Create new pizza with Factory
-                    Pizza newPizza = PizzaFactory.create(pizzaType, newSize);
-
-                    // Add toppings with Decorator
-                    if (editCheese.isSelected()) {
-                        newPizza = new Cheese(newPizza);
-                    }
-                    if (editBacon.isSelected()) {
-                        newPizza = new Bacon(newPizza);
-                    }
-                    if (editMushroom.isSelected()) {
-                        newPizza = new Mushroom(newPizza);
-                    }
-
-                    return newPizza;
+                    String pizzaType = currentPizza.getName().replace(" ", "");
+
+                    return pizzaRegistry.get(pizzaType, newSize, editToppings.getSelectedIds());
                 } catch (Exception e) {
                     return null;
                 }
@@ -501,7 +498,7 @@ public class PosController {
         // Order info
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
         Label orderInfo = new Label(
-                "Đơn #: " + String.format("%04d", orderCounter) + "\n" +
+                "Đơn #: " + String.format("%04d", displayedOrderNumber) + "\n" +
                         "Thời gian: " + LocalDateTime.now().format(formatter) + "\n" +
                         "Thu ngân: " + cashierLabel.getText() + "\n" +
                         "Khách hàng: "
@@ -517,30 +514,30 @@ public class PosController {
         itemsHeader.setAlignment(Pos.CENTER);
 
         VBox itemsList = new VBox(5);
-        List<Pizza> items = cartService.getItems();
-        for (int i = 0; i < items.size(); i++) {
-            Pizza pizza = items.get(i);
-            Pizza basePizza = getBasePizza(pizza);
-
+        List<CartLine> lines = cartService.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            CartLine line = lines.get(i);
+            Pizza pizza = line.getPizza();
             String itemText = String.format("%d. %-25s %,9dđ",
                     i + 1,
-                    basePizza.getName() + " (" + getSizeVietnamese(pizza.getSize()) + ")",
-                    pizza.getPrice());
+                    pizza.getName() + " (" + getSizeVietnamese(pizza.getSize()) + ")",
+                    line.getLineTotal());
 
             Label itemLabel = new Label(itemText);
             itemLabel.setFont(Font.font("Monospaced", 11));
             itemsList.getChildren().add(itemLabel);
 
+            // Show quantity and unit price of repeated pizzas
+            if (line.getQuantity() > 1) {
+                Label quantityLabel = new Label(String.format("   x%d @ %,dđ", line.getQuantity(), line.getUnitPrice()));
+                quantityLabel.setFont(Font.font("Monospaced", 10));
+                quantityLabel.setStyle("-fx-text-fill: #7f8c8d;");
+                itemsList.getChildren().add(quantityLabel);
+            }
+
             // Show toppings if any
-            if (!pizza.getDescription().equals(basePizza.getDescription())) {
-                String toppings = pizza.getDescription()
-                        .replace(basePizza.getDescription(), "")
-                        .replace(", ", "\n   + ")
-                        .trim();
-                if (toppings.startsWith(",")) {
-                    toppings = toppings.substring(1).trim();
-                }
-                Label toppingLabel = new Label("   + " + toppings);
+            if (!pizza.getToppingList().isEmpty()) {
+                Label toppingLabel = new Label("   + " + String.join(", ", pizza.getToppingList()));
                 toppingLabel.setFont(Font.font("Monospaced", 10));
                 toppingLabel.setStyle("-fx-text-fill: #7f8c8d;");
                 itemsList.getChildren().add(toppingLabel);
@@ -588,7 +585,7 @@ public class PosController {
      * Can be called from preview or after checkout completion.
      */
     private void showReceiptDialog(int orderNum, String customerName, String paymentMethod,
-                                   List<Pizza> items, int total) {
+                                   List<CartLine> lines, int total) {
         Dialog<Void> receiptDialog = new Dialog<>();
         receiptDialog.setTitle("🖨️ Hóa Đơn");
         receiptDialog.setHeaderText("🍕 POS PIZZA - HÓA ĐƠN BÁN HÀNG");
@@ -626,29 +623,29 @@ public class PosController {
         itemsHeader.setAlignment(Pos.CENTER);
 
         VBox itemsList = new VBox(5);
-        for (int i = 0; i < items.size(); i++) {
-            Pizza pizza = items.get(i);
-            Pizza basePizza = getBasePizza(pizza);
-
+        for (int i = 0; i < lines.size(); i++) {
+            CartLine line = lines.get(i);
+            Pizza pizza = line.getPizza();
             String itemText = String.format("%d. %-25s %,9dđ",
                     i + 1,
-                    basePizza.getName() + " (" + getSizeVietnamese(pizza.getSize()) + ")",
-                    pizza.getPrice());
+                    pizza.getName() + " (" + getSizeVietnamese(pizza.getSize()) + ")",
+                    line.getLineTotal());
 
             Label itemLabel = new Label(itemText);
             itemLabel.setFont(Font.font("Monospaced", 11));
             itemsList.getChildren().add(itemLabel);
 
+            // Show quantity and unit price of repeated pizzas
+            if (line.getQuantity() > 1) {
+                Label quantityLabel = new Label(String.format("   x%d @ %,dđ", line.getQuantity(), line.getUnitPrice()));
+                quantityLabel.setFont(Font.font("Monospaced", 10));
+                quantityLabel.setStyle("-fx-text-fill: #7f8c8d;");
+                itemsList.getChildren().add(quantityLabel);
+            }
+
             // Show toppings if any
-            if (!pizza.getDescription().equals(basePizza.getDescription())) {
-                String toppings = pizza.getDescription()
-                        .replace(basePizza.getDescription(), "")
-                        .replace(", ", "\n   + ")
-                        .trim();
-                if (toppings.startsWith(",")) {
-                    toppings = toppings.substring(1).trim();
-                }
-                Label toppingLabel = new Label("   + " + toppings);
+            if (!pizza.getToppingList().isEmpty()) {
+                Label toppingLabel = new Label("   + " + String.join(", ", pizza.getToppingList()));
                 toppingLabel.setFont(Font.font("Monospaced", 10));
                 toppingLabel.setStyle("-fx-text-fill: #7f8c8d;");
                 itemsList.getChildren().add(toppingLabel);
@@ -695,6 +692,12 @@ public class PosController {
             return;
         }
 
+        if (orderWriter == null) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi lưu đơn hàng",
+                    "Nhật ký đơn hàng chưa sẵn sàng. Vui lòng khởi động lại ứng dụng.");
+            return;
+        }
+
         try {
             // Process payment using Strategy Pattern
             boolean paymentSuccess = cartService.processPayment();
@@ -705,40 +708,78 @@ public class PosController {
                 return;
             }
 
-            // Save order to database
+            // Record order in the local journal; it is written to the database in the background
             String customerName = customerNameField.getText().trim();
             String paymentMethod = cartService.getPaymentStrategy().getName();
 
-            int orderId = orderRepository.saveOrder(
-                    customerName.isEmpty() ? null : customerName,
-                    paymentMethod,
-                    cartService.getItems(),
-                    cartService.getTotal());
-
             // Save order data before clearing
-            List<Pizza> orderItems = new ArrayList<>(cartService.getItems());
+            List<CartLine> orderLines = cartService.getLines();
             int orderTotal = cartService.getTotal();
             String orderPaymentMethod = paymentMethod;
             String orderCustomerName = customerName.isEmpty() ? "Khách vãng lai" : customerName;
-            int currentOrderNumber = orderCounter;
+            if (checkoutOrderNumber == null) {
+                checkoutOrderNumber = orderNumbers.next();
+            }
+            int currentOrderNumber = checkoutOrderNumber;
+
+            // One row per line: identical pizzas are stored once with their quantity
+            List<OrderRepository.OrderItemData> orderItems = new ArrayList<>(orderLines.size());
+            for (CartLine line : orderLines) {
+                orderItems.add(OrderRepository.OrderItemData.fromPizza(line.getPizza(), line.getQuantity()));
+            }
+            orderWriter.submit(new OrderRepository.OrderData(
+                    customerName.isEmpty() ? null : customerName,
+                    paymentMethod,
+                    orderTotal,
+                    orderItems).withIdempotencyKey(checkoutKey).withOrderNumber(currentOrderNumber)
+                    .withCreatedAt(LocalDateTime.now(ZoneOffset.UTC)));
 
             // Show quick success notification
-            showToast("✅ Thanh toán thành công! Đơn #" + orderId);
+            showToast("✅ Thanh toán thành công! Đơn #" + String.format("%04d", currentOrderNumber));
 
             // Clear cart and reset
+            startNewCheckout();
             cartService.clear();
             customerNameField.clear();
             selectedItemIndex = -1;
-            orderCounter++;
-            orderNumberLabel.setText("Đơn #" + String.format("%04d", orderCounter));
+            showNextOrderNumber();
 
             // Auto-print receipt after checkout
-            showReceiptDialog(currentOrderNumber, orderCustomerName, orderPaymentMethod, orderItems, orderTotal);
+            showReceiptDialog(currentOrderNumber, orderCustomerName, orderPaymentMethod, orderLines, orderTotal);
 
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Lỗi cơ sở dữ liệu",
+        } catch (IOException e) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi lưu đơn hàng",
                     "Không thể lưu đơn hàng: " + e.getMessage());
             e.printStackTrace();
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Lỗi số đơn hàng",
+                    "Không thể cấp số đơn hàng: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forget the key and order number of the current checkout, once it
+     * went through or its cart lines changed.
+     */
+    private void startNewCheckout() {
+        checkoutKey = UUID.randomUUID().toString();
+        checkoutOrderNumber = null;
+        checkoutLinesVersion = cartService.getLinesVersion();
+    }
+
+    /**
+     * Show the number the next checkout will get. Reserves a new block of
+     * numbers here, between checkouts, when the current one is used up.
+     */
+    private void showNextOrderNumber() {
+        try {
+            displayedOrderNumber = orderNumbers.peek();
+            orderNumberLabel.setText("Đơn #" + String.format("%04d", displayedOrderNumber));
+        } catch (SQLException e) {
+            // Checkout tries the reservation again
+            orderNumberLabel.setText("Đơn #----");
+            System.err.println("⚠️ Could not reserve order numbers: " + e.getMessage());
         }
     }
 
@@ -746,10 +787,9 @@ public class PosController {
         Platform.runLater(() -> {
             orderItemsBox.getChildren().clear();
 
-            List<Pizza> items = cartService.getItems();
-            for (int i = 0; i < items.size(); i++) {
-                Pizza pizza = items.get(i);
-                HBox itemBox = createOrderItemBox(i, pizza);
+            List<CartLine> lines = cartService.getLines();
+            for (int i = 0; i < lines.size(); i++) {
+                HBox itemBox = createOrderItemBox(i, lines.get(i));
                 orderItemsBox.getChildren().add(itemBox);
             }
 
@@ -759,7 +799,8 @@ public class PosController {
         });
     }
 
-    private HBox createOrderItemBox(int index, Pizza pizza) {
+    private HBox createOrderItemBox(int index, CartLine line) {
+        Pizza pizza = line.getPizza();
         HBox box = new HBox(10);
         box.setAlignment(Pos.CENTER_LEFT);
         box.setPadding(new Insets(8, 10, 8, 10));
@@ -781,19 +822,19 @@ public class PosController {
         HBox.setHgrow(infoBox, Priority.ALWAYS);
 
         // Get base pizza info (without toppings)
-        Pizza basePizza = getBasePizza(pizza);
-        String sizeName = getSizeVietnamese(basePizza.getSize());
+        String sizeName = getSizeVietnamese(pizza.getSize());
 
         // Main label: Number + Pizza name + Size
-        Label numberLabel = new Label((index + 1) + ". " + basePizza.getName() + " (" + sizeName + ")");
+        String quantity = line.getQuantity() > 1 ? " x" + line.getQuantity() : "";
+        Label numberLabel = new Label((index + 1) + ". " + pizza.getName() + " (" + sizeName + ")" + quantity);
         numberLabel.setFont(Font.font("System Bold", 14));
         numberLabel.setWrapText(false);
         numberLabel.setStyle("-fx-text-fill: #2c3e50;");
 
         // Topping label: Show toppings in second line if any
         Label toppingLabel = new Label();
-        if (pizza instanceof ToppingDecorator) {
-            String toppings = ((ToppingDecorator) pizza).getToppings();
+        if (!pizza.getToppingList().isEmpty()) {
+            String toppings = String.join(", ", pizza.getToppingList());
             toppingLabel.setText("   + " + toppings);
             toppingLabel.setFont(Font.font("System", 12));
             toppingLabel.setStyle("-fx-text-fill: #95a5a6;");
@@ -806,7 +847,7 @@ public class PosController {
         }
 
         // Price
-        Label priceLabel = new Label(String.format("%,dđ", pizza.getPrice()));
+        Label priceLabel = new Label(String.format("%,dđ", line.getLineTotal()));
         priceLabel.setFont(Font.font("System Bold", 16));
         priceLabel.setStyle("-fx-text-fill: #27ae60;");
         priceLabel.setMinWidth(85);
@@ -828,17 +869,6 @@ public class PosController {
         };
     }
 
-    /**
-     * Extract base pizza from decorated pizza.
-     */
-    private Pizza getBasePizza(Pizza pizza) {
-        Pizza current = pizza;
-        while (current instanceof ToppingDecorator) {
-            current = ((ToppingDecorator) current).getWrappedPizza();
-        }
-        return current;
-    }
-
     private void showAlert(Alert.AlertType type, String title, String message) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
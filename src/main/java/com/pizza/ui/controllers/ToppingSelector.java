@@ -0,0 +1,96 @@
+package com.pizza.ui.controllers;
+
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.pizza.Pizza;
+import javafx.scene.control.CheckBox;
+import javafx.scene.layout.Pane;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Topping check boxes generated from the {@link ToppingCatalog}, one per
+ * topping on sale, labelled with its price. Each box remembers its topping
+ * id, so the selection goes straight to
+ * {@link com.pizza.domain.factory.PizzaRegistry#get(String, com.pizza.domain.pizza.Size, int...)}.
+ */
+class ToppingSelector {
+    private final Pane pane;
+    private final String styleClass;
+    private final List<CheckBox> boxes = new ArrayList<>();
+    private ToppingCatalog catalog;
+    private Runnable onChange = () -> {
+    };
+
+    /**
+     * @param pane       Container the check boxes are put in; its children are replaced
+     * @param styleClass Style class of each check box, or null
+     */
+    ToppingSelector(Pane pane, String styleClass) {
+        this.pane = pane;
+        this.styleClass = styleClass;
+        refresh();
+    }
+
+    /**
+     * Rebuild the check boxes if the catalog changed since they were built,
+     * e.g. after a price change. Clears the selection when it does.
+     */
+    void refresh() {
+        ToppingCatalog current = ToppingCatalog.getCurrent();
+        if (current == catalog) {
+            return;
+        }
+        catalog = current;
+        boxes.clear();
+        for (ToppingCatalog.Entry topping : current.getToppings()) {
+            CheckBox box = new CheckBox(String.format("%s (+%,dđ)", topping.getName(), topping.getPrice()));
+            box.setUserData(topping.getId());
+            if (styleClass != null) {
+                box.getStyleClass().add(styleClass);
+            }
+            box.setOnAction(e -> onChange.run());
+            boxes.add(box);
+        }
+        pane.getChildren().setAll(boxes);
+    }
+
+    /**
+     * Called whenever a box is ticked or unticked.
+     */
+    void setOnChange(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Ids of the ticked toppings.
+     */
+    int[] getSelectedIds() {
+        int[] ids = new int[boxes.size()];
+        int n = 0;
+        for (CheckBox box : boxes) {
+            if (box.isSelected()) {
+                ids[n++] = (Integer) box.getUserData();
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Tick exactly the toppings a pizza has.
+     */
+    void select(Pizza pizza) {
+        List<String> toppings = pizza.getToppingList();
+        for (CheckBox box : boxes) {
+            ToppingCatalog.Entry topping = catalog.get((Integer) box.getUserData());
+            box.setSelected(topping != null && toppings.contains(topping.getName()));
+        }
+    }
+
+    void clear() {
+        for (CheckBox box : boxes) {
+            box.setSelected(false);
+        }
+    }
+}
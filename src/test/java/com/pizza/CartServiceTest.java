@@ -0,0 +1,142 @@
+package com.pizza;
+
+import com.pizza.app.CartLine;
+import com.pizza.app.CartService;
+import com.pizza.app.CartSessionManager;
+import com.pizza.app.EventBus;
+import com.pizza.app.PriceCalculator;
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.domain.strategy.CardPayment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the cart: identical pizzas share one line with a quantity.
+ */
+class CartServiceTest {
+
+    private final CartService cart = new CartSessionManager(60_000).getCart("pos-test");
+    private final AtomicInteger updates = new AtomicInteger();
+    private final Consumer<String> listener = data -> {
+        if (cart.getSessionId().equals(data)) {
+            updates.incrementAndGet();
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        cart.clear();
+        EventBus.getInstance().subscribe("CART_UPDATED", listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        EventBus.getInstance().unsubscribe("CART_UPDATED", listener);
+        cart.clear();
+    }
+
+    @Test
+    void testCateringOrderIsOneLineAndOneEvent() {
+        Pizza pizza = PizzaRegistry.getInstance().get("Margherita", Size.M, true, false, false);
+
+        cart.addItem(pizza, 50);
+
+        assertEquals(1, updates.get(), "One refresh for the whole quantity");
+        assertEquals(1, cart.getItemCount());
+        assertEquals(50, cart.getPizzaCount());
+        assertEquals(50 * pizza.getPrice(), cart.getTotal());
+    }
+
+    @Test
+    void testIdenticalConfigurationsMerge() {
+        Pizza shared = PizzaRegistry.getInstance().get("Pepperoni", Size.L, true, false, false);
+        Pizza decorated = new Cheese(PizzaFactory.create("Pepperoni", Size.L));
+
+        cart.addItem(shared);
+        cart.addItem(decorated, 2);
+        cart.addItem(PizzaFactory.create("Pepperoni", Size.S));
+
+        List<CartLine> lines = cart.getLines();
+        assertEquals(2, lines.size());
+        assertEquals(3, lines.get(0).getQuantity(), "Same type, size and toppings share a line");
+        assertEquals(3 * shared.getPrice() + PizzaFactory.create("Pepperoni", Size.S).getPrice(), cart.getTotal());
+    }
+
+    @Test
+    void testEditingIntoAnotherLineMergesQuantities() {
+        Pizza plain = PizzaFactory.create("Hawaiian", Size.M);
+        Pizza cheese = new Cheese(PizzaFactory.create("Hawaiian", Size.M));
+        cart.addItem(cheese, 2);
+        cart.addItem(plain, 3);
+
+        cart.replaceItem(1, new Cheese(PizzaFactory.create("Hawaiian", Size.M)));
+        assertEquals(1, cart.getItemCount());
+        assertEquals(5, cart.getLines().get(0).getQuantity());
+
+        cart.setQuantity(0, 1);
+        assertEquals(cheese.getPrice(), cart.getTotal());
+        cart.setQuantity(0, 0);
+        assertEquals(0, cart.getItemCount());
+        assertThrows(IllegalArgumentException.class, () -> cart.addItem(plain, 0));
+    }
+
+    @Test
+    void testLinesVersionIgnoresPaymentChanges() {
+        Pizza pizza = PizzaFactory.create("Margherita", Size.S);
+        long version = cart.getLinesVersion();
+
+        cart.setPaymentStrategy(new CardPayment());
+        assertEquals(version, cart.getLinesVersion(), "Same lines, same checkout");
+
+        cart.addItem(pizza);
+        long added = cart.getLinesVersion();
+        assertNotEquals(version, added);
+        cart.setQuantity(0, 3);
+        assertNotEquals(added, cart.getLinesVersion());
+        long changed = cart.getLinesVersion();
+        cart.clear();
+        assertNotEquals(changed, cart.getLinesVersion());
+    }
+
+    @Test
+    void testRunningTotalsFollowEveryChange() {
+        // CartService also cross-checks itself on each change, since surefire runs with -ea
+        assertTrue(CartService.class.desiredAssertionStatus());
+        String[] types = { "Margherita", "Pepperoni", "Hawaiian" };
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Pizza pizza = PizzaRegistry.getInstance().get(types[random.nextInt(types.length)],
+                    Size.values()[random.nextInt(3)], random.nextBoolean(), random.nextBoolean(), false);
+            int count = cart.getItemCount();
+            switch (random.nextInt(4)) {
+                case 0 -> cart.addItem(pizza, 1 + random.nextInt(5));
+                case 1 -> cart.removeItem(count == 0 ? 0 : random.nextInt(count));
+                case 2 -> cart.replaceItem(count == 0 ? 0 : random.nextInt(count), pizza);
+                default -> cart.setQuantity(count == 0 ? 0 : random.nextInt(count), random.nextInt(4));
+            }
+        }
+
+        List<CartLine> lines = cart.getLines();
+        String hawaiian = PizzaFactory.create("Hawaiian", Size.M).getName();
+        assertEquals(new PriceCalculator().calculateCartTotal(lines), cart.getTotal());
+        assertEquals(lines.stream().mapToInt(CartLine::getQuantity).sum(), cart.getPizzaCount());
+        assertEquals(lines.stream().filter(l -> l.getPizza().getName().equals(hawaiian))
+                .mapToInt(CartLine::getQuantity).sum(), cart.getPizzaCount(hawaiian));
+
+        cart.clear();
+        assertEquals(0, cart.getTotal());
+        assertEquals(0, cart.getPizzaCount(hawaiian));
+    }
+}
@@ -0,0 +1,146 @@
+package com.pizza;
+
+import com.pizza.app.CartService;
+import com.pizza.app.CartSessionManager;
+import com.pizza.domain.factory.PizzaRegistry;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.domain.strategy.CardPayment;
+import com.pizza.domain.strategy.CashPayment;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for per-terminal cart sessions: independent carts, parallel use
+ * by many terminals, and eviction of idle sessions.
+ */
+class CartSessionManagerTest {
+
+    private static final int SESSIONS = 400;
+    private static final int WRITERS_PER_SESSION = 4;
+    private static final int ADDS_PER_WRITER = 50;
+
+    @Test
+    void testSessionsHaveTheirOwnCartAndPayment() {
+        CartSessionManager manager = new CartSessionManager(60_000);
+        CartService till = manager.getCart("pos-1");
+        CartService online = manager.getCart("online");
+        Pizza pizza = PizzaRegistry.getInstance().get("Margherita", Size.M, false, false, false);
+
+        till.addItem(pizza, 2);
+        online.setPaymentStrategy(new CardPayment());
+
+        assertSame(till, manager.getCart("pos-1"));
+        assertEquals(2, till.getPizzaCount());
+        assertEquals(0, online.getPizzaCount());
+        assertEquals(new CashPayment().getName(), till.getPaymentStrategy().getName());
+        assertEquals(new CardPayment().getName(), online.getPaymentStrategy().getName());
+
+        assertTrue(manager.closeSession("pos-1"));
+        assertNotSame(till, manager.getCart("pos-1"), "A closed session starts with an empty cart");
+        assertThrows(IllegalArgumentException.class, () -> manager.getCart(" "));
+    }
+
+    @Test
+    void testHundredsOfSessionsInParallel() throws Exception {
+        CartSessionManager manager = new CartSessionManager(60_000);
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+        Pizza[] menu = {
+                registry.get("Margherita", Size.M, false, false, false),
+                registry.get("Pepperoni", Size.L, true, false, false),
+                registry.get("Hawaiian", Size.S, true, true, true),
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int s = 0; s < SESSIONS; s++) {
+            String sessionId = "pos-" + s;
+            boolean card = s % 2 == 1;
+            for (int w = 0; w < WRITERS_PER_SESSION; w++) {
+                int writer = w;
+                writers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                        // Looked up on every call, as a request handler would
+                        CartService cart = manager.getCart(sessionId);
+                        cart.addItem(menu[(writer + i) % menu.length]);
+                        if (card) {
+                            cart.setPaymentStrategy(new CardPayment());
+                        }
+                        cart.getTotal();
+                        cart.getLines();
+                    }
+                    return null;
+                }));
+            }
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        pool.shutdown();
+
+        assertEquals(SESSIONS, manager.getSessionCount());
+        int pizzas = WRITERS_PER_SESSION * ADDS_PER_WRITER;
+        int expectedTotal = 0;
+        for (int w = 0; w < WRITERS_PER_SESSION; w++) {
+            for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                expectedTotal += menu[(w + i) % menu.length].getPrice();
+            }
+        }
+        for (int s = 0; s < SESSIONS; s++) {
+            CartService cart = manager.getCart("pos-" + s);
+            assertEquals(pizzas, cart.getPizzaCount(), "No add lost in " + cart.getSessionId());
+            assertEquals(menu.length, cart.getItemCount(), "Identical pizzas merged in " + cart.getSessionId());
+            assertEquals(expectedTotal, cart.getTotal());
+            String payment = (s % 2 == 1 ? new CardPayment() : new CashPayment()).getName();
+            assertEquals(payment, cart.getPaymentStrategy().getName());
+        }
+        System.out.printf("📊 %d sessions x %d writers: %,d cart adds in %d ms%n",
+                SESSIONS, WRITERS_PER_SESSION, SESSIONS * pizzas, elapsedMs);
+    }
+
+    @Test
+    void testIdleSessionsAreEvicted() throws InterruptedException {
+        CartSessionManager manager = new CartSessionManager(50);
+        CartService local = manager.getLocalCart();
+        manager.getCart("pos-1");
+        manager.getCart("pos-2");
+        manager.getCart("online");
+
+        Thread.sleep(120);
+        manager.getCart("online").getTotal();
+
+        assertEquals(2, manager.evictIdle());
+        assertFalse(manager.hasSession("pos-1"));
+        assertTrue(manager.hasSession("online"), "Used within the timeout");
+        assertSame(local, manager.getLocalCart(), "The local till is never evicted");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkSessionCreation() {
+        CartSessionManager manager = new CartSessionManager(60_000);
+        int sessions = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            manager.getCart("kiosk-" + i);
+        }
+        double nsPerSession = (double) (System.nanoTime() - start) / sessions;
+        System.out.printf("📊 Cart session creation: %.0f ns/session%n", nsPerSession);
+        assertEquals(sessions, manager.getSessionCount());
+    }
+}
@@ -0,0 +1,200 @@
+package com.pizza;
+
+import com.pizza.domain.decorator.CatalogTopping;
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.decorator.CompactPizza;
+import com.pizza.domain.decorator.Topping;
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.decorator.ToppingDecorator;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
+import com.pizza.domain.factory.PizzaRegistry.CanonicalPizza;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Property tests for the bitmask topping model: for random pizzas and
+ * random topping sequences (repeats included) it must agree with the
+ * decorator chain. Cases come from a fixed seed, so a failure names the
+ * case that reproduces it.
+ */
+class CompactPizzaTest {
+
+    private static final long SEED = 20_240_601L;
+    private static final int CASES = 2_000;
+    private static final int MAX_TOPPINGS = 8;
+    private static final String[] TYPES = { "Margherita", "Pepperoni", "Hawaiian", "Seafood", "Veggie Supreme" };
+
+    @Test
+    void testSamePriceAndToppingsAsDecorators() {
+        Random random = new Random(SEED);
+        for (int n = 0; n < CASES; n++) {
+            Pizza base = randomBase(random);
+            List<Topping> toppings = randomToppings(random);
+            String testCase = "case " + n + ": " + base.getDescription() + " " + toppings;
+
+            Pizza decorated = base;
+            CompactPizza compact = CompactPizza.of(base);
+            for (Topping topping : toppings) {
+                decorated = topping.applyTo(decorated);
+                compact = compact.withTopping(topping);
+            }
+
+            assertEquals(decorated.getPrice(), compact.getPrice(), testCase);
+            assertEquals(sorted(decorated.getToppingList()), sorted(compact.getToppingList()), testCase);
+            assertEquals(decorated.getName(), compact.getName(), testCase);
+            assertEquals(decorated.getSize(), compact.getSize(), testCase);
+            assertEquals(compact, CompactPizza.of(decorated), testCase);
+            for (Topping topping : Topping.values()) {
+                long expected = toppings.stream().filter(t -> t == topping).count();
+                assertEquals(expected, compact.getCount(topping), testCase);
+                assertEquals(expected > 0, compact.hasTopping(topping), testCase);
+            }
+        }
+    }
+
+    @Test
+    void testSamePriceAndToppingsAsRegistryPizzas() {
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+        Random random = new Random(SEED + 3);
+        for (int n = 0; n < CASES; n++) {
+            Pizza base = randomBase(random);
+            Set<Topping> toppings = EnumSet.noneOf(Topping.class);
+            toppings.addAll(randomToppings(random));
+            String testCase = "case " + n + ": " + base.getDescription() + " " + toppings;
+
+            CanonicalPizza canonical = registry.get(base.getName(), base.getSize(), toppings);
+            Pizza decorated = base;
+            for (Topping topping : toppings) {
+                decorated = topping.applyTo(decorated);
+            }
+            CompactPizza compact = CompactPizza.of(canonical);
+
+            assertEquals(canonical.getPrice(), compact.getPrice(), testCase);
+            assertEquals(decorated.getPrice(), compact.getPrice(), testCase);
+            assertEquals(canonical.getToppingList(), compact.getToppingList(), testCase);
+            assertEquals(canonical.getDescription(), compact.getDescription(), testCase);
+            assertEquals(CompactPizza.of(decorated), compact, testCase);
+            // A canonical pizza decorated once more, as a cart line may do
+            assertEquals(new Cheese(canonical).getPrice(), CompactPizza.of(new Cheese(canonical)).getPrice(),
+                    testCase);
+        }
+    }
+
+    @Test
+    void testSameDescriptionWhenStackedInCatalogOrder() {
+        Random random = new Random(SEED + 1);
+        for (int n = 0; n < CASES; n++) {
+            Pizza decorated = randomBase(random);
+            List<Topping> toppings = randomToppings(random);
+            toppings.sort(Comparator.naturalOrder());
+            for (Topping topping : toppings) {
+                decorated = topping.applyTo(decorated);
+            }
+
+            assertEquals(decorated.getDescription(), CompactPizza.of(decorated).getDescription(),
+                    "case " + n + ": " + toppings);
+        }
+    }
+
+    @Test
+    void testRemovingUndoesAdding() {
+        Random random = new Random(SEED + 2);
+        for (int n = 0; n < CASES; n++) {
+            CompactPizza compact = CompactPizza.of(randomBase(random));
+            for (Topping topping : randomToppings(random)) {
+                compact = compact.withTopping(topping);
+            }
+            Topping topping = Topping.values()[random.nextInt(Topping.values().length)];
+
+            assertEquals(compact, compact.withTopping(topping).withoutTopping(topping), "case " + n);
+            assertEquals(compact.getPrice() + topping.getPrice(), compact.withTopping(topping).getPrice(),
+                    "case " + n);
+        }
+    }
+
+    @Test
+    void testDecoratingCompactPizzaStillWorks() {
+        CompactPizza compact = CompactPizza.of(PizzaFactory.create("Pepperoni", Size.L)).withTopping(Topping.BACON);
+        Pizza decorated = new Cheese(compact);
+
+        assertEquals(compact.withTopping(Topping.CHEESE).getPrice(), decorated.getPrice());
+        assertEquals(List.of("Thịt Xông Khói", "Phô Mai"), decorated.getToppingList());
+        assertEquals("Pizza Pepperoni", decorated.getName());
+    }
+
+    @Test
+    void testToppingOutsideCatalogIsRejected() {
+        Pizza chili = new ToppingDecorator(PizzaFactory.create("Margherita", Size.S), "Ớt", 5_000) {
+        };
+        assertThrows(IllegalArgumentException.class, () -> CompactPizza.of(chili));
+
+        CompactPizza full = CompactPizza.of(PizzaFactory.create("Margherita", Size.S));
+        for (int i = 0; i < 255; i++) {
+            full = full.withTopping(Topping.CHEESE);
+        }
+        CompactPizza max = full;
+        assertThrows(IllegalArgumentException.class, () -> max.withTopping(Topping.CHEESE));
+        assertEquals(0, max.getCount(Topping.BACON));
+    }
+
+    @Test
+    void testToppingsFromTheToppingsTable() {
+        List<ToppingCatalog.Entry> entries = new ArrayList<>(ToppingCatalog.getCurrent().getToppings());
+        ToppingCatalog.Entry chili = new ToppingCatalog.Entry(7, "Ớt", 5_000);
+        ToppingCatalog.Entry sausage = new ToppingCatalog.Entry(90, "Xúc Xích", 15_000);
+        entries.add(chili);
+        entries.add(sausage);
+        ToppingCatalog.install(1, entries);
+        try {
+            Pizza decorated = new CatalogTopping(new Cheese(
+                    new CatalogTopping(PizzaFactory.create("Seafood", Size.M), sausage)), chili);
+            CompactPizza compact = CompactPizza.of(decorated);
+
+            assertEquals(decorated.getPrice(), compact.getPrice());
+            assertEquals(List.of("Phô Mai", "Ớt", "Xúc Xích"), compact.getToppingList(), "Listed in id order");
+            assertEquals(1, compact.getCount(chili));
+            assertTrue(compact.hasTopping(Topping.CHEESE));
+            assertFalse(compact.hasTopping(Topping.BACON));
+            assertEquals(compact.getPrice() + 15_000, compact.withTopping(sausage).getPrice());
+            assertEquals(2, compact.withTopping(sausage).getCount(sausage));
+            assertEquals(compact, compact.withTopping(chili).withoutTopping(chili));
+
+            // Counted again against a catalog without the chili
+            ToppingCatalog.reset();
+            assertThrows(IllegalArgumentException.class, () -> CompactPizza.of(compact, ToppingCatalog.getCurrent()));
+        } finally {
+            ToppingCatalog.reset();
+        }
+    }
+
+    private static Pizza randomBase(Random random) {
+        return PizzaFactory.create(TYPES[random.nextInt(TYPES.length)],
+                Size.values()[random.nextInt(Size.values().length)]);
+    }
+
+    private static List<Topping> randomToppings(Random random) {
+        List<Topping> toppings = new ArrayList<>();
+        int count = random.nextInt(MAX_TOPPINGS + 1);
+        for (int i = 0; i < count; i++) {
+            toppings.add(Topping.values()[random.nextInt(Topping.values().length)]);
+        }
+        return toppings;
+    }
+
+    private static List<String> sorted(List<String> names) {
+        List<String> copy = new ArrayList<>(names);
+        copy.sort(Comparator.naturalOrder());
+        return copy;
+    }
+}
@@ -0,0 +1,192 @@
+package com.pizza;
+
+import com.pizza.infra.db.ConnectionPool;
+import com.pizza.infra.db.DurabilityProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SQLite connection pool.
+ * Tests writer exclusivity, read-only readers and handle lifecycle.
+ */
+class ConnectionPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool("jdbc:sqlite:" + tempDir.resolve("pool.db"), 2,
+                DurabilityProfile.BALANCED, 500, 60_000);
+        try (Connection conn = pool.borrowWriter();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (v INTEGER)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testCloseReturnsConnectionToPool() throws SQLException {
+        try (Connection conn = pool.borrowWriter()) {
+            assertFalse(conn.isClosed());
+            assertEquals(1, pool.getActiveCount(), "Writer should be leased");
+        }
+        assertEquals(0, pool.getActiveCount(), "Writer should be returned on close");
+
+        // Writer can be borrowed again right away
+        try (Connection conn = pool.borrowWriter()) {
+            assertFalse(conn.isClosed());
+        }
+    }
+
+    @Test
+    void testOnlyOneWriterAtATime() throws Exception {
+        Connection first = pool.borrowWriter();
+        CompletableFuture<Connection> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrowWriter();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(second.isDone(), "Second writer must wait for the first");
+
+        first.close();
+        Connection secondConn = second.get(2, TimeUnit.SECONDS);
+        assertNotNull(secondConn);
+        secondConn.close();
+    }
+
+    @Test
+    void testWriterBorrowTimesOut() throws SQLException {
+        try (Connection held = pool.borrowWriter()) {
+            assertFalse(held.isClosed());
+            CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+                try {
+                    pool.borrowWriter().close();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Exception e = assertThrows(Exception.class, () -> waiter.get(2, TimeUnit.SECONDS));
+            assertTrue(e.getCause().getCause() instanceof SQLException, "Should time out with SQLException");
+        }
+    }
+
+    @Test
+    void testSameThreadCannotBorrowWriterTwice() throws SQLException {
+        try (Connection held = pool.borrowWriter()) {
+            SQLException e = assertThrows(SQLException.class, pool::borrowWriter,
+                    "A nested borrow must fail at once instead of waiting on itself");
+            assertTrue(e.getMessage().contains("already borrowed by this thread"));
+            assertFalse(held.isClosed(), "The outer lease is untouched");
+        }
+        try (Connection conn = pool.borrowWriter()) {
+            assertFalse(conn.isClosed(), "Writer can be borrowed again once returned");
+        }
+    }
+
+    @Test
+    void testLeakIsReportedOnOneLineWithTheBorrowSite() throws Exception {
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        System.setProperty("pizza.db.traceLeaks", "true");
+        ConnectionPool leaky = new ConnectionPool("jdbc:sqlite:" + tempDir.resolve("leak.db"), 1,
+                DurabilityProfile.BALANCED, 500, 100);
+        try {
+            Connection leaked = leaky.borrowReader();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!captured.toString(StandardCharsets.UTF_8).contains("leak")
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            leaked.close();
+        } finally {
+            leaky.close();
+            System.clearProperty("pizza.db.traceLeaks");
+            System.setErr(originalErr);
+        }
+
+        String log = captured.toString(StandardCharsets.UTF_8).strip();
+        assertTrue(log.startsWith("⚠️ Possible connection leak: reader held for"), log);
+        assertEquals(1, log.lines().count(), "Leak report should be a single line");
+        assertTrue(log.contains("testLeakIsReportedOnOneLineWithTheBorrowSite"), "Borrow site missing: " + log);
+    }
+
+    @Test
+    void testReadersAreReadOnly() throws SQLException {
+        try (Connection reader = pool.borrowReader();
+                Statement stmt = reader.createStatement()) {
+            assertThrows(SQLException.class, () -> stmt.execute("INSERT INTO t VALUES (1)"),
+                    "Reader must reject writes");
+        }
+    }
+
+    @Test
+    void testReaderSeesCommittedWrites() throws SQLException {
+        try (Connection writer = pool.borrowWriter();
+                Statement stmt = writer.createStatement()) {
+            stmt.execute("INSERT INTO t VALUES (42)");
+        }
+
+        try (Connection reader = pool.borrowReader();
+                Statement stmt = reader.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT v FROM t")) {
+            assertTrue(rs.next());
+            assertEquals(42, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void testClosedHandleCannotBeUsed() throws SQLException {
+        Connection conn = pool.borrowReader();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement,
+                "Handle must not be usable after returning to the pool");
+        conn.close(); // Double close is harmless
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void testOpenTransactionIsRolledBackOnReturn() throws SQLException {
+        try (Connection conn = pool.borrowWriter();
+                Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.execute("INSERT INTO t VALUES (7)");
+            // Returned without commit
+        }
+
+        try (Connection conn = pool.borrowWriter();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM t")) {
+            assertTrue(conn.getAutoCommit(), "Autocommit should be restored");
+            assertEquals(0, rs.getInt(1), "Uncommitted insert should be rolled back");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.pizza;
+
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.infra.db.DurabilityProfile;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark for the durability profiles.
+ * Reports checkout commits per second under each profile.
+ */
+class DurabilityProfileBenchmarkTest {
+
+    private static final int CHECKOUTS = 300;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testProfilesSetJournalMode() throws SQLException {
+        for (DurabilityProfile profile : DurabilityProfile.values()) {
+            SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve(profile.getProfileName() + "-mode.db"),
+                    2, profile);
+            try (Connection conn = SQLiteConnection.getConnection();
+                    Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                assertEquals(profile.getJournalMode().toLowerCase(), rs.getString(1),
+                        "Journal mode for profile " + profile);
+            }
+            SQLiteConnection.shutdown();
+        }
+    }
+
+    @Test
+    void testProfileLookupByName() {
+        assertEquals(DurabilityProfile.SAFE, DurabilityProfile.fromName("safe"));
+        assertEquals(DurabilityProfile.BALANCED, DurabilityProfile.fromName("Balanced"));
+        assertEquals(DurabilityProfile.BULK_LOAD, DurabilityProfile.fromName("bulk-load"));
+        assertThrows(IllegalArgumentException.class, () -> DurabilityProfile.fromName("fast"));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkCheckoutCommitsPerSecond() throws SQLException {
+        List<Pizza> items = List.of(
+                new Cheese(PizzaFactory.create("Pepperoni", Size.L)),
+                PizzaFactory.create("Margherita", Size.M));
+
+        for (DurabilityProfile profile : DurabilityProfile.values()) {
+            SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve(profile.getProfileName() + ".db"),
+                    2, profile);
+            OrderRepository repository = new OrderRepository();
+            repository.saveOrder("Warmup", "Cash", items, 205_000);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                repository.saveOrder("Bench " + i, "Cash", items, 205_000);
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            System.out.printf("📊 Profile %-10s %8.0f checkout commits/s%n", profile, CHECKOUTS / seconds);
+            assertTrue(seconds > 0);
+            SQLiteConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.pizza;
+
+import com.pizza.infra.db.DurabilityProfile;
+import com.pizza.infra.db.GroupCommitWriter;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for group commit with several POS terminals in one process.
+ * Prints checkout throughput as the number of terminals grows from 1 to 16.
+ */
+class GroupCommitStressTest {
+
+    private static final int CHECKOUTS_PER_TERMINAL = 40;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testEachCallerGetsItsOwnOrderId() throws Exception {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("ids.db"), 2);
+        try (GroupCommitWriter writer = new GroupCommitWriter(new OrderRepository(), 20, 16)) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(writer.submit(order("Customer " + i)));
+            }
+
+            Set<Integer> ids = new HashSet<>();
+            for (CompletableFuture<Integer> future : futures) {
+                ids.add(future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(50, ids.size(), "Every order should get a distinct ID");
+        }
+
+        // Each ID maps back to the order that was submitted for it
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders o JOIN order_items i ON i.order_id = o.id")) {
+            assertEquals(50, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void testBadOrderOnlyFailsItsOwnCaller() throws Exception {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("isolation.db"), 2);
+        try (GroupCommitWriter writer = new GroupCommitWriter(new OrderRepository(), 50, 16)) {
+            CompletableFuture<Integer> good1 = writer.submit(order("A"));
+            CompletableFuture<Integer> bad = writer.submit(new OrderData("B", "Cash", 1,
+                    List.of(new OrderItemData(null, "M", null, 1))));
+            CompletableFuture<Integer> good2 = writer.submit(order("C"));
+
+            assertNotNull(good1.get(5, TimeUnit.SECONDS));
+            assertNotNull(good2.get(5, TimeUnit.SECONDS));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+
+    @Test
+    void testLoneTerminalDoesNotWaitForTheWindow() throws Exception {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("lone.db"), 2);
+        try (GroupCommitWriter writer = new GroupCommitWriter(new OrderRepository(), 1_000, 16)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(writer.submit(order("Lone " + i)).get(5, TimeUnit.SECONDS));
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(elapsedMs < 1_000, "Nobody else was submitting, yet checkouts took " + elapsedMs + " ms");
+        }
+    }
+
+    @Test
+    void testSubmitAfterCloseFails() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("closed.db"), 2);
+        GroupCommitWriter writer = new GroupCommitWriter(new OrderRepository());
+        writer.close();
+        assertTrue(writer.submit(order("Late")).isCompletedExceptionally());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void stressThroughputFromOneToSixteenTerminals() throws Exception {
+        // Warm up both paths so the single-terminal row does not measure JIT and first-open costs
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("warmup.db"), 2, DurabilityProfile.SAFE);
+        runTerminals(1, true, new OrderRepository());
+        runTerminals(1, false, new OrderRepository());
+        SQLiteConnection.shutdown();
+
+        for (int terminals : new int[] { 1, 2, 4, 8, 16 }) {
+            // Safe profile: every commit pays an fsync, which is what group commit amortizes
+            SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("stress-" + terminals + ".db"), 2,
+                    DurabilityProfile.SAFE);
+            OrderRepository repository = new OrderRepository();
+
+            double grouped = runTerminals(terminals, true, repository);
+            double direct = runTerminals(terminals, false, repository);
+            System.out.printf("📊 %2d terminals: group commit %7.0f orders/s, direct saveOrder %7.0f orders/s%n",
+                    terminals, grouped, direct);
+
+            try (Connection conn = SQLiteConnection.getReadConnection();
+                    Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
+                assertEquals(2 * terminals * CHECKOUTS_PER_TERMINAL, rs.getInt(1));
+            }
+            SQLiteConnection.shutdown();
+        }
+    }
+
+    /**
+     * Each terminal checks out orders one after another, waiting for each commit.
+     *
+     * @return Orders committed per second
+     */
+    private double runTerminals(int terminals, boolean groupCommit, OrderRepository repository) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(terminals);
+        try (GroupCommitWriter writer = new GroupCommitWriter(repository, 2, 64)) {
+            List<Future<?>> running = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < terminals; t++) {
+                int terminal = t;
+                running.add(pool.submit(() -> {
+                    for (int i = 0; i < CHECKOUTS_PER_TERMINAL; i++) {
+                        OrderData order = order("T" + terminal + "-" + i);
+                        if (groupCommit) {
+                            writer.submit(order).get();
+                        } else {
+                            repository.saveOrders(List.of(order));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : running) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            return terminals * CHECKOUTS_PER_TERMINAL / seconds;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static OrderData order(String customer) {
+        return new OrderData(customer, "Cash", 75_000,
+                List.of(new OrderItemData("Pizza Margherita", "M", null, 75_000)));
+    }
+}
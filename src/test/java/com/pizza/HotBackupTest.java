@@ -0,0 +1,123 @@
+package com.pizza;
+
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.infra.db.DurabilityProfile;
+import com.pizza.infra.db.HotBackup;
+import com.pizza.infra.db.HotBackup.BackupResult;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for online backups taken while a load generator saves orders.
+ */
+class HotBackupTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testBackupUnderLoadIsConsistentAndDoesNotStallCheckout() throws Exception {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("live.db"), 2, DurabilityProfile.BALANCED);
+        OrderRepository repository = new OrderRepository();
+        List<Pizza> items = List.of(PizzaFactory.create("Pepperoni", Size.L));
+        List<OrderRepository.OrderData> seed = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            seed.add(OrderRepository.OrderData.fromPizzas("Seed " + i, "Cash", items, 90_000));
+        }
+        repository.saveOrders(seed);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger saved = new AtomicInteger();
+        AtomicLong maxLatencyNs = new AtomicLong();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread load = new Thread(() -> {
+            while (running.get()) {
+                long start = System.nanoTime();
+                try {
+                    repository.saveOrder("Load", "Card", items, 90_000);
+                } catch (SQLException e) {
+                    failures.add(e);
+                    return;
+                }
+                maxLatencyNs.accumulateAndGet(System.nanoTime() - start, Math::max);
+                saved.incrementAndGet();
+            }
+        }, "checkout-load");
+        load.start();
+
+        HotBackup backup = new HotBackup(tempDir.resolve("backup"), 8, 2, 2);
+        List<BackupResult> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                results.add(backup.backup());
+            }
+        } finally {
+            running.set(false);
+            load.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> "Checkout failed during backup: " + failures);
+        for (BackupResult result : results) {
+            System.out.println("📊 Backup " + result);
+            assertEquals(0, result.getWriterStallMs());
+            assertTrue(result.getStepCount() > 1, "Copied in several steps");
+            assertTrue(result.getOrderCount() >= 5_000);
+        }
+        System.out.printf("📊 %d checkouts during backups, slowest %.1f ms%n",
+                saved.get(), maxLatencyNs.get() / 1_000_000.0);
+        assertTrue(saved.get() > 0, "Checkouts continued while backing up");
+
+        // Rotation keeps the newest two
+        assertEquals(1, results.get(2).getDeleted().size());
+        assertEquals(results.get(0).getFile(), results.get(2).getDeleted().get(0));
+        try (Stream<Path> files = Files.list(tempDir.resolve("backup"))) {
+            assertEquals(List.of(results.get(1).getFile(), results.get(2).getFile()), files.sorted().toList());
+        }
+
+        // The newest backup opens on its own and holds its snapshot's orders
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + results.get(2).getFile());
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
+            assertEquals(results.get(2).getOrderCount(), rs.getLong(1));
+        }
+    }
+
+    @Test
+    void testBackupWithoutWalIsTakenInOneStep() throws Exception {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("bulk.db"), 2, DurabilityProfile.BULK_LOAD);
+        new OrderRepository().saveOrder("Khách", "Cash", List.of(PizzaFactory.create("Margherita", Size.M)), 60_000);
+
+        BackupResult result = new HotBackup(tempDir.resolve("backup"), 8, 0, 3).backup();
+
+        assertEquals(1, result.getStepCount());
+        assertEquals(1, result.getOrderCount());
+        assertTrue(Files.exists(result.getFile()));
+    }
+}
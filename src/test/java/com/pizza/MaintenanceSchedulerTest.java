@@ -0,0 +1,119 @@
+package com.pizza;
+
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.infra.db.MaintenanceScheduler;
+import com.pizza.infra.db.MaintenanceScheduler.Metrics;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for off-peak maintenance: incremental vacuum, idle detection and
+ * conversion of existing databases.
+ */
+class MaintenanceSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testIncrementalVacuumReclaimsFreedPages() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("vacuum.db"), 2);
+        saveOrders(3_000);
+        execute("DELETE FROM orders WHERE id > 100");
+
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(0, 10_000);
+        Metrics before = scheduler.readMetrics(true);
+        assertTrue(before.isIncremental(), "New databases start in incremental mode");
+        assertTrue(before.getFreePages() > 0, before.toString());
+
+        Metrics after = scheduler.runSlice();
+        assertEquals(0, after.getFreePages(), after.toString());
+        assertTrue(after.getPageCount() < before.getPageCount());
+        assertEquals(before.getFreePages(), scheduler.getPagesReclaimed());
+        assertSame(after, scheduler.getLastMetrics());
+    }
+
+    @Test
+    void testSlicesOnlyRunWhenIdle() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("idle.db"), 2);
+        saveOrders(1);
+
+        MaintenanceScheduler busy = new MaintenanceScheduler(60_000, 200);
+        assertFalse(busy.isIdle());
+        assertFalse(busy.runIfIdle());
+        assertEquals(0, busy.getSliceCount());
+
+        MaintenanceScheduler idle = new MaintenanceScheduler(0, 200);
+        assertTrue(idle.runIfIdle());
+        assertEquals(1, idle.getSliceCount());
+    }
+
+    @Test
+    void testExistingDatabaseIsSwitchedToIncremental() throws SQLException {
+        Path file = tempDir.resolve("legacy.db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE legacy (id INTEGER PRIMARY KEY)");
+        }
+        SQLiteConnection.configure("jdbc:sqlite:" + file, 2);
+
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(0, 200);
+        assertFalse(scheduler.readMetrics(false).isIncremental());
+        assertFalse(scheduler.runSlice().isIncremental(), "Slices never run a full VACUUM");
+
+        MaintenanceScheduler.convertToIncremental();
+        assertTrue(scheduler.readMetrics(false).isIncremental());
+    }
+
+    @Test
+    void testFragmentationIsNotScannedOnEverySlice() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("fragmentation.db"), 2);
+        saveOrders(2_000);
+
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(0, 200);
+        double measured = scheduler.runSlice().getFragmentation();
+        // Scattered rewrites would change a fresh measurement
+        execute("DELETE FROM orders WHERE id % 3 = 0");
+        saveOrders(2_000);
+
+        assertEquals(measured, scheduler.runSlice().getFragmentation(), "Reused within the hour");
+        assertEquals(2, scheduler.getSliceCount());
+    }
+
+    private static void saveOrders(int count) throws SQLException {
+        List<Pizza> items = List.of(PizzaFactory.create("Hawaii", Size.L), PizzaFactory.create("Margherita", Size.S));
+        List<OrderData> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            orders.add(OrderData.fromPizzas("Khách hàng số " + i, "Cash", items, 140_000));
+        }
+        new OrderRepository().saveOrders(orders);
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
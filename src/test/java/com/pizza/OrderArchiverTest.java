@@ -0,0 +1,224 @@
+package com.pizza;
+
+import com.pizza.infra.db.ArchiveQuery;
+import com.pizza.infra.db.OrderArchiver;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.OrderRepository.OrderSummary;
+import com.pizza.infra.db.SQLiteConnection;
+import com.pizza.infra.db.SalesRollups;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for monthly archiving of old orders and the ATTACH-based query layer.
+ */
+class OrderArchiverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path archiveDir;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("hot.db"), 2);
+        archiveDir = tempDir.resolve("archive");
+
+        // 25 orders in each of January, February and March 2024
+        List<OrderData> orders = new ArrayList<>();
+        for (int i = 0; i < 75; i++) {
+            orders.add(new OrderData("Khách " + i, "Cash", 95_000,
+                    List.of(new OrderItemData("Pizza Margherita", "M", "Nấm", 95_000))));
+        }
+        new OrderRepository().saveOrders(orders);
+        execute("UPDATE orders SET created_at = datetime('2024-01-01', '+' || ((id - 1) / 25) || ' months', "
+                + "'+' || id || ' hours')");
+        // Rollups follow the backdated orders
+        new SalesRollups().rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testArchiveMonthMovesOrdersInBatches() throws Exception {
+        OrderArchiver archiver = new OrderArchiver(archiveDir, 7, 0);
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)),
+                archiver.findMonthsBefore(YearMonth.of(2024, 3)));
+
+        assertEquals(25, archiver.archiveMonth(YearMonth.of(2024, 1)));
+
+        assertEquals(50, count("SELECT COUNT(*) FROM orders"));
+        assertEquals(50, count("SELECT COUNT(*) FROM order_items"));
+        assertEquals(50, count("SELECT COUNT(*) FROM order_item_toppings"));
+        assertEquals(1, count("SELECT COUNT(*) FROM archived_months WHERE status = 'archived' AND order_count = 25"));
+
+        Path file = OrderArchiver.getArchiveFile(archiveDir, YearMonth.of(2024, 1));
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+                Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders WHERE created_at LIKE '2024-01-%'")) {
+                assertEquals(25, rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("""
+                    SELECT COUNT(*) FROM order_items i JOIN order_item_toppings oit ON oit.order_item_id = i.id
+                    JOIN toppings t ON t.id = oit.topping_id WHERE t.name = 'Nấm'
+                    """)) {
+                assertEquals(25, rs.getInt(1), "Archive is readable on its own");
+            }
+        }
+
+        // Running again is a no-op
+        assertEquals(0, archiver.archiveMonth(YearMonth.of(2024, 1)));
+    }
+
+    @Test
+    void testQueryLayerSpansHotAndArchivedMonths() throws Exception {
+        OrderArchiver archiver = new OrderArchiver(archiveDir, 10, 0);
+        archiver.archiveMonth(YearMonth.of(2024, 1));
+        archiver.archiveMonth(YearMonth.of(2024, 2));
+
+        ArchiveQuery query = new ArchiveQuery(archiveDir);
+        List<OrderSummary> all = query.findOrders(LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 1, 0, 0));
+        assertEquals(75, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getCreatedAt().compareTo(all.get(i).getCreatedAt()) <= 0);
+        }
+
+        List<OrderSummary> february = query.findOrders(LocalDateTime.of(2024, 2, 1, 0, 0),
+                LocalDateTime.of(2024, 3, 1, 0, 0));
+        assertEquals(25, february.size());
+
+        try (ArchiveQuery.HistoryView view = query.open(YearMonth.of(2024, 1), YearMonth.of(2024, 3));
+                Statement stmt = view.getConnection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT SUM(price) FROM all_order_items")) {
+                assertEquals(75 * 95_000, rs.getLong(1));
+            }
+            assertThrows(SQLException.class, () -> stmt.execute("DELETE FROM m0.orders"), "Views are read-only");
+        }
+    }
+
+    @Test
+    void testMonthArchivedBeforeQuantitiesReadsAsOnePizzaPerLine() throws Exception {
+        OrderArchiver archiver = new OrderArchiver(archiveDir, 10, 0);
+        archiver.archiveMonth(YearMonth.of(2024, 1));
+        // An archive file written before order lines had a quantity column
+        Path january = OrderArchiver.getArchiveFile(archiveDir, YearMonth.of(2024, 1));
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + january);
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE order_items DROP COLUMN quantity");
+        }
+        execute("UPDATE order_items SET quantity = 3 WHERE order_id IN "
+                + "(SELECT id FROM orders WHERE created_at LIKE '2024-02-%')");
+        archiver.archiveMonth(YearMonth.of(2024, 2));
+
+        ArchiveQuery query = new ArchiveQuery(archiveDir);
+        assertEquals(25 + 75 + 25, sumQuantity(query), "Old archive lines count as one pizza");
+
+        // Archiving into the old file again adds the column with its default
+        archiver.archiveMonth(YearMonth.of(2024, 1));
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + january);
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM order_items WHERE quantity = 1")) {
+            assertEquals(25, rs.getInt(1));
+        }
+        assertEquals(125, sumQuantity(query));
+    }
+
+    @Test
+    void testCrashBetweenCopyAndDeleteIsNotCountedTwice() throws Exception {
+        // The hot delete of the first batch fails after its copy was committed
+        execute("CREATE TRIGGER crash_before_delete BEFORE DELETE ON orders "
+                + "BEGIN SELECT RAISE(ABORT, 'crash'); END");
+        OrderArchiver archiver = new OrderArchiver(archiveDir, 10, 0);
+        assertThrows(SQLException.class, () -> archiver.archiveMonth(YearMonth.of(2024, 1)));
+        assertEquals(75, count("SELECT COUNT(*) FROM orders"));
+
+        ArchiveQuery query = new ArchiveQuery(archiveDir);
+        assertEquals(75, query.findOrders(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0))
+                .size(), "Copied orders still hot are read from the hot database only");
+        assertEquals(75, sumQuantity(query));
+
+        execute("DROP TRIGGER crash_before_delete");
+        assertEquals(25, archiver.archiveMonth(YearMonth.of(2024, 1)), "The next run finishes the month");
+        assertEquals(75, query.findOrders(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0))
+                .size());
+        assertEquals(75, sumQuantity(query));
+    }
+
+    @Test
+    void testRollupsSurviveArchivingAndStayConsistent() throws Exception {
+        new OrderArchiver(archiveDir, 10, 0).archiveMonth(YearMonth.of(2024, 1));
+
+        SalesRollups rollups = new SalesRollups();
+        assertTrue(rollups.checkConsistency().isEmpty(), rollups.checkConsistency().toString());
+        rollups.rebuild();
+        assertEquals(25, count("SELECT SUM(order_count) FROM sales_daily WHERE day LIKE '2024-01-%'"),
+                "Rebuild keeps the totals of archived months");
+        assertEquals(25 * 95_000, count("SELECT SUM(revenue) FROM sales_by_pizza WHERE day LIKE '2024-01-%'"));
+    }
+
+    @Test
+    void testCheckoutsContinueWhileArchiving() throws Exception {
+        OrderRepository repository = new OrderRepository();
+        OrderArchiver archiver = new OrderArchiver(archiveDir, 2, 1);
+        CompletableFuture<Long> archiving = CompletableFuture.supplyAsync(() -> {
+            try {
+                return archiver.archiveMonth(YearMonth.of(2024, 1)) + archiver.archiveMonth(YearMonth.of(2024, 2));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        for (int i = 0; i < 30; i++) {
+            repository.saveOrders(List.of(new OrderData("Live", "Card", 75_000,
+                    List.of(new OrderItemData("Pizza Margherita", "M", null, 75_000)))));
+        }
+        assertEquals(50, archiving.get());
+        assertEquals(55, count("SELECT COUNT(*) FROM orders"));
+        assertTrue(Files.exists(OrderArchiver.getArchiveFile(archiveDir, YearMonth.of(2024, 2))));
+    }
+
+    private static long sumQuantity(ArchiveQuery query) throws SQLException {
+        try (ArchiveQuery.HistoryView view = query.open(YearMonth.of(2024, 1), YearMonth.of(2024, 3));
+                Statement stmt = view.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT SUM(quantity) FROM all_order_items")) {
+            return rs.getLong(1);
+        }
+    }
+
+    private static long count(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderExporter;
+import com.pizza.infra.db.OrderExporter.Cursor;
+import com.pizza.infra.db.OrderExporter.ExportFailedException;
+import com.pizza.infra.db.OrderExporter.ExportResult;
+import com.pizza.infra.db.OrderExporter.Format;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the streaming order exporter, including resuming an export
+ * that failed part way.
+ */
+class OrderExporterTest {
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 2, 1, 0, 0);
+    private static final int ORDERS = 31;
+    private static final int CHUNK_CHARS = 500;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("export.db"), 2);
+        OrderRepository repository = new OrderRepository();
+        List<OrderData> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS - 1; i++) {
+            orders.add(new OrderData("Khách " + i, "Cash", 160_000, List.of(
+                    new OrderItemData("Pizza Margherita", "M", "Phô Mai, Nấm", 95_000),
+                    new OrderItemData("Pizza Pepperoni", "S", null, 65_000))));
+        }
+        // Tricky characters for both formats
+        orders.add(new OrderData("Anh \"Tư\", quận 1\nghi chú", "Card", 0, List.of()));
+        repository.saveOrders(orders);
+
+        // Spread the orders over January, two per day, and one order in February
+        execute("UPDATE orders SET created_at = datetime('2024-01-01', '+' || (id / 2) || ' days', '+' || id || ' minutes')");
+        execute("UPDATE orders SET created_at = '2024-02-03 10:00:00' WHERE id = 1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testCsvExportWithDateRange() throws Exception {
+        Path file = tempDir.resolve("orders.csv");
+        ExportResult result = new OrderExporter(Format.CSV, false).export(file, FROM, TO);
+
+        assertEquals(30, result.getOrderCount(), "Order moved to February is outside the range");
+        assertEquals(58, result.getItemCount());
+
+        List<String> lines = readLines(file, false);
+        assertTrue(lines.get(0).startsWith("order_id,created_at"));
+        assertTrue(lines.contains("2,2024-01-02 00:02:00,Khách 1,Cash,160000,3,Pizza Margherita,M,\"Phô Mai, Nấm\",95000,1"),
+                lines.toString());
+        // Quoted field with an embedded line break spans two physical lines
+        String joined = String.join("\n", lines);
+        assertTrue(joined.contains("\"Anh \"\"Tư\"\", quận 1\nghi chú\",Card,0,,,,,,"), joined);
+    }
+
+    @Test
+    void testJsonLinesHaveOneOrderPerLine() throws Exception {
+        Path file = tempDir.resolve("orders.jsonl");
+        ExportResult result = new OrderExporter(Format.JSONL, false).export(file, FROM, TO);
+
+        List<String> lines = readLines(file, false);
+        assertEquals(result.getOrderCount(), lines.size());
+        assertTrue(lines.get(0).startsWith("{\"id\":2,\"created_at\":\"2024-01-02 00:02:00\""));
+        assertTrue(lines.get(0).endsWith("\"items\":[{\"id\":3,\"pizza_name\":\"Pizza Margherita\",\"size\":\"M\","
+                + "\"toppings\":\"Phô Mai, Nấm\",\"price\":95000,\"quantity\":1},{\"id\":4,\"pizza_name\":\"Pizza Pepperoni\","
+                + "\"size\":\"S\",\"toppings\":null,\"price\":65000,\"quantity\":1}]}"), lines.get(0));
+        assertTrue(lines.stream().anyMatch(l -> l.contains("\"Anh \\\"Tư\\\", quận 1\\nghi chú\"")));
+    }
+
+    @Test
+    void testGzipResumeAppendsTheRemainingOrders() throws Exception {
+        Path full = tempDir.resolve("full.csv.gz");
+        new OrderExporter(Format.CSV, true).export(full, FROM, TO);
+
+        // First run stops mid-January; the second resumes from its cursor
+        Path resumed = tempDir.resolve("resumed.csv.gz");
+        OrderExporter exporter = new OrderExporter(Format.CSV, true);
+        ExportResult first = exporter.export(resumed, FROM, LocalDateTime.of(2024, 1, 10, 0, 0));
+        Cursor cursor = Cursor.parse(first.getLastCursor().toString());
+        ExportResult second = exporter.export(resumed, FROM, TO, cursor);
+
+        assertEquals(30, first.getOrderCount() + second.getOrderCount());
+        assertEquals(readLines(full, true), readLines(resumed, true));
+    }
+
+    @Test
+    void testCsvResumesAfterFailureWithoutDuplicates() throws Exception {
+        assertResumedMatchesFullExport(Format.CSV, false);
+    }
+
+    @Test
+    void testGzipJsonResumesAfterFailureWithoutDuplicates() throws Exception {
+        assertResumedMatchesFullExport(Format.JSONL, true);
+    }
+
+    private void assertResumedMatchesFullExport(Format format, boolean gzip) throws Exception {
+        Path full = tempDir.resolve("full");
+        new OrderExporter(format, gzip, CHUNK_CHARS).export(full, FROM, TO);
+
+        Path resumed = tempDir.resolve("resumed");
+        ExportFailedException failure = assertThrows(ExportFailedException.class,
+                () -> failingAfter(format, gzip, 20).export(resumed, FROM, TO));
+        Cursor cursor = failure.getLastCursor();
+        assertTrue(cursor.getOrderId() > 1 && cursor.getOrderId() <= 20, cursor.toString());
+        assertEquals(Files.size(resumed), cursor.getFileOffset(), "Only whole chunks reach the file");
+
+        // A write torn by a crash leaves a partial order behind the cursor
+        Files.write(resumed, "{\"id\":9".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        ExportResult rest = new OrderExporter(format, gzip, CHUNK_CHARS)
+                .export(resumed, FROM, TO, Cursor.parse(cursor.toString()));
+        // Orders are exported in id order here, so every id after the cursor is left
+        assertEquals(ORDERS - cursor.getOrderId(), rest.getOrderCount());
+        assertEquals(readLines(full, gzip), readLines(resumed, gzip));
+    }
+
+    private static OrderExporter failingAfter(Format format, boolean gzip, long orderId) {
+        return new OrderExporter(format, gzip, CHUNK_CHARS) {
+            @Override
+            protected void onOrderWritten(Cursor order) throws IOException {
+                if (order.getOrderId() == orderId) {
+                    throw new IOException("Disk full");
+                }
+            }
+        };
+    }
+
+    private static List<String> readLines(Path file, boolean gzip) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (gzip) {
+            in = new GZIPInputStream(in);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderHistoryFilter;
+import com.pizza.infra.db.OrderRepository.OrderPage;
+import com.pizza.infra.db.OrderRepository.PageToken;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark: keyset pagination vs OFFSET on a large generated order history.
+ * Prints the cost of a page near the newest order and deep in the history.
+ */
+@Tag("benchmark")
+class OrderHistoryBenchmarkTest {
+    private static final int ORDER_COUNT = 500_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int ROUNDS = 20;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void benchmarkShallowAndDeepPages() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("bench.db"), 2);
+        long start = System.nanoTime();
+        generateOrders();
+        System.out.printf("📊 Generated %,d orders with items in %d ms%n", ORDER_COUNT,
+                (System.nanoTime() - start) / 1_000_000);
+
+        OrderRepository repository = new OrderRepository();
+        for (int depth : new int[] { 10, ORDER_COUNT / 2, ORDER_COUNT - PAGE_SIZE - 10 }) {
+            PageToken token = tokenAtDepth(depth);
+            double keysetMs = time(() -> {
+                OrderPage page = repository.findOrderHistory(OrderHistoryFilter.all(), token, PAGE_SIZE);
+                assertEquals(PAGE_SIZE, page.getOrders().size());
+            });
+            double offsetMs = time(() -> readOffsetPage(depth));
+            System.out.printf("📊 Page at order %,9d: keyset %6.3f ms, OFFSET %8.3f ms%n", depth, keysetMs, offsetMs);
+        }
+
+        double filteredMs = time(() -> repository.findOrderHistory(
+                new OrderHistoryFilter(null, null, "Khách 7", "Card"), tokenAtDepth(ORDER_COUNT / 2), PAGE_SIZE));
+        System.out.printf("📊 Filtered page (customer + payment) deep in history: %6.3f ms%n", filteredMs);
+    }
+
+    private interface Query {
+        void run() throws SQLException;
+    }
+
+    private static double time(Query query) throws SQLException {
+        query.run(); // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+    }
+
+    /**
+     * The equivalent OFFSET query: headers only, so it does strictly less work per row.
+     */
+    private static void readOffsetPage(int offset) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT id, created_at FROM orders ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?")) {
+            stmt.setInt(1, PAGE_SIZE);
+            stmt.setInt(2, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rs.getInt(1);
+                }
+            }
+        }
+    }
+
+    private static PageToken tokenAtDepth(int depth) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT created_at, id FROM orders ORDER BY created_at DESC, id DESC LIMIT 1 OFFSET ?")) {
+            stmt.setInt(1, depth);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return new PageToken(rs.getString(1), rs.getInt(2));
+            }
+        }
+    }
+
+    private static void generateOrders() throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.execute("""
+                    WITH RECURSIVE n(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM n WHERE x < %d)
+                    INSERT INTO orders (customer_name, payment_method, total, created_at)
+                    SELECT 'Khách ' || (x %% 100), CASE x %% 3 WHEN 0 THEN 'Cash' WHEN 1 THEN 'Card' ELSE 'E-Wallet' END,
+                           150000, datetime('2020-01-01', '+' || (x * 5) || ' minutes')
+                    FROM n
+                    """.formatted(ORDER_COUNT));
+            stmt.execute("""
+                    INSERT INTO order_items (order_id, pizza_name, size, toppings, price)
+                    SELECT id, 'Pizza Margherita', 'M', 'Phô Mai', 85000 FROM orders
+                    UNION ALL
+                    SELECT id, 'Pizza Pepperoni', 'S', NULL, 65000 FROM orders
+                    """);
+            stmt.execute("ANALYZE");
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+    }
+}
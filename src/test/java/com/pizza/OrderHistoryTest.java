@@ -0,0 +1,131 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderDetail;
+import com.pizza.infra.db.OrderRepository.OrderHistoryFilter;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.OrderRepository.OrderPage;
+import com.pizza.infra.db.OrderRepository.PageToken;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for keyset-paginated order history.
+ */
+class OrderHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OrderRepository repository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("history.db"), 2);
+        repository = new OrderRepository();
+
+        List<OrderData> orders = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            List<OrderItemData> items = new ArrayList<>();
+            for (int j = 0; j <= i % 3; j++) {
+                items.add(new OrderItemData("Pizza Margherita", "M", j == 0 ? "Phô Mai" : null, 85_000));
+            }
+            orders.add(new OrderData(i % 5 == 0 ? "An" : "Bình", i % 2 == 0 ? "Cash" : "Card",
+                    85_000 * items.size(), items));
+        }
+        repository.saveOrders(orders);
+        // Several orders per second share a created_at; the id breaks the tie
+        execute("UPDATE orders SET created_at = datetime('2024-05-01 08:00:00', '+' || (id / 4) || ' minutes')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testPagesCoverEveryOrderNewestFirst() throws SQLException {
+        List<OrderDetail> all = readAllPages(OrderHistoryFilter.all(), 10);
+
+        assertEquals(45, all.size());
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < all.size(); i++) {
+            ids.add(all.get(i).getSummary().getId());
+            if (i > 0) {
+                var prev = all.get(i - 1).getSummary();
+                var cur = all.get(i).getSummary();
+                int cmp = prev.getCreatedAt().compareTo(cur.getCreatedAt());
+                assertTrue(cmp > 0 || (cmp == 0 && prev.getId() > cur.getId()), "Newest first, ties by id");
+            }
+        }
+        assertEquals(45, ids.size(), "No order may appear on two pages");
+
+        OrderDetail newest = all.get(0);
+        assertEquals(45, newest.getSummary().getId());
+        assertEquals(3, newest.getItems().size(), "Lines come with the header");
+        assertEquals("Phô Mai", newest.getItems().get(0).getToppings());
+    }
+
+    @Test
+    void testFiltersCombineWithPaging() throws SQLException {
+        assertEquals(9, readAllPages(new OrderHistoryFilter(null, null, "An", null), 4).size());
+        assertEquals(22, readAllPages(new OrderHistoryFilter(null, null, null, "Card"), 4).size());
+        assertEquals(5, readAllPages(new OrderHistoryFilter(null, null, "An", "Cash"), 2).size());
+
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 8, 2);
+        LocalDateTime to = LocalDateTime.of(2024, 5, 1, 8, 5);
+        List<OrderDetail> range = readAllPages(new OrderHistoryFilter(from, to, null, null), 5);
+        assertEquals(12, range.size());
+        assertTrue(range.stream().allMatch(o -> o.getSummary().getCreatedAt().compareTo("2024-05-01 08:02:00") >= 0
+                && o.getSummary().getCreatedAt().compareTo("2024-05-01 08:05:00") < 0));
+    }
+
+    @Test
+    void testLastPageHasNoNextToken() throws SQLException {
+        OrderPage page = repository.findOrderHistory(OrderHistoryFilter.all(), null, 45);
+        assertEquals(45, page.getOrders().size());
+        assertFalse(page.hasNext());
+
+        OrderPage first = repository.findOrderHistory(OrderHistoryFilter.all(), null, 44);
+        assertTrue(first.hasNext());
+        PageToken token = PageToken.parse(first.getNext().toString());
+        OrderPage second = repository.findOrderHistory(OrderHistoryFilter.all(), token, 44);
+        assertEquals(1, second.getOrders().size());
+        assertNull(second.getNext());
+    }
+
+    private List<OrderDetail> readAllPages(OrderHistoryFilter filter, int pageSize) throws SQLException {
+        List<OrderDetail> all = new ArrayList<>();
+        PageToken token = null;
+        do {
+            OrderPage page = repository.findOrderHistory(filter, token, pageSize);
+            assertTrue(page.getOrders().size() <= pageSize);
+            all.addAll(page.getOrders());
+            token = page.getNext();
+        } while (token != null);
+        return all;
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderJournal;
+import com.pizza.infra.db.OrderJournalFlusher;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the write-behind order journal.
+ * Covers record round-trips, crash recovery and journal lag.
+ */
+class OrderJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path journalDir;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("orders.db"), 2);
+        journalDir = tempDir.resolve("journal");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testAppendAndReadRoundTrip() throws IOException {
+        try (OrderJournal journal = new OrderJournal(journalDir)) {
+            journal.append(order("An", 2));
+            journal.append(order(null, 1));
+
+            List<OrderJournal.Entry> entries = journal.read(new OrderJournal.Position(0, 0), 10);
+            assertEquals(2, entries.size());
+
+            OrderData first = entries.get(0).getOrder();
+            assertEquals("An", first.getCustomerName());
+            assertEquals("Cash", first.getPaymentMethod());
+            assertEquals(2, first.getItems().size());
+            assertEquals("Phô Mai", first.getItems().get(0).getToppings());
+            assertNull(entries.get(1).getOrder().getCustomerName());
+        }
+    }
+
+    @Test
+    void testTornRecordIsDiscardedOnOpen() throws IOException {
+        try (OrderJournal journal = new OrderJournal(journalDir)) {
+            journal.append(order("An", 1));
+        }
+        // Simulate a crash halfway through the next append
+        Files.write(journalDir.resolve("orders-0.journal"), new byte[] { 0, 0, 0, 50, 1, 2, 3 },
+                StandardOpenOption.APPEND);
+
+        try (OrderJournal journal = new OrderJournal(journalDir)) {
+            assertEquals(1, journal.read(new OrderJournal.Position(0, 0), 10).size());
+            journal.append(order("Binh", 1));
+            assertEquals(2, journal.read(new OrderJournal.Position(0, 0), 10).size());
+        }
+    }
+
+    @Test
+    void testBacklogIsCountedAcrossSegments() throws IOException {
+        try (OrderJournal journal = new OrderJournal(journalDir, false, 512)) {
+            long bytes = 0;
+            for (int i = 0; i < 30; i++) {
+                bytes += journal.append(order("Count " + i, 2));
+            }
+            assertTrue(journal.hasSegmentAfter(0), "Appends should span several segments");
+
+            OrderJournal.Backlog all = journal.count(new OrderJournal.Position(0, 0));
+            assertEquals(30, all.getEntries());
+            assertEquals(bytes, all.getBytes());
+
+            List<OrderJournal.Entry> firstTwo = journal.read(new OrderJournal.Position(0, 0), 2);
+            OrderJournal.Backlog rest = journal.count(firstTwo.get(1).getNext());
+            assertEquals(28, rest.getEntries());
+            assertEquals(bytes - firstTwo.get(0).getSizeBytes() - firstTwo.get(1).getSizeBytes(), rest.getBytes());
+            assertEquals(0, journal.count(journal.getEnd()).getEntries());
+        }
+    }
+
+    @Test
+    void testUnflushedEntriesAreReplayedOnStart() throws Exception {
+        // Orders checked out right before a crash: in the journal, not in SQLite
+        try (OrderJournal journal = new OrderJournal(journalDir)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(order("Crash " + i, 1));
+            }
+        }
+
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        flusher.start();
+        try {
+            assertEquals(5, countRows("SELECT COUNT(*) FROM orders"), "Replay should restore all orders");
+            assertEquals(0, flusher.getPendingEntries());
+        } finally {
+            flusher.close();
+        }
+
+        // A second start must not flush the same entries again
+        OrderJournalFlusher again = newFlusher(new OrderJournal(journalDir));
+        again.start();
+        again.close();
+        assertEquals(5, countRows("SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    void testReplayedOrderKeepsItsCheckoutTime() throws Exception {
+        // Checked out just before midnight, written to SQLite after the restart
+        LocalDateTime checkout = LocalDateTime.of(2024, 3, 9, 23, 59, 30);
+        try (OrderJournal journal = new OrderJournal(journalDir)) {
+            journal.append(order("Late", 1).withCreatedAt(checkout));
+            journal.append(order("Unstamped", 1));
+            List<OrderJournal.Entry> entries = journal.read(new OrderJournal.Position(0, 0), 10);
+            assertEquals(checkout, entries.get(0).getOrder().getCreatedAt());
+            assertNull(entries.get(1).getOrder().getCreatedAt());
+        }
+
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        flusher.start();
+        flusher.close();
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE customer_name = 'Late'"
+                + " AND created_at = '2024-03-09 23:59:30'"));
+        assertEquals(1, countRows("SELECT order_count FROM sales_daily WHERE day = '2024-03-09'"),
+                "Rolled up on the day it was sold");
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE customer_name = 'Unstamped'"
+                + " AND created_at >= date('now', '-1 day')"), "Unstamped orders fall back to now");
+    }
+
+    @Test
+    void testSubmitIsFlushedInBackground() throws Exception {
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        flusher.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                flusher.submit(order("Bg " + i, 3));
+            }
+            assertTrue(flusher.awaitFlushed(5_000), "Journal should drain");
+            assertEquals(0, flusher.getPendingBytes());
+            assertEquals(20, countRows("SELECT COUNT(*) FROM orders"));
+            assertEquals(60, countRows("SELECT COUNT(*) FROM order_items"));
+        } finally {
+            flusher.close();
+        }
+    }
+
+    @Test
+    void testLagCountsEntriesAndBytes() throws Exception {
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        // Not started: nothing drains the journal
+        flusher.submit(order("Lag", 1));
+        flusher.submit(order("Lag", 1));
+
+        assertEquals(2, flusher.getPendingEntries());
+        assertTrue(flusher.getPendingBytes() > 0);
+        flusher.close();
+    }
+
+    @Test
+    void testSegmentsRollAndFlushedSegmentsAreDeleted() throws Exception {
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir, false, 512));
+        flusher.start();
+        try {
+            for (int i = 0; i < 30; i++) {
+                flusher.submit(order("Roll " + i, 2));
+            }
+            assertTrue(flusher.awaitFlushed(5_000));
+            assertEquals(30, countRows("SELECT COUNT(*) FROM orders"));
+        } finally {
+            flusher.close();
+        }
+
+        try (var files = Files.list(journalDir)) {
+            assertTrue(files.count() < 5, "Flushed segments should be deleted");
+        }
+    }
+
+    @Test
+    void testReaderFollowsAppendsAcrossRolls() throws Exception {
+        int orders = 2_000;
+        try (OrderJournal journal = new OrderJournal(journalDir, false, 512)) {
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < orders; i++) {
+                        journal.append(order("Khách " + i, 1));
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+
+            // Read the way the flusher does, racing every roll of the writer
+            OrderJournal.Position position = new OrderJournal.Position(0, 0);
+            int read = 0;
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (read < orders && System.currentTimeMillis() < deadline) {
+                List<OrderJournal.Entry> entries = journal.read(position, 50);
+                for (OrderJournal.Entry entry : entries) {
+                    assertEquals("Khách " + read, entry.getOrder().getCustomerName(), "In order, none skipped");
+                    read++;
+                    position = entry.getNext();
+                }
+                if (entries.isEmpty() && journal.hasSegmentAfter(position.getSegment())
+                        && journal.read(position, 1).isEmpty()) {
+                    position = new OrderJournal.Position(position.getSegment() + 1, 0);
+                }
+            }
+            writer.join();
+            assertEquals(orders, read);
+        }
+    }
+
+    @Test
+    void testRepeatedCheckoutKeyIsFlushedOnce() throws Exception {
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        flusher.start();
+        try {
+            OrderData checkout = order("Key", 2).withIdempotencyKey("pos-1-0001");
+            flusher.submit(checkout);
+            flusher.submit(checkout);
+            assertTrue(flusher.awaitFlushed(5_000));
+            assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE idempotency_key = 'pos-1-0001'"));
+            assertEquals(2, countRows("SELECT COUNT(*) FROM order_items"));
+        } finally {
+            flusher.close();
+        }
+
+        try (OrderJournal journal = new OrderJournal(journalDir, false, 1 << 20)) {
+            journal.append(order("Round trip", 1).withIdempotencyKey("pos-1-0002").withOrderNumber(42));
+            List<OrderJournal.Entry> entries = journal.read(new OrderJournal.Position(0, 0), 1_000);
+            OrderData last = entries.get(entries.size() - 1).getOrder();
+            assertEquals("pos-1-0002", last.getIdempotencyKey());
+            assertEquals(42, last.getOrderNumber());
+            assertNull(entries.get(0).getOrder().getOrderNumber());
+        }
+    }
+
+    @Test
+    void testRejectedOrderIsMovedAsideAndLaterOrdersAreFlushed() throws Exception {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            // A permanent, non-busy failure for one order, as a constraint or schema error would be
+            stmt.execute("CREATE TRIGGER reject_poison BEFORE INSERT ON orders WHEN NEW.customer_name = 'Poison'"
+                    + " BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+        }
+
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        flusher.start();
+        try {
+            flusher.submit(order("Before", 1));
+            flusher.submit(order("Poison", 1));
+            flusher.submit(order("After", 1));
+            assertTrue(flusher.awaitFlushed(10_000), "One bad order must not block the journal");
+            flusher.submit(order("Later", 1));
+            assertTrue(flusher.awaitFlushed(5_000), "The flusher keeps running after moving an order aside");
+        } finally {
+            flusher.close();
+        }
+
+        assertEquals(3, countRows("SELECT COUNT(*) FROM orders"));
+        assertEquals(0, countRows("SELECT COUNT(*) FROM orders WHERE customer_name = 'Poison'"));
+        assertEquals("Poison", deadLetters().get(0).getCustomerName());
+    }
+
+    @Test
+    void testCorruptRecordIsMovedAsideOnReplay() throws Exception {
+        long corruptAt;
+        try (OrderJournal journal = new OrderJournal(journalDir)) {
+            journal.append(order("First", 1));
+            journal.append(order("Damaged", 1));
+            journal.append(order("Third", 1));
+            corruptAt = journal.read(new OrderJournal.Position(0, 0), 1).get(0).getNext().getOffset();
+        }
+        // Flip a payload byte of the second record: its checksum no longer matches
+        try (FileChannel channel = FileChannel.open(journalDir.resolve("orders-0.journal"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, corruptAt + 12);
+            b.put(0, (byte) (b.get(0) ^ 0x5A));
+            b.rewind();
+            channel.write(b, corruptAt + 12);
+        }
+
+        OrderJournalFlusher flusher = newFlusher(new OrderJournal(journalDir));
+        flusher.start();
+        try {
+            assertEquals(0, flusher.getPendingEntries());
+            assertEquals(0, flusher.getPendingBytes());
+        } finally {
+            flusher.close();
+        }
+
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE customer_name = 'First'"));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE customer_name = 'Third'"));
+        try (var files = Files.list(journalDir.resolve("dead-letter"))) {
+            assertEquals(List.of("orders-0-" + corruptAt + ".journal"),
+                    files.map(f -> f.getFileName().toString()).toList());
+        }
+    }
+
+    /**
+     * Orders in the dead-letter directory, read back with the journal format.
+     */
+    private List<OrderData> deadLetters() throws IOException {
+        Path readDir = Files.createDirectories(tempDir.resolve("dead-letter-read"));
+        List<OrderData> orders = new ArrayList<>();
+        try (var files = Files.list(journalDir.resolve("dead-letter"))) {
+            for (Path file : files.sorted().toList()) {
+                // A dead letter keeps the record layout: read it back as a one-record journal
+                Files.copy(file, readDir.resolve("orders-0.journal"), StandardCopyOption.REPLACE_EXISTING);
+                try (OrderJournal journal = new OrderJournal(readDir)) {
+                    journal.read(new OrderJournal.Position(0, 0), 10).forEach(e -> orders.add(e.getOrder()));
+                }
+            }
+        }
+        return orders;
+    }
+
+    private OrderJournalFlusher newFlusher(OrderJournal journal) {
+        return new OrderJournalFlusher(journal, new OrderRepository(), 8, 20);
+    }
+
+    private static OrderData order(String customer, int itemCount) {
+        OrderItemData item = new OrderItemData("Pizza Margherita", "M", "Phô Mai", 85_000);
+        return new OrderData(customer, "Cash", 85_000 * itemCount, Collections.nCopies(itemCount, item));
+    }
+
+    private int countRows(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+}
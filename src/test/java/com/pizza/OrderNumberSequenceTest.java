@@ -0,0 +1,144 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderNumberSequence;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for block-allocated order numbers: uniqueness across terminals,
+ * resuming after a crash and gaps of retired terminals.
+ */
+class OrderNumberSequenceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("orders.db"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testTerminalsGetDisjointBlocks() throws SQLException {
+        OrderNumberSequence pos1 = new OrderNumberSequence("pos-1", 10);
+        OrderNumberSequence pos2 = new OrderNumberSequence("pos-2", 10);
+
+        assertEquals(1, pos1.next());
+        assertEquals(11, pos2.next());
+        assertEquals(2, pos1.next());
+        assertEquals(3, pos1.peek());
+        assertEquals(3, pos1.next());
+        for (int i = 0; i < 7; i++) {
+            pos1.next();
+        }
+        // Block 1-10 used up: the next number comes from a fresh block after pos-2's
+        assertEquals(21, pos1.next());
+        assertEquals(3, countRows("SELECT COUNT(*) FROM order_number_blocks"));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM order_number_blocks WHERE status = 'used'"));
+    }
+
+    @Test
+    void testRestartResumesAfterLastSavedNumber() throws SQLException {
+        OrderNumberSequence beforeCrash = new OrderNumberSequence("pos-1", 10);
+        List<OrderData> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            saved.add(order().withOrderNumber(beforeCrash.next()));
+        }
+        // Handed out but never saved: reclaimed after the restart
+        beforeCrash.next();
+        beforeCrash.next();
+        new OrderRepository().saveOrders(saved);
+
+        OrderNumberSequence afterRestart = new OrderNumberSequence("pos-1", 10);
+        assertEquals(4, afterRestart.next());
+        assertEquals(6, afterRestart.getRemaining());
+        assertEquals(1, countRows("SELECT COUNT(*) FROM order_number_blocks"));
+        assertEquals(3, countRows("SELECT last_used FROM order_number_blocks"));
+        assertEquals(3, countRows("SELECT COUNT(*) FROM orders WHERE order_number BETWEEN 1 AND 3"));
+    }
+
+    @Test
+    void testRetiredTerminalLeavesGap() throws SQLException {
+        OrderNumberSequence pos1 = new OrderNumberSequence("pos-1", 10);
+        new OrderRepository().saveOrders(List.of(order().withOrderNumber(pos1.next())));
+        pos1.next();
+
+        pos1.retire();
+        List<OrderNumberSequence.Gap> gaps = OrderNumberSequence.findGaps();
+        assertEquals(1, gaps.size());
+        assertEquals("pos-1", gaps.get(0).getTerminalId());
+        assertEquals(2, gaps.get(0).getFirst());
+        assertEquals(10, gaps.get(0).getLast());
+
+        // A retired block is never resumed
+        assertEquals(11, new OrderNumberSequence("pos-1", 10).next());
+    }
+
+    @Test
+    void testConcurrentTerminalsNeverShareANumber() throws Exception {
+        int terminals = 4;
+        int perTerminal = 250;
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(terminals * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < terminals; t++) {
+                OrderNumberSequence sequence = new OrderNumberSequence("pos-" + t, 16);
+                // Two threads per terminal, as with two cashier windows in one process
+                for (int thread = 0; thread < 2; thread++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < perTerminal; i++) {
+                            assertTrue(seen.add(sequence.next()), "Number handed out twice");
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(terminals * 2 * perTerminal, seen.size());
+    }
+
+    private static OrderData order() {
+        return new OrderData("Khách", "Cash", 60_000,
+                List.of(new OrderItemData("Pizza Margherita", "S", null, 60_000)));
+    }
+
+    private int countRows(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.pizza;
+
+import com.pizza.domain.decorator.Bacon;
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.decorator.Mushroom;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for OrderRepository against a temporary SQLite file.
+ * Tests transactional order writes and bulk ingestion.
+ */
+class OrderRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OrderRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("orders.db"), 2);
+        repository = new OrderRepository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testSaveOrderStoresHeaderAndItems() throws SQLException {
+        Pizza pepperoni = new Bacon(new Cheese(PizzaFactory.create("Pepperoni", Size.L)));
+        Pizza margherita = PizzaFactory.create("Margherita", Size.S);
+
+        int orderId = repository.saveOrder("An", "Cash", List.of(pepperoni, margherita), 205_000);
+
+        assertEquals(2, countRows("SELECT COUNT(*) FROM order_items WHERE order_id = " + orderId));
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT pizza_name, size, toppings, price FROM order_items WHERE order_id = ? ORDER BY id")) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("Pizza Pepperoni", rs.getString("pizza_name"));
+                assertEquals("L", rs.getString("size"));
+                assertEquals("Phô Mai, Thịt Xông Khói", rs.getString("toppings"));
+                assertEquals(145_000, rs.getInt("price"));
+
+                assertTrue(rs.next());
+                assertNull(rs.getString("toppings"), "Plain pizza should have no toppings");
+            }
+        }
+    }
+
+    @Test
+    void testWalkInCustomerName() throws SQLException {
+        int orderId = repository.saveOrder(" ", "Card",
+                List.of(PizzaFactory.create("Hawaiian", Size.M)), 95_000);
+
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT customer_name FROM orders WHERE id = " + orderId)) {
+            assertEquals("Khách vãng lai", rs.getString(1));
+        }
+    }
+
+    @Test
+    void testSaveOrdersReturnsIdsInInputOrder() throws SQLException {
+        OrderItemData item = new OrderItemData("Pizza Margherita", "M", null, 75_000);
+        List<OrderData> orders = List.of(
+                new OrderData("A", "Cash", 75_000, List.of(item)),
+                new OrderData("B", "Card", 150_000, List.of(item, item)),
+                new OrderData("C", "E-Wallet", 75_000, List.of(item)));
+
+        List<Integer> ids = repository.saveOrders(orders);
+
+        assertEquals(3, ids.size());
+        assertTrue(ids.get(0) < ids.get(1) && ids.get(1) < ids.get(2), "IDs should follow input order");
+        assertEquals(2, countRows("SELECT COUNT(*) FROM order_items WHERE order_id = " + ids.get(1)));
+        assertEquals(4, countRows("SELECT COUNT(*) FROM order_items"));
+    }
+
+    @Test
+    void testFailedItemRollsBackWholeBatch() throws SQLException {
+        OrderItemData good = new OrderItemData("Pizza Margherita", "M", null, 75_000);
+        OrderItemData bad = new OrderItemData(null, "M", null, 75_000); // violates NOT NULL
+
+        List<OrderData> orders = List.of(
+                new OrderData("A", "Cash", 75_000, List.of(good)),
+                new OrderData("B", "Cash", 150_000, List.of(good, bad)));
+
+        assertThrows(SQLException.class, () -> repository.saveOrders(orders));
+        assertEquals(0, countRows("SELECT COUNT(*) FROM orders"), "No header may survive a failed save");
+        assertEquals(0, countRows("SELECT COUNT(*) FROM order_items"));
+
+        // Writer connection is usable again afterwards
+        repository.saveOrders(List.of(orders.get(0)));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders"));
+    }
+
+    @Test
+    void testToppingsAreNormalizedFromDecoratorChain() throws SQLException {
+        Pizza doubleCheese = new Mushroom(new Cheese(new Cheese(PizzaFactory.create("Seafood", Size.M))));
+        Pizza bacon = new Bacon(PizzaFactory.create("Pepperoni", Size.S));
+        repository.saveOrder("An", "Cash", List.of(doubleCheese, bacon, PizzaFactory.create("Margherita", Size.S)),
+                300_000);
+
+        assertEquals(3, countRows("SELECT COUNT(*) FROM order_item_toppings"));
+        assertEquals(2, countRows("""
+                SELECT oit.quantity FROM order_item_toppings oit JOIN toppings t ON t.id = oit.topping_id
+                WHERE t.name = 'Phô Mai'
+                """));
+
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        Map<String, Integer> sold = repository.countToppingsSold(now.minusHours(1), now.plusHours(1));
+        assertEquals(Map.of("Phô Mai", 2, "Nấm", 1, "Thịt Xông Khói", 1), sold);
+    }
+
+    @Test
+    void testUnknownToppingIsAddedToCatalog() throws SQLException {
+        repository.saveOrders(List.of(new OrderData("A", "Cash", 90_000,
+                List.of(new OrderItemData("Pizza Margherita", "M", "Ớt Chuông", 90_000)))));
+
+        assertEquals(1, countRows("SELECT COUNT(*) FROM toppings WHERE name = 'Ớt Chuông'"));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM order_item_toppings"));
+    }
+
+    @Test
+    void testRepeatedIdempotencyKeyReturnsOriginalOrder() throws SQLException {
+        List<Pizza> items = List.of(new Cheese(PizzaFactory.create("Pepperoni", Size.M)));
+        int first = repository.saveOrder("An", "Cash", items, 110_000, "checkout-1");
+        int again = repository.saveOrder("An", "Cash", items, 110_000, "checkout-1");
+        // A cold repository (e.g. after a restart) is stopped by the unique index instead
+        int afterRestart = new OrderRepository().saveOrder("An", "Cash", items, 110_000, "checkout-1");
+        int other = repository.saveOrder("An", "Cash", items, 110_000, "checkout-2");
+
+        assertEquals(first, again);
+        assertEquals(first, afterRestart);
+        assertNotEquals(first, other);
+        assertEquals(2, countRows("SELECT COUNT(*) FROM orders"));
+        assertEquals(2, countRows("SELECT COUNT(*) FROM order_items"));
+        assertEquals(2, countRows("SELECT SUM(order_count) FROM sales_daily"), "Rollups count each order once");
+    }
+
+    @Test
+    void testRepeatedKeyWithinOneBatch() throws SQLException {
+        OrderData order = new OrderData("B", "Card", 60_000,
+                List.of(new OrderItemData("Pizza Margherita", "S", null, 60_000)), "batch-key");
+        List<Integer> ids = repository.saveOrders(List.of(order, order,
+                new OrderData("C", "Card", 60_000, List.of(new OrderItemData("Pizza Margherita", "S", null, 60_000)))));
+
+        assertEquals(ids.get(0), ids.get(1));
+        assertNotEquals(ids.get(0), ids.get(2));
+        assertEquals(2, countRows("SELECT COUNT(*) FROM orders"));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE idempotency_key IS NULL"));
+    }
+
+    @Test
+    void testQuantityLineIsStoredOnce() throws SQLException {
+        Pizza cheese = new Cheese(PizzaFactory.create("Margherita", Size.M));
+        int orderId = repository.saveOrders(List.of(new OrderData("Tiệc", "Card", 50 * 85_000,
+                List.of(OrderItemData.fromPizza(cheese, 50))))).get(0);
+
+        assertEquals(1, countRows("SELECT COUNT(*) FROM order_items WHERE order_id = " + orderId));
+        OrderItemData line = repository.findOrderItems(orderId).get(0);
+        assertEquals(50, line.getQuantity());
+        assertEquals(85_000, line.getPrice(), "Price stays the unit price");
+        assertEquals(50 * 85_000, line.getLineTotal());
+
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        assertEquals(50, repository.countToppingsSold(now.minusDays(1), now.plusDays(1)).get("Phô Mai"));
+        assertEquals(50, countRows("SELECT SUM(item_count) FROM sales_daily"));
+        assertEquals(50 * 85_000, countRows("SELECT SUM(revenue) FROM sales_by_size"));
+    }
+
+    @Test
+    void testToppingsAreStoredForTheirOwnItems() throws SQLException {
+        List<Integer> ids = repository.saveOrders(List.of(
+                new OrderData("A", "Cash", 200_000, List.of(
+                        new OrderItemData("Pizza Margherita", "M", "Nấm", 90_000),
+                        new OrderItemData("Pizza Pepperoni", "S", null, 65_000),
+                        new OrderItemData("Pizza Seafood", "L", "Phô Mai, Phô Mai", 170_000))),
+                new OrderData("B", "Cash", 65_000, List.of(new OrderItemData("Pizza Pepperoni", "S", null, 65_000))),
+                new OrderData("C", "Cash", 90_000, List.of(new OrderItemData("Pizza Hawaiian", "M", "Thịt Xông Khói", 90_000)))));
+
+        assertEquals(List.of("Pizza Margherita:Nấm", "Pizza Seafood:Phô Mai"), toppingsOf(ids.get(0)));
+        assertEquals(List.of(), toppingsOf(ids.get(1)));
+        assertEquals(List.of("Pizza Hawaiian:Thịt Xông Khói"), toppingsOf(ids.get(2)));
+    }
+
+    @Test
+    void testRolledBackToppingIdIsNotReused() throws SQLException {
+        // Two items: the second one finds the first one's uncommitted topping row
+        OrderData truffle = new OrderData("Khách", "Tiền mặt", 200_000, List.of(
+                new OrderItemData("Pizza Margherita", "M", "Nấm Truffle", 100_000),
+                new OrderItemData("Pizza Margherita", "L", "Nấm Truffle", 100_000)));
+
+        // Fails after the new topping row is inserted, so the whole save rolls back
+        execute("CREATE TRIGGER reject_toppings BEFORE INSERT ON order_item_toppings "
+                + "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+        assertThrows(SQLException.class, () -> repository.saveOrders(List.of(truffle)));
+        execute("DROP TRIGGER reject_toppings");
+
+        // Takes the id the rolled-back topping had
+        int anchovy = repository.saveOrders(List.of(new OrderData("Khách", "Tiền mặt", 100_000, List.of(
+                new OrderItemData("Pizza Margherita", "M", "Cá Cơm", 100_000))))).get(0);
+        int retried = repository.saveOrders(List.of(truffle)).get(0);
+
+        assertEquals(List.of("Pizza Margherita:Cá Cơm"), toppingsOf(anchovy));
+        assertEquals(List.of("Pizza Margherita:Nấm Truffle", "Pizza Margherita:Nấm Truffle"), toppingsOf(retried),
+                "Toppings must point at the rows stored with the order");
+    }
+
+    private static List<String> toppingsOf(int orderId) throws SQLException {
+        List<String> toppings = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement("""
+                        SELECT oi.pizza_name, t.name FROM order_items oi
+                        JOIN order_item_toppings oit ON oit.order_item_id = oi.id
+                        JOIN toppings t ON t.id = oit.topping_id
+                        WHERE oi.order_id = ?
+                        ORDER BY oi.id, t.name
+                        """)) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    toppings.add(rs.getString(1) + ":" + rs.getString(2));
+                }
+            }
+        }
+        return toppings;
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private int countRows(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.pizza;
+
+import com.pizza.domain.decorator.Bacon;
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.decorator.Mushroom;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark: building a cart line with Factory + Decorators and pricing it,
+ * against looking the same configuration up in the Flyweight registry.
+ * Reports time and bytes allocated per line.
+ */
+@Tag("benchmark")
+class PizzaRegistryBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int LINES = 1_000_000;
+    private static final String[] TYPES = { "Margherita", "Pepperoni", "Hawaiian", "Seafood" };
+    private static final Size[] SIZES = Size.values();
+
+    @Test
+    void benchmarkDecoratorPathAgainstRegistry() {
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+
+        IntFunction<Pizza> decorated = i -> {
+            Pizza pizza = PizzaFactory.create(TYPES[i & 3], SIZES[i % 3]);
+            if ((i & 4) != 0) {
+                pizza = new Cheese(pizza);
+            }
+            if ((i & 8) != 0) {
+                pizza = new Bacon(pizza);
+            }
+            if ((i & 16) != 0) {
+                pizza = new Mushroom(pizza);
+            }
+            return pizza;
+        };
+        IntFunction<Pizza> interned = i -> registry.get(TYPES[i & 3], SIZES[i % 3],
+                (i & 4) != 0, (i & 8) != 0, (i & 16) != 0);
+
+        double[] decoratorCost = measure(decorated);
+        double[] registryCost = measure(interned);
+
+        System.out.printf("📊 Factory + decorators: %6.1f ns/line, %6.1f bytes/line%n",
+                decoratorCost[0], decoratorCost[1]);
+        System.out.printf("📊 Flyweight registry:   %6.1f ns/line, %6.1f bytes/line (%d canonical pizzas)%n",
+                registryCost[0], registryCost[1], registry.size());
+
+        assertTrue(registryCost[1] < decoratorCost[1], "Registry lookups should allocate less");
+    }
+
+    /**
+     * @return {ns per line, bytes allocated per line}
+     */
+    private static double[] measure(IntFunction<Pizza> line) {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            checksum += price(line.apply(i));
+        }
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < LINES; i++) {
+            checksum += price(line.apply(i));
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+        assertTrue(checksum > 0);
+        return new double[] { (double) elapsed / LINES, (double) bytes / LINES };
+    }
+
+    /**
+     * What a cart does with every line: price it and show it.
+     */
+    private static long price(Pizza pizza) {
+        return pizza.getPrice() + pizza.getDescription().length();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
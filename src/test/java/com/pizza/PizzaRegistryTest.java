@@ -0,0 +1,115 @@
+package com.pizza;
+
+import com.pizza.domain.decorator.Topping;
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
+import com.pizza.domain.factory.PizzaRegistry.CanonicalPizza;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Flyweight pizza registry: one shared instance per
+ * configuration, with the same price and description as the decorator path.
+ */
+class PizzaRegistryTest {
+
+    private final PizzaRegistry registry = PizzaRegistry.getInstance();
+
+    @Test
+    void testSameConfigurationIsOneInstance() {
+        Pizza first = registry.get("Pepperoni", Size.L, true, false, false);
+        Pizza again = registry.get("Pepperoni", Size.L, EnumSet.of(Topping.CHEESE));
+        Pizza otherSize = registry.get("Pepperoni", Size.M, true, false, false);
+
+        assertSame(first, again);
+        assertNotSame(first, otherSize);
+    }
+
+    @Test
+    void testAliasesAndToppingOrderShareInstance() {
+        Pizza hawaiian = registry.get("Hawaiian", Size.S, Set.of(Topping.MUSHROOM, Topping.BACON));
+        Pizza hawaii = registry.get("Hawaii", Size.S, Set.of(Topping.BACON, Topping.MUSHROOM));
+
+        assertSame(hawaiian, hawaii);
+        assertEquals(List.of("Thịt Xông Khói", "Nấm"), hawaii.getToppingList());
+    }
+
+    @Test
+    void testMatchesDecoratorPathForEveryConfiguration() {
+        for (String type : List.of("Margherita", "Pepperoni", "Hawaiian", "Seafood", "Veggie Supreme")) {
+            for (Size size : Size.values()) {
+                for (int mask = 0; mask < 1 << Topping.values().length; mask++) {
+                    Pizza decorated = PizzaFactory.create(type, size);
+                    Set<Topping> toppings = EnumSet.noneOf(Topping.class);
+                    for (Topping topping : Topping.values()) {
+                        if ((mask & (1 << topping.ordinal())) != 0) {
+                            decorated = topping.applyTo(decorated);
+                            toppings.add(topping);
+                        }
+                    }
+
+                    CanonicalPizza canonical = registry.get(type, size, toppings);
+                    assertEquals(decorated.getPrice(), canonical.getPrice());
+                    assertEquals(decorated.getDescription(), canonical.getDescription());
+                    assertEquals(decorated.getToppingList(), canonical.getToppingList());
+                    assertEquals(decorated.getName(), canonical.getName());
+                    assertEquals(size, canonical.getSize());
+                    for (Topping topping : Topping.values()) {
+                        assertEquals(toppings.contains(topping), canonical.hasTopping(topping));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testToppingPriceChangeDuringLookupsIsNotCachedStale() throws InterruptedException {
+        int base = PizzaFactory.create("Margherita", Size.M).getPrice();
+        try {
+            for (int round = 1; round <= 50; round++) {
+                AtomicBoolean running = new AtomicBoolean(true);
+                List<Thread> readers = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    Thread reader = new Thread(() -> {
+                        while (running.get()) {
+                            registry.get("Margherita", Size.M, true, false, false);
+                        }
+                    });
+                    reader.start();
+                    readers.add(reader);
+                }
+
+                int cheesePrice = 10_000 + round;
+                ToppingCatalog.install(round, List.of(
+                        new ToppingCatalog.Entry(Topping.CHEESE.getId(), "Phô Mai", cheesePrice),
+                        new ToppingCatalog.Entry(Topping.BACON.getId(), "Thịt Xông Khói", 15_000),
+                        new ToppingCatalog.Entry(Topping.MUSHROOM.getId(), "Nấm", 10_000)));
+                running.set(false);
+                for (Thread reader : readers) {
+                    reader.join();
+                }
+
+                assertEquals(base + cheesePrice, registry.get("Margherita", Size.M, true, false, false).getPrice(),
+                        "Pizza built from the previous catalog was kept in round " + round);
+            }
+        } finally {
+            ToppingCatalog.reset();
+        }
+    }
+
+    @Test
+    void testUnknownTypeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> registry.get("Calzone", Size.M, Set.of()));
+        assertThrows(IllegalArgumentException.class, () -> registry.get(null, Size.M, Set.of()));
+    }
+}
@@ -4,9 +4,13 @@ import com.pizza.app.PriceCalculator;
 import com.pizza.domain.decorator.Bacon;
 import com.pizza.domain.decorator.Cheese;
 import com.pizza.domain.decorator.Mushroom;
+import com.pizza.domain.decorator.Topping;
+import com.pizza.domain.decorator.ToppingCatalog;
 import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
 import com.pizza.domain.pizza.Pizza;
 import com.pizza.domain.pizza.Size;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -34,6 +38,30 @@ class PriceCalculatorTest {
         items = new ArrayList<>();
     }
 
+    @AfterEach
+    void tearDown() {
+        ToppingCatalog.reset();
+    }
+
+    @Test
+    void testRecalculatedPriceOfRegistryPizzaMatchesDecorators() {
+        Pizza canonical = PizzaRegistry.getInstance().get("Seafood", Size.M, true, false, true);
+        Pizza decorated = new Mushroom(new Cheese(PizzaFactory.create("Seafood", Size.M)));
+
+        assertEquals(decorated.getPrice(), calculator.recalculatePrice(canonical));
+        assertEquals(decorated.getPrice(), calculator.recalculatePrice(decorated));
+    }
+
+    @Test
+    void testRecalculatedPriceUsesTheCatalogThePizzaWasBuiltWith() {
+        Pizza canonical = PizzaRegistry.getInstance().get("Margherita", Size.S, false, true, false);
+        ToppingCatalog.install(42, List.of(new ToppingCatalog.Entry(Topping.BACON.getId(),
+                Topping.BACON.getDisplayName(), Topping.BACON.getPrice() + 5_000)));
+
+        assertEquals(canonical.getPrice(), calculator.recalculatePrice(canonical),
+                "A pizza already in a cart keeps the price it was sold at");
+    }
+
     @Test
     void testSubtotalWithSinglePizza() {
         // Margherita Medium: 60,000 + 15,000 = 75,000
@@ -0,0 +1,111 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import com.pizza.infra.db.SalesRollups;
+import com.pizza.infra.db.SalesRollups.Dimension;
+import com.pizza.infra.db.SalesRollups.SalesRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the incrementally maintained sales rollups.
+ */
+class SalesRollupsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SalesRollups rollups = new SalesRollups();
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("rollups.db"), 2);
+        OrderItemData margheritaM = new OrderItemData("Pizza Margherita", "M", null, 75_000);
+        OrderItemData pepperoniL = new OrderItemData("Pizza Pepperoni", "L", "Phô Mai", 145_000);
+
+        OrderRepository repository = new OrderRepository();
+        repository.saveOrders(List.of(
+                new OrderData("A", "Cash", 75_000, List.of(margheritaM)),
+                new OrderData("B", "Card", 220_000, List.of(margheritaM, pepperoniL))));
+        repository.saveOrders(List.of(new OrderData("C", "Cash", 145_000, List.of(pepperoniL))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testRollupsFollowSavedOrders() throws SQLException {
+        List<SalesRow> daily = rollups.read(Dimension.DAY, today.minusDays(1), today.plusDays(1));
+        assertEquals(1, daily.size());
+        assertEquals(3, daily.get(0).getCount());
+        assertEquals(440_000, daily.get(0).getRevenue());
+
+        List<SalesRow> byPizza = rollups.read(Dimension.PIZZA, today, today);
+        assertEquals("Pizza Pepperoni", byPizza.get(0).getKey(), "Highest revenue first");
+        assertEquals(2, byPizza.get(0).getCount());
+        assertEquals(290_000, byPizza.get(0).getRevenue());
+
+        List<SalesRow> byPayment = rollups.read(Dimension.PAYMENT, today, today);
+        assertEquals(220_000, byPayment.stream().filter(r -> r.getKey().equals("Cash")).findFirst()
+                .orElseThrow().getRevenue());
+
+        long hourlyOrders = rollups.read(Dimension.HOUR, today.minusDays(1), today).stream()
+                .mapToLong(SalesRow::getCount).sum();
+        assertEquals(3, hourlyOrders);
+        assertEquals(2, rollups.read(Dimension.SIZE, today, today).size());
+
+        assertTrue(rollups.read(Dimension.DAY, today.minusDays(10), today.minusDays(2)).isEmpty());
+        assertTrue(rollups.checkConsistency().isEmpty());
+    }
+
+    @Test
+    void testQuantityLinesMatchRebuild() throws SQLException {
+        new OrderRepository().saveOrders(List.of(new OrderData("D", "Cash", 750_000,
+                List.of(new OrderItemData("Pizza Margherita", "M", null, 75_000, 10)))));
+
+        SalesRow margherita = rollups.read(Dimension.PIZZA, today, today).stream()
+                .filter(r -> r.getKey().equals("Pizza Margherita")).findFirst().orElseThrow();
+        assertEquals(12, margherita.getCount(), "Ten pizzas on one line count as ten");
+        assertEquals(900_000, margherita.getRevenue());
+        assertTrue(rollups.checkConsistency().isEmpty(), "Rebuild aggregate weighs lines by quantity");
+    }
+
+    @Test
+    void testConsistencyCheckFindsDriftAndRebuildFixesIt() throws SQLException {
+        execute("UPDATE sales_by_pizza SET quantity = quantity + 1 WHERE pizza_name = 'Pizza Margherita'");
+        execute("DELETE FROM sales_hourly");
+
+        List<String> problems = rollups.checkConsistency();
+        assertEquals(2, problems.size(), problems.toString());
+        assertTrue(problems.get(0).startsWith("sales_hourly"));
+
+        rollups.rebuild();
+        assertTrue(rollups.checkConsistency().isEmpty());
+        assertEquals(2, rollups.read(Dimension.PIZZA, today, today).get(1).getCount());
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
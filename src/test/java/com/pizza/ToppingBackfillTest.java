@@ -0,0 +1,119 @@
+package com.pizza;
+
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import com.pizza.infra.db.ToppingBackfill;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the batched backfill of normalized toppings from old
+ * comma-joined order_items rows.
+ */
+class ToppingBackfillTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("backfill.db"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testBackfillMigratesLegacyRowsInBatches() throws Exception {
+        insertLegacyItems(50);
+        ToppingBackfill backfill = new ToppingBackfill(new OrderRepository(), 7, 0);
+        assertFalse(backfill.isComplete());
+
+        assertEquals(7, backfill.runBatch(), "One batch at a time");
+        assertEquals(43, backfill.runToCompletion());
+        assertTrue(backfill.isComplete());
+        assertEquals(-1, backfill.runBatch());
+
+        OrderRepository repository = new OrderRepository();
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        assertEquals(Map.of("Phô Mai", 50, "Thịt Xông Khói", 25),
+                repository.countToppingsSold(now.minusHours(1), now.plusHours(1)));
+    }
+
+    @Test
+    void testCheckoutsKeepWorkingDuringBackfill() throws Exception {
+        insertLegacyItems(300);
+        OrderRepository repository = new OrderRepository();
+        ToppingBackfill backfill = new ToppingBackfill(repository, 10, 1);
+
+        CompletableFuture<Integer> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return backfill.runToCompletion();
+            } catch (SQLException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            repository.saveOrders(List.of(new OrderData("Live " + i, "Cash", 95_000,
+                    List.of(new OrderItemData("Pizza Margherita", "M", "Nấm", 95_000)))));
+        }
+
+        assertEquals(300, running.get());
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        Map<String, Integer> sold = repository.countToppingsSold(now.minusHours(1), now.plusHours(1));
+        assertEquals(300, sold.get("Phô Mai"));
+        assertEquals(20, sold.get("Nấm"), "Live orders are written normalized, not backfilled twice");
+    }
+
+    /**
+     * Insert order items the way the app stored them before normalization,
+     * and mark them as pending for the backfill.
+     */
+    private static void insertLegacyItems(int count) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                    PreparedStatement item = conn.prepareStatement(
+                            "INSERT INTO order_items (order_id, pizza_name, size, toppings, price) VALUES (?, ?, 'M', ?, 1)")) {
+                stmt.execute("INSERT INTO orders (customer_name, payment_method, total) VALUES ('Old', 'Cash', 1)");
+                long orderId;
+                try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    orderId = rs.getLong(1);
+                }
+                for (int i = 0; i < count; i++) {
+                    item.setLong(1, orderId);
+                    item.setString(2, "Pizza Margherita");
+                    item.setString(3, i % 2 == 0 ? "Phô Mai, Thịt Xông Khói" : "Phô Mai");
+                    item.addBatch();
+                }
+                // A plain pizza: nothing to backfill
+                item.setString(3, null);
+                item.addBatch();
+                item.executeBatch();
+                stmt.execute("UPDATE topping_backfill SET max_item_id = (SELECT MAX(id) FROM order_items)");
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+    }
+}
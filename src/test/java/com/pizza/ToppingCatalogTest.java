@@ -0,0 +1,198 @@
+package com.pizza;
+
+import com.pizza.domain.decorator.Bacon;
+import com.pizza.domain.decorator.CatalogTopping;
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.decorator.ToppingCatalog;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.factory.PizzaRegistry;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import com.pizza.infra.db.MenuCache;
+import com.pizza.infra.db.OrderRepository;
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import com.pizza.infra.db.SQLiteConnection;
+import com.pizza.infra.db.ToppingRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the database-backed topping catalog: toppings and prices come
+ * from the toppings table, and a large catalog keeps adding a cart line cheap.
+ */
+class ToppingCatalogTest {
+
+    private static final int LINES = 1_000_000;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+        ToppingCatalog.reset();
+    }
+
+    @Test
+    void testBuiltInCatalogMatchesDecorators() {
+        ToppingCatalog catalog = ToppingCatalog.getCurrent();
+        assertEquals(3, catalog.size());
+        assertEquals(10_000, catalog.get(Cheese.ID).getPrice());
+        assertEquals("Thịt Xông Khói", catalog.get(Bacon.ID).getName());
+        assertNull(catalog.get(99));
+
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+        assertSame(registry.get("Pepperoni", Size.L, true, true, false),
+                registry.get("Pepperoni", Size.L, Bacon.ID, Cheese.ID, Cheese.ID));
+        assertEquals(new Bacon(new Cheese(PizzaFactory.create("Pepperoni", Size.L))).getPrice(),
+                registry.get("Pepperoni", Size.L, Cheese.ID, Bacon.ID).getPrice());
+    }
+
+    @Test
+    void testToppingsComeFromDatabase() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("menu.db"), 2);
+        ToppingRepository toppings = new ToppingRepository();
+        MenuCache cache = MenuCache.getInstance();
+        assertEquals(3, toppings.getCatalog().size(), "Seeded toppings are on sale");
+
+        toppings.saveTopping("Ớt Chuông", 7_000);
+        assertTrue(cache.refreshIfChanged());
+        ToppingCatalog.Entry pepper = toppings.getCatalog().find("Ớt Chuông");
+        assertNotNull(pepper);
+        assertSame(toppings.getCatalog(), ToppingCatalog.getCurrent());
+
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+        Pizza pizza = registry.get("Pepperoni", Size.M, pepper.getId(), Cheese.ID);
+        assertEquals(PizzaFactory.create("Pepperoni", Size.M).getPrice() + 17_000, pizza.getPrice());
+        assertEquals(List.of("Phô Mai", "Ớt Chuông"), pizza.getToppingList());
+
+        toppings.saveTopping("Ớt Chuông", 9_000);
+        assertTrue(cache.refreshIfChanged());
+        assertEquals(PizzaFactory.create("Pepperoni", Size.M).getPrice() + 19_000,
+                registry.get("Pepperoni", Size.M, pepper.getId(), Cheese.ID).getPrice(),
+                "Shared pizzas are rebuilt with the new price");
+
+        assertTrue(toppings.setActive("Ớt Chuông", false));
+        assertTrue(cache.refreshIfChanged());
+        assertNull(toppings.getCatalog().find("Ớt Chuông"));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("Pepperoni", Size.M, pepper.getId()));
+    }
+
+    @Test
+    void testToppingFirstSeenOnAnOrderIsNotSold() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("orders.db"), 2);
+        long version = MenuCache.getInstance().getSnapshot().getVersion();
+
+        new OrderRepository().saveOrders(List.of(new OrderData("A", "Cash", 90_000,
+                List.of(new OrderItemData("Pizza Margherita", "M", "Sốt Cay", 90_000)))));
+
+        assertEquals(0, countRows("SELECT is_active FROM toppings WHERE name = 'Sốt Cay'"));
+        assertEquals(version, countRows("SELECT version FROM menu_version"), "Saving an order leaves the menu alone");
+        assertFalse(MenuCache.getInstance().refreshIfChanged());
+    }
+
+    @Test
+    void testLargeCatalogMatchesDecorators() {
+        List<ToppingCatalog.Entry> entries = new ArrayList<>();
+        for (int id = 1; id <= ToppingCatalog.MAX_TOPPINGS; id++) {
+            entries.add(new ToppingCatalog.Entry(id, "Topping " + id, 1_000 * id));
+        }
+        ToppingCatalog.install(1, entries);
+        ToppingCatalog catalog = ToppingCatalog.getCurrent();
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+
+        for (int i = 0; i < ToppingCatalog.MAX_TOPPINGS; i++) {
+            // Ascending ids: the registry stacks toppings in catalog order
+            int[] selection = { 1 + i / 2, 1 + (i + ToppingCatalog.MAX_TOPPINGS) / 2 };
+            Pizza decorated = decorated(catalog, selection);
+            Pizza interned = registry.get("Margherita", Size.M, selection);
+            assertEquals(decorated.getPrice(), interned.getPrice());
+            assertEquals(decorated.getDescription(), interned.getDescription());
+            assertSame(interned, registry.get("Margherita", Size.M, selection[1], selection[0]));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkLargeCatalog() {
+        List<ToppingCatalog.Entry> entries = new ArrayList<>();
+        for (int id = 1; id <= 32; id++) {
+            entries.add(new ToppingCatalog.Entry(id, "Topping " + id, 1_000 * id));
+        }
+        ToppingCatalog.install(1, entries);
+        ToppingCatalog catalog = ToppingCatalog.getCurrent();
+        PizzaRegistry registry = PizzaRegistry.getInstance();
+        // Every line has three toppings out of the 32
+        int[][] selections = new int[64][];
+        for (int i = 0; i < selections.length; i++) {
+            selections[i] = new int[] { 1 + i % 32, 1 + (i * 7 + 3) % 32, 1 + (i * 13 + 5) % 32 };
+        }
+
+        long checksum = 0;
+        for (int i = 0; i < LINES; i++) {
+            checksum += decorated(catalog, selections[i & 63]).getPrice();
+            checksum += registry.get("Margherita", Size.M, selections[i & 63]).getPrice();
+        }
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < LINES; i++) {
+            Pizza pizza = decorated(catalog, selections[i & 63]);
+            checksum += pizza.getPrice() + pizza.getDescription().length();
+        }
+        double decoratorNs = (double) (System.nanoTime() - start) / LINES;
+        double decoratorBytes = (double) (allocatedBytes() - bytesBefore) / LINES;
+
+        bytesBefore = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < LINES; i++) {
+            Pizza pizza = registry.get("Margherita", Size.M, selections[i & 63]);
+            checksum += pizza.getPrice() + pizza.getDescription().length();
+        }
+        double registryNs = (double) (System.nanoTime() - start) / LINES;
+        double registryBytes = (double) (allocatedBytes() - bytesBefore) / LINES;
+
+        System.out.printf("📊 %d toppings, catalog decorators: %6.1f ns/line, %6.1f bytes/line%n",
+                catalog.size(), decoratorNs, decoratorBytes);
+        System.out.printf("📊 %d toppings, flyweight registry: %6.1f ns/line, %6.1f bytes/line%n",
+                catalog.size(), registryNs, registryBytes);
+
+        assertTrue(checksum > 0);
+        assertTrue(registryBytes < decoratorBytes, "Registry lookups should allocate less");
+    }
+
+    private static Pizza decorated(ToppingCatalog catalog, int[] toppingIds) {
+        Pizza pizza = PizzaFactory.create("Margherita", Size.M);
+        for (int id : toppingIds) {
+            pizza = new CatalogTopping(pizza, catalog.get(id));
+        }
+        return pizza;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long countRows(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getLong(1);
+        }
+    }
+}
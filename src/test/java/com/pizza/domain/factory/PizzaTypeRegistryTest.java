@@ -0,0 +1,164 @@
+package com.pizza.domain.factory;
+
+import com.pizza.domain.pizza.Hawaiian;
+import com.pizza.domain.pizza.Margherita;
+import com.pizza.domain.pizza.MenuPizza;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Seafood;
+import com.pizza.domain.pizza.Size;
+import com.pizza.domain.pizza.VeggieSupreme;
+import com.pizza.infra.db.MenuCache;
+import com.pizza.infra.db.SQLiteConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the pizza type registry: the factory's old spellings, pizzas
+ * defined only in the database, and allocation-free lookups.
+ */
+class PizzaTypeRegistryTest {
+
+    private static final int LOOKUPS = 1_000_000;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testSpellingsTheFactoryAcceptedStillWork() {
+        assertInstanceOf(Hawaiian.class, PizzaFactory.create("Hawaii", Size.S));
+        assertInstanceOf(Hawaiian.class, PizzaFactory.create("Pizza Hawaiian", Size.S));
+        assertInstanceOf(Seafood.class, PizzaFactory.create("Hải Sản", Size.M));
+        assertInstanceOf(Seafood.class, PizzaFactory.create("haisan", Size.M));
+        assertInstanceOf(VeggieSupreme.class, PizzaFactory.create("Veggie Supreme", Size.L));
+        assertInstanceOf(VeggieSupreme.class, PizzaFactory.create("chayraucucu", Size.L));
+        // The menu name itself, which the old switch did not know
+        assertInstanceOf(VeggieSupreme.class, PizzaFactory.create("Pizza Chay Rau Củ", Size.L));
+        assertThrows(IllegalArgumentException.class, () -> PizzaFactory.create("Calzone", Size.M));
+        assertThrows(IllegalArgumentException.class, () -> PizzaFactory.create(null, Size.M));
+    }
+
+    @Test
+    void testNormalizationMatchesOldFactory() {
+        Random random = new Random(42);
+        String alphabet = "PIZAaizp hảHS";
+        for (int n = 0; n < 10_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = random.nextInt(16); i > 0; i--) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String name = sb.toString();
+            String expected = name.toLowerCase().replace(" ", "").replace("pizza", "");
+
+            assertEquals(expected, PizzaTypeRegistry.normalize(name), '"' + name + '"');
+            assertEquals(expected.hashCode(), PizzaTypeRegistry.hash(name), '"' + name + '"');
+        }
+    }
+
+    @Test
+    void testDatabasePizzaIsCreatedAndFollowsMenuChanges() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("menu.db"), 2);
+        execute("INSERT INTO pizzas (name, description, base_price) VALUES ('Pizza Bò Nướng', 'Bò', 95000)");
+        MenuCache cache = MenuCache.getInstance();
+        cache.getSnapshot();
+
+        Pizza pizza = PizzaFactory.create("bò nướng", Size.L);
+        assertInstanceOf(MenuPizza.class, pizza);
+        assertEquals("Pizza Bò Nướng", pizza.getName());
+        assertEquals(95_000 + Size.L.getPriceModifier(), pizza.getPrice());
+        assertEquals(6, PizzaTypeRegistry.getInstance().getTypes().size(), "Built-ins are not registered twice");
+        assertEquals(125_000, PizzaRegistry.getInstance().get("Pizza Bò Nướng", Size.L, false, false, false)
+                .getPrice());
+
+        execute("UPDATE pizzas SET base_price = 99000 WHERE name = 'Pizza Bò Nướng'");
+        assertTrue(cache.refreshIfChanged());
+        assertEquals(129_000, PizzaFactory.create("Pizza Bò Nướng", Size.L).getPrice());
+        assertEquals(129_000, PizzaRegistry.getInstance().get("Pizza Bò Nướng", Size.L, false, false, false)
+                .getPrice(), "Shared pizzas are rebuilt for the new menu");
+
+        execute("UPDATE pizzas SET is_active = 0 WHERE name = 'Pizza Bò Nướng'");
+        assertTrue(cache.refreshIfChanged());
+        assertThrows(IllegalArgumentException.class, () -> PizzaFactory.create("Pizza Bò Nướng", Size.L));
+        assertNotNull(PizzaFactory.create("Margherita", Size.S), "Built-ins stay available");
+    }
+
+    @Test
+    void testMenuPriceOfAPizzaClassIsUsed() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("menu.db"), 2);
+        execute("UPDATE pizzas SET base_price = 65000 WHERE name = 'Pizza Margherita'");
+        MenuCache.getInstance().getSnapshot();
+
+        Pizza pizza = PizzaFactory.create("Margherita", Size.M);
+        assertInstanceOf(Margherita.class, pizza, "Still made with its class");
+        assertEquals(65_000, pizza.getBasePrice());
+        assertEquals(65_000 + Size.M.getPriceModifier(), PizzaRegistry.getInstance()
+                .get("Pizza Margherita", Size.M, false, false, false).getPrice());
+        assertEquals(5, PizzaTypeRegistry.getInstance().getTypes().size(), "One type per class");
+
+        PizzaTypeRegistry.getInstance().reset();
+        assertEquals(60_000, PizzaFactory.create("Margherita", Size.M).getBasePrice(),
+                "Without a menu the class price applies");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkLookupAllocatesNothing() {
+        PizzaTypeRegistry registry = PizzaTypeRegistry.getInstance();
+        String[] names = { "Pizza Margherita", "pepperoni", "Hawaii", "Hải Sản", "Veggie Supreme" };
+        long found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += registry.find(names[i % names.length]) != null ? 1 : 0;
+        }
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += registry.find(names[i % names.length]) != null ? 1 : 0;
+        }
+        double registryNs = (double) (System.nanoTime() - start) / LOOKUPS;
+        long registryBytes = allocatedBytes() - bytesBefore;
+
+        bytesBefore = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += names[i % names.length].toLowerCase().replace(" ", "").replace("pizza", "").length();
+        }
+        double oldNs = (double) (System.nanoTime() - start) / LOOKUPS;
+        long oldBytes = allocatedBytes() - bytesBefore;
+
+        System.out.printf("📊 Old factory normalization: %5.1f ns/lookup, %5.1f bytes/lookup%n",
+                oldNs, (double) oldBytes / LOOKUPS);
+        System.out.printf("📊 Type registry lookup:      %5.1f ns/lookup, %5.1f bytes/lookup%n",
+                registryNs, (double) registryBytes / LOOKUPS);
+
+        assertTrue(found > 2L * LOOKUPS);
+        assertTrue(registryBytes < LOOKUPS / 100, "Lookups should not allocate: " + registryBytes + " bytes");
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
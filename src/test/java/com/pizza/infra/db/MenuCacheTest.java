@@ -0,0 +1,103 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.PizzaRepository.PizzaData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the menu cache: snapshot lookups, hit/miss counting and
+ * invalidation through the menu_version counter.
+ */
+class MenuCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("menu.db"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testRepeatedReadsAreServedFromSnapshot() throws SQLException {
+        PizzaRepository repository = new PizzaRepository();
+        MenuCache cache = MenuCache.getInstance();
+
+        assertEquals(5, repository.getAllPizzas().size());
+        for (int i = 0; i < 100; i++) {
+            repository.getAllPizzas();
+            repository.getPizzaByName("Pizza Margherita");
+        }
+
+        assertEquals(1, cache.getMissCount(), "Only the first read should load the menu");
+        assertEquals(200, cache.getHitCount());
+        assertTrue(cache.getHitRate() > 0.99);
+    }
+
+    @Test
+    void testLookupByIdAndName() throws SQLException {
+        PizzaRepository repository = new PizzaRepository();
+        PizzaData byName = repository.getPizzaByName("Pizza Margherita");
+        assertNotNull(byName);
+        assertSame(byName, repository.getPizzaById(byName.getId()));
+        assertNull(repository.getPizzaByName("Pizza Không Tồn Tại"));
+        assertNull(repository.getPizzaByName(null));
+    }
+
+    @Test
+    void testMenuChangeBumpsVersionAndReloads() throws SQLException {
+        MenuCache cache = MenuCache.getInstance();
+        long before = cache.getSnapshot().getVersion();
+        assertFalse(cache.refreshIfChanged(), "Nothing changed yet");
+
+        execute("UPDATE pizzas SET base_price = 99000 WHERE name = 'Pizza Margherita'");
+        execute("UPDATE pizzas SET is_active = 0 WHERE name = 'Pizza Hawaii'");
+
+        assertTrue(cache.refreshIfChanged());
+        MenuCache.Snapshot after = cache.getSnapshot();
+        assertTrue(after.getVersion() > before);
+        assertEquals(99000, after.getByName("Pizza Margherita").getBasePrice());
+        assertEquals(4, after.getPizzas().size());
+        assertEquals(1, cache.getReloadCount());
+    }
+
+    @Test
+    void testBackgroundCheckerPicksUpChanges() throws Exception {
+        MenuCache cache = new MenuCache(20);
+        try {
+            assertNotNull(cache.getSnapshot().getByName("Pizza Margherita"));
+            execute("UPDATE pizzas SET name = 'Pizza Margherita Đặc Biệt' WHERE name = 'Pizza Margherita'");
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (cache.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, cache.getReloadCount());
+            assertNull(cache.getSnapshot().getByName("Pizza Margherita"));
+            assertNotNull(cache.getSnapshot().getByName("Pizza Margherita Đặc Biệt"));
+        } finally {
+            cache.stop();
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
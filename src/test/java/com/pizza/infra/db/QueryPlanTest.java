@@ -0,0 +1,224 @@
+package com.pizza.infra.db;
+
+import com.pizza.infra.db.OrderRepository.OrderData;
+import com.pizza.infra.db.OrderRepository.OrderItemData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on the repository lookups and fails if one of
+ * them falls back to a full table scan. Also checks schema migrations.
+ */
+class QueryPlanTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("plan.db"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testItemsByOrderUsesIndex() throws SQLException {
+        seedOrders();
+        assertNoFullScan(OrderRepository.FIND_ITEMS_BY_ORDER_SQL, 1);
+    }
+
+    @Test
+    void testOrdersByDateRangeUsesIndex() throws SQLException {
+        seedOrders();
+        assertNoFullScan(OrderRepository.FIND_ORDERS_BETWEEN_SQL, "2024-01-01 00:00:00", "2024-02-01 00:00:00");
+    }
+
+    @Test
+    void testOrdersByPaymentMethodUsesIndex() throws SQLException {
+        seedOrders();
+        assertNoFullScan(OrderRepository.FIND_ORDERS_BY_PAYMENT_SQL,
+                "Cash", "2024-01-01 00:00:00", "2024-02-01 00:00:00");
+    }
+
+    @Test
+    void testToppingsSoldUsesIndexes() throws SQLException {
+        seedOrders();
+        assertNoFullScan(OrderRepository.COUNT_TOPPINGS_SOLD_SQL, "2024-01-01 00:00:00", "2024-02-01 00:00:00");
+    }
+
+    @Test
+    void testExportCursorUsesIndexes() throws SQLException {
+        seedOrders();
+        List<String> plan = assertNoFullScan(OrderExporter.EXPORT_SQL,
+                "2024-01-01 00:00:00", "2025-01-01 00:00:00", "2024-03-01 10:00:00", 5);
+        // Rows must stream in index order; a temp B-tree would sort the whole range first
+        assertTrue(plan.stream().noneMatch(step -> step.contains("TEMP B-TREE")), plan.toString());
+    }
+
+    @Test
+    void testIdempotencyKeyLookupUsesIndex() throws SQLException {
+        seedOrders();
+        assertNoFullScan(OrderRepository.FIND_ORDER_BY_KEY_SQL, "checkout-1");
+    }
+
+    @Test
+    void testOrderHistoryPagesSeekTheIndex() throws SQLException {
+        seedOrders();
+        OrderRepository.PageToken token = new OrderRepository.PageToken("2024-03-01 10:00:00", 50);
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (OrderRepository.OrderHistoryFilter filter : List.of(
+                OrderRepository.OrderHistoryFilter.all(),
+                new OrderRepository.OrderHistoryFilter(from, from.plusMonths(1), null, null),
+                new OrderRepository.OrderHistoryFilter(null, null, "Plan", null),
+                new OrderRepository.OrderHistoryFilter(null, null, null, "Card"),
+                new OrderRepository.OrderHistoryFilter(from, null, "Plan", "Card"))) {
+            for (OrderRepository.PageToken after : java.util.Arrays.asList(null, token)) {
+                List<Object> params = new ArrayList<>();
+                String sql = OrderRepository.buildHistorySql(filter, after, 20, params);
+                assertPageSeeks(sql, params, after != null);
+            }
+        }
+    }
+
+    @Test
+    void testLookupsReturnStoredOrders() throws SQLException {
+        OrderRepository repository = new OrderRepository();
+        int id = repository.saveOrders(List.of(order("Cash"))).get(0);
+
+        List<OrderItemData> items = repository.findOrderItems(id);
+        assertEquals(2, items.size());
+        assertEquals("Pizza Margherita", items.get(0).getPizzaName());
+        assertEquals(List.of("Phô Mai", "Nấm"), items.get(1).getToppingNames());
+
+        LocalDateTime now = LocalDateTime.now(java.time.ZoneOffset.UTC);
+        assertEquals(1, repository.findOrdersBetween(now.minusHours(1), now.plusHours(1)).size());
+        assertEquals(1, repository.findOrdersByPaymentMethod("Cash", now.minusHours(1), now.plusHours(1)).size());
+        assertTrue(repository.findOrdersByPaymentMethod("Card", now.minusHours(1), now.plusHours(1)).isEmpty());
+    }
+
+    @Test
+    void testMigrationIsIdempotent() throws SQLException {
+        try (Connection conn = SQLiteConnection.getConnection()) {
+            assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getVersion(conn));
+            assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+        }
+    }
+
+    @Test
+    void testUnversionedDatabaseIsUpgraded() throws SQLException {
+        // A database created before versioning: tables exist, user_version is 0
+        String url = "jdbc:sqlite:" + tempDir.resolve("legacy.db");
+        try (Connection conn = DriverManager.getConnection(url);
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE orders (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        customer_name TEXT NOT NULL,
+                        payment_method TEXT NOT NULL,
+                        total INTEGER NOT NULL,
+                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """);
+            stmt.execute("INSERT INTO orders (customer_name, payment_method, total) VALUES ('Old', 'Cash', 1)");
+
+            assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(conn));
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name IN "
+                            + "('idx_order_items_order_id', 'idx_orders_created_at', 'idx_orders_payment_method')")) {
+                assertEquals(3, rs.getInt(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
+                assertEquals(1, rs.getInt(1), "Existing rows must survive the migration");
+            }
+        }
+    }
+
+    private List<String> assertNoFullScan(String sql, Object... params) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString("detail"));
+                }
+            }
+        }
+
+        assertFalse(plan.isEmpty());
+        for (String step : plan) {
+            // "SCAN orders" or "SCAN orders USING INDEX ..." both read every row
+            assertFalse(step.startsWith("SCAN"), "Full scan in plan " + plan + " for: " + sql);
+        }
+        return plan;
+    }
+
+    /**
+     * The page subquery must walk an index in (created_at, id) order and stop
+     * at the LIMIT, without sorting; with a token it must seek, not walk from
+     * the newest order.
+     */
+    private void assertPageSeeks(String sql, List<Object> params, boolean hasToken) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (Connection conn = SQLiteConnection.getReadConnection();
+                PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString("detail"));
+                }
+            }
+        }
+
+        // Steps of the page co-routine come before the outer "SCAN p"
+        List<String> page = plan.subList(0, plan.indexOf("SCAN p"));
+        for (String step : page) {
+            assertFalse(step.contains("TEMP B-TREE"), "Page is sorted instead of read in index order: " + plan);
+            assertFalse(step.equals("SCAN orders"), "Full scan: " + plan);
+            if (hasToken) {
+                assertFalse(step.startsWith("SCAN orders"), "Page does not seek to the token: " + plan);
+            }
+        }
+        assertTrue(plan.stream().anyMatch(step -> step.startsWith("SEARCH i USING INDEX")), plan.toString());
+    }
+
+    private void seedOrders() throws SQLException {
+        List<OrderData> orders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            orders.add(order(i % 3 == 0 ? "Card" : "Cash"));
+        }
+        new OrderRepository().saveOrders(orders);
+        try (Connection conn = SQLiteConnection.getConnection();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    private static OrderData order(String paymentMethod) {
+        OrderItemData plain = new OrderItemData("Pizza Margherita", "M", null, 75_000);
+        OrderItemData topped = new OrderItemData("Pizza Margherita", "M", "Phô Mai, Nấm", 95_000);
+        return new OrderData("Plan", paymentMethod, 170_000, List.of(plain, topped));
+    }
+}
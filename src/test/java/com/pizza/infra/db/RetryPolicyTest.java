@@ -0,0 +1,192 @@
+package com.pizza.infra.db;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the busy-aware retry policy and its contention metrics.
+ */
+class RetryPolicyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ContentionMetrics metrics = new ContentionMetrics();
+
+    @Test
+    void testBusyOperationIsRetriedUntilItSucceeds() throws SQLException {
+        RetryPolicy policy = new RetryPolicy(5, 1, 5, metrics);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = policy.execute("test", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new SQLiteException("database is locked", SQLiteErrorCode.SQLITE_BUSY);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(1, metrics.getOperationCount());
+        assertEquals(2, metrics.getRetryCount());
+        assertEquals(0, metrics.getPermanentFailureCount());
+        assertEquals(1, metrics.getLockWaitMs().getCount());
+        assertEquals(1, metrics.getRetriesPerOperation().getBucketCount(2));
+    }
+
+    @Test
+    void testOtherErrorsAreNotRetried() {
+        RetryPolicy policy = new RetryPolicy(5, 1, 5, metrics);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(SQLException.class, () -> policy.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw new SQLiteException("constraint failed", SQLiteErrorCode.SQLITE_CONSTRAINT);
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, metrics.getRetryCount());
+    }
+
+    @Test
+    void testPermanentFailureAfterLastAttempt() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 5, metrics);
+        AtomicInteger attempts = new AtomicInteger();
+
+        SQLException e = assertThrows(SQLException.class, () -> policy.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw new SQLiteException("snapshot is stale", SQLiteErrorCode.SQLITE_BUSY_SNAPSHOT);
+        }));
+        assertTrue(RetryPolicy.isBusy(e));
+        assertEquals(3, attempts.get());
+        assertEquals(2, metrics.getRetryCount());
+        assertEquals(1, metrics.getPermanentFailureCount());
+    }
+
+    @Test
+    void testBackoffIsJitteredAndBounded() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 200, metrics);
+        long maxSeen = 0;
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(policy.backoffMs(1) <= 10);
+            long delay = policy.backoffMs(40);
+            assertTrue(delay >= 0 && delay <= 200);
+            maxSeen = Math.max(maxSeen, delay);
+        }
+        assertTrue(maxSeen > 100, "Delays spread over the whole range");
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        ContentionMetrics.Histogram histogram = new ContentionMetrics.Histogram(new long[] { 10, 100 });
+        for (int i = 0; i < 90; i++) {
+            histogram.record(5);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(50);
+        }
+        histogram.record(1_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(10, histogram.percentile(50));
+        assertEquals(100, histogram.percentile(99));
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+    }
+
+    @Test
+    void testBusyTimeoutWaitOfSuccessfulAttemptIsRecorded() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("busy-timeout.db");
+        try (Connection setup = DriverManager.getConnection(url); Statement stmt = setup.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("CREATE TABLE sales (id INTEGER PRIMARY KEY, terminal TEXT)");
+        }
+
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread otherTerminal = new Thread(() -> {
+            try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+                stmt.execute("BEGIN IMMEDIATE");
+                stmt.execute("INSERT INTO sales (terminal) VALUES ('T2')");
+                locked.countDown();
+                Thread.sleep(150);
+                stmt.execute("COMMIT");
+            } catch (SQLException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        otherTerminal.start();
+        locked.await();
+
+        RetryPolicy policy = new RetryPolicy(5, 10, 50, metrics);
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            policy.execute("insert sale", () -> stmt.executeUpdate("INSERT INTO sales (terminal) VALUES ('T1')"));
+        }
+        otherTerminal.join();
+
+        assertEquals(0, metrics.getRetryCount(), "SQLite waited for the lock itself");
+        assertEquals(1, metrics.getLockWaitMs().getCount());
+        assertTrue(metrics.getLockWaitMs().getSum() >= 100, metrics.toString());
+    }
+
+    @Test
+    void testRealLockContentionIsRetried() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("contention.db");
+        try (Connection setup = DriverManager.getConnection(url); Statement stmt = setup.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("CREATE TABLE sales (id INTEGER PRIMARY KEY, terminal TEXT)");
+        }
+
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread otherTerminal = new Thread(() -> {
+            try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+                stmt.execute("BEGIN IMMEDIATE");
+                stmt.execute("INSERT INTO sales (terminal) VALUES ('T2')");
+                locked.countDown();
+                Thread.sleep(150);
+                stmt.execute("COMMIT");
+            } catch (SQLException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        otherTerminal.start();
+        locked.await();
+
+        RetryPolicy policy = new RetryPolicy(20, 10, 50, metrics);
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 0");
+            policy.execute("insert sale", () -> {
+                conn.setAutoCommit(false);
+                try {
+                    stmt.execute("INSERT INTO sales (terminal) VALUES ('T1')");
+                    conn.commit();
+                    return null;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            });
+            otherTerminal.join();
+
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sales WHERE terminal = 'T1'")) {
+                assertEquals(1, rs.getInt(1), "Retried sale is stored exactly once");
+            }
+        }
+        assertTrue(metrics.getRetryCount() > 0);
+        assertEquals(0, metrics.getPermanentFailureCount());
+        assertTrue(metrics.getLockWaitMs().getSum() > 0, metrics.toString());
+    }
+}
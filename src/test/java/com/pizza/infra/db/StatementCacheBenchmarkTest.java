@@ -0,0 +1,70 @@
+package com.pizza.infra.db;
+
+import com.pizza.domain.decorator.Cheese;
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.pizza.Pizza;
+import com.pizza.domain.pizza.Size;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark: cost of one saveOrder call with and without the prepared
+ * statement cache. Uses the bulk-load profile so fsync does not hide the
+ * parse and plan time being measured.
+ */
+@Tag("benchmark")
+class StatementCacheBenchmarkTest {
+
+    private static final int WARMUP = 200;
+    private static final int CHECKOUTS = 2_000;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        SQLiteConnection.shutdown();
+        SQLiteConnection.configureStatementCache(ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    @Test
+    void benchmarkSaveOrderWithStatementCache() throws SQLException {
+        double uncached = microsPerSaveOrder("uncached.db", 0);
+        double cached = microsPerSaveOrder("cached.db", ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+        StatementCache.Stats stats = SQLiteConnection.getStatementCacheStats();
+
+        System.out.printf("📊 saveOrder without statement cache: %7.1f µs/call%n", uncached);
+        System.out.printf("📊 saveOrder with statement cache:    %7.1f µs/call (saves %.1f µs, %s)%n",
+                cached, uncached - cached, stats);
+
+        assertTrue(stats.getHitRate() > 0.9, stats.toString());
+    }
+
+    private double microsPerSaveOrder(String file, int cacheSize) throws SQLException {
+        SQLiteConnection.shutdown();
+        SQLiteConnection.configureStatementCache(cacheSize);
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve(file), 2, DurabilityProfile.BULK_LOAD);
+
+        List<Pizza> items = List.of(
+                new Cheese(PizzaFactory.create("Pepperoni", Size.L)),
+                PizzaFactory.create("Margherita", Size.M));
+        OrderRepository repository = new OrderRepository();
+        for (int i = 0; i < WARMUP; i++) {
+            repository.saveOrder("Warmup", "Cash", items, 205_000);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            repository.saveOrder("Bench " + i, "Card", items, 205_000);
+        }
+        return (System.nanoTime() - start) / 1_000.0 / CHECKOUTS;
+    }
+}
@@ -0,0 +1,133 @@
+package com.pizza.infra.db;
+
+import com.pizza.domain.factory.PizzaFactory;
+import com.pizza.domain.pizza.Size;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-connection prepared statement cache.
+ */
+class StatementCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool("jdbc:sqlite:" + tempDir.resolve("cache.db"), 1,
+                DurabilityProfile.BALANCED, 2);
+        try (Connection conn = pool.borrowWriter(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (x INTEGER)");
+            stmt.execute("INSERT INTO t VALUES (1), (2), (3)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+        SQLiteConnection.shutdown();
+    }
+
+    @Test
+    void testSameSqlIsPreparedOnce() throws SQLException {
+        for (int i = 0; i < 10; i++) {
+            try (Connection conn = pool.borrowReader();
+                    PreparedStatement stmt = conn.prepareStatement("SELECT x FROM t WHERE x >= ?")) {
+                stmt.setInt(1, 2);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(2, rs.getInt(1));
+                }
+            }
+        }
+        StatementCache.Stats stats = pool.getStatementCacheStats();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(9, stats.getHitCount());
+        assertEquals(0.9, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+        try (Connection conn = pool.borrowReader()) {
+            for (String sql : List.of("SELECT 1", "SELECT 2", "SELECT 1", "SELECT 3", "SELECT 1", "SELECT 2")) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
+                    assertEquals(sql.charAt(7) - '0', rs.getInt(1));
+                }
+            }
+        }
+        StatementCache.Stats stats = pool.getStatementCacheStats();
+        // SELECT 2 was evicted by SELECT 3 and had to be prepared again
+        assertEquals(4, stats.getMissCount());
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getEvictionCount());
+    }
+
+    @Test
+    void testStatementInUseIsNotShared() throws SQLException {
+        try (Connection conn = pool.borrowReader();
+                PreparedStatement outer = conn.prepareStatement("SELECT x FROM t ORDER BY x");
+                ResultSet rs = outer.executeQuery()) {
+            assertTrue(rs.next());
+            try (PreparedStatement inner = conn.prepareStatement("SELECT x FROM t ORDER BY x");
+                    ResultSet innerRs = inner.executeQuery()) {
+                assertNotSame(outer, inner);
+                assertTrue(innerRs.next());
+            }
+            assertTrue(rs.next(), "Outer cursor is untouched by the inner statement");
+            assertEquals(2, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void testClosedHandleCannotBeUsed() throws SQLException {
+        try (Connection conn = pool.borrowReader()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT x FROM t");
+            stmt.close();
+            assertTrue(stmt.isClosed());
+            assertThrows(SQLException.class, stmt::executeQuery);
+        }
+    }
+
+    @Test
+    void testUnclosedCursorIsResetWhenConnectionIsReturned() throws SQLException {
+        try (Connection conn = pool.borrowReader()) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT x FROM t");
+            ResultSet rs = stmt.executeQuery();
+            assertTrue(rs.next());
+            // Neither the cursor nor the statement is closed by the caller
+        }
+        try (Connection conn = pool.borrowWriter();
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO t VALUES (4)");
+            try (ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                assertEquals(0, rs.getInt(1), "No reader may still hold an old snapshot");
+            }
+        }
+    }
+
+    @Test
+    void testRepositoriesHitTheCache() throws SQLException {
+        SQLiteConnection.configure("jdbc:sqlite:" + tempDir.resolve("orders.db"), 2);
+        OrderRepository repository = new OrderRepository();
+        for (int i = 0; i < 20; i++) {
+            repository.saveOrder("Khách " + i, "Cash", List.of(PizzaFactory.create("Margherita", Size.M)), 60_000);
+        }
+        assertTrue(SQLiteConnection.getStatementCacheStats().getHitRate() > 0.8,
+                SQLiteConnection.getStatementCacheStats().toString());
+    }
+}